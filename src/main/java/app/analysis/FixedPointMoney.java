@@ -0,0 +1,136 @@
+package app.analysis;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Objects;
+
+/**
+ * <p>Money amount used by the tracker internals: a <code>long</code> count of micro-units, the scale the database uses
+ * through {@link app.util.BigDecimalConverter}, together with the scale the amount has as a {@link BigDecimal}. Sums
+ * and differences of such amounts are overflow-checked <code>long</code> arithmetic. The trackers convert to and from
+ * {@link BigDecimal} and {@link CashValue} at their API edges.</p>
+ * <p>Results are exactly those {@link BigDecimal} gives, scale included; nothing is ever rounded. An amount with digits
+ * beyond micro-units, such as one converted at an exchange rate, or one that does not fit in a <code>long</code>, is
+ * kept as a {@link BigDecimal} instead, and arithmetic involving it is done in {@link BigDecimal}. Results that fit in
+ * micro-units again go back to <code>long</code> arithmetic.</p>
+ */
+public final class FixedPointMoney implements Comparable<FixedPointMoney> {
+
+    public static final int SCALE = 6;
+    public static final FixedPointMoney ZERO = new FixedPointMoney(0, 0, null);
+
+    private static final BigDecimal MIN_AMOUNT = BigDecimal.valueOf(Long.MIN_VALUE, SCALE);
+    private static final BigDecimal MAX_AMOUNT = BigDecimal.valueOf(Long.MAX_VALUE, SCALE);
+
+    private final long micros;
+    private final int scale;
+    // Only set for amounts that cannot be represented in micro-units
+    private final BigDecimal exact;
+
+    private FixedPointMoney(long micros, int scale, BigDecimal exact) {
+        this.micros = micros;
+        this.scale = scale;
+        this.exact = exact;
+    }
+
+    public static FixedPointMoney of(BigDecimal amount) {
+        if (!isRepresentable(amount)) {
+            return new FixedPointMoney(0, amount.scale(), amount);
+        }
+        return new FixedPointMoney(amount.movePointRight(SCALE).longValueExact(), amount.scale(), null);
+    }
+
+    public static FixedPointMoney of(CashValue cashValue) {
+        return of(cashValue.getAmount());
+    }
+
+    /**
+     * Tells whether the amount is held as micro-units, rather than as a {@link BigDecimal}.
+     */
+    public boolean isInMicros() {
+        return exact == null;
+    }
+
+    public FixedPointMoney add(FixedPointMoney augend) {
+        if (isInMicros() && augend.isInMicros()) {
+            try {
+                return new FixedPointMoney(Math.addExact(micros, augend.micros), Math.max(scale, augend.scale), null);
+            } catch (ArithmeticException e) {
+                // The sum does not fit in micro-units, so it is worked out below
+            }
+        }
+        return of(toBigDecimal().add(augend.toBigDecimal()));
+    }
+
+    public FixedPointMoney subtract(FixedPointMoney subtrahend) {
+        if (isInMicros() && subtrahend.isInMicros()) {
+            try {
+                return new FixedPointMoney(Math.subtractExact(micros, subtrahend.micros),
+                        Math.max(scale, subtrahend.scale), null);
+            } catch (ArithmeticException e) {
+                // The difference does not fit in micro-units, so it is worked out below
+            }
+        }
+        return of(toBigDecimal().subtract(subtrahend.toBigDecimal()));
+    }
+
+    public FixedPointMoney negate() {
+        if (isInMicros() && micros != Long.MIN_VALUE) {
+            return new FixedPointMoney(-micros, scale, null);
+        }
+        return of(toBigDecimal().negate());
+    }
+
+    /**
+     * Multiplies the amount by the factor, exactly: the product has the sum of the two scales.
+     */
+    public FixedPointMoney multiply(BigDecimal factor) {
+        return of(toBigDecimal().multiply(factor));
+    }
+
+    public int signum() {
+        return isInMicros() ? Long.signum(micros) : exact.signum();
+    }
+
+    @Override
+    public int compareTo(FixedPointMoney other) {
+        if (isInMicros() && other.isInMicros()) {
+            return Long.compare(micros, other.micros);
+        }
+        return toBigDecimal().compareTo(other.toBigDecimal());
+    }
+
+    public BigDecimal toBigDecimal() {
+        if (!isInMicros()) {
+            return exact;
+        }
+        return BigDecimal.valueOf(micros, SCALE).setScale(scale, RoundingMode.UNNECESSARY);
+    }
+
+    public CashValue toCashValue(String currency) {
+        return new CashValue(toBigDecimal(), currency);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        FixedPointMoney that = (FixedPointMoney) o;
+        return micros == that.micros && scale == that.scale && Objects.equals(exact, that.exact);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(micros, scale, exact);
+    }
+
+    @Override
+    public String toString() {
+        return toBigDecimal().toString();
+    }
+
+    private static boolean isRepresentable(BigDecimal amount) {
+        return (amount.scale() <= SCALE || amount.stripTrailingZeros().scale() <= SCALE)
+                && amount.compareTo(MIN_AMOUNT) >= 0 && amount.compareTo(MAX_AMOUNT) <= 0;
+    }
+}
@@ -3,21 +3,36 @@ package app.analysis;
 import app.analysis.actual.ActualPositionOverviewDto;
 import app.analysis.actual.ActualPositionService;
 import app.analysis.actual.GetActualPositionCommand;
+import app.analysis.liquid.GetLiquidValueBatchCommand;
 import app.analysis.liquid.GetLiquidValueCommand;
+import app.analysis.liquid.GetLiquidValueSeriesCommand;
 import app.analysis.liquid.LiquidValueDto;
+import app.analysis.liquid.LiquidValuePointDto;
+import app.analysis.liquid.PortfolioLiquidValueDto;
 import app.analysis.portfolio.CreatePortfolioCommand;
 import app.analysis.portfolio.PortfolioDto;
 import app.analysis.portfolio.PortfolioService;
 import app.analysis.portfolio.UpdatePortfolioCommand;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.net.URI;
+import java.util.Iterator;
 import java.util.List;
+import java.util.stream.Stream;
 
 @RestController
 @RequestMapping("/api/v1/analysis")
@@ -31,12 +46,64 @@ public class InvestmentAnalysisController {
 
     private final ActualPositionService actualPositionService;
 
+    private final ObjectMapper objectMapper;
+
+    private final PlatformTransactionManager transactionManager;
+
     @GetMapping
     public ResponseEntity<LiquidValueDto> getLiquidValue(@Valid @RequestBody GetLiquidValueCommand command) {
         return ResponseEntity.ok(investmentAnalysisService.getLiquidValue(command.getPortfolioName(),
                 command.getTaxResidence(), command.getCurrency(), command.getAsOfDate()));
     }
 
+    @GetMapping("/batch")
+    public ResponseEntity<List<PortfolioLiquidValueDto>> getLiquidValues(
+            @Valid @RequestBody GetLiquidValueBatchCommand command) {
+        return ResponseEntity.ok(investmentAnalysisService.getLiquidValues(command.getPortfolioNames(),
+                command.getTaxResidences(), command.getCurrencies(), command.getAsOfDate()));
+    }
+
+    /**
+     * <p>Streams one JSON object per line (NDJSON), each written as soon as its date is valued.</p>
+     * <p>The body is written on an async thread, after this method returns. The points are valued there inside a
+     * read-only transaction of their own, so the repositories read while valuing share one persistence context.</p>
+     */
+    @GetMapping(value = "/time-series", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> getLiquidValueSeries(
+            @Valid @RequestBody GetLiquidValueSeriesCommand command) {
+        // Invalid periods and the replay up to the first date fail here, before the response is committed
+        Stream<LiquidValuePointDto> points = investmentAnalysisService.getLiquidValueSeries(
+                command.getPortfolioName(), command.getTaxResidence(), command.getCurrency(),
+                command.getFromDate(), command.getToDate(), command.getStep());
+        ObjectWriter writer = objectMapper.writerFor(LiquidValuePointDto.class);
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(true);
+
+        StreamingResponseBody body = out -> {
+            try {
+                transactionTemplate.executeWithoutResult(status -> writePoints(points, writer, out));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/x-ndjson"))
+                .body(body);
+    }
+
+    private void writePoints(Stream<LiquidValuePointDto> points, ObjectWriter writer, OutputStream out) {
+        try (points) {
+            Iterator<LiquidValuePointDto> iterator = points.iterator();
+            while (iterator.hasNext()) {
+                out.write(writer.writeValueAsBytes(iterator.next()));
+                out.write('\n');
+                out.flush();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
     @GetMapping("/actual-position")
     public ResponseEntity<ActualPositionOverviewDto> getActualPosition(
             @Valid @RequestBody GetActualPositionCommand command) {
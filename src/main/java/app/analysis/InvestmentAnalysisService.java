@@ -1,7 +1,11 @@
 package app.analysis;
 
 import app.analysis.liquid.LiquidValueDto;
+import app.analysis.liquid.LiquidValueKey;
 import app.analysis.liquid.LiquidValueOrchestrator;
+import app.analysis.liquid.LiquidValuePointDto;
+import app.analysis.liquid.PortfolioLiquidValueDto;
+import app.analysis.liquid.ValuationStep;
 import app.analysis.portfolio.PortfolioService;
 import app.analysis.tracker.LiquidPositionTracker;
 import app.util.InvalidDataException;
@@ -10,9 +14,8 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Set;
+import java.util.*;
+import java.util.stream.Stream;
 
 @Service
 @AllArgsConstructor
@@ -33,7 +36,62 @@ public class InvestmentAnalysisService {
             List<Long> accountIds, String taxResidence, String currency, LocalDate asOfDate) {
         LiquidPositionTracker liquidPositionTracker =
                 liquidValueOrchestrator.getLiquidPositionTracker(accountIds, taxResidence, asOfDate, currency);
+        return getLiquidValueDto(liquidPositionTracker, currency);
+    }
+
+    /**
+     * Returns the liquid value of every portfolio for every tax residence and currency, as of the given date. The
+     * transactions of all the portfolios are read and replayed together, and portfolios made up of the same accounts
+     * are valued only once.
+     */
+    public List<PortfolioLiquidValueDto> getLiquidValues(List<String> portfolioNames, List<String> taxResidences,
+                                                         List<String> currencies, LocalDate asOfDate) {
+        if (isEmpty(portfolioNames) || isEmpty(taxResidences) || isEmpty(currencies) || asOfDate == null) {
+            throw new InvalidDataException(
+                    "Portfolios, tax residences, currencies and the valuation date must all be specified.");
+        }
+        Map<String, Set<Long>> accountIdsByPortfolio = new LinkedHashMap<>();
+        portfolioNames.forEach(portfolioName -> accountIdsByPortfolio.put(
+                portfolioName, portfolioService.getAccountIdsInPortfolio(portfolioName)));
+
+        Map<LiquidValueKey, LiquidPositionTracker> liquidPositionTrackers =
+                liquidValueOrchestrator.getLiquidPositionTrackersAsOf(
+                        new HashSet<>(accountIdsByPortfolio.values()), taxResidences, currencies, asOfDate);
+        Map<LiquidValueKey, LiquidValueDto> liquidValues = new HashMap<>();
+
+        List<PortfolioLiquidValueDto> results = new ArrayList<>();
+        accountIdsByPortfolio.forEach((portfolioName, accountIds) -> taxResidences.forEach(
+                taxResidence -> currencies.forEach(currency -> {
+                    LiquidValueKey key = new LiquidValueKey(accountIds, taxResidence, currency);
+                    LiquidValueDto liquidValue = liquidValues.computeIfAbsent(
+                            key, k -> getLiquidValueDto(liquidPositionTrackers.get(k), currency));
+                    results.add(new PortfolioLiquidValueDto(portfolioName, taxResidence, currency, liquidValue));
+                })));
+        return results;
+    }
 
+    /**
+     * Returns the liquid value of the portfolio at each step between the two dates. The transactions are replayed
+     * once for the whole period, and each point is calculated as the stream is consumed.
+     */
+    public Stream<LiquidValuePointDto> getLiquidValueSeries(String portfolioName, String taxResidence, String currency,
+                                                            LocalDate fromDate, LocalDate toDate, ValuationStep step) {
+        if (step == null) {
+            throw new InvalidDataException("Valuation step must be specified.");
+        }
+        List<LocalDate> valueDates = step.getValueDates(fromDate, toDate);
+        Set<Long> accountIds = portfolioService.getAccountIdsInPortfolio(portfolioName);
+
+        return liquidValueOrchestrator
+                .getLiquidPositionTrackers(new ArrayList<>(accountIds), taxResidence, valueDates, currency)
+                .map(tracker -> {
+                    LiquidValueDto liquidValue = getLiquidValueDto(tracker, currency);
+                    return new LiquidValuePointDto(tracker.getValueDate(), liquidValue.getFullyLiquidValue(),
+                            liquidValue.getMarketValueOfSecurities(), liquidValue.getInvestmentReturnInPercent());
+                });
+    }
+
+    private LiquidValueDto getLiquidValueDto(LiquidPositionTracker liquidPositionTracker, String currency) {
         try { // must have at least two transactions, otherwise IAE
             liquidPositionTracker.setInvestmentReturnInPercent(
                     investmentArithmetic.getLifetimeReturnInPercent(
@@ -46,4 +104,7 @@ public class InvestmentAnalysisService {
         return liquidPositionTracker.getLiquidValueDto();
     }
 
+    private static boolean isEmpty(List<String> values) {
+        return values == null || values.isEmpty();
+    }
 }
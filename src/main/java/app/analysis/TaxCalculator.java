@@ -103,7 +103,7 @@ public class TaxCalculator {
         verifyTaxationCurrencyCorrect(tracker, taxDetails);
 
         IntermediateTaxEffectDto intermediateTax = getIntermediateTaxEffect(date, account, proceeds, taxDetails,
-                closedPositions, tracker.getFeeWriteOffAvailable(), tracker.getLossOffsetAvailable());
+                closedPositions, tracker.getFeeWriteOffAvailable(), tracker);
 
         CashValue tax = intermediateTax.getTaxableGain().multiply(
                 taxDetails.getFlatCapitalGainsTaxRate()).multiply(new BigDecimal("0.01"));
@@ -116,8 +116,7 @@ public class TaxCalculator {
         verifyTaxationCurrencyCorrect(tracker, taxDetails);
 
         List<DatedCashValue> lossOffsetUsed =
-                getLossOffsetToUse(taxDetails, tracker.getValueDate(), tracker.getUntaxedGain(),
-                        tracker.getLossOffsetAvailable());
+                getLossOffsetToUse(taxDetails, tracker.getValueDate(), tracker.getUntaxedGain(), tracker);
 
         CashValue feeWriteOffUsed = tracker.getUntaxedGain().min(tracker.getFeeWriteOffAvailable().getAmount());
         CashValue tax = tracker.getUntaxedGain()
@@ -137,11 +136,10 @@ public class TaxCalculator {
 
     private IntermediateTaxEffectDto getIntermediateTaxEffect(
             LocalDate exitDate, BrokerAccount account, CashValue proceeds, TaxDetails taxDetails,
-            List<SecurityPosition> closedPositions, CashValue feeWriteOffAvailable,
-            List<DatedCashValue> lossOffsetAvailable) {
+            List<SecurityPosition> closedPositions, CashValue feeWriteOffAvailable, PositionTracker tracker) {
 
         CashValue initialGain = calculateTaxableGain(account, proceeds, closedPositions, exitDate, taxDetails);
-        List<DatedCashValue> lossOffsetToUse = getLossOffsetToUse(taxDetails, exitDate, initialGain, lossOffsetAvailable);
+        List<DatedCashValue> lossOffsetToUse = getLossOffsetToUse(taxDetails, exitDate, initialGain, tracker);
         CashValue gainAfterLossOffset = initialGain.subtract(lossOffsetToUse);
         CashValue feeToUse = gainAfterLossOffset.max(BigDecimal.ZERO).min(feeWriteOffAvailable);
         CashValue taxableGain = gainAfterLossOffset.subtract(feeToUse);
@@ -168,20 +166,15 @@ public class TaxCalculator {
     }
 
     private List<DatedCashValue> getLossOffsetToUse(TaxDetails taxDetails, LocalDate date, CashValue totalGains,
-                                                    List<DatedCashValue> lossOffsetAvailable) {
+                                                    PositionTracker tracker) {
         LocalDate cutOffDate = getLossOffsetCutOffDate(taxDetails, date);
-
-        lossOffsetAvailable = new ArrayList<>(lossOffsetAvailable);
-        lossOffsetAvailable.sort(Comparator.comparing(DatedCashValue::getDate));
         CashValue remainingGain = totalGains;
 
+        // Already in date order, and only the loss offsets that have not expired by the cut-off date
         List<DatedCashValue> lossesUsed = new ArrayList<>();
-        Iterator<DatedCashValue> it = lossOffsetAvailable.iterator();
+        Iterator<DatedCashValue> it = tracker.getLossOffsetAvailableFrom(cutOffDate).iterator();
         while (it.hasNext() && remainingGain.getAmount().compareTo(BigDecimal.ZERO) > 0) {
             DatedCashValue current = it.next();
-            if (current.getDate().isBefore(cutOffDate)) {
-                continue;
-            }
             if (remainingGain.getAmount().compareTo(current.getAmount()) >= 0) {
                 remainingGain = remainingGain.subtract(current);
                 lossesUsed.add(current);
@@ -0,0 +1,86 @@
+package app.analysis.actual;
+
+import app.broker.account.BrokerAccount;
+import app.manager.transaction.Transaction;
+
+import java.util.*;
+
+/**
+ * Splits transactions into groups of accounts that never exchange cash or securities with accounts outside their
+ * group. The positions of one group can be replayed without looking at the transactions of the others.
+ */
+final class AccountGroups {
+
+    private final Map<BrokerAccount, BrokerAccount> parents = new HashMap<>();
+
+    private AccountGroups() {
+    }
+
+    /**
+     * Returns one group per set of connected accounts: the indexes of its transactions in their original order, and
+     * the accounts involved.
+     */
+    static List<Group> of(List<Transaction> transactions) {
+        AccountGroups accountGroups = new AccountGroups();
+        for (Transaction transaction : transactions) {
+            accountGroups.union(transaction.getTakeFromAccount(), transaction.getAddToAccount());
+        }
+
+        Map<BrokerAccount, Group> groupsByRoot = new LinkedHashMap<>();
+        for (int i = 0; i < transactions.size(); i++) {
+            Transaction transaction = transactions.get(i);
+            BrokerAccount account = transaction.getTakeFromAccount() != null
+                    ? transaction.getTakeFromAccount()
+                    : transaction.getAddToAccount();
+            Group group = groupsByRoot.computeIfAbsent(accountGroups.find(account), root -> new Group());
+            group.transactionIndexes.add(i);
+            addIfPresent(group.accounts, transaction.getTakeFromAccount());
+            addIfPresent(group.accounts, transaction.getAddToAccount());
+        }
+        return new ArrayList<>(groupsByRoot.values());
+    }
+
+    private void union(BrokerAccount first, BrokerAccount second) {
+        BrokerAccount firstRoot = find(first);
+        BrokerAccount secondRoot = find(second);
+        if (firstRoot != null && secondRoot != null && !firstRoot.equals(secondRoot)) {
+            parents.put(firstRoot, secondRoot);
+        }
+    }
+
+    private BrokerAccount find(BrokerAccount account) {
+        if (account == null) {
+            return null;
+        }
+        BrokerAccount root = account;
+        BrokerAccount parent;
+        while ((parent = parents.putIfAbsent(root, root)) != null && !parent.equals(root)) {
+            root = parent;
+        }
+        // Point the visited accounts straight at the root, so later lookups stay short
+        BrokerAccount current = account;
+        while (!current.equals(root)) {
+            current = parents.put(current, root);
+        }
+        return root;
+    }
+
+    private static void addIfPresent(Set<BrokerAccount> accounts, BrokerAccount account) {
+        if (account != null) {
+            accounts.add(account);
+        }
+    }
+
+    static final class Group {
+        private final List<Integer> transactionIndexes = new ArrayList<>();
+        private final Set<BrokerAccount> accounts = new HashSet<>();
+
+        List<Integer> getTransactionIndexes() {
+            return transactionIndexes;
+        }
+
+        Set<BrokerAccount> getAccounts() {
+            return accounts;
+        }
+    }
+}
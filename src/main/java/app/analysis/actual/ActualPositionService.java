@@ -1,5 +1,7 @@
 package app.analysis.actual;
 
+import app.analysis.checkpoint.CheckpointedTracker;
+import app.analysis.checkpoint.TrackerCheckpointService;
 import app.analysis.portfolio.PortfolioService;
 import app.analysis.tracker.ActualPositionTracker;
 import app.manager.transaction.Transaction;
@@ -21,12 +23,71 @@ public class ActualPositionService {
     private final PortfolioService portfolioService;
     private final TransactionService transactionService;
     private final TransactionProcessor transactionProcessor;
+    private final TrackerCheckpointService checkpointService;
 
 
     public ActualPositionTracker getActualPositionTracker(
             List<Long> accountIds, String taxResidence, LocalDate asOfDate) {
-        List<Transaction> transactions = transactionService.getTransactionsUntil(accountIds, asOfDate);
-        return transactionProcessor.getNewPositionTracker(transactions, taxResidence);
+        if (asOfDate == null) {
+            List<Transaction> transactions = transactionService.getTransactionsUntil(accountIds, null);
+            return transactionProcessor.getNewPositionTracker(transactions, taxResidence);
+        }
+
+        Optional<CheckpointedTracker> checkpoint =
+                checkpointService.getLatestCheckpoint(accountIds, taxResidence, asOfDate);
+        LocalDate lastCheckpointDate = checkpoint.map(CheckpointedTracker::checkpointDate).orElse(null);
+        ActualPositionTracker tracker = checkpoint.map(CheckpointedTracker::tracker)
+                .orElseGet(ActualPositionTracker::getBlank);
+
+        List<Transaction> transactions = transactionService.getTransactions(
+                accountIds, lastCheckpointDate == null ? null : lastCheckpointDate.plusDays(1), asOfDate);
+
+        Optional<LocalDate> nextCheckpointDate = checkpointService.getNextCheckpointDate(lastCheckpointDate, asOfDate);
+        if (nextCheckpointDate.isEmpty()) {
+            transactionProcessor.addTransactionsToTracker(tracker, transactions, taxResidence);
+            return tracker;
+        }
+
+        LocalDate checkpointDate = nextCheckpointDate.get();
+        List<Transaction> untilCheckpoint = transactions.stream()
+                .filter(t -> !t.getDate().isAfter(checkpointDate))
+                .toList();
+        transactionProcessor.addTransactionsToTracker(tracker, untilCheckpoint, taxResidence);
+        if (!untilCheckpoint.isEmpty()) {
+            checkpointService.saveCheckpoint(accountIds, taxResidence, checkpointDate, tracker);
+        }
+        transactionProcessor.addTransactionsToTracker(
+                tracker, transactions.subList(untilCheckpoint.size(), transactions.size()), taxResidence);
+        return tracker;
+    }
+
+    /**
+     * <p>Returns the tracker of each account set for each tax residence, as of the given date.</p>
+     * <p>The transactions of all the accounts are read in a single query and their positions are replayed once per
+     * group of connected accounts, whichever sets and residences share them. Only the taxation is replayed per set
+     * and residence. Checkpoints are neither read nor written, as they belong to a single account set.</p>
+     */
+    public Map<Set<Long>, Map<String, ActualPositionTracker>> getActualPositionTrackers(
+            Collection<Set<Long>> accountIdSets, Collection<String> taxResidences, LocalDate asOfDate) {
+        List<Long> allAccountIds = accountIdSets.stream()
+                .flatMap(Set::stream)
+                .distinct()
+                .toList();
+        List<Transaction> transactions = allAccountIds.isEmpty()
+                ? Collections.emptyList()
+                : transactionService.getTransactionsUntil(allAccountIds, asOfDate);
+        ReplayedPositions replayed = transactionProcessor.replayPositions(transactions);
+
+        Map<Set<Long>, Map<String, ActualPositionTracker>> trackers = new HashMap<>();
+        for (Set<Long> accountIds : accountIdSets) {
+            Map<String, ActualPositionTracker> trackersByResidence = new HashMap<>();
+            for (String taxResidence : taxResidences) {
+                trackersByResidence.put(taxResidence,
+                        transactionProcessor.getNewPositionTracker(replayed, accountIds, taxResidence));
+            }
+            trackers.put(accountIds, trackersByResidence);
+        }
+        return trackers;
     }
 
     public ActualPositionOverviewDto getActualPositionOverview(
@@ -0,0 +1,65 @@
+package app.analysis.actual;
+
+import app.analysis.tracker.ActualPositionTracker;
+import app.data.securities.security.Security;
+import app.manager.transaction.Transaction;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * <p>The broker cash balances and security positions after a list of transactions, replayed once per group of
+ * connected accounts, without any taxation.</p>
+ * <p>{@link TransactionProcessor#getNewPositionTracker(ReplayedPositions, java.util.Collection, String)} composes
+ * trackers for any set of the accounts from it, so the positions can be shared by several portfolios and tax
+ * residences. The group trackers are never modified once replayed.</p>
+ */
+public final class ReplayedPositions {
+
+    private final List<Transaction> transactions;
+    private final List<AccountGroups.Group> groups;
+    private final List<ActualPositionTracker> groupTrackers;
+    private final AtomicReferenceArray<List<SecurityPosition>> closedPositions;
+    private final Map<Long, String> currencyMapping;
+    private final Map<Long, Security> securityMapping;
+
+    ReplayedPositions(List<Transaction> transactions, List<AccountGroups.Group> groups,
+                      List<ActualPositionTracker> groupTrackers,
+                      AtomicReferenceArray<List<SecurityPosition>> closedPositions,
+                      Map<Long, String> currencyMapping, Map<Long, Security> securityMapping) {
+        this.transactions = transactions;
+        this.groups = groups;
+        this.groupTrackers = groupTrackers;
+        this.closedPositions = closedPositions;
+        this.currencyMapping = currencyMapping;
+        this.securityMapping = securityMapping;
+    }
+
+    List<Transaction> getTransactions() {
+        return transactions;
+    }
+
+    List<AccountGroups.Group> getGroups() {
+        return groups;
+    }
+
+    ActualPositionTracker getGroupTracker(int groupIndex) {
+        return groupTrackers.get(groupIndex);
+    }
+
+    /**
+     * Returns the positions closed by the transaction at the index if it is an exit, otherwise null.
+     */
+    List<SecurityPosition> getClosedPositions(int transactionIndex) {
+        return closedPositions.get(transactionIndex);
+    }
+
+    Map<Long, String> getCurrencyMapping() {
+        return currencyMapping;
+    }
+
+    Map<Long, Security> getSecurityMapping() {
+        return securityMapping;
+    }
+}
@@ -12,15 +12,18 @@ import lombok.AllArgsConstructor;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
-import java.util.Collections;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 @Service
 @AllArgsConstructor
 public class TransactionProcessor {
 
+    // Below this many transactions splitting the replay costs more than it saves
+    static final int PARALLEL_REPLAY_THRESHOLD = 1_000;
+
     private final DataService dataService;
     private final TaxCalculator taxCalculator;
 
@@ -35,6 +38,18 @@ public class TransactionProcessor {
             ActualPositionTracker tracker, List<Transaction> transactions, String taxResidence) {
         Map<Long, String> currencyMapping = getIsoCodeByCurrencyId(transactions);
         Map<Long, Security> securityMapping = getSecuritiesByIds(transactions);
+        loadStoredExchangeRatesIntoCache(transactions, currencyMapping, securityMapping, tracker.getTaxationCurrency());
+
+        if (transactions.size() >= PARALLEL_REPLAY_THRESHOLD) {
+            // Grouping hashes every account here, on the calling thread, so lazy account proxies are loaded before
+            // the replay is spread over other threads
+            List<AccountGroups.Group> groups = AccountGroups.of(transactions);
+            if (groups.size() > 1) {
+                addTransactionsInParallel(tracker, transactions, groups, currencyMapping, securityMapping,
+                        taxResidence);
+                return;
+            }
+        }
 
         for (Transaction transaction : transactions) {
             switch (transaction.getTransactionType()) {
@@ -53,6 +68,183 @@ public class TransactionProcessor {
         }
     }
 
+    /**
+     * <p>Replays the positions of each account group on a fork of the tracker, on the common fork-join pool, then
+     * applies the tax effects and return cash flows to the tracker in the original transaction order.</p>
+     * <p>The taxation state (loss offsets, fee write-offs, taxation currency) is shared by all accounts, and the tax
+     * calculation reads data that may have to be loaded through the caller's persistence context, so that part stays
+     * sequential and on the calling thread.</p>
+     */
+    private void addTransactionsInParallel(
+            ActualPositionTracker tracker, List<Transaction> transactions, List<AccountGroups.Group> groups,
+            Map<Long, String> currencyMapping, Map<Long, Security> securityMapping, String taxResidence) {
+        ReplayedPositions replayed = replayPositions(tracker, transactions, groups, currencyMapping, securityMapping);
+        for (int i = 0; i < groups.size(); i++) {
+            tracker.adoptPositions(replayed.getGroupTracker(i), groups.get(i).getAccounts());
+        }
+
+        for (int i = 0; i < transactions.size(); i++) {
+            addTaxAndCashFlowEffectsToTracker(transactions.get(i), replayed.getClosedPositions(i), tracker,
+                    currencyMapping, taxResidence);
+        }
+    }
+
+    /**
+     * Replays the positions of the transactions from blank, once per group of connected accounts, without taxation.
+     * Trackers for any set of the accounts can then be composed with {@link #getNewPositionTracker(ReplayedPositions,
+     * Collection, String)}.
+     */
+    public ReplayedPositions replayPositions(List<Transaction> transactions) {
+        Map<Long, String> currencyMapping = getIsoCodeByCurrencyId(transactions);
+        Map<Long, Security> securityMapping = getSecuritiesByIds(transactions);
+        // The trackers composed from the replay look the rates up in their tax pass
+        loadStoredExchangeRatesIntoCache(transactions, currencyMapping, securityMapping, null);
+        return replayPositions(ActualPositionTracker.getBlank(), transactions, AccountGroups.of(transactions),
+                currencyMapping, securityMapping);
+    }
+
+    /**
+     * <p>Returns the tracker of the given accounts, as if the transactions on them had been replayed on their own.</p>
+     * <p>The positions of a group made up only of the given accounts are taken from the replay. A group that also
+     * holds other accounts is replayed again here, restricted to the transactions on the given accounts, since the
+     * other accounts' own transactions would change the balances and the lots exchanged with them. The tax effects
+     * and return cash flows are then applied in the original transaction order.</p>
+     */
+    public ActualPositionTracker getNewPositionTracker(
+            ReplayedPositions replayed, Collection<Long> accountIds, String taxResidence) {
+        ActualPositionTracker tracker = ActualPositionTracker.getBlank();
+        List<Transaction> transactions = replayed.getTransactions();
+        AtomicReferenceArray<List<SecurityPosition>> closedPositions =
+                new AtomicReferenceArray<>(transactions.size());
+
+        ActualPositionTracker restrictedReplay = ActualPositionTracker.getBlank();
+        Set<BrokerAccount> restrictedAccounts = new HashSet<>();
+        List<Integer> transactionIndexes = new ArrayList<>();
+        List<AccountGroups.Group> groups = replayed.getGroups();
+        for (int i = 0; i < groups.size(); i++) {
+            AccountGroups.Group group = groups.get(i);
+            List<Integer> indexesOnAccounts = group.getTransactionIndexes().stream()
+                    .filter(index -> isOnAnyOf(transactions.get(index), accountIds))
+                    .toList();
+            if (indexesOnAccounts.isEmpty()) {
+                continue;
+            }
+            transactionIndexes.addAll(indexesOnAccounts);
+
+            if (indexesOnAccounts.size() == group.getTransactionIndexes().size()) {
+                tracker.adoptPositions(replayed.getGroupTracker(i), group.getAccounts());
+                indexesOnAccounts.forEach(index -> closedPositions.set(index, replayed.getClosedPositions(index)));
+            } else {
+                for (int index : indexesOnAccounts) {
+                    Transaction transaction = transactions.get(index);
+                    addPositionEffectsToTracker(transaction, index, restrictedReplay, replayed.getCurrencyMapping(),
+                            replayed.getSecurityMapping(), closedPositions);
+                    addIfPresent(restrictedAccounts, transaction.getTakeFromAccount());
+                    addIfPresent(restrictedAccounts, transaction.getAddToAccount());
+                }
+            }
+        }
+        if (!restrictedAccounts.isEmpty()) {
+            tracker.adoptPositions(restrictedReplay, restrictedAccounts);
+        }
+
+        Collections.sort(transactionIndexes);
+        for (int index : transactionIndexes) {
+            addTaxAndCashFlowEffectsToTracker(transactions.get(index), closedPositions.get(index), tracker,
+                    replayed.getCurrencyMapping(), taxResidence);
+        }
+        return tracker;
+    }
+
+    private ReplayedPositions replayPositions(
+            ActualPositionTracker tracker, List<Transaction> transactions, List<AccountGroups.Group> groups,
+            Map<Long, String> currencyMapping, Map<Long, Security> securityMapping) {
+        List<ActualPositionTracker> forks = groups.stream().map(g -> tracker.forkPositions()).toList();
+        AtomicReferenceArray<List<SecurityPosition>> closedPositions =
+                new AtomicReferenceArray<>(transactions.size());
+
+        IntStream groupIndexes = IntStream.range(0, groups.size());
+        if (transactions.size() >= PARALLEL_REPLAY_THRESHOLD) {
+            groupIndexes = groupIndexes.parallel();
+        }
+        groupIndexes.forEach(
+                i -> groups.get(i).getTransactionIndexes().forEach(
+                        index -> addPositionEffectsToTracker(transactions.get(index), index, forks.get(i),
+                                currencyMapping, securityMapping, closedPositions)
+                )
+        );
+        return new ReplayedPositions(transactions, groups, forks, closedPositions, currencyMapping, securityMapping);
+    }
+
+    /**
+     * Loads the exchange rates the tax calculation may need during the replay in one go: those of every currency moved
+     * and every security's currency, over the period of the transactions.
+     */
+    private void loadStoredExchangeRatesIntoCache(List<Transaction> transactions, Map<Long, String> currencyMapping,
+                                       Map<Long, Security> securityMapping, String taxationCurrency) {
+        if (transactions.isEmpty()) {
+            return;
+        }
+        Set<String> currencies = new HashSet<>(currencyMapping.values());
+        securityMapping.values().forEach(security -> currencies.add(security.getCurrency()));
+        if (taxationCurrency != null) {
+            currencies.add(taxationCurrency);
+        }
+        dataService.loadStoredExchangeRatesIntoCache(currencies,
+                transactions.get(0).getDate(), transactions.get(transactions.size() - 1).getDate());
+    }
+
+    private static boolean isOnAnyOf(Transaction transaction, Collection<Long> accountIds) {
+        return isOneOf(transaction.getTakeFromAccount(), accountIds)
+                || isOneOf(transaction.getAddToAccount(), accountIds);
+    }
+
+    private static boolean isOneOf(BrokerAccount account, Collection<Long> accountIds) {
+        return account != null && account.getId() != null && accountIds.contains(account.getId());
+    }
+
+    private static void addIfPresent(Set<BrokerAccount> accounts, BrokerAccount account) {
+        if (account != null) {
+            accounts.add(account);
+        }
+    }
+
+    private void addPositionEffectsToTracker(Transaction transaction, int index, ActualPositionTracker fork,
+                                             Map<Long, String> currencyMapping, Map<Long, Security> securityMapping,
+                                             AtomicReferenceArray<List<SecurityPosition>> closedPositions) {
+        switch (transaction.getTransactionType()) {
+            case MONEY_IN -> addMoneyInToTracker(transaction, fork, currencyMapping);
+            case MONEY_OUT -> addMoneyOutToTracker(transaction, fork, currencyMapping);
+            case ENTER_INVESTMENT -> addEnterInvestmentToTracker(transaction, fork, currencyMapping, securityMapping);
+            case EXIT_INVESTMENT -> closedPositions.set(index,
+                    closeExitPositionsInTracker(transaction, fork, currencyMapping, securityMapping));
+            case TRANSFER_SECURITY -> addTransferSecurityToTracker(transaction, fork, securityMapping);
+            case TRANSFER_CASH -> addTransferCashToTracker(transaction, fork, currencyMapping);
+            case PAY_FEE -> fork.deductFee(transaction.getTakeFromAccount(),
+                    currencyMapping.get(transaction.getAssetTaken().getAssetId()), transaction.getCountOfAssetTaken());
+            default -> throw new IllegalStateException(
+                    "TransactionType is not implemented: " + transaction.getTransactionType());
+        }
+    }
+
+    private void addTaxAndCashFlowEffectsToTracker(Transaction transaction, List<SecurityPosition> closedPositions,
+                                                   ActualPositionTracker tracker, Map<Long, String> currencyMapping,
+                                                   String taxResidence) {
+        switch (transaction.getTransactionType()) {
+            case MONEY_IN -> tracker.addMoneyInCashFlow(transaction.getDate(),
+                    currencyMapping.get(transaction.getAssetAdded().getAssetId()), transaction.getCountOfAssetAdded());
+            case MONEY_OUT -> tracker.addMoneyOutCashFlow(transaction.getDate(),
+                    currencyMapping.get(transaction.getAssetTaken().getAssetId()), transaction.getCountOfAssetTaken());
+            case EXIT_INVESTMENT ->
+                    addExitTaxToTracker(transaction, tracker, closedPositions, currencyMapping, taxResidence);
+            case PAY_FEE -> tracker.addFeeWriteOff(
+                    getFeeInTaxCurrency(transaction, tracker, currencyMapping, taxResidence));
+            default -> {
+                // Only moves positions between the accounts of the group
+            }
+        }
+    }
+
     private void addMoneyInToTracker(Transaction transaction, ActualPositionTracker tracker,
                                      Map<Long, String> currencyMapping) {
         BrokerAccount addToAccount = transaction.getAddToAccount();
@@ -86,20 +278,37 @@ public class TransactionProcessor {
     private void addExitInvestmentToTracker(Transaction transaction, ActualPositionTracker tracker,
                                             Map<Long, String> currencyMapping, Map<Long, Security> securityMapping,
                                             String taxResidence) {
+        List<SecurityPosition> closedPositions =
+                closeExitPositionsInTracker(transaction, tracker, currencyMapping, securityMapping);
+        addExitTaxToTracker(transaction, tracker, closedPositions, currencyMapping, taxResidence);
+    }
+
+    private List<SecurityPosition> closeExitPositionsInTracker(Transaction transaction, ActualPositionTracker tracker,
+                                                               Map<Long, String> currencyMapping,
+                                                               Map<Long, Security> securityMapping) {
         BrokerAccount account = transaction.getTakeFromAccount();
-        String currencyCode = currencyMapping.get(transaction.getAssetAdded().getAssetId());
-        CashValue totalProceeds = CashValue.of(transaction.getCountOfAssetAdded(), currencyCode);
+        CashValue totalProceeds = getExitProceeds(transaction, currencyMapping);
         Security security = securityMapping.get(transaction.getAssetTaken().getAssetId());
         BigDecimal countSold = transaction.getCountOfAssetTaken();
 
-        List<SecurityPosition> closedPositions = tracker.processExitInvestment(account, security, countSold,
-                totalProceeds, transaction.getMatchingStrategy());
-        TaxEffectDto taxEffect = taxCalculator.getTaxEffect(tracker, closedPositions,
-                transaction.getDate(),account, totalProceeds, taxResidence);
+        return tracker.processExitInvestment(account, security, countSold, totalProceeds,
+                transaction.getMatchingStrategy());
+    }
+
+    private void addExitTaxToTracker(Transaction transaction, ActualPositionTracker tracker,
+                                     List<SecurityPosition> closedPositions, Map<Long, String> currencyMapping,
+                                     String taxResidence) {
+        TaxEffectDto taxEffect = taxCalculator.getTaxEffect(tracker, closedPositions, transaction.getDate(),
+                transaction.getTakeFromAccount(), getExitProceeds(transaction, currencyMapping), taxResidence);
 
         tracker.processTax(taxEffect);
     }
 
+    private CashValue getExitProceeds(Transaction transaction, Map<Long, String> currencyMapping) {
+        String currencyCode = currencyMapping.get(transaction.getAssetAdded().getAssetId());
+        return CashValue.of(transaction.getCountOfAssetAdded(), currencyCode);
+    }
+
     private void addTransferSecurityToTracker(Transaction transaction, ActualPositionTracker tracker,
                                               Map<Long, Security> securityMapping) {
         BrokerAccount fromAccount = transaction.getTakeFromAccount();
@@ -126,12 +335,33 @@ public class TransactionProcessor {
         String currencyCode = currencyMapping.get(transaction.getAssetTaken().getAssetId());
         BigDecimal amount = transaction.getCountOfAssetTaken();
 
-        CashValue feeInTaxCurrency = taxCalculator.getCashInTaxCurrency(CashValue.of(amount, currencyCode),
-                transaction.getDate(), taxResidence);
+        CashValue feeInTaxCurrency = getFeeInTaxCurrency(transaction, tracker, currencyMapping, taxResidence);
+        tracker.processFee(account, currencyCode, amount, feeInTaxCurrency);
+    }
+
+    private CashValue getFeeInTaxCurrency(Transaction transaction, ActualPositionTracker tracker,
+                                          Map<Long, String> currencyMapping, String taxResidence) {
+        String currencyCode = currencyMapping.get(transaction.getAssetTaken().getAssetId());
+        CashValue feeInTaxCurrency = taxCalculator.getCashInTaxCurrency(
+                CashValue.of(transaction.getCountOfAssetTaken(), currencyCode), transaction.getDate(), taxResidence);
 
         taxCalculator.verifyTaxationCurrencyCorrect(
                 tracker, taxCalculator.getTaxDetails(taxResidence, transaction.getDate()));
-        tracker.processFee(account, currencyCode, amount, feeInTaxCurrency);
+        return feeInTaxCurrency;
+    }
+
+    /**
+     * Returns the securities bought, sold or transferred in the transactions.
+     */
+    public Collection<Security> getSecuritiesIn(List<Transaction> transactions) {
+        return getSecuritiesByIds(transactions).values();
+    }
+
+    /**
+     * Returns the ISO codes of the currencies moved in the transactions.
+     */
+    public Collection<String> getCurrenciesIn(List<Transaction> transactions) {
+        return getIsoCodeByCurrencyId(transactions).values();
     }
 
     private Map<Long, Security> getSecuritiesByIds(List<Transaction> transactions) {
@@ -0,0 +1,45 @@
+package app.analysis.checkpoint;
+
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+import java.util.Optional;
+
+public enum CheckpointFrequency {
+    NONE {
+        @Override
+        public Optional<LocalDate> latestCheckpointDate(LocalDate date) {
+            return Optional.empty();
+        }
+    },
+    MONTH_END {
+        @Override
+        public Optional<LocalDate> latestCheckpointDate(LocalDate date) {
+            LocalDate monthEnd = date.with(TemporalAdjusters.lastDayOfMonth());
+            return Optional.of(monthEnd.equals(date)
+                    ? date
+                    : date.minusMonths(1).with(TemporalAdjusters.lastDayOfMonth()));
+        }
+    },
+    QUARTER_END {
+        @Override
+        public Optional<LocalDate> latestCheckpointDate(LocalDate date) {
+            LocalDate quarterEnd = date.withMonth((date.getMonthValue() - 1) / 3 * 3 + 3)
+                    .with(TemporalAdjusters.lastDayOfMonth());
+            return Optional.of(quarterEnd.equals(date)
+                    ? date
+                    : quarterEnd.minusMonths(3).with(TemporalAdjusters.lastDayOfMonth()));
+        }
+    },
+    YEAR_END {
+        @Override
+        public Optional<LocalDate> latestCheckpointDate(LocalDate date) {
+            LocalDate yearEnd = date.with(TemporalAdjusters.lastDayOfYear());
+            return Optional.of(yearEnd.equals(date) ? date : yearEnd.minusYears(1));
+        }
+    };
+
+    /**
+     * Returns the last checkpoint date on or before the given date.
+     */
+    public abstract Optional<LocalDate> latestCheckpointDate(LocalDate date);
+}
@@ -0,0 +1,11 @@
+package app.analysis.checkpoint;
+
+import app.analysis.tracker.ActualPositionTracker;
+
+import java.time.LocalDate;
+
+/**
+ * A tracker restored from a checkpoint, holding every transaction up to and including the checkpoint date.
+ */
+public record CheckpointedTracker(LocalDate checkpointDate, ActualPositionTracker tracker) {
+}
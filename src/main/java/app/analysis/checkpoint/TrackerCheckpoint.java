@@ -0,0 +1,48 @@
+package app.analysis.checkpoint;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import javax.persistence.*;
+import java.time.LocalDate;
+import java.util.Set;
+
+@Entity
+@Table(name = "tracker_checkpoints")
+@Getter
+@Setter
+@NoArgsConstructor
+public class TrackerCheckpoint {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // Sorted, comma separated account ids - used to look up the checkpoints of exactly this account set
+    @Column(length = 500)
+    private String accountSet;
+
+    @ElementCollection
+    @CollectionTable(name = "tracker_checkpoint_accounts", joinColumns = @JoinColumn(name = "checkpoint_id"))
+    @Column(name = "account_id")
+    private Set<Long> accountIds;
+
+    // Empty for replays without a tax residence, never null
+    @Column(nullable = false)
+    private String taxResidence;
+
+    private LocalDate checkpointDate;
+
+    @Lob
+    private String state;
+
+    public TrackerCheckpoint(String accountSet, Set<Long> accountIds, String taxResidence, LocalDate checkpointDate,
+                             String state) {
+        this.accountSet = accountSet;
+        this.accountIds = accountIds;
+        this.taxResidence = taxResidence;
+        this.checkpointDate = checkpointDate;
+        this.state = state;
+    }
+}
@@ -0,0 +1,27 @@
+package app.analysis.checkpoint;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface TrackerCheckpointRepository extends JpaRepository<TrackerCheckpoint, Long> {
+
+    Optional<TrackerCheckpoint> findFirstByAccountSetAndTaxResidenceAndCheckpointDateLessThanEqualOrderByCheckpointDateDesc(
+            String accountSet, String taxResidence, LocalDate asOfDate);
+
+    int countByAccountSetAndTaxResidenceAndCheckpointDate(String accountSet, String taxResidence, LocalDate date);
+
+    List<TrackerCheckpoint> findByTaxResidence(String taxResidence);
+
+    List<TrackerCheckpoint> findByTaxResidenceAndCheckpointDateGreaterThanEqual(String taxResidence, LocalDate fromDate);
+
+    @Query("SELECT DISTINCT c FROM TrackerCheckpoint c JOIN c.accountIds a " +
+            "WHERE a IN :accountIds AND c.checkpointDate >= :fromDate")
+    List<TrackerCheckpoint> findAffectedCheckpoints(@Param("accountIds") Collection<Long> accountIds,
+                                                    @Param("fromDate") LocalDate fromDate);
+}
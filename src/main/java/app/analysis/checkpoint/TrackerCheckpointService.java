@@ -0,0 +1,144 @@
+package app.analysis.checkpoint;
+
+import app.analysis.tracker.ActualPositionTracker;
+import app.analysis.tracker.TrackerSnapshot;
+import app.broker.account.BrokerAccount;
+import app.broker.account.BrokerAccountService;
+import app.data.DataService;
+import app.data.securities.security.Security;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * <p>Persists the state of actual position trackers at regular dates (see {@link CheckpointFrequency}), so
+ * replaying the transactions of an account set can start from the latest checkpoint instead of from a blank
+ * tracker.</p>
+ * <p>A checkpoint holds every transaction up to and including its date. Once a transaction on or before that
+ * date is added, modified or removed, the checkpoint must be invalidated. The same holds for the tax details of the
+ * checkpoint's tax residence.</p>
+ */
+@Service
+@Slf4j
+public class TrackerCheckpointService {
+
+    // Stored in place of a missing tax residence, so the unique key of the checkpoints covers untaxed replays as well
+    static final String NO_TAX_RESIDENCE = "";
+
+    private final TrackerCheckpointRepository repository;
+    private final BrokerAccountService accountService;
+    private final DataService dataService;
+    private final ObjectMapper objectMapper;
+    private final CheckpointFrequency frequency;
+
+    public TrackerCheckpointService(TrackerCheckpointRepository repository, BrokerAccountService accountService,
+                                    DataService dataService, ObjectMapper objectMapper,
+                                    @Value("${tracker.checkpoint.frequency:MONTH_END}") CheckpointFrequency frequency) {
+        this.repository = repository;
+        this.accountService = accountService;
+        this.dataService = dataService;
+        this.objectMapper = objectMapper;
+        this.frequency = frequency;
+    }
+
+    public Optional<CheckpointedTracker> getLatestCheckpoint(
+            Collection<Long> accountIds, String taxResidence, LocalDate asOfDate) {
+        if (frequency == CheckpointFrequency.NONE) {
+            return Optional.empty();
+        }
+        Optional<TrackerCheckpoint> checkpoint = repository
+                .findFirstByAccountSetAndTaxResidenceAndCheckpointDateLessThanEqualOrderByCheckpointDateDesc(
+                        getAccountSetKey(accountIds), getResidenceKey(taxResidence), asOfDate);
+        if (checkpoint.isEmpty()) {
+            return Optional.empty();
+        }
+
+        try {
+            TrackerSnapshot snapshot = objectMapper.readValue(checkpoint.get().getState(), TrackerSnapshot.class);
+            return Optional.of(new CheckpointedTracker(checkpoint.get().getCheckpointDate(), restore(snapshot)));
+        } catch (JsonProcessingException | IllegalStateException e) {
+            log.warn("Discarding unreadable tracker checkpoint with id {}: {}",
+                    checkpoint.get().getId(), e.getMessage());
+            repository.delete(checkpoint.get());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Returns the checkpoint date to record while replaying transactions after <code>lastCheckpointDate</code> up to
+     * <code>asOfDate</code>, if there is one.
+     */
+    public Optional<LocalDate> getNextCheckpointDate(LocalDate lastCheckpointDate, LocalDate asOfDate) {
+        return frequency.latestCheckpointDate(asOfDate)
+                .filter(date -> lastCheckpointDate == null || date.isAfter(lastCheckpointDate));
+    }
+
+    public void saveCheckpoint(Collection<Long> accountIds, String taxResidence, LocalDate checkpointDate,
+                               ActualPositionTracker tracker) {
+        String accountSet = getAccountSetKey(accountIds);
+        String residence = getResidenceKey(taxResidence);
+        if (repository.countByAccountSetAndTaxResidenceAndCheckpointDate(accountSet, residence, checkpointDate) > 0) {
+            return;
+        }
+
+        try {
+            String state = objectMapper.writeValueAsString(TrackerSnapshot.of(tracker));
+            repository.save(new TrackerCheckpoint(accountSet, new HashSet<>(accountIds), residence,
+                    checkpointDate, state));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize tracker checkpoint.", e);
+        } catch (DataIntegrityViolationException e) {
+            log.debug("Tracker checkpoint for accounts {} on {} was saved concurrently.", accountSet, checkpointDate);
+        }
+    }
+
+    /**
+     * Removes every checkpoint which covers any of the accounts on or after the given date.
+     */
+    public void invalidateCheckpoints(Collection<Long> accountIds, LocalDate fromDate) {
+        List<Long> ids = accountIds.stream().filter(Objects::nonNull).distinct().toList();
+        if (ids.isEmpty() || fromDate == null) {
+            return;
+        }
+        repository.deleteAll(repository.findAffectedCheckpoints(ids, fromDate));
+    }
+
+    /**
+     * Removes every checkpoint replayed with the tax details of the residence on or after the given date. Without a
+     * date every checkpoint of the residence is removed.
+     */
+    public void invalidateCheckpointsOfResidence(String taxResidence, LocalDate fromDate) {
+        String residence = getResidenceKey(taxResidence);
+        repository.deleteAll(fromDate == null
+                ? repository.findByTaxResidence(residence)
+                : repository.findByTaxResidenceAndCheckpointDateGreaterThanEqual(residence, fromDate));
+    }
+
+    private ActualPositionTracker restore(TrackerSnapshot snapshot) {
+        Map<Long, BrokerAccount> accounts = accountService.getAccountsByIds(snapshot.accountIds()).stream()
+                .collect(Collectors.toMap(BrokerAccount::getId, a -> a));
+        Map<Long, Security> securities = dataService.getSecurityDetailsByIdList(
+                        new ArrayList<>(snapshot.securityIds())).stream()
+                .collect(Collectors.toMap(Security::getId, s -> s));
+        return snapshot.restore(accounts, securities);
+    }
+
+    private static String getResidenceKey(String taxResidence) {
+        return taxResidence == null ? NO_TAX_RESIDENCE : taxResidence;
+    }
+
+    private String getAccountSetKey(Collection<Long> accountIds) {
+        return accountIds.stream()
+                .distinct()
+                .sorted()
+                .map(String::valueOf)
+                .collect(Collectors.joining(","));
+    }
+}
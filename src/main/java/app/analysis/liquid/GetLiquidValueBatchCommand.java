@@ -0,0 +1,14 @@
+package app.analysis.liquid;
+
+import lombok.Getter;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Getter
+public class GetLiquidValueBatchCommand {
+    private List<String> portfolioNames;
+    private List<String> currencies;
+    private List<String> taxResidences;
+    private LocalDate asOfDate;
+}
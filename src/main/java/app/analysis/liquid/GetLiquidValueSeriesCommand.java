@@ -0,0 +1,15 @@
+package app.analysis.liquid;
+
+import lombok.Getter;
+
+import java.time.LocalDate;
+
+@Getter
+public class GetLiquidValueSeriesCommand {
+    private String portfolioName;
+    private String currency;
+    private String taxResidence;
+    private LocalDate fromDate;
+    private LocalDate toDate;
+    private ValuationStep step;
+}
@@ -0,0 +1,9 @@
+package app.analysis.liquid;
+
+import java.util.Set;
+
+/**
+ * Identifies one liquid valuation of a batch: the accounts valued, the tax residence and the currency of the result.
+ */
+public record LiquidValueKey(Set<Long> accountIds, String taxResidence, String currency) {
+}
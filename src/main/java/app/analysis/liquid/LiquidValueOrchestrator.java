@@ -4,16 +4,22 @@ import app.analysis.CashValue;
 import app.analysis.CashValueWithTaxDetails;
 import app.analysis.actual.ActualPositionService;
 import app.analysis.TaxCalculator;
+import app.analysis.actual.TransactionProcessor;
 import app.analysis.tracker.ActualPositionTracker;
 import app.analysis.tracker.LiquidPositionTracker;
 import app.broker.account.BrokerAccount;
+import app.data.DataService;
+import app.data.securities.price.SecurityPrice;
+import app.data.securities.security.Security;
+import app.manager.transaction.Transaction;
+import app.manager.transaction.TransactionService;
 import lombok.AllArgsConstructor;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
+import java.util.stream.Stream;
 
 @Service
 @AllArgsConstructor
@@ -23,17 +29,108 @@ public class LiquidValueOrchestrator {
     private final TaxCalculator taxCalculator;
     private final ActualPositionService actualPositionService;
     private final LiquidationDataConstructor liquidationDataConstructor;
+    private final TransactionService transactionService;
+    private final TransactionProcessor transactionProcessor;
+    private final DataService dataService;
 
     public LiquidPositionTracker getLiquidPositionTracker(
             List<Long> accountIds, String taxResidence, LocalDate asOfDate, String currency) {
         ActualPositionTracker actualPositionTracker =
                 actualPositionService.getActualPositionTracker(accountIds, taxResidence, asOfDate);
+        return liquidate(actualPositionTracker, taxResidence, asOfDate, currency);
+    }
+
+    /**
+     * <p>Returns the liquid position at each of the value dates, which must be in ascending order.</p>
+     * <p>The transactions are read and replayed only once: the actual position is built for the first date, then
+     * advanced from one value date to the next. Prices and exchange rates for the whole period are stored in bulk up
+     * front. The trackers are liquidated one by one as the stream is consumed.</p>
+     */
+    public Stream<LiquidPositionTracker> getLiquidPositionTrackers(
+            List<Long> accountIds, String taxResidence, List<LocalDate> valueDates, String currency) {
+        LocalDate firstDate = valueDates.get(0);
+        LocalDate lastDate = valueDates.get(valueDates.size() - 1);
+        ActualPositionTracker actualPositionTracker =
+                actualPositionService.getActualPositionTracker(accountIds, taxResidence, firstDate);
+        List<Transaction> transactions =
+                transactionService.getTransactions(accountIds, firstDate.plusDays(1), lastDate);
+        preloadMarketData(actualPositionTracker, transactions, currency, firstDate, lastDate);
+
+        TransactionReplay replay = new TransactionReplay(actualPositionTracker, transactions, taxResidence);
+        return valueDates.stream()
+                .map(valueDate -> {
+                    replay.advanceTo(valueDate);
+                    return liquidate(actualPositionTracker, taxResidence, valueDate, currency);
+                });
+    }
+
+    /**
+     * <p>Returns the liquid position of each account set, for each tax residence and currency, as of the given
+     * date.</p>
+     * <p>The positions of all the sets are replayed together, once per group of connected accounts. Prices and
+     * exchange rates for the date are stored in bulk before the first liquidation, so every valuation reads the same
+     * stored data.</p>
+     */
+    public Map<LiquidValueKey, LiquidPositionTracker> getLiquidPositionTrackersAsOf(
+            Collection<Set<Long>> accountIdSets, List<String> taxResidences, List<String> currencies,
+            LocalDate asOfDate) {
+        Map<Set<Long>, Map<String, ActualPositionTracker>> actualPositionTrackers =
+                actualPositionService.getActualPositionTrackers(accountIdSets, taxResidences, asOfDate);
+
+        Set<Security> securities = new HashSet<>();
+        Set<String> currenciesHeld = new HashSet<>(currencies);
+        actualPositionTrackers.values().forEach(trackersByResidence -> trackersByResidence.values().forEach(
+                tracker -> addHoldings(tracker, securities, currenciesHeld)));
+        preloadMarketData(securities, currenciesHeld, asOfDate, asOfDate);
+
+        Map<LiquidValueKey, LiquidPositionTracker> liquidPositionTrackers = new HashMap<>();
+        actualPositionTrackers.forEach((accountIds, trackersByResidence) -> trackersByResidence.forEach(
+                (taxResidence, tracker) -> currencies.forEach(
+                        currency -> liquidPositionTrackers.put(
+                                new LiquidValueKey(accountIds, taxResidence, currency),
+                                liquidate(tracker, taxResidence, asOfDate, currency)))));
+        return liquidPositionTrackers;
+    }
+
+    /**
+     * Liquidates a copy of the actual position as of the given date. The actual position tracker is left unchanged.
+     */
+    private LiquidPositionTracker liquidate(
+            ActualPositionTracker actualPositionTracker, String taxResidence, LocalDate asOfDate, String currency) {
         LiquidPositionTracker liquidPositionTracker =
                 new LiquidPositionTracker(actualPositionTracker, asOfDate, currency);
         calculateLiquidValue(liquidPositionTracker, taxResidence);
         return liquidPositionTracker;
     }
 
+    private void preloadMarketData(ActualPositionTracker tracker, List<Transaction> transactions, String currency,
+                                   LocalDate from, LocalDate to) {
+        Set<Security> securities = new HashSet<>(transactionProcessor.getSecuritiesIn(transactions));
+        Set<String> currencies = new HashSet<>(transactionProcessor.getCurrenciesIn(transactions));
+        currencies.add(currency);
+        addHoldings(tracker, securities, currencies);
+        preloadMarketData(securities, currencies, from, to);
+    }
+
+    private void preloadMarketData(Set<Security> securities, Set<String> currencies, LocalDate from, LocalDate to) {
+        securities.forEach(security -> currencies.add(security.getCurrency()));
+        currencies.remove(null);
+
+        dataService.preloadSharePrices(securities.stream().map(Security::getTicker).toList(), from, to);
+        dataService.storeMissingExchangeRatesFromMnb(currencies, from, to);
+    }
+
+    private void addHoldings(ActualPositionTracker tracker, Set<Security> securities, Set<String> currencies) {
+        tracker.getSecurityPositions().values().forEach(holdings -> holdings.forEach(
+                (security, positions) -> {
+                    if (!positions.isEmpty()) {
+                        securities.add(security);
+                    }
+                }));
+        tracker.getBrokerCashBalances().values().forEach(balances -> currencies.addAll(balances.keySet()));
+        currencies.add(tracker.getTaxationCurrency());
+    }
+
     private void calculateLiquidValue(LiquidPositionTracker tracker, String taxResidence) {
         Map<BrokerAccount, BrokerAccount> mainAccounts =
                 liquidationDataConstructor.getMainAccounts(tracker, tracker.getValueDate());
@@ -54,13 +151,27 @@ public class LiquidValueOrchestrator {
     }
 
     private void closeSecurityPositions(LiquidPositionTracker tracker, String taxResidence) {
+        // The prices of every security held are read and fetched together, then each exit is valued at its price
+        Set<String> tickersHeld = new HashSet<>();
+        tracker.getSecurityPositions().values().forEach(holdings -> holdings.forEach(
+                (security, positions) -> {
+                    if (!positions.isEmpty()) {
+                        tickersHeld.add(security.getTicker());
+                    }
+                }));
+        if (tickersHeld.isEmpty()) {
+            return;
+        }
+        Map<String, SecurityPrice> sharePrices = dataService.getSharePrices(tickersHeld, tracker.getValueDate());
+
         tracker.getSecurityPositions().forEach(
                 (account, holdings) -> holdings.forEach(
                         (security, positions) -> {
                             if(!positions.isEmpty()) {
                                 tracker.recordExitEffects(
-                                        liquidationDataConstructor.getMarketExitEffect( account, positions,
-                                                tracker.getValueDate(), taxResidence));
+                                        liquidationDataConstructor.getMarketExitEffect(account, positions,
+                                                sharePrices.get(security.getTicker()), tracker.getValueDate(),
+                                                taxResidence));
                             }
                         }
                 )
@@ -71,4 +182,27 @@ public class LiquidValueOrchestrator {
         return cashFlowConverter.convertAll(balances, tracker);
     }
 
+
+    private class TransactionReplay {
+        private final ActualPositionTracker tracker;
+        private final List<Transaction> transactions;
+        private final String taxResidence;
+        private int replayedCount;
+
+        TransactionReplay(ActualPositionTracker tracker, List<Transaction> transactions, String taxResidence) {
+            this.tracker = tracker;
+            this.transactions = transactions;
+            this.taxResidence = taxResidence;
+        }
+
+        void advanceTo(LocalDate date) {
+            int untilIndex = replayedCount;
+            while (untilIndex < transactions.size() && !transactions.get(untilIndex).getDate().isAfter(date)) {
+                untilIndex++;
+            }
+            transactionProcessor.addTransactionsToTracker(
+                    tracker, transactions.subList(replayedCount, untilIndex), taxResidence);
+            replayedCount = untilIndex;
+        }
+    }
 }
@@ -0,0 +1,17 @@
+package app.analysis.liquid;
+
+import app.analysis.CashValue;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Getter
+@AllArgsConstructor
+public class LiquidValuePointDto {
+    private LocalDate valueDate;
+    private CashValue fullyLiquidValue;
+    private List<CashValue> marketValueOfSecurities;
+    private Double investmentReturnInPercent;
+}
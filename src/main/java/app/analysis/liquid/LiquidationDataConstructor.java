@@ -8,7 +8,6 @@ import app.analysis.tracker.LiquidPositionTracker;
 import app.broker.account.BrokerAccount;
 import app.broker.account.BrokerAccountService;
 import app.broker.fees.calculator.FeeCalculatorService;
-import app.data.DataService;
 import app.data.securities.price.SecurityPrice;
 import app.data.securities.security.Security;
 import app.taxation.details.TaxDetails;
@@ -28,7 +27,6 @@ public class LiquidationDataConstructor {
     private final BrokerAccountService accountService;
     private final FeeCalculatorService feeCalculatorService;
     private final TaxCalculator taxCalculator;
-    private final DataService dataService;
 
     public Map<BrokerAccount, BrokerAccount> getMainAccounts(
             LiquidPositionTracker liquidPositionTracker, LocalDate asOfDate) {
@@ -64,14 +62,18 @@ public class LiquidationDataConstructor {
         return transferFees;
     }
 
+    /**
+     * Returns the effect of selling the positions at the share price given, which the caller has looked up for the
+     * date.
+     */
     public LiquidExitEffectDto getMarketExitEffect(BrokerAccount account, List<SecurityPosition> securityPositions,
-                                                   LocalDate date, String taxResidence) {
+                                                   SecurityPrice sharePrice, LocalDate date, String taxResidence) {
         if (securityPositions.isEmpty()) {
             throw new IllegalStateException("Empty position list to close");
         }
 
         Security security = securityPositions.get(0).getSecurity();
-        CashValue proceeds = getProceeds(securityPositions, date, security);
+        CashValue proceeds = getProceeds(securityPositions, sharePrice);
         CashValue commissions = feeCalculatorService.getCommissionOnTransaction(
                 account.getId(), date, security.getMarket(), proceeds.getAmount(), proceeds.getCurrency());
         TaxDetails taxDetails = taxCalculator.getTaxDetails(taxResidence, date);
@@ -89,11 +91,10 @@ public class LiquidationDataConstructor {
                 .build();
     }
 
-    private CashValue getProceeds(List<SecurityPosition> securityPositions, LocalDate date, Security security) {
+    private CashValue getProceeds(List<SecurityPosition> securityPositions, SecurityPrice sharePrice) {
         BigDecimal countSold = securityPositions.stream()
                 .reduce(BigDecimal.ZERO, (acc, pos) -> acc.add(pos.getCount()), (old, next) -> next);
 
-        SecurityPrice sharePrice = dataService.getSharePrice(security.getTicker(), date);
         return new CashValue(countSold.multiply(sharePrice.getPrice()), sharePrice.getCurrency());
     }
 }
@@ -0,0 +1,13 @@
+package app.analysis.liquid;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class PortfolioLiquidValueDto {
+    private String portfolioName;
+    private String taxResidence;
+    private String currency;
+    private LiquidValueDto liquidValue;
+}
@@ -0,0 +1,47 @@
+package app.analysis.liquid;
+
+import app.util.InvalidDataException;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+public enum ValuationStep {
+    DAILY {
+        @Override
+        LocalDate stepsAfter(LocalDate start, int steps) {
+            return start.plusDays(steps);
+        }
+    },
+    WEEKLY {
+        @Override
+        LocalDate stepsAfter(LocalDate start, int steps) {
+            return start.plusWeeks(steps);
+        }
+    },
+    MONTHLY {
+        @Override
+        LocalDate stepsAfter(LocalDate start, int steps) {
+            // Counted from the start every time, so a month-end start is not pulled back by shorter months
+            return start.plusMonths(steps);
+        }
+    };
+
+    /**
+     * Returns the dates from the first date, one step apart, up to and including the last date.
+     */
+    public List<LocalDate> getValueDates(LocalDate fromDate, LocalDate toDate) {
+        if (fromDate == null || toDate == null || fromDate.isAfter(toDate)) {
+            throw new InvalidDataException("Invalid valuation period: " + fromDate + "--" + toDate);
+        }
+        List<LocalDate> valueDates = new ArrayList<>();
+        LocalDate date = fromDate;
+        for (int steps = 1; !date.isAfter(toDate); steps++) {
+            valueDates.add(date);
+            date = stepsAfter(fromDate, steps);
+        }
+        return valueDates;
+    }
+
+    abstract LocalDate stepsAfter(LocalDate start, int steps);
+}
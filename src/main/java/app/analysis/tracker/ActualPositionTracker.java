@@ -11,6 +11,7 @@ import app.manager.transaction.MatchingStrategy;
 import java.math.BigDecimal;
 import java.math.MathContext;
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 
 public class ActualPositionTracker extends PositionTracker {
@@ -26,15 +27,42 @@ public class ActualPositionTracker extends PositionTracker {
                 TaxTracker.getBlank());
     }
 
+    /**
+     * <p>Returns a tracker that starts from the broker cash balances and security positions of this one, without
+     * copying them, and with no tax state of its own. Used to replay the transactions of accounts that are
+     * independent of each other separately; take the results back with {@link #adoptPositions}.</p>
+     * <p>Forks may be modified on different threads, as long as this tracker is not modified meanwhile.</p>
+     */
+    public ActualPositionTracker forkPositions() {
+        return new ActualPositionTracker(cashTracker.copy(), securityTracker.copy(), TaxTracker.getBlank());
+    }
+
+    /**
+     * Replaces the broker cash balances and security positions of the given accounts with those in the fork. The fork
+     * must not be modified afterwards.
+     */
+    public void adoptPositions(ActualPositionTracker fork, Collection<BrokerAccount> accounts) {
+        cashTracker.adoptAccounts(fork.cashTracker, accounts);
+        securityTracker.adoptAccounts(fork.securityTracker, accounts);
+    }
+
     public void processMoneyIn(LocalDate date, BrokerAccount addToAccount,
                                String currencyCode, BigDecimal amountAdded) {
         cashTracker.addBrokerCashBalance(addToAccount, currencyCode, amountAdded);
+        addMoneyInCashFlow(date, currencyCode, amountAdded);
+    }
+
+    public void addMoneyInCashFlow(LocalDate date, String currencyCode, BigDecimal amountAdded) {
         cashTracker.addReturnCashFlow(date, currencyCode, amountAdded.negate());
     }
 
     public void processMoneyOut(LocalDate date, BrokerAccount takeFromAccount,
                                 String currencyCode, BigDecimal amountTaken) {
         cashTracker.deductBrokerBalance(takeFromAccount, currencyCode, amountTaken);
+        addMoneyOutCashFlow(date, currencyCode, amountTaken);
+    }
+
+    public void addMoneyOutCashFlow(LocalDate date, String currencyCode, BigDecimal amountTaken) {
         cashTracker.addReturnCashFlow(date, currencyCode, amountTaken);
     }
 
@@ -0,0 +1,64 @@
+package app.analysis.tracker;
+
+import java.util.List;
+
+/**
+ * <p>Persistent append-only list: appending returns a new history and never changes an existing one.</p>
+ * <p>Forked trackers share the history recorded before the fork, and each of them can keep appending to its own
+ * version without copying the shared part.</p>
+ */
+final class AppendOnlyHistory<T> {
+
+    private static final AppendOnlyHistory<Object> EMPTY = new AppendOnlyHistory<>(null, null, 0);
+
+    private final T last;
+    private final AppendOnlyHistory<T> previous;
+    private final int size;
+    private List<T> items;
+
+    private AppendOnlyHistory(T last, AppendOnlyHistory<T> previous, int size) {
+        this.last = last;
+        this.previous = previous;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> AppendOnlyHistory<T> empty() {
+        return (AppendOnlyHistory<T>) EMPTY;
+    }
+
+    static <T> AppendOnlyHistory<T> of(List<? extends T> items) {
+        AppendOnlyHistory<T> history = empty();
+        for (T item : items) {
+            history = history.append(item);
+        }
+        return history;
+    }
+
+    AppendOnlyHistory<T> append(T item) {
+        return new AppendOnlyHistory<>(item, this, size + 1);
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the items in insertion order. The list is built once per history instance.
+     */
+    @SuppressWarnings("unchecked")
+    List<T> toList() {
+        List<T> result = items;
+        if (result == null) {
+            Object[] array = new Object[size];
+            AppendOnlyHistory<T> current = this;
+            for (int i = size - 1; i >= 0; i--) {
+                array[i] = current.last;
+                current = current.previous;
+            }
+            result = (List<T>) List.of(array);
+            items = result;
+        }
+        return result;
+    }
+}
@@ -2,104 +2,412 @@ package app.analysis.tracker;
 
 import app.analysis.CashValue;
 import app.analysis.DatedCashValue;
+import app.analysis.FixedPointMoney;
 import app.broker.account.BrokerAccount;
-import lombok.AllArgsConstructor;
-import lombok.NoArgsConstructor;
-import lombok.extern.slf4j.Slf4j;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.*;
 
-@NoArgsConstructor
-@AllArgsConstructor
-@Slf4j
+/**
+ * <p>Tracks the cash held on broker accounts and in the bank, together with the cash flows used for return
+ * calculation.</p>
+ * <p>Balances live in a matrix of {@link FixedPointMoney} amounts: accounts are mapped to dense row indexes and
+ * currencies to the column ids of {@link CurrencyIndex}, so a cash movement is a direct array update. The
+ * map-returning getters are views built on access.</p>
+ * <p>{@link #copy()} is copy-on-write: the copy shares the balance rows and the cash flow history with this tracker,
+ * and whichever of the two modifies a shared row first replaces it with its own copy. Forking is therefore
+ * independent of the size of the history, and only the modified account rows are ever duplicated.</p>
+ */
 public class CashTracker {
 
-    private Map<BrokerAccount, Map<String, BigDecimal>> brokerBalances = new HashMap<>();
-    private List<DatedCashValue> returnCashFlows = new ArrayList<>();
-    private final Map<String, BigDecimal> bankBalance = new HashMap<>();
+    // Rows carrying a different owner are shared with another tracker and must be copied before writing
+    private Object owner = new Object();
 
-    public CashTracker copy() {
-        long startTime = System.nanoTime();
+    private Map<BrokerAccount, Integer> accountIndexes;
+    private BrokerAccount[] accounts;
+    private boolean accountIndexesOwned;
+    private BalanceRow[] brokerRows;
+    private boolean brokerRowsOwned;
+    // Replay passes the same account instances over and over, so look them up by identity before hashing them. Only
+    // the writing methods use it: they run on the one thread replaying into this tracker, while the read-only views
+    // and the trackers adopting rows from this one may be read from other threads.
+    private final Map<BrokerAccount, Integer> recentAccountIndexes = new IdentityHashMap<>();
 
-        Map<BrokerAccount, Map<String, BigDecimal>> cashBalancesCopy = new HashMap<>();
-        for (Map.Entry<BrokerAccount, Map<String, BigDecimal>> entry : brokerBalances.entrySet()) {
-            cashBalancesCopy.put(entry.getKey(), new HashMap<>(entry.getValue()));
-        }
+    private AppendOnlyHistory<DatedCashValue> returnCashFlows;
+    private BalanceRow bankRow;
 
-        List<DatedCashValue> returnCashFlowCopy = new ArrayList<>();
-        for (DatedCashValue cf : returnCashFlows) {
-            returnCashFlowCopy.add(new DatedCashValue(cf.getAmount(), cf.getCurrency(), cf.getDate()));
-        }
+    public CashTracker() {
+        this(new HashMap<>(), new BrokerAccount[0], new BalanceRow[0], AppendOnlyHistory.empty());
+        accountIndexesOwned = true;
+        brokerRowsOwned = true;
+    }
 
-        log.info("Copied CashTracker with {} cash flows in {}ms",
-                returnCashFlows.size(), (System.nanoTime() - startTime) / 1_000_000);
-        return new CashTracker(cashBalancesCopy, returnCashFlowCopy);
+    private CashTracker(Map<BrokerAccount, Integer> accountIndexes, BrokerAccount[] accounts, BalanceRow[] brokerRows,
+                        AppendOnlyHistory<DatedCashValue> returnCashFlows) {
+        this.accountIndexes = accountIndexes;
+        this.accounts = accounts;
+        this.brokerRows = brokerRows;
+        this.returnCashFlows = returnCashFlows;
+        this.bankRow = new BalanceRow(owner);
+    }
+
+    /**
+     * Returns a tracker with the same broker balances and return cash flows. As before, the copy starts with an
+     * empty bank balance.
+     */
+    public CashTracker copy() {
+        // From now on every existing row is shared, so neither tracker may modify them in place
+        owner = new Object();
+        bankRow.owner = owner;
+        accountIndexesOwned = false;
+        brokerRowsOwned = false;
+        return new CashTracker(accountIndexes, accounts, brokerRows, returnCashFlows);
     }
 
     public Map<BrokerAccount, Map<String, BigDecimal>> getBrokerBalances() {
-        return Collections.unmodifiableMap(brokerBalances);
+        return new BrokerBalancesView();
     }
 
     public List<DatedCashValue> getReturnCashFlows() {
-        return Collections.unmodifiableList(returnCashFlows);
+        return Collections.unmodifiableList(returnCashFlows.toList());
     }
 
     public void addBrokerCashBalance(BrokerAccount account, String currency, BigDecimal amount) {
-        ensureBucketExists(account, currency);
-
-        BigDecimal currentBalance = brokerBalances.get(account).get(currency);
-        brokerBalances.get(account).put(currency, currentBalance.add(amount));
+        getWritableRow(getOrAddAccountIndex(account)).add(CurrencyIndex.idOf(currency), FixedPointMoney.of(amount));
     }
 
     public void deductBrokerBalance(BrokerAccount account, String currency, BigDecimal amount) {
-        addBrokerCashBalance(account, currency, amount.negate());
+        getWritableRow(getOrAddAccountIndex(account))
+                .subtract(CurrencyIndex.idOf(currency), FixedPointMoney.of(amount));
     }
 
     public void addReturnCashFlow(LocalDate date, String currency, BigDecimal amount) {
-        returnCashFlows.add(new DatedCashValue(amount, currency, date));
+        returnCashFlows = returnCashFlows.append(new DatedCashValue(amount, currency, date));
     }
 
     public void addReturnCashFlow(DatedCashValue returnCashFlow) {
-        returnCashFlows.add(returnCashFlow);
+        returnCashFlows = returnCashFlows.append(returnCashFlow);
     }
 
     public void moveBrokerCashToBank() {
-        brokerBalances.values().stream()
-                .map(h -> h.entrySet().stream().toList())
-                .flatMap(List::stream)
-                .forEach(
-                        es -> bankBalance.merge(es.getKey(), es.getValue(), BigDecimal::add)
-                );
-        brokerBalances.clear();
+        BalanceRow bank = getWritableBankRow();
+        for (BalanceRow row : brokerRows) {
+            if (row != null) {
+                bank.addAll(row);
+            }
+        }
+        brokerRows = new BalanceRow[brokerRows.length];
+        brokerRowsOwned = true;
     }
 
     public void deductBankBalance(CashValue deduction) {
-        bankBalance.put(deduction.getCurrency(),
-                bankBalance.getOrDefault(deduction.getCurrency(), BigDecimal.ZERO).subtract(deduction.getAmount()));
+        getWritableBankRow().subtract(CurrencyIndex.idOf(deduction.getCurrency()), FixedPointMoney.of(deduction));
+    }
+
+    void setBankBalance(String currency, BigDecimal amount) {
+        getWritableBankRow().set(CurrencyIndex.idOf(currency), FixedPointMoney.of(amount));
     }
 
     public Map<String, BigDecimal> getBankBalances() {
-        return Collections.unmodifiableMap(bankBalance);
+        return new BalanceRowView(bankRow);
     }
 
     public void mergeAccounts(BrokerAccount sourceAccount, BrokerAccount targetAccount) {
-        if (!sourceAccount.equals(targetAccount) && brokerBalances.get(sourceAccount) != null) {
-            brokerBalances.get(sourceAccount).forEach(
-                    (currency, amount) -> {
-                        ensureBucketExists(targetAccount, currency);
-                        brokerBalances.get(targetAccount).merge(currency, amount, BigDecimal::add);
-                    }
-            );
-            brokerBalances.remove(sourceAccount);
+        int sourceIndex = findRecentAccountIndex(sourceAccount);
+        BalanceRow sourceRow = getRow(sourceIndex);
+        if (!sourceAccount.equals(targetAccount) && sourceRow != null) {
+            getWritableRow(getOrAddAccountIndex(targetAccount)).addAll(sourceRow);
+            getWritableBrokerRows()[sourceIndex] = null;
         }
     }
 
-    private void ensureBucketExists(BrokerAccount account, String currency) {
-        brokerBalances.putIfAbsent(account, new HashMap<>());
-        brokerBalances.get(account).putIfAbsent(currency, BigDecimal.ZERO);
+    /**
+     * Replaces the broker balances of the given accounts with those in the other tracker. The rows are shared, not
+     * copied; whichever tracker modifies one first copies it.
+     */
+    void adoptAccounts(CashTracker other, Collection<BrokerAccount> adoptedAccounts) {
+        for (BrokerAccount account : adoptedAccounts) {
+            BalanceRow row = other.getRow(other.findAccountIndex(account));
+            if (row != null) {
+                // The row keeps the other tracker's owner, so this tracker treats it as shared
+                int index = getOrAddAccountIndex(account);
+                getWritableBrokerRows()[index] = row;
+            } else if (getRow(findRecentAccountIndex(account)) != null) {
+                getWritableBrokerRows()[findRecentAccountIndex(account)] = null;
+            }
+        }
+    }
+
+    private int findAccountIndex(Object account) {
+        if (!(account instanceof BrokerAccount)) {
+            return -1;
+        }
+        Integer index = accountIndexes.get(account);
+        return index == null ? -1 : index;
+    }
+
+    private int findRecentAccountIndex(BrokerAccount account) {
+        Integer index = recentAccountIndexes.get(account);
+        if (index == null) {
+            index = accountIndexes.get(account);
+            if (index == null) {
+                return -1;
+            }
+            recentAccountIndexes.put(account, index);
+        }
+        return index;
     }
 
+    private int getOrAddAccountIndex(BrokerAccount account) {
+        int index = findRecentAccountIndex(account);
+        if (index >= 0) {
+            return index;
+        }
+        if (!accountIndexesOwned) {
+            accountIndexes = new HashMap<>(accountIndexes);
+            accountIndexesOwned = true;
+        }
+        index = accounts.length;
+        accounts = Arrays.copyOf(accounts, index + 1);
+        accounts[index] = account;
+        accountIndexes.put(account, index);
+        recentAccountIndexes.put(account, index);
+        return index;
+    }
+
+    private BalanceRow getRow(int accountIndex) {
+        return accountIndex >= 0 && accountIndex < brokerRows.length ? brokerRows[accountIndex] : null;
+    }
+
+    private BalanceRow[] getWritableBrokerRows() {
+        if (!brokerRowsOwned || brokerRows.length < accounts.length) {
+            brokerRows = Arrays.copyOf(brokerRows, accounts.length);
+            brokerRowsOwned = true;
+        }
+        return brokerRows;
+    }
+
+    private BalanceRow getWritableRow(int accountIndex) {
+        BalanceRow row = getRow(accountIndex);
+        if (row == null || row.owner != owner) {
+            row = row == null ? new BalanceRow(owner) : row.copy(owner);
+            getWritableBrokerRows()[accountIndex] = row;
+        }
+        return row;
+    }
+
+    private BalanceRow getWritableBankRow() {
+        if (bankRow.owner != owner) {
+            bankRow = bankRow.copy(owner);
+        }
+        return bankRow;
+    }
+
+    /**
+     * Balances of one account (or the bank) by currency id. A currency is present once it has been touched, even if its
+     * balance went back to zero.
+     */
+    private static final class BalanceRow {
+        private Object owner;
+        // Null where the currency is not present
+        private FixedPointMoney[] balances = new FixedPointMoney[0];
+        private int presentCount;
+
+        private BalanceRow(Object owner) {
+            this.owner = owner;
+        }
+
+        private BalanceRow copy(Object newOwner) {
+            BalanceRow copy = new BalanceRow(newOwner);
+            copy.balances = balances.clone();
+            copy.presentCount = presentCount;
+            return copy;
+        }
+
+        private void add(int currencyId, FixedPointMoney amount) {
+            ensureCapacity(currencyId);
+            FixedPointMoney balance = balances[currencyId];
+            if (balance == null) {
+                balance = FixedPointMoney.ZERO;
+                presentCount++;
+            }
+            balances[currencyId] = balance.add(amount);
+        }
+
+        private void subtract(int currencyId, FixedPointMoney amount) {
+            ensureCapacity(currencyId);
+            FixedPointMoney balance = balances[currencyId];
+            if (balance == null) {
+                balance = FixedPointMoney.ZERO;
+                presentCount++;
+            }
+            balances[currencyId] = balance.subtract(amount);
+        }
 
-}
\ No newline at end of file
+        private void set(int currencyId, FixedPointMoney amount) {
+            ensureCapacity(currencyId);
+            if (balances[currencyId] == null) {
+                presentCount++;
+            }
+            balances[currencyId] = amount;
+        }
+
+        private void addAll(BalanceRow other) {
+            for (int currencyId = 0; currencyId < other.balances.length; currencyId++) {
+                FixedPointMoney added = other.balances[currencyId];
+                if (added != null) {
+                    FixedPointMoney balance = contains(currencyId) ? balances[currencyId] : null;
+                    set(currencyId, balance == null ? added : balance.add(added));
+                }
+            }
+        }
+
+        private BigDecimal get(int currencyId) {
+            return balances[currencyId].toBigDecimal();
+        }
+
+        private boolean contains(int currencyId) {
+            return currencyId >= 0 && currencyId < balances.length && balances[currencyId] != null;
+        }
+
+        private void ensureCapacity(int currencyId) {
+            if (currencyId >= balances.length) {
+                balances = Arrays.copyOf(balances, Math.max(currencyId + 1, balances.length * 2));
+            }
+        }
+    }
+
+    private final class BrokerBalancesView extends AbstractMap<BrokerAccount, Map<String, BigDecimal>> {
+
+        @Override
+        public Map<String, BigDecimal> get(Object key) {
+            BalanceRow row = getRow(findAccountIndex(key));
+            return row == null ? null : new BalanceRowView(row);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return getRow(findAccountIndex(key)) != null;
+        }
+
+        @Override
+        public int size() {
+            int size = 0;
+            for (BalanceRow row : brokerRows) {
+                if (row != null) {
+                    size++;
+                }
+            }
+            return size;
+        }
+
+        @Override
+        public Set<Entry<BrokerAccount, Map<String, BigDecimal>>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public Iterator<Entry<BrokerAccount, Map<String, BigDecimal>>> iterator() {
+                    BalanceRow[] rows = brokerRows;
+                    BrokerAccount[] rowAccounts = accounts;
+                    return new Iterator<>() {
+                        private int next = advance(0);
+
+                        @Override
+                        public boolean hasNext() {
+                            return next < rows.length;
+                        }
+
+                        @Override
+                        public Entry<BrokerAccount, Map<String, BigDecimal>> next() {
+                            if (!hasNext()) {
+                                throw new NoSuchElementException();
+                            }
+                            Entry<BrokerAccount, Map<String, BigDecimal>> entry =
+                                    new SimpleImmutableEntry<>(rowAccounts[next], new BalanceRowView(rows[next]));
+                            next = advance(next + 1);
+                            return entry;
+                        }
+
+                        private int advance(int from) {
+                            int index = from;
+                            while (index < rows.length && rows[index] == null) {
+                                index++;
+                            }
+                            return index;
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return BrokerBalancesView.this.size();
+                }
+            };
+        }
+    }
+
+    private static final class BalanceRowView extends AbstractMap<String, BigDecimal> {
+        private final BalanceRow row;
+
+        private BalanceRowView(BalanceRow row) {
+            this.row = row;
+        }
+
+        @Override
+        public BigDecimal get(Object key) {
+            int currencyId = CurrencyIndex.find(key);
+            return row.contains(currencyId) ? row.get(currencyId) : null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return row.contains(CurrencyIndex.find(key));
+        }
+
+        @Override
+        public int size() {
+            return row.presentCount;
+        }
+
+        @Override
+        public Set<Entry<String, BigDecimal>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public Iterator<Entry<String, BigDecimal>> iterator() {
+                    return new Iterator<>() {
+                        private int next = advance(0);
+
+                        @Override
+                        public boolean hasNext() {
+                            return next < row.balances.length;
+                        }
+
+                        @Override
+                        public Entry<String, BigDecimal> next() {
+                            if (!hasNext()) {
+                                throw new NoSuchElementException();
+                            }
+                            Entry<String, BigDecimal> entry = new SimpleImmutableEntry<>(
+                                    CurrencyIndex.codeOf(next), row.get(next));
+                            next = advance(next + 1);
+                            return entry;
+                        }
+
+                        private int advance(int from) {
+                            int index = from;
+                            while (index < row.balances.length && row.balances[index] == null) {
+                                index++;
+                            }
+                            return index;
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return row.presentCount;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package app.analysis.tracker;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interns currency codes to small, dense ids shared by every tracker, so balances can be kept in arrays indexed by
+ * currency. Ids are never reused or released; the number of currencies in use is small.
+ */
+final class CurrencyIndex {
+
+    static final int NOT_FOUND = -1;
+
+    private static final Map<String, Integer> IDS = new ConcurrentHashMap<>();
+    private static volatile String[] codes = new String[0];
+
+    private CurrencyIndex() {
+    }
+
+    static int idOf(String currency) {
+        if (currency == null) {
+            throw new IllegalArgumentException("Currency code cannot be null.");
+        }
+        Integer id = IDS.get(currency);
+        return id != null ? id : register(currency);
+    }
+
+    static int find(Object currency) {
+        Integer id = currency instanceof String ? IDS.get(currency) : null;
+        return id != null ? id : NOT_FOUND;
+    }
+
+    static String codeOf(int id) {
+        return codes[id];
+    }
+
+    private static synchronized int register(String currency) {
+        Integer existing = IDS.get(currency);
+        if (existing != null) {
+            return existing;
+        }
+        int id = codes.length;
+        String[] extended = Arrays.copyOf(codes, id + 1);
+        extended[id] = currency;
+        codes = extended;
+        IDS.put(currency, id);
+        return id;
+    }
+}
@@ -25,7 +25,7 @@ public class LiquidPositionTracker extends PositionTracker {
 
     public LiquidPositionTracker(PositionTracker positionTracker, LocalDate valueDate, String liquidValueCurrency) {
         super(positionTracker.cashTracker.copy(), positionTracker.securityTracker.copy(),
-                new TaxTracker(positionTracker.taxTracker));
+                positionTracker.taxTracker.copy());
 
         this.valueDate = valueDate;
         this.liquidValueCurrency = liquidValueCurrency;
@@ -0,0 +1,106 @@
+package app.analysis.tracker;
+
+import app.analysis.actual.SecurityPosition;
+import app.data.securities.security.Security;
+import app.manager.transaction.MatchingStrategy;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * <p>The positions of one security on one broker account, kept ordered by enter date as they are added, so closing
+ * positions takes them from the oldest or the newest date without sorting and costs only the number of positions
+ * consumed.</p>
+ * <p>Positions entered on the same date are consumed in the order they were added, under both matching strategies.
+ * {@link #getPositions()} lists the open positions in the order they were added.</p>
+ */
+final class LotBook {
+
+    // Positions keyed by the order they were added in; a partly closed position keeps its place
+    private final TreeMap<Long, SecurityPosition> positionsByOrder;
+    private final TreeMap<LocalDate, ArrayDeque<Long>> ordersByDate;
+    private long nextOrder;
+    private BigDecimal openCount;
+    private List<SecurityPosition> positionsView;
+
+    LotBook() {
+        this(new TreeMap<>(), new TreeMap<>(), 0, BigDecimal.ZERO);
+    }
+
+    private LotBook(TreeMap<Long, SecurityPosition> positionsByOrder, TreeMap<LocalDate, ArrayDeque<Long>> ordersByDate,
+                    long nextOrder, BigDecimal openCount) {
+        this.positionsByOrder = positionsByOrder;
+        this.ordersByDate = ordersByDate;
+        this.nextOrder = nextOrder;
+        this.openCount = openCount;
+    }
+
+    LotBook copy() {
+        TreeMap<LocalDate, ArrayDeque<Long>> copiedOrdersByDate = new TreeMap<>();
+        ordersByDate.forEach((date, orders) -> copiedOrdersByDate.put(date, new ArrayDeque<>(orders)));
+        LotBook copy = new LotBook(new TreeMap<>(positionsByOrder), copiedOrdersByDate, nextOrder, openCount);
+        copy.positionsView = positionsView;
+        return copy;
+    }
+
+    List<SecurityPosition> getPositions() {
+        if (positionsView == null) {
+            positionsView = List.copyOf(positionsByOrder.values());
+        }
+        return positionsView;
+    }
+
+    void add(SecurityPosition position) {
+        long order = nextOrder++;
+        positionsByOrder.put(order, position);
+        ordersByDate.computeIfAbsent(position.getEnterDate(), date -> new ArrayDeque<>()).addLast(order);
+        openCount = openCount.add(position.getCount());
+        positionsView = null;
+    }
+
+    void addAll(LotBook other) {
+        other.positionsByOrder.values().forEach(this::add);
+    }
+
+    void addAll(List<SecurityPosition> positions) {
+        positions.forEach(this::add);
+    }
+
+    List<SecurityPosition> close(Security security, BigDecimal countToClose, MatchingStrategy matchingStrategy) {
+        // Checked up front, so a failed close leaves the book untouched
+        if (openCount.compareTo(countToClose) < 0) {
+            throw new IllegalStateException("Could not find enough securities to sell: " + security);
+        }
+
+        List<SecurityPosition> closedPositions = new ArrayList<>();
+        BigDecimal remainingToClose = countToClose;
+        while (remainingToClose.compareTo(BigDecimal.ZERO) > 0) {
+            Map.Entry<LocalDate, ArrayDeque<Long>> dateEntry = matchingStrategy == MatchingStrategy.LIFO
+                    ? ordersByDate.lastEntry()
+                    : ordersByDate.firstEntry();
+            ArrayDeque<Long> orders = dateEntry.getValue();
+            long order = orders.getFirst();
+            SecurityPosition current = positionsByOrder.get(order);
+
+            if (current.getCount().compareTo(remainingToClose) <= 0) {
+                closedPositions.add(current);
+                remainingToClose = remainingToClose.subtract(current.getCount());
+                positionsByOrder.remove(order);
+                orders.removeFirst();
+                if (orders.isEmpty()) {
+                    ordersByDate.remove(dateEntry.getKey());
+                }
+            } else {
+                closedPositions.add(new SecurityPosition(security, remainingToClose, current.getEnteredAt(),
+                        current.getEnterDate()));
+                positionsByOrder.put(order, new SecurityPosition(security,
+                        current.getCount().subtract(remainingToClose), current.getEnteredAt(), current.getEnterDate()));
+                remainingToClose = BigDecimal.ZERO;
+            }
+        }
+        openCount = openCount.subtract(countToClose);
+        positionsView = null;
+        return closedPositions;
+    }
+}
@@ -7,6 +7,7 @@ import app.broker.account.BrokerAccount;
 import app.data.securities.security.Security;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.util.List;
 import java.util.Map;
 
@@ -49,6 +50,10 @@ public abstract class PositionTracker {
         return taxTracker.getLossOffsetAvailable();
     }
 
+    public Iterable<DatedCashValue> getLossOffsetAvailableFrom(LocalDate cutOffDate) {
+        return taxTracker.getLossOffsetAvailableFrom(cutOffDate);
+    }
+
     public String getTaxationCurrency() {
         return taxTracker.getTaxationCurrency();
     }
@@ -60,7 +65,15 @@ public abstract class PositionTracker {
     // Shared operations
     public void processFee(BrokerAccount account, String currencyCode,
                            BigDecimal amount, CashValue feeAmountInTaxCurrency) {
+        deductFee(account, currencyCode, amount);
+        addFeeWriteOff(feeAmountInTaxCurrency);
+    }
+
+    public void deductFee(BrokerAccount account, String currencyCode, BigDecimal amount) {
         cashTracker.deductBrokerBalance(account, currencyCode, amount);
+    }
+
+    public void addFeeWriteOff(CashValue feeAmountInTaxCurrency) {
         taxTracker.addAvailableFeeWriteOff(feeAmountInTaxCurrency);
     }
 }
@@ -4,111 +4,114 @@ import app.analysis.actual.SecurityPosition;
 import app.broker.account.BrokerAccount;
 import app.manager.transaction.MatchingStrategy;
 import app.data.securities.security.Security;
-import lombok.NoArgsConstructor;
 
 import java.math.BigDecimal;
 import java.util.*;
 
-@NoArgsConstructor
+/**
+ * <p>Tracks the security positions held on each broker account, in one {@link LotBook} per account and security.</p>
+ * <p>{@link #copy()} is copy-on-write: the copy shares the position maps and lot books with this tracker, and whichever
+ * of the two modifies a shared map or lot book first replaces it with its own copy. {@link SecurityPosition}s are never
+ * modified once added, so they can be shared freely.</p>
+ */
 public class SecurityTracker {
 
-    private Map<BrokerAccount, Map<Security, List<SecurityPosition>>> securityPositions = new HashMap<>();
+    private Map<BrokerAccount, Map<Security, LotBook>> securityPositions;
+    private boolean securityPositionsOwned;
+    private Set<Object> ownedContainers = newIdentitySet();
 
-    private SecurityTracker(Map<BrokerAccount, Map<Security, List<SecurityPosition>>> securityPositions) {
+    public SecurityTracker() {
+        this(new HashMap<>());
+        securityPositionsOwned = true;
+    }
+
+    private SecurityTracker(Map<BrokerAccount, Map<Security, LotBook>> securityPositions) {
         this.securityPositions = securityPositions;
     }
 
     public SecurityTracker copy() {
-        Map<BrokerAccount, Map<Security, List<SecurityPosition>>> balances = new HashMap<>();
-        for (Map.Entry<BrokerAccount, Map<Security, List<SecurityPosition>>> entry : securityPositions.entrySet()) {
-            balances.put(entry.getKey(), new HashMap<>());
-
-            for (Map.Entry<Security, List<SecurityPosition>> securityEntry : entry.getValue().entrySet()) {
-                balances.get(entry.getKey()).put(securityEntry.getKey(), new ArrayList<>());
-
-                securityEntry.getValue().forEach(
-                        sp -> balances.get(entry.getKey()).get(securityEntry.getKey())
-                                .add(new SecurityPosition(sp.getSecurity(), sp.getCount(),
-                                        sp.getEnteredAt(), sp.getEnterDate()))
-                );
-            }
-        }
-        return new SecurityTracker(balances);
+        // From now on every existing container is shared, so neither tracker may modify them in place
+        securityPositionsOwned = false;
+        ownedContainers = newIdentitySet();
+        return new SecurityTracker(securityPositions);
     }
 
     public Map<BrokerAccount, Map<Security, List<SecurityPosition>>> getSecurityPositions() {
-        return Collections.unmodifiableMap(securityPositions);
+        Map<BrokerAccount, Map<Security, List<SecurityPosition>>> positions = new HashMap<>();
+        securityPositions.forEach((account, books) -> {
+            Map<Security, List<SecurityPosition>> accountPositions = new HashMap<>();
+            books.forEach((security, book) -> accountPositions.put(security, book.getPositions()));
+            positions.put(account, Collections.unmodifiableMap(accountPositions));
+        });
+        return Collections.unmodifiableMap(positions);
     }
 
     public void addPosition(BrokerAccount account, SecurityPosition securityPosition) {
-        ensureBucketExists(account, securityPosition.getSecurity());
-        securityPositions.get(account).get(securityPosition.getSecurity()).add(securityPosition);
+        getWritableLotBook(account, securityPosition.getSecurity()).add(securityPosition);
     }
 
     public List<SecurityPosition> closePositions(BrokerAccount account, Security security, BigDecimal countToClose,
                                                  MatchingStrategy matchingStrategy) {
-        ensureBucketExists(account, security);
-
-        List<SecurityPosition> availablePositions = securityPositions.get(account)
-                .getOrDefault(security, new ArrayList<>());
-
-        return getClosedPositions(security, countToClose, availablePositions, matchingStrategy);
+        return getWritableLotBook(account, security).close(security, countToClose, matchingStrategy);
     }
 
     public void transferPositions(BrokerAccount fromAccount, BrokerAccount toAccount, Security security,
                                   BigDecimal count, MatchingStrategy matchingStrategy) {
         List<SecurityPosition> transferredPositions = closePositions(fromAccount, security, count, matchingStrategy);
 
-        ensureBucketExists(toAccount, security);
-        securityPositions.get(toAccount).get(security).addAll(transferredPositions);
+        getWritableLotBook(toAccount, security).addAll(transferredPositions);
     }
 
     public void mergeAccounts(BrokerAccount mergeFrom, BrokerAccount mergeTo) {
         if (!mergeTo.equals(mergeFrom) && securityPositions.get(mergeFrom) != null) {
             securityPositions.get(mergeFrom).forEach(
-                    (security, positions) -> {
-                        ensureBucketExists(mergeTo, security);
-                        securityPositions.get(mergeTo).merge(
-                                security, positions, (to, from) -> {
-                                    to.addAll(from);
-                                    return to;
-                                });
-                    }
+                    (security, book) -> getWritableLotBook(mergeTo, security).addAll(book)
             );
-            securityPositions.remove(mergeFrom);
+            getWritableSecurityPositions().remove(mergeFrom);
         }
     }
 
-    private List<SecurityPosition> getClosedPositions(Security security, BigDecimal countToClose,
-                                                      List<SecurityPosition> availablePositions,
-                                                      MatchingStrategy matchingStrategy) {
-        matchingStrategy.sortSecurityPositions(availablePositions);
-
-        List<SecurityPosition> closedPositions = new ArrayList<>();
-        Iterator<SecurityPosition> it = availablePositions.iterator();
-        BigDecimal remainingToClose = countToClose;
-        while (it.hasNext() && remainingToClose.compareTo(BigDecimal.ZERO) > 0) {
-            SecurityPosition current = it.next();
-            if (current.getCount().compareTo(remainingToClose) <= 0) {
-                closedPositions.add(current);
-                remainingToClose = remainingToClose.subtract(current.getCount());
-                it.remove();
-            } else {
-                SecurityPosition closedPart = new SecurityPosition(security, remainingToClose, current.getEnteredAt(),
-                        current.getEnterDate());
-                closedPositions.add(closedPart);
-                current.setCount(current.getCount().subtract(remainingToClose));
-                remainingToClose = BigDecimal.ZERO;
+    /**
+     * Replaces the positions of the given accounts with those in the other tracker. The maps and lot books are shared,
+     * not copied; whichever tracker modifies one first copies it.
+     */
+    void adoptAccounts(SecurityTracker other, Collection<BrokerAccount> accounts) {
+        for (BrokerAccount account : accounts) {
+            Map<Security, LotBook> accountPositions = other.securityPositions.get(account);
+            if (accountPositions != null) {
+                getWritableSecurityPositions().put(account, accountPositions);
+            } else if (securityPositions.containsKey(account)) {
+                getWritableSecurityPositions().remove(account);
             }
         }
-        if (remainingToClose.compareTo(BigDecimal.ZERO) != 0) {
-            throw new IllegalStateException("Could not find enough securities to sell: " + security);
+    }
+
+    private Map<BrokerAccount, Map<Security, LotBook>> getWritableSecurityPositions() {
+        if (!securityPositionsOwned) {
+            securityPositions = new HashMap<>(securityPositions);
+            securityPositionsOwned = true;
+        }
+        return securityPositions;
+    }
+
+    private LotBook getWritableLotBook(BrokerAccount account, Security security) {
+        Map<Security, LotBook> accountPositions = securityPositions.get(account);
+        if (accountPositions == null || !ownedContainers.contains(accountPositions)) {
+            accountPositions = accountPositions == null ? new HashMap<>() : new HashMap<>(accountPositions);
+            getWritableSecurityPositions().put(account, accountPositions);
+            ownedContainers.add(accountPositions);
+        }
+
+        LotBook book = accountPositions.get(security);
+        if (book == null || !ownedContainers.contains(book)) {
+            book = book == null ? new LotBook() : book.copy();
+            accountPositions.put(security, book);
+            ownedContainers.add(book);
         }
-        return closedPositions;
+        return book;
     }
 
-    private void ensureBucketExists(BrokerAccount account, Security security) {
-        securityPositions.putIfAbsent(account, new HashMap<>());
-        securityPositions.get(account).putIfAbsent(security, new ArrayList<>());
+    private static Set<Object> newIdentitySet() {
+        return Collections.newSetFromMap(new IdentityHashMap<>());
     }
 }
@@ -2,55 +2,83 @@ package app.analysis.tracker;
 
 import app.analysis.CashValue;
 import app.analysis.DatedCashValue;
+import app.analysis.FixedPointMoney;
 import app.util.InvalidDataException;
 import lombok.NoArgsConstructor;
 
 import java.math.BigDecimal;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Iterator;
-import java.util.List;
-
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * <p>Tracks the tax position: loss offsets and fee write-offs still available, the gain not yet taxed and the taxes
+ * paid. {@link #copy()} shares the recorded values with the copy; the loss offset ledger is only duplicated once
+ * either tracker changes it. Amounts are kept as {@link FixedPointMoney}.</p>
+ * <p>Loss offsets are summed per date in a ledger ordered by date. Offsets that are too old to use are not removed,
+ * {@link #getLossOffsetAvailableFrom(LocalDate)} simply starts reading after them.</p>
+ */
 @NoArgsConstructor // used by ActualPositionTrackerTest - Mockito (for now)
 public class TaxTracker {
 
     private String taxationCurrency;
-    private final List<DatedCashValue> lossOffsetAvailable = new ArrayList<>();
-    private BigDecimal feeWriteOffAvailable = BigDecimal.ZERO;
-    private BigDecimal untaxedGain = BigDecimal.ZERO;
+    private TreeMap<LocalDate, FixedPointMoney> lossOffsetAvailable = new TreeMap<>();
+    private boolean lossOffsetAvailableOwned = true;
+    private FixedPointMoney feeWriteOffAvailable = FixedPointMoney.ZERO;
+    private FixedPointMoney untaxedGain = FixedPointMoney.ZERO;
 
-    private final List<DatedCashValue> taxesPaid = new ArrayList<>();
+    private AppendOnlyHistory<DatedCashValue> taxesPaid = AppendOnlyHistory.empty();
 
     public static TaxTracker getBlank() {
         return new TaxTracker((String) null);
     }
 
-    public TaxTracker(TaxTracker tracker) {
-        lossOffsetAvailable.addAll(tracker.lossOffsetAvailable.stream()
-                .map(c -> new DatedCashValue(c.getAmount(), c.getCurrency(), c.getDate()))
-                .toList());
-        taxationCurrency = tracker.taxationCurrency;
-        feeWriteOffAvailable = tracker.feeWriteOffAvailable;
-        untaxedGain = tracker.untaxedGain;
-        taxesPaid.addAll(tracker.taxesPaid.stream()
-                .map(c -> new DatedCashValue(c.getAmount(), c.getCurrency(), c.getDate()))
-                .toList());
-    }
-
     private TaxTracker(String taxationCurrency) {
         this.taxationCurrency = taxationCurrency;
     }
 
+    TaxTracker(String taxationCurrency, BigDecimal feeWriteOffAvailable, BigDecimal untaxedGain,
+               List<DatedCashValue> lossOffsetAvailable, List<DatedCashValue> taxesPaid) {
+        this.taxationCurrency = taxationCurrency;
+        this.feeWriteOffAvailable = FixedPointMoney.of(feeWriteOffAvailable);
+        this.untaxedGain = FixedPointMoney.of(untaxedGain);
+        lossOffsetAvailable.forEach(this::addToLossOffsetLedger);
+        this.taxesPaid = AppendOnlyHistory.of(taxesPaid);
+    }
+
+    public TaxTracker copy() {
+        lossOffsetAvailableOwned = false;
+        TaxTracker copy = new TaxTracker(taxationCurrency);
+        copy.lossOffsetAvailable = lossOffsetAvailable;
+        copy.lossOffsetAvailableOwned = false;
+        copy.feeWriteOffAvailable = feeWriteOffAvailable;
+        copy.untaxedGain = untaxedGain;
+        copy.taxesPaid = taxesPaid;
+        return copy;
+    }
+
+    /**
+     * Returns the loss offsets by date, in date order.
+     */
     public List<DatedCashValue> getLossOffsetAvailable() {
-        return Collections.unmodifiableList(lossOffsetAvailable);
+        List<DatedCashValue> lossOffsets = new ArrayList<>(lossOffsetAvailable.size());
+        getLossOffsetsOf(lossOffsetAvailable).forEach(lossOffsets::add);
+        return Collections.unmodifiableList(lossOffsets);
+    }
+
+    /**
+     * Returns the loss offsets dated on or after the cut-off date, in date order. The entries are read from the
+     * ledger as the result is iterated.
+     */
+    public Iterable<DatedCashValue> getLossOffsetAvailableFrom(LocalDate cutOffDate) {
+        return getLossOffsetsOf(lossOffsetAvailable.tailMap(cutOffDate, true));
     }
 
     public CashValue getFeeWriteOffAvailable() {
-        return new CashValue(feeWriteOffAvailable, taxationCurrency);
+        return feeWriteOffAvailable.toCashValue(taxationCurrency);
     }
 
     public CashValue getUntaxedGain() {
-        return new CashValue(untaxedGain, taxationCurrency);
+        return untaxedGain.toCashValue(taxationCurrency);
     }
 
     public String getTaxationCurrency() {
@@ -58,69 +86,54 @@ public class TaxTracker {
     }
 
     public List<DatedCashValue> getTaxesPaid() {
-        return Collections.unmodifiableList(taxesPaid);
+        return Collections.unmodifiableList(taxesPaid.toList());
     }
 
     public void addLossOffset(DatedCashValue lossOffset) {
         verifyCurrencyMatches(lossOffset.getCurrency());
-        lossOffsetAvailable.add(lossOffset);
+        makeLossOffsetsWritable();
+        addToLossOffsetLedger(lossOffset);
     }
 
     public void addAvailableFeeWriteOff(CashValue feeAsPositive) {
         verifyCurrencyMatches(feeAsPositive.getCurrency());
-        feeWriteOffAvailable = feeWriteOffAvailable.add(feeAsPositive.getAmount());
+        feeWriteOffAvailable = feeWriteOffAvailable.add(FixedPointMoney.of(feeAsPositive));
     }
 
     public void addUntaxedGain(CashValue additional) {
         verifyCurrencyMatches(additional.getCurrency());
-        untaxedGain = untaxedGain.add(additional.getAmount());
+        untaxedGain = untaxedGain.add(FixedPointMoney.of(additional));
     }
 
     public void useFeeWriteOff(CashValue usedAmount) {
         verifyCurrencyMatches(usedAmount.getCurrency());
-        if (usedAmount.min(feeWriteOffAvailable).equals(usedAmount)) {
-            feeWriteOffAvailable = feeWriteOffAvailable.subtract(usedAmount.getAmount());
+        FixedPointMoney used = FixedPointMoney.of(usedAmount);
+        if (used.compareTo(feeWriteOffAvailable) <= 0) {
+            feeWriteOffAvailable = feeWriteOffAvailable.subtract(used);
         } else {
             throw new IllegalStateException("Not enough fee write off to deduct.");
         }
     }
 
     public void removeUsedUpLosses(List<DatedCashValue> removeItems) {
-        List<DatedCashValue> partialOnes = new ArrayList<>(removeItems);
-        partialOnes.removeAll(lossOffsetAvailable);
-        // Remove the exactly matching cash flows (the fist instance of those)
-        removeItems.forEach(lossOffsetAvailable::remove);
-        // Remove the partial items
-        for (DatedCashValue partial : partialOnes) {
-            removePartialLossUse(partial);
+        for (DatedCashValue used : removeItems) {
+            makeLossOffsetsWritable();
+            FixedPointMoney remaining = lossOffsetAvailable.getOrDefault(used.getDate(), FixedPointMoney.ZERO)
+                    .subtract(FixedPointMoney.of(used));
+            if (remaining.signum() < 0) {
+                throw new IllegalStateException("Removed too much or too little loss offset. Remaining to remove: "
+                        + remaining.negate());
+            }
+            if (remaining.signum() == 0) {
+                lossOffsetAvailable.remove(used.getDate());
+            } else {
+                lossOffsetAvailable.put(used.getDate(), remaining);
+            }
         }
-        // Don't leave zero values in list
-        lossOffsetAvailable.removeIf(datedInvestorCashFlow -> datedInvestorCashFlow.getAmount().equals(BigDecimal.ZERO));
     }
 
     public void addTaxPayment(DatedCashValue taxPayment) {
-        taxesPaid.add(taxPayment);
-    }
-
-    private void removePartialLossUse(DatedCashValue partial) {
-        Iterator<DatedCashValue> it = lossOffsetAvailable.iterator();
-        BigDecimal remainingToTake = partial.getAmount();
-        List<DatedCashValue> remaindersToAddBack = new ArrayList<>();
-        while (remainingToTake.compareTo(BigDecimal.ZERO) > 0 && it.hasNext()) {
-            DatedCashValue current = it.next();
-            if (current.getDate().equals(partial.getDate())) {
-                BigDecimal removeAmount = remainingToTake.min(current.getAmount());
-                remainingToTake = remainingToTake.subtract(removeAmount);
-                remaindersToAddBack.add(DatedCashValue.of(current.getDate(), current.getAmount().subtract(removeAmount),
-                        current.getCurrency()));
-                it.remove();
-            }
-        }
-        lossOffsetAvailable.addAll(remaindersToAddBack);
-        if (remainingToTake.compareTo(BigDecimal.ZERO) != 0) {
-            throw new IllegalStateException("Removed too much or too little loss offset. Remaining to remove: "
-                    + remainingToTake);
-        }
+        taxesPaid = taxesPaid.append(taxPayment);
     }
 
     public void changeTaxationCurrency(String newTaxationCurrency, BigDecimal exchangeRateFromOldCurrency) {
@@ -137,19 +150,33 @@ public class TaxTracker {
         feeWriteOffAvailable = feeWriteOffAvailable.multiply(exchangeRateFromOldCurrency);
         untaxedGain = untaxedGain.multiply(exchangeRateFromOldCurrency);
 
-        Iterator<DatedCashValue> it = lossOffsetAvailable.iterator();
-        List<DatedCashValue> exchangedValues = new ArrayList<>();
-        while (it.hasNext()) {
-            DatedCashValue cf = it.next();
-            exchangedValues.add(DatedCashValue.of(cf.getDate(), cf.getAmount().multiply(exchangeRateFromOldCurrency),
-                    newTaxationCurrency));
-            it.remove();
-        }
-        lossOffsetAvailable.addAll(exchangedValues);
+        makeLossOffsetsWritable();
+        lossOffsetAvailable.replaceAll((date, lossOffset) -> lossOffset.multiply(exchangeRateFromOldCurrency));
 
         taxationCurrency = newTaxationCurrency;
     }
 
+    private void makeLossOffsetsWritable() {
+        if (!lossOffsetAvailableOwned) {
+            lossOffsetAvailable = new TreeMap<>(lossOffsetAvailable);
+            lossOffsetAvailableOwned = true;
+        }
+    }
+
+    private void addToLossOffsetLedger(DatedCashValue lossOffset) {
+        FixedPointMoney amount = FixedPointMoney.of(lossOffset);
+        // Don't leave zero values in the ledger
+        if (amount.signum() != 0) {
+            lossOffsetAvailable.merge(lossOffset.getDate(), amount, FixedPointMoney::add);
+        }
+    }
+
+    private Iterable<DatedCashValue> getLossOffsetsOf(SortedMap<LocalDate, FixedPointMoney> ledger) {
+        return () -> ledger.entrySet().stream()
+                .map(e -> DatedCashValue.of(e.getKey(), e.getValue().toBigDecimal(), taxationCurrency))
+                .iterator();
+    }
+
     private void verifyCurrencyMatches(String currency) {
         if (!currency.equals(taxationCurrency)) {
             throw new InvalidDataException("TaxTracker received " + currency
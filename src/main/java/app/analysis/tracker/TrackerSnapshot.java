@@ -0,0 +1,122 @@
+package app.analysis.tracker;
+
+import app.analysis.CashValue;
+import app.analysis.DatedCashValue;
+import app.analysis.actual.SecurityPosition;
+import app.broker.account.BrokerAccount;
+import app.data.securities.security.Security;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Serializable state of a {@link PositionTracker}. Accounts and securities are only referenced by their database
+ * ids, so the snapshot can be stored and later restored against freshly loaded entities.
+ */
+public record TrackerSnapshot(
+        List<CashBalance> brokerBalances,
+        Map<String, BigDecimal> bankBalances,
+        List<DatedAmount> returnCashFlows,
+        List<Lot> securityPositions,
+        String taxationCurrency,
+        BigDecimal feeWriteOffAvailable,
+        BigDecimal untaxedGain,
+        List<DatedAmount> lossOffsetAvailable,
+        List<DatedAmount> taxesPaid) {
+
+    public record CashBalance(Long accountId, String currency, BigDecimal amount) {
+    }
+
+    public record DatedAmount(LocalDate date, String currency, BigDecimal amount) {
+
+        static DatedAmount of(DatedCashValue value) {
+            return new DatedAmount(value.getDate(), value.getCurrency(), value.getAmount());
+        }
+
+        DatedCashValue toDatedCashValue() {
+            return new DatedCashValue(amount, currency, date);
+        }
+    }
+
+    public record Lot(Long accountId, Long securityId, BigDecimal count, BigDecimal unitPrice,
+                      String priceCurrency, LocalDate enterDate) {
+    }
+
+    public static TrackerSnapshot of(PositionTracker tracker) {
+        List<CashBalance> brokerBalances = new ArrayList<>();
+        tracker.cashTracker.getBrokerBalances().forEach(
+                (account, holdings) -> holdings.forEach(
+                        (currency, amount) -> brokerBalances.add(new CashBalance(account.getId(), currency, amount))
+                )
+        );
+
+        List<Lot> lots = new ArrayList<>();
+        tracker.securityTracker.getSecurityPositions().forEach(
+                (account, holdings) -> holdings.forEach(
+                        (security, positions) -> positions.forEach(
+                                p -> lots.add(new Lot(account.getId(), security.getId(), p.getCount(),
+                                        p.getEnteredAt().getAmount(), p.getEnteredAt().getCurrency(),
+                                        p.getEnterDate()))
+                        )
+                )
+        );
+
+        TaxTracker taxTracker = tracker.taxTracker;
+        return new TrackerSnapshot(
+                brokerBalances,
+                new HashMap<>(tracker.cashTracker.getBankBalances()),
+                tracker.cashTracker.getReturnCashFlows().stream().map(DatedAmount::of).toList(),
+                lots,
+                taxTracker.getTaxationCurrency(),
+                taxTracker.getFeeWriteOffAvailable().getAmount(),
+                taxTracker.getUntaxedGain().getAmount(),
+                taxTracker.getLossOffsetAvailable().stream().map(DatedAmount::of).toList(),
+                taxTracker.getTaxesPaid().stream().map(DatedAmount::of).toList());
+    }
+
+    public Set<Long> accountIds() {
+        Set<Long> ids = new HashSet<>();
+        Stream.concat(brokerBalances.stream().map(CashBalance::accountId), securityPositions.stream().map(Lot::accountId))
+                .forEach(ids::add);
+        return ids;
+    }
+
+    public Set<Long> securityIds() {
+        Set<Long> ids = new HashSet<>();
+        securityPositions.forEach(lot -> ids.add(lot.securityId()));
+        return ids;
+    }
+
+    /**
+     * <p>Rebuilds an {@link ActualPositionTracker} holding the recorded state.</p>
+     * <p>The maps must contain every id returned by {@link #accountIds()} and {@link #securityIds()}.</p>
+     */
+    public ActualPositionTracker restore(Map<Long, BrokerAccount> accounts, Map<Long, Security> securities) {
+        CashTracker cashTracker = new CashTracker();
+        brokerBalances.forEach(b -> cashTracker.addBrokerCashBalance(getEntity(accounts, b.accountId()),
+                b.currency(), b.amount()));
+        bankBalances.forEach(cashTracker::setBankBalance);
+        returnCashFlows.forEach(cf -> cashTracker.addReturnCashFlow(cf.toDatedCashValue()));
+
+        SecurityTracker securityTracker = new SecurityTracker();
+        securityPositions.forEach(lot -> securityTracker.addPosition(getEntity(accounts, lot.accountId()),
+                new SecurityPosition(getEntity(securities, lot.securityId()), lot.count(),
+                        new CashValue(lot.unitPrice(), lot.priceCurrency()), lot.enterDate())));
+
+        TaxTracker taxTracker = new TaxTracker(taxationCurrency, feeWriteOffAvailable, untaxedGain,
+                lossOffsetAvailable.stream().map(DatedAmount::toDatedCashValue).toList(),
+                taxesPaid.stream().map(DatedAmount::toDatedCashValue).toList());
+
+        return new ActualPositionTracker(cashTracker, securityTracker, taxTracker);
+    }
+
+    private static <T> T getEntity(Map<Long, T> entities, Long id) {
+        T entity = entities.get(id);
+        if (entity == null) {
+            throw new IllegalStateException("Snapshot references unknown entity with database id: " + id);
+        }
+        return entity;
+    }
+}
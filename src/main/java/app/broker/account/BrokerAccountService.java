@@ -10,6 +10,7 @@ import org.springframework.stereotype.Service;
 
 import javax.transaction.Transactional;
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
@@ -69,6 +70,10 @@ public class BrokerAccountService {
         return accountRepository.getReferenceById(accountId);
     }
 
+    public List<BrokerAccount> getAccountsByIds(Collection<Long> accountIds) {
+        return accountRepository.findAllById(accountIds);
+    }
+
     public int accountCountById(Long accountId) {
         return accountRepository.countById(accountId);
     }
@@ -10,13 +10,14 @@ import app.data.securities.security.Security;
 import app.util.InvalidDataException;
 import app.util.MissingDataException;
 import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Optional;
+import java.util.*;
 
 /**
  * <p>DataService has the responsibility to collect asset pricing data for its clients from multiple
@@ -28,6 +29,7 @@ import java.util.Optional;
 
 @Service
 @AllArgsConstructor
+@Slf4j
 public class DataService {
 
     private static final int SHARE_PRICE_DATE_OFFSET_TOLERANCE = 7;
@@ -35,6 +37,7 @@ public class DataService {
     private final ExchangeRateService exchangeRateService;
     private final SecurityService securityService;
     private final CurrencyService currencyService;
+    private final ReferenceDataCache referenceDataCache;
 
     // Exchange rates
     public BigDecimal getExchangeRate(String sourceCurrency, String destinationCurrency, LocalDate exchangeDate) {
@@ -47,18 +50,54 @@ public class DataService {
                 + destinationCurrency + " in the " + EXCHANGE_DATE_OFFSET_TOLERANCE + " day period to " + exchangeDate);
     }
 
+    /**
+     * Stores the exchange rates of the currencies for the period in bulk, including the lookback that
+     * {@link #getExchangeRate} allows before its first day. Nothing is returned: the rates are read as usual.
+     */
+    public void storeMissingExchangeRatesFromMnb(Collection<String> currencyCodes, LocalDate from, LocalDate to) {
+        exchangeRateService.storeMissingRatesFromMnb(currencyCodes, from.minusDays(EXCHANGE_DATE_OFFSET_TOLERANCE), to);
+    }
+
+    /**
+     * Loads the stored exchange rates of the currencies for the period into memory, including the lookback that
+     * {@link #getExchangeRate} allows before its first day, so the lookups of a replay do not each reach the store.
+     */
+    public void loadStoredExchangeRatesIntoCache(Collection<String> currencyCodes, LocalDate from, LocalDate to) {
+        exchangeRateService.loadStoredRatesIntoCache(currencyCodes, from.minusDays(EXCHANGE_DATE_OFFSET_TOLERANCE), to);
+    }
+
     public BasicCurrency getCurrencyDetailsByCode(String currencyCode) {
-        return currencyService.getByCode(currencyCode)
+        Optional<BasicCurrency> cached = referenceDataCache.findCurrencyByCode(currencyCode);
+        if (cached.isPresent()) {
+            return cached.get();
+        }
+        BasicCurrency currency = currencyService.getByCode(currencyCode)
                 .orElseThrow(() -> new InvalidDataException("Currency not found with code: " + currencyCode));
+        referenceDataCache.putCurrency(currency);
+        return currency;
     }
 
     public BasicCurrency getCurrencyDetailsById(Long currencyId) {
-        return currencyService.getById(currencyId)
+        Optional<BasicCurrency> cached = referenceDataCache.findCurrencyById(currencyId);
+        if (cached.isPresent()) {
+            return cached.get();
+        }
+        BasicCurrency currency = currencyService.getById(currencyId)
                 .orElseThrow(() -> new InvalidDataException("Currency not found with database id: " + currencyId));
+        referenceDataCache.putCurrency(currency);
+        return currency;
     }
 
     public List<BasicCurrency> getCurrencyDetailsByIdList(List<Long> currencyIds) {
-        List<BasicCurrency> foundEntries = currencyService.getAllById(currencyIds);
+        List<BasicCurrency> foundEntries = new ArrayList<>();
+        List<Long> notCached = new ArrayList<>();
+        currencyIds.forEach(id -> referenceDataCache.findCurrencyById(id)
+                .ifPresentOrElse(foundEntries::add, () -> notCached.add(id)));
+        if (!notCached.isEmpty()) {
+            List<BasicCurrency> stored = currencyService.getAllById(notCached);
+            stored.forEach(referenceDataCache::putCurrency);
+            foundEntries.addAll(stored);
+        }
         if (foundEntries.size() == currencyIds.size()) {
             return foundEntries;
         }
@@ -66,6 +105,20 @@ public class DataService {
                 + new ArrayList<>(currencyIds).removeAll(foundEntries.stream().map(BasicCurrency::getId).toList()));
     }
 
+    /**
+     * Reads every stored currency and security into memory as soon as the application is up, so that not even their
+     * first lookups reach the store. A failure is only logged: the lookups then read the store as they go.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void preloadReferenceData() {
+        try {
+            currencyService.getAll().forEach(referenceDataCache::putCurrency);
+            securityService.getAll().forEach(referenceDataCache::putSecurity);
+        } catch (RuntimeException e) {
+            log.warn("Reference data preload failed", e);
+        }
+    }
+
     // Securities
     public SecurityPrice getSharePrice(String ticker, LocalDate priceDate) {
         return securityService.getPrice(ticker, priceDate, SHARE_PRICE_DATE_OFFSET_TOLERANCE)
@@ -73,27 +126,95 @@ public class DataService {
                         + SHARE_PRICE_DATE_OFFSET_TOLERANCE + " day period to " + priceDate));
     }
 
+    /**
+     * Returns the share price of each security as {@link #getSharePrice} would, reading the stored prices in a single
+     * query and fetching the missing ones remotely in parallel.
+     */
+    public Map<String, SecurityPrice> getSharePrices(Collection<String> tickers, LocalDate priceDate) {
+        Map<String, SecurityPrice> prices =
+                securityService.getPrices(tickers, priceDate, SHARE_PRICE_DATE_OFFSET_TOLERANCE);
+        verifyAllPresent(tickers, prices,
+                "in the " + SHARE_PRICE_DATE_OFFSET_TOLERANCE + " day period to " + priceDate);
+        return prices;
+    }
+
+    /**
+     * Returns the share prices of each security by date within the period, including the lookback that
+     * {@link #getSharePrice} allows before its first day: the price of any day of the period is the latest one up to
+     * that day.
+     */
+    public Map<String, NavigableMap<LocalDate, SecurityPrice>> getSharePrices(
+            Collection<String> tickers, LocalDate from, LocalDate to) {
+        Map<String, NavigableMap<LocalDate, SecurityPrice>> prices =
+                securityService.getPrices(tickers, from.minusDays(SHARE_PRICE_DATE_OFFSET_TOLERANCE), to);
+        verifyAllPresent(tickers, prices, "in the period " + from + "--" + to);
+        return prices;
+    }
+
+    /**
+     * Stores the share prices of the securities for the period in bulk, including the lookback that
+     * {@link #getSharePrice} allows before its first day. Nothing is returned: the prices are read as usual.
+     */
+    public void preloadSharePrices(Collection<String> tickers, LocalDate from, LocalDate to) {
+        tickers.forEach(ticker -> securityService.preloadPrices(
+                ticker, from.minusDays(SHARE_PRICE_DATE_OFFSET_TOLERANCE), to));
+    }
+
+    private void verifyAllPresent(Collection<String> tickers, Map<String, ?> prices, String period) {
+        List<String> missing = tickers.stream()
+                .filter(ticker -> !prices.containsKey(ticker))
+                .distinct()
+                .toList();
+        if (!missing.isEmpty()) {
+            throw new MissingDataException("Share price not found for " + missing + " " + period);
+        }
+    }
+
     public Security getSecurityDetailsById(Long securityId) {
-        return securityService.getSecurityById(securityId)
+        Optional<Security> cached = referenceDataCache.findSecurityById(securityId);
+        if (cached.isPresent()) {
+            return cached.get();
+        }
+        Security security = securityService.getSecurityById(securityId)
                 .orElseThrow(() -> new InvalidDataException("No security found with database id: " + securityId));
+        referenceDataCache.putSecurity(security);
+        return security;
     }
 
     public Security getSecurityDetailsByTicker(String ticker) {
-        return securityService.getSecurityByTicker(ticker)
+        Optional<Security> cached = referenceDataCache.findSecurityByTicker(ticker);
+        if (cached.isPresent()) {
+            return cached.get();
+        }
+        Security security = securityService.getSecurityByTicker(ticker)
                 .orElseThrow(() -> new InvalidDataException("No security found with ticker: " + ticker));
+        referenceDataCache.putSecurity(security);
+        return security;
     }
 
     public String getSecurityMarketByTicker(String ticker) {
+        Optional<Security> cached = referenceDataCache.findSecurityByTicker(ticker);
+        if (cached.isPresent() && cached.get().getMarket() != null) {
+            return cached.get().getMarket();
+        }
         return securityService.getMarketByTicker(ticker)
                 .orElseThrow(() -> new MissingDataException(("No market found for security with ticker: " + ticker)));
     }
 
     public List<Security> getSecurityDetailsByIdList(List<Long> currencyIds) {
-        List<Security> foundEntries = securityService.getAllByIdList(currencyIds);
+        List<Security> foundEntries = new ArrayList<>();
+        List<Long> notCached = new ArrayList<>();
+        currencyIds.forEach(id -> referenceDataCache.findSecurityById(id)
+                .ifPresentOrElse(foundEntries::add, () -> notCached.add(id)));
+        if (!notCached.isEmpty()) {
+            List<Security> stored = securityService.getAllByIdList(notCached);
+            stored.forEach(referenceDataCache::putSecurity);
+            foundEntries.addAll(stored);
+        }
         if (foundEntries.size() == currencyIds.size()) {
             return foundEntries;
         }
         throw new InvalidDataException("Could not find securities with database id(s): "
                 + new ArrayList<>(currencyIds).removeAll(foundEntries.stream().map(Security::getId).toList()));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,29 @@
+package app.data;
+
+import app.data.fx.rate.HufRateCache;
+import app.data.securities.price.ClosePriceCache;
+import lombok.AllArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Reports how the market data held in memory and the remote fetches are used, counted since the application started.
+ */
+@RestController
+@RequestMapping("/api/v1/market-data")
+@AllArgsConstructor
+public class MarketDataStatsController {
+
+    private final RemoteFetchCoalescer remoteFetchCoalescer;
+    private final ClosePriceCache closePriceCache;
+    private final HufRateCache hufRateCache;
+
+    @GetMapping("/stats")
+    public ResponseEntity<MarketDataStatsDto> getStats() {
+        return ResponseEntity.ok(new MarketDataStatsDto(remoteFetchCoalescer.getCoalescedCounts(),
+                closePriceCache.getHitCount(), closePriceCache.getMissCount(),
+                hufRateCache.getHitCount(), hufRateCache.getMissCount()));
+    }
+}
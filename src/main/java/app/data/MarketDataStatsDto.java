@@ -0,0 +1,17 @@
+package app.data;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Map;
+
+@Getter
+@AllArgsConstructor
+public class MarketDataStatsDto {
+    // Calls served by another caller's remote fetch, by source
+    private Map<String, Long> coalescedRemoteFetches;
+    private long priceCacheHits;
+    private long priceCacheMisses;
+    private long exchangeRateCacheHits;
+    private long exchangeRateCacheMisses;
+}
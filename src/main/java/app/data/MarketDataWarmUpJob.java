@@ -0,0 +1,125 @@
+package app.data;
+
+import app.data.fx.currency.BasicCurrency;
+import app.data.securities.security.Security;
+import app.manager.transaction.TransactionRepository;
+import app.manager.transaction.asset_record.InvestmentAssetRecordRepository;
+import app.manager.transaction.asset_record.InvestmentAssetType;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * <p>Stores the recent prices of every security and the exchange rates of every currency used in transactions ahead
+ * of the valuations needing them, so the first valuation of the day reads them locally instead of waiting for Yahoo
+ * and MNB.</p>
+ * <p>Each security is fetched in a task of its own. A bounded number of tasks run at once and a limited number are
+ * started per second, to stay within the limits of the remote services. The rates of all the currencies take a single
+ * task, as MNB returns them in one response. A failing task is logged and does not stop the others.</p>
+ */
+@Component
+@Slf4j
+public class MarketDataWarmUpJob {
+
+    private final InvestmentAssetRecordRepository assetRecordRepository;
+    private final TransactionRepository transactionRepository;
+    private final DataService dataService;
+    private final int lookbackDays;
+    private final int parallelism;
+    private final long nanosBetweenTaskStarts;
+    private long nextTaskStart = System.nanoTime();
+
+    public MarketDataWarmUpJob(InvestmentAssetRecordRepository assetRecordRepository,
+                               TransactionRepository transactionRepository,
+                               DataService dataService,
+                               @Value("${market-data.warm-up.lookback-days:30}") int lookbackDays,
+                               @Value("${market-data.warm-up.parallelism:4}") int parallelism,
+                               @Value("${market-data.warm-up.tasks-per-second:2}") double tasksPerSecond) {
+        this.assetRecordRepository = assetRecordRepository;
+        this.transactionRepository = transactionRepository;
+        this.dataService = dataService;
+        this.lookbackDays = lookbackDays;
+        this.parallelism = parallelism;
+        this.nanosBetweenTaskStarts = (long) (TimeUnit.SECONDS.toNanos(1) / tasksPerSecond);
+    }
+
+    @Scheduled(cron = "${market-data.warm-up.cron:-}")
+    public void warmUp() {
+        warmUp(LocalDate.now());
+    }
+
+    /**
+     * Stores the missing prices and rates of the configured number of days until the given date.
+     */
+    public void warmUp(LocalDate until) {
+        LocalDate from = until.minusDays(lookbackDays);
+        List<Security> securities = getSecuritiesUsed();
+        Set<String> currencies = getCurrenciesUsed(securities);
+        log.info("Warming up prices of {} securities and rates of {} currencies {}--{}",
+                securities.size(), currencies.size(), from, until);
+
+        List<Runnable> tasks = new ArrayList<>();
+        tasks.add(() -> dataService.storeMissingExchangeRatesFromMnb(currencies, from, until));
+        securities.forEach(security ->
+                tasks.add(() -> dataService.preloadSharePrices(List.of(security.getTicker()), from, until)));
+        runAll(tasks);
+    }
+
+    private List<Security> getSecuritiesUsed() {
+        List<Long> securityIds = assetRecordRepository.findAssetIdsInTransactions(InvestmentAssetType.SECURITY);
+        return securityIds.isEmpty() ? Collections.emptyList() : dataService.getSecurityDetailsByIdList(securityIds);
+    }
+
+    private Set<String> getCurrenciesUsed(List<Security> securities) {
+        Set<String> currencies = new HashSet<>(transactionRepository.findFeeCurrencies());
+        List<Long> currencyIds = assetRecordRepository.findAssetIdsInTransactions(InvestmentAssetType.CASH);
+        if (!currencyIds.isEmpty()) {
+            dataService.getCurrencyDetailsByIdList(currencyIds).stream()
+                    .map(BasicCurrency::getIsoCode)
+                    .forEach(currencies::add);
+        }
+        securities.forEach(security -> currencies.add(security.getCurrency()));
+        currencies.remove(null);
+        return currencies;
+    }
+
+    private void runAll(List<Runnable> tasks) {
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        try {
+            List<Future<?>> results = tasks.stream()
+                    .<Future<?>>map(task -> executor.submit(() -> {
+                        awaitTaskStart();
+                        task.run();
+                        return null;
+                    }))
+                    .toList();
+            for (Future<?> result : results) {
+                try {
+                    result.get();
+                } catch (ExecutionException e) {
+                    log.warn("Market data warm-up task failed", e.getCause());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void awaitTaskStart() throws InterruptedException {
+        long waitNanos;
+        synchronized (this) {
+            long now = System.nanoTime();
+            long start = Math.max(now, nextTaskStart);
+            nextTaskStart = start + nanosBetweenTaskStarts;
+            waitNanos = start - now;
+        }
+        TimeUnit.NANOSECONDS.sleep(waitNanos);
+    }
+}
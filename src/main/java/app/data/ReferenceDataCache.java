@@ -0,0 +1,76 @@
+package app.data;
+
+import app.data.fx.currency.BasicCurrency;
+import app.data.securities.security.Security;
+import app.util.BoundedCache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+
+/**
+ * <p>Keeps the currencies and securities read through {@link DataService} in memory, by id and by code or ticker, so
+ * recording transactions and replaying them does not look them up in the store each time. Codes and tickers are
+ * matched regardless of case, as the store matches them.</p>
+ * <p>Only stored entries, i.e. those with an id, are held. Each kind holds at most the configured number of entries
+ * per key. Every lookup returns a detached copy of its own, so a caller changing what it was given changes neither
+ * the cache nor what other callers see.</p>
+ */
+@Component
+public class ReferenceDataCache {
+
+    private final BoundedCache<String, BasicCurrency> currenciesByCode;
+    private final BoundedCache<Long, BasicCurrency> currenciesById;
+    private final BoundedCache<String, Security> securitiesByTicker;
+    private final BoundedCache<Long, Security> securitiesById;
+
+    public ReferenceDataCache(@Value("${reference-data.cache.max-entries:10000}") int maxEntries) {
+        currenciesByCode = new BoundedCache<>(maxEntries, ReferenceDataCache::copyOf);
+        currenciesById = new BoundedCache<>(maxEntries, ReferenceDataCache::copyOf);
+        securitiesByTicker = new BoundedCache<>(maxEntries, ReferenceDataCache::copyOf);
+        securitiesById = new BoundedCache<>(maxEntries, ReferenceDataCache::copyOf);
+    }
+
+    public Optional<BasicCurrency> findCurrencyByCode(String currencyCode) {
+        return currenciesByCode.get(currencyCode.toUpperCase());
+    }
+
+    public Optional<BasicCurrency> findCurrencyById(Long currencyId) {
+        return currenciesById.get(currencyId);
+    }
+
+    public void putCurrency(BasicCurrency currency) {
+        if (currency.getId() != null) {
+            currenciesByCode.put(currency.getIsoCode().toUpperCase(), currency);
+            currenciesById.put(currency.getId(), currency);
+        }
+    }
+
+    public Optional<Security> findSecurityByTicker(String ticker) {
+        return securitiesByTicker.get(ticker.toUpperCase());
+    }
+
+    public Optional<Security> findSecurityById(Long securityId) {
+        return securitiesById.get(securityId);
+    }
+
+    public void putSecurity(Security security) {
+        if (security.getId() != null) {
+            securitiesByTicker.put(security.getTicker().toUpperCase(), security);
+            securitiesById.put(security.getId(), security);
+        }
+    }
+
+    private static BasicCurrency copyOf(BasicCurrency currency) {
+        BasicCurrency copy = new BasicCurrency(currency.getIsoCode(), currency.getFullName());
+        copy.setId(currency.getId());
+        return copy;
+    }
+
+    private static Security copyOf(Security security) {
+        Security copy = new Security(
+                security.getTicker(), security.getFullName(), security.getMarket(), security.getCurrency());
+        copy.setId(security.getId());
+        return copy;
+    }
+}
@@ -0,0 +1,79 @@
+package app.data;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * <p>Lets concurrent callers fetching the same data from a remote service share a single fetch. The first caller for
+ * a key runs the fetch, the others wait for its result, or its exception. Once the fetch completes the key is
+ * released, so later callers fetch afresh.</p>
+ * <p>The calls served by another caller's fetch are counted per source.</p>
+ */
+@Component
+@Slf4j
+public class RemoteFetchCoalescer {
+
+    public static final String SECURITY_PRICES = "security-prices";
+    public static final String EXCHANGE_RATES = "exchange-rates";
+
+    private final Map<List<Object>, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> coalescedCounts = new ConcurrentHashMap<>();
+
+    /**
+     * @param key Identifies the data fetched within the source, e.g. the ticker and the date window. It must have
+     *            value-based equality.
+     */
+    @SuppressWarnings("unchecked")
+    public <V> V fetch(String source, Object key, Supplier<V> fetch) {
+        List<Object> flightKey = List.of(source, key);
+        CompletableFuture<Object> ownFlight = new CompletableFuture<>();
+        CompletableFuture<Object> flight = inFlight.putIfAbsent(flightKey, ownFlight);
+        if (flight != null) {
+            coalescedCounts.computeIfAbsent(source, s -> new LongAdder()).increment();
+            log.debug("Joining the fetch of {} in flight: {}", source, key);
+            return (V) join(flight);
+        }
+
+        try {
+            V result = fetch.get();
+            ownFlight.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            ownFlight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(flightKey, ownFlight);
+        }
+    }
+
+    /**
+     * Returns the number of calls served by another caller's fetch, by source.
+     */
+    public Map<String, Long> getCoalescedCounts() {
+        return coalescedCounts.entrySet().stream()
+                .collect(Collectors.toMap(Map.Entry::getKey, e -> e.getValue().sum()));
+    }
+
+    private static Object join(CompletableFuture<Object> flight) {
+        try {
+            return flight.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+}
@@ -9,4 +9,6 @@ public interface CurrencyService {
     Optional<BasicCurrency> getById(Long currencyId);
 
     List<BasicCurrency> getAllById(List<Long> currencyIds);
+
+    List<BasicCurrency> getAll();
 }
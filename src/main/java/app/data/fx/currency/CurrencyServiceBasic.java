@@ -37,6 +37,11 @@ public class CurrencyServiceBasic implements CurrencyService {
         return currencyRepository.findAllById(currencyIds);
     }
 
+    @Override
+    public List<BasicCurrency> getAll() {
+        return currencyRepository.findAll();
+    }
+
     private Optional<BasicCurrency> currencyFromMNB(String currencyCode) {
         log.info("Requesting currency detail from MNB for {}", currencyCode);
         Optional<MNBCurrency> mnbCurrency = mnbQueryService.getCurrencyDetails(currencyCode);
@@ -1,30 +1,83 @@
 package app.data.fx.currency.full_names;
 
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import javax.net.ssl.HttpsURLConnection;
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.Reader;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
 
+/**
+ * <p>Serves the full names of currencies from a catalogue bundled with the application, in the format of the
+ * openexchangerates currency list. Lookups never leave the process.</p>
+ * <p>The catalogue can be refreshed from openexchangerates on a schedule. Names downloaded are added to the bundled
+ * ones; a failed download leaves the catalogue as it was.</p>
+ */
 @Service
 @Slf4j
 public class CurrencyNameService {
 
     private static final String FULL_CURRENCY_NAME_API_URL = "https://openexchangerates.org/api/currencies.json";
+    private static final String BUNDLED_CURRENCY_NAMES = "/currency-names.json";
+
+    // Replaced whole on refresh, never modified
+    private volatile Map<String, String> currencyNames;
+
+    public CurrencyNameService() {
+        currencyNames = readBundledNames();
+    }
 
     public String getCurrencyName(String currencyCode) {
-        JsonObject currencies = JsonParser.parseString(getRequestResponse()).getAsJsonObject();
+        String name = currencyNames.get(currencyCode);
+        if (name == null) {
+            throw new IllegalArgumentException("No full name found for currency: " + currencyCode);
+        }
+        return name;
+    }
 
+    /**
+     * Adds the names currently listed by openexchangerates to the catalogue.
+     */
+    @Scheduled(cron = "${currency-names.refresh.cron:-}")
+    public void refresh() {
         try {
-            return currencies.get(currencyCode).getAsString();
-        } catch (NullPointerException e) {
-            throw new IllegalArgumentException("No full name found for currency: " + currencyCode);
+            Map<String, String> refreshedNames = new HashMap<>(currencyNames);
+            refreshedNames.putAll(parse(JsonParser.parseString(getRequestResponse()).getAsJsonObject()));
+            currencyNames = Map.copyOf(refreshedNames);
+        } catch (RuntimeException e) {
+            log.warn("Could not refresh full currency names, keeping {} names", currencyNames.size(), e);
+        }
+    }
+
+    private static Map<String, String> readBundledNames() {
+        InputStream stream = CurrencyNameService.class.getResourceAsStream(BUNDLED_CURRENCY_NAMES);
+        if (stream == null) {
+            throw new IllegalStateException("Bundled currency names not found: " + BUNDLED_CURRENCY_NAMES);
+        }
+        try (Reader reader = new InputStreamReader(stream, StandardCharsets.UTF_8)) {
+            return Map.copyOf(parse(JsonParser.parseReader(reader).getAsJsonObject()));
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not read bundled currency names.", e);
+        }
+    }
+
+    private static Map<String, String> parse(JsonObject currencies) {
+        Map<String, String> names = new HashMap<>();
+        for (Map.Entry<String, JsonElement> currency : currencies.entrySet()) {
+            names.put(currency.getKey(), currency.getValue().getAsString());
         }
+        return names;
     }
 
     private String getRequestResponse() {
@@ -35,8 +88,7 @@ public class CurrencyNameService {
             con.setRequestMethod("GET");
             return extractResponse(con);
         } catch (IOException e) {
-            e.printStackTrace();
-            throw new IllegalStateException("No response from full currency name API.");
+            throw new IllegalStateException("No response from full currency name API.", e);
         }
     }
 
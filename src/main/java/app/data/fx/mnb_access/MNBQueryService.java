@@ -1,26 +1,37 @@
 package app.data.fx.mnb_access;
 
 import hu.mnb.webservices.*;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.tempuri.MNBArfolyamServiceSoapImpl;
 
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.Unmarshaller;
+import javax.xml.ws.BindingProvider;
 import java.io.StringReader;
 import java.math.BigDecimal;
-import java.math.MathContext;
+import java.net.URL;
 import java.time.LocalDate;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.*;
 
 @Service
 public class MNBQueryService {
-    private final MNBArfolyamServiceSoapImpl impl = new MNBArfolyamServiceSoapImpl();
-    private final MNBArfolyamServiceSoap service = impl.getCustomBindingMNBArfolyamServiceSoap();
+    private final MNBArfolyamServiceSoap service;
     private final ObjectFactory factory = new ObjectFactory();
 
+    /**
+     * @param endpoint Address of the SOAP service to call instead of MNB's, e.g. a local stand-in. The service
+     *                 description is then taken from the service interface, so nothing is read from MNB at all.
+     */
+    public MNBQueryService(@Value("${mnb.endpoint:}") String endpoint) {
+        if (endpoint.isBlank()) {
+            service = new MNBArfolyamServiceSoapImpl().getCustomBindingMNBArfolyamServiceSoap();
+        } else {
+            service = new MNBArfolyamServiceSoapImpl((URL) null).getCustomBindingMNBArfolyamServiceSoap();
+            ((BindingProvider) service).getRequestContext().put(BindingProvider.ENDPOINT_ADDRESS_PROPERTY, endpoint);
+        }
+    }
+
     /**
      * Uses MNB's SOAP service to query 30+ exchange rates against HUF.
      *
@@ -28,7 +39,22 @@ public class MNBQueryService {
      * that one unit of source currency is worth.
      */
     public Map<LocalDate, BigDecimal> getHufRates(String sourceAbbreviation, LocalDate from, LocalDate to) {
-        String response = queryHufRates(sourceAbbreviation, from, to);
+        return getHufRates(List.of(sourceAbbreviation), from, to)
+                .getOrDefault(sourceAbbreviation.toUpperCase(), new HashMap<>());
+    }
+
+    /**
+     * Queries the exchange rates of all the currencies against HUF in a single call.
+     *
+     * @return The available one-unit-for-one-unit exchange rates within the specified period by currency code.
+     * Currencies without any rate in the period are left out.
+     */
+    public Map<String, Map<LocalDate, BigDecimal>> getHufRates(
+            Collection<String> sourceAbbreviations, LocalDate from, LocalDate to) {
+        if (sourceAbbreviations.isEmpty()) {
+            return new HashMap<>();
+        }
+        String response = queryHufRates(String.join(",", sourceAbbreviations), from, to);
         return parseRateResponse(response);
     }
 
@@ -42,7 +68,7 @@ public class MNBQueryService {
         }
     }
 
-    private String queryHufRates(String currencyAbbreviation, LocalDate from, LocalDate to) {
+    private String queryHufRates(String currencyAbbreviations, LocalDate from, LocalDate to) {
         GetExchangeRatesRequestBody requestBody = factory.createGetExchangeRatesRequestBody();
         requestBody.setStartDate(
                 factory.createGetExchangeRatesRequestBodyStartDate(from.toString())
@@ -51,43 +77,26 @@ public class MNBQueryService {
                 factory.createGetExchangeRatesRequestBodyEndDate(to.toString())
         );
         requestBody.setCurrencyNames(
-                factory.createGetCurrencyUnitsRequestBodyCurrencyNames(currencyAbbreviation)
+                factory.createGetCurrencyUnitsRequestBodyCurrencyNames(currencyAbbreviations)
         );
 
         try {
             return service.getExchangeRates(requestBody).getGetExchangeRatesResult().getValue();
         } catch (MNBArfolyamServiceSoapGetExchangeRatesStringFaultFaultMessage e) {
-            throw new IllegalStateException("Could not get exchange rates from MNB: " + currencyAbbreviation + " "
+            throw new IllegalStateException("Could not get exchange rates from MNB: " + currencyAbbreviations + " "
                     + from + "--" + to, e);
         }
     }
 
-    private Map<LocalDate, BigDecimal> parseRateResponse(String xml) {
+    private Map<String, Map<LocalDate, BigDecimal>> parseRateResponse(String xml) {
         try {
-            JAXBContext ctx = JAXBContext.newInstance(MNBSingleCurrencyRates.class);
-            Unmarshaller unmarshaller = ctx.createUnmarshaller();
-            MNBSingleCurrencyRates response = (MNBSingleCurrencyRates) unmarshaller.unmarshal(new StringReader(xml));
-            return dateMappedRates(response);
+            return MNBRateParser.parse(xml);
         } catch (Exception e) {
             System.out.println(xml);
             throw new IllegalStateException("Error parsing xml returned by MNB exchange rate query.", e);
         }
     }
 
-    private Map<LocalDate, BigDecimal> dateMappedRates(MNBSingleCurrencyRates rates) {
-        if (rates.isPresent()) {
-            return rates.getRates().stream()
-                    .collect(Collectors.toMap(
-                            r -> LocalDate.parse(r.getDate()),
-                            r -> new BigDecimal(r.getPresentationRate().replace(",", "."))
-                                    .divide(new BigDecimal(r.getPresentationUnits()), MathContext.DECIMAL64)
-                    ));
-        } else {
-            return new HashMap<>();
-        }
-    }
-
-
     private String queryCurrencyDetails(String currencyAbbreviation) {
         // Response format: <MNBCurrencyUnits><Units><Unit curr="JPY">100</Unit></Units></MNBCurrencyUnits>
         GetCurrencyUnitsRequestBody requestBody = factory.createGetCurrencyUnitsRequestBody();
@@ -0,0 +1,72 @@
+package app.data.fx.mnb_access;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reads the rates of an exchange rate query response in a single streaming pass. Response format:
+ * <pre>
+ * &lt;MNBExchangeRates&gt;
+ *     &lt;Day date="2000-01-04"&gt;&lt;Rate unit="1" curr="EUR"&gt;254,47&lt;/Rate&gt;&lt;Rate unit="100" curr="JPY"&gt;242,04&lt;/Rate&gt;&lt;/Day&gt;
+ * &lt;/MNBExchangeRates&gt;
+ * </pre>
+ */
+final class MNBRateParser {
+
+    // The factory is configured once and only used to create readers afterwards
+    private static final XMLInputFactory INPUT_FACTORY = createInputFactory();
+
+    private MNBRateParser() {
+    }
+
+    /**
+     * @return The one-unit-for-one-unit rates against HUF by currency and date. Currencies without any rate in the
+     * response are left out.
+     */
+    static Map<String, Map<LocalDate, BigDecimal>> parse(String xml) throws XMLStreamException {
+        Map<String, Map<LocalDate, BigDecimal>> ratesByCurrency = new HashMap<>();
+        XMLStreamReader reader = INPUT_FACTORY.createXMLStreamReader(new StringReader(xml));
+        try {
+            LocalDate date = null;
+            while (reader.hasNext()) {
+                if (reader.next() != XMLStreamConstants.START_ELEMENT) {
+                    continue;
+                }
+                if (reader.getLocalName().equals("Day")) {
+                    date = LocalDate.parse(reader.getAttributeValue(null, "date"));
+                } else if (reader.getLocalName().equals("Rate")) {
+                    String currency = reader.getAttributeValue(null, "curr");
+                    String units = reader.getAttributeValue(null, "unit");
+                    String presentationRate = reader.getElementText().trim();
+                    if (date != null && !presentationRate.isEmpty()) {
+                        ratesByCurrency.computeIfAbsent(currency, c -> new HashMap<>())
+                                .put(date, unitRate(presentationRate, units));
+                    }
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return ratesByCurrency;
+    }
+
+    private static BigDecimal unitRate(String presentationRate, String units) {
+        return new BigDecimal(presentationRate.replace(",", "."))
+                .divide(new BigDecimal(units), MathContext.DECIMAL64);
+    }
+
+    private static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+}
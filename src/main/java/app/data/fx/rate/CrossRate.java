@@ -0,0 +1,17 @@
+package app.data.fx.rate;
+
+import lombok.Value;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * An exchange rate derived from the rates of both currencies against HUF on the same day. It is not stored.
+ */
+@Value
+public class CrossRate implements Rate {
+    String sourceIsoAbbreviation;
+    String destinationIsoAbbreviation;
+    LocalDate date;
+    BigDecimal exchangeRate;
+}
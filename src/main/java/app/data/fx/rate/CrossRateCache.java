@@ -0,0 +1,141 @@
+package app.data.fx.rate;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * <p>Keeps a matrix of exchange rates between every pair of currencies per day, derived from the rates against HUF
+ * held by the {@link HufRateCache}. Currencies get a fixed index on first sight, so once the indexes are known a pair
+ * is a single array read. The rate of a pair is worked out on its first lookup on the day, and the same
+ * {@link Rate} is returned afterwards.</p>
+ * <p>A day's matrix is rebuilt when the rates held against HUF on that day have changed since it was built, other
+ * days are kept. Lookups take no lock; only adding a currency and dropping days do. When more than the configured
+ * number of days are held, the days looked up least recently are dropped, a quarter of them at a time.</p>
+ */
+@Component
+public class CrossRateCache {
+
+    private static final String HUF = "HUF";
+
+    private final HufRateCache hufRateCache;
+    private final int maxDays;
+    private final Map<String, Integer> currencyIndexes = new ConcurrentHashMap<>();
+    private final List<String> currencies = new CopyOnWriteArrayList<>();
+    private final Map<LocalDate, DayRates> days = new ConcurrentHashMap<>();
+
+    public CrossRateCache(HufRateCache hufRateCache,
+                          @Value("${exchange-rate.cross-rate-cache.max-days:5000}") int maxDays) {
+        this.hufRateCache = hufRateCache;
+        this.maxDays = maxDays;
+        indexOf(HUF);
+    }
+
+    /**
+     * Returns the rate of the pair on the latest day between the two dates (both inclusive) on which both currencies
+     * have a rate against HUF. The rates of the currencies in the period must have been loaded to the
+     * {@link HufRateCache}.
+     */
+    public Optional<Rate> find(String source, String destination, LocalDate earliest, LocalDate latest) {
+        int sourceIndex = indexOf(source);
+        int destinationIndex = indexOf(destination);
+        for (LocalDate date = latest; !date.isBefore(earliest); date = date.minusDays(1)) {
+            Rate rate = getDay(date).get(sourceIndex, destinationIndex);
+            if (rate != null) {
+                return Optional.of(rate);
+            }
+        }
+        return Optional.empty();
+    }
+
+    private DayRates getDay(LocalDate date) {
+        // Read before the rates, so a rate added while the day is built makes it out of date rather than lost
+        long version = hufRateCache.getVersion(date);
+        DayRates day = days.get(date);
+        if (day == null || day.version != version) {
+            day = new DayRates(date, version, hufRateCache.findHeldRates(date));
+            days.put(date, day);
+            if (days.size() > maxDays) {
+                evictLeastRecentlyUsed();
+            }
+        }
+        day.lastUsed = System.nanoTime();
+        return day;
+    }
+
+    private int indexOf(String currency) {
+        Integer index = currencyIndexes.get(currency);
+        return index != null ? index : addCurrency(currency);
+    }
+
+    private synchronized int addCurrency(String currency) {
+        Integer index = currencyIndexes.get(currency);
+        if (index == null) {
+            index = currencies.size();
+            currencies.add(currency);
+            currencyIndexes.put(currency, index);
+        }
+        return index;
+    }
+
+    private synchronized void evictLeastRecentlyUsed() {
+        if (days.size() <= maxDays) {
+            return;
+        }
+        List<Map.Entry<LocalDate, DayRates>> byLastUse = new ArrayList<>(days.entrySet());
+        byLastUse.sort(Comparator.comparingLong(entry -> entry.getValue().lastUsed));
+        int toEvict = days.size() - maxDays + maxDays / 4;
+        for (int i = 0; i < toEvict && i < byLastUse.size(); i++) {
+            days.remove(byLastUse.get(i).getKey(), byLastUse.get(i).getValue());
+        }
+    }
+
+    private final class DayRates {
+        private final LocalDate date;
+        private final long version;
+        // Indexed by currency; null where the currency has no rate on the day
+        private final BigDecimal[] hufRates;
+        // Rows are created on the first lookup from their currency; a rate set once is never replaced
+        private final AtomicReferenceArray<AtomicReferenceArray<Rate>> rates;
+        private volatile long lastUsed;
+
+        private DayRates(LocalDate date, long version, Map<String, BigDecimal> hufRatesByCurrency) {
+            this.date = date;
+            this.version = version;
+            hufRatesByCurrency.keySet().forEach(CrossRateCache.this::indexOf);
+            hufRates = new BigDecimal[currencies.size()];
+            hufRates[currencyIndexes.get(HUF)] = BigDecimal.ONE;
+            hufRatesByCurrency.forEach((currency, rate) -> hufRates[currencyIndexes.get(currency)] = rate);
+            rates = new AtomicReferenceArray<>(hufRates.length);
+        }
+
+        private Rate get(int source, int destination) {
+            // A currency first seen after the day was built had no rate held on it
+            if (source >= hufRates.length || destination >= hufRates.length
+                    || hufRates[source] == null || hufRates[destination] == null) {
+                return null;
+            }
+            AtomicReferenceArray<Rate> row = rates.get(source);
+            if (row == null) {
+                rates.compareAndSet(source, null, new AtomicReferenceArray<>(hufRates.length));
+                row = rates.get(source);
+            }
+            Rate rate = row.get(destination);
+            if (rate == null) {
+                rate = new CrossRate(currencies.get(source), currencies.get(destination), date,
+                        hufRates[source].divide(hufRates[destination], MathContext.DECIMAL64));
+                if (!row.compareAndSet(destination, null, rate)) {
+                    rate = row.get(destination);
+                }
+            }
+            return rate;
+        }
+    }
+}
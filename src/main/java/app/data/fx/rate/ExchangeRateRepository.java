@@ -5,9 +5,10 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
 import java.time.LocalDate;
+import java.util.List;
 import java.util.Optional;
 
-public interface ExchangeRateRepository extends JpaRepository<StoredRate, Long> {
+public interface ExchangeRateRepository extends JpaRepository<StoredRate, Long>, ExchangeRateRepositoryCustom {
     @Query("SELECT r FROM StoredRate r WHERE r.sourceIsoAbbreviation = :sourceAbbreviation " +
             "AND r.destinationIsoAbbreviation = :destinationAbbreviation AND r.date = :date")
     Optional<Rate> findRate(@Param("sourceAbbreviation") String sourceAbbreviation,
@@ -20,4 +21,18 @@ public interface ExchangeRateRepository extends JpaRepository<StoredRate, Long>
     boolean isAlreadyStored(@Param("sourceAbbreviation") String sourceAbbreviation,
                             @Param("destinationAbbreviation") String destinationAbbreviation,
                             @Param("date") LocalDate date);
+
+    @Query("SELECT r.date FROM StoredRate r WHERE r.sourceIsoAbbreviation = :sourceAbbreviation " +
+            "AND r.destinationIsoAbbreviation = :destinationAbbreviation AND r.date BETWEEN :from AND :to")
+    List<LocalDate> findStoredDates(@Param("sourceAbbreviation") String sourceAbbreviation,
+                                    @Param("destinationAbbreviation") String destinationAbbreviation,
+                                    @Param("from") LocalDate from,
+                                    @Param("to") LocalDate to);
+
+    @Query("SELECT r FROM StoredRate r WHERE r.sourceIsoAbbreviation = :sourceAbbreviation " +
+            "AND r.destinationIsoAbbreviation = :destinationAbbreviation AND r.date BETWEEN :from AND :to")
+    List<StoredRate> findRates(@Param("sourceAbbreviation") String sourceAbbreviation,
+                               @Param("destinationAbbreviation") String destinationAbbreviation,
+                               @Param("from") LocalDate from,
+                               @Param("to") LocalDate to);
 }
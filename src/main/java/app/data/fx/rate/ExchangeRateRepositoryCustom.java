@@ -0,0 +1,12 @@
+package app.data.fx.rate;
+
+import java.util.Collection;
+
+public interface ExchangeRateRepositoryCustom {
+
+    /**
+     * Inserts the rates in a single JDBC batch, skipping those already stored for the same currency pair and date.
+     * The unique key on the pair and date keeps concurrent inserts of the same rates from storing them twice.
+     */
+    void insertMissing(Collection<StoredRate> rates);
+}
@@ -0,0 +1,51 @@
+package app.data.fx.rate;
+
+import app.util.BigDecimalConverter;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.id.IdentifierGenerator;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.util.Collection;
+
+public class ExchangeRateRepositoryCustomImpl implements ExchangeRateRepositoryCustom {
+
+    // Only a row already stored under the unique key is skipped: unlike INSERT IGNORE, any other error still fails
+    // the batch
+    private static final String INSERT_SKIPPING_STORED = "INSERT INTO exchange_rates " +
+            "(id, source_iso_abbreviation, destination_iso_abbreviation, date, exchange_rate) VALUES (?, ?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE id = id";
+    private static final BigDecimalConverter AMOUNT_CONVERTER = new BigDecimalConverter();
+
+    @PersistenceContext
+    EntityManager entityManager;
+
+    @Override
+    @Transactional
+    public void insertMissing(Collection<StoredRate> rates) {
+        if (rates.isEmpty()) {
+            return;
+        }
+        SessionImplementor session = entityManager.unwrap(SessionImplementor.class);
+        // Ids are taken from the same pool as those of the rates saved through JPA
+        IdentifierGenerator idGenerator = session.getFactory().getMetamodel()
+                .entityPersister(StoredRate.class).getIdentifierGenerator();
+
+        session.doWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(INSERT_SKIPPING_STORED)) {
+                for (StoredRate rate : rates) {
+                    statement.setLong(1, (Long) idGenerator.generate(session, rate));
+                    statement.setString(2, rate.getSourceIsoAbbreviation());
+                    statement.setString(3, rate.getDestinationIsoAbbreviation());
+                    statement.setDate(4, Date.valueOf(rate.getDate()));
+                    statement.setLong(5, AMOUNT_CONVERTER.convertToDatabaseColumn(rate.getExchangeRate()));
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+        });
+    }
+}
@@ -1,6 +1,7 @@
 package app.data.fx.rate;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.Optional;
 
 public interface ExchangeRateService {
@@ -25,4 +26,20 @@ public interface ExchangeRateService {
      */
     Optional<Rate> getExchangeRateDetails(String sourceCurrency, String destinationCurrency, LocalDate targetDate,
                                 int backwardDayOffsetTolerance);
+
+    /**
+     * Makes sure the exchange rates of the currencies within the period are stored, so that later queries for the
+     * period do not have to reach the remote source one by one.
+     *
+     * @param currencies The three-letter ISO-4217 codes of the currencies, in any case.
+     */
+    void storeMissingRatesFromMnb(Collection<String> currencies, LocalDate from, LocalDate to);
+
+    /**
+     * Loads the stored exchange rates of the currencies within the period into memory, in one query per currency, so
+     * that lookups for the period do not have to reach the store one by one. Nothing is fetched remotely.
+     *
+     * @param currencies The three-letter ISO-4217 codes of the currencies, in any case.
+     */
+    void loadStoredRatesIntoCache(Collection<String> currencies, LocalDate from, LocalDate to);
 }
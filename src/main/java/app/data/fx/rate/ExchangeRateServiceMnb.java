@@ -1,12 +1,13 @@
 package app.data.fx.rate;
 
+import app.data.RemoteFetchCoalescer;
 import app.data.fx.mnb_access.MNBQueryService;
+import app.util.Weekdays;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
-import java.math.MathContext;
 import java.time.LocalDate;
 import java.util.*;
 import java.util.stream.Collectors;
@@ -18,6 +19,9 @@ public class ExchangeRateServiceMnb implements ExchangeRateService {
     private static final int QUERY_NUMBER_OF_DAYS = 30;
     private final ExchangeRateRepository exchangeRateRepository;
     private final MNBQueryService mnbQueryService;
+    private final HufRateCache hufRateCache;
+    private final CrossRateCache crossRateCache;
+    private final RemoteFetchCoalescer remoteFetchCoalescer;
 
     @Override
     public Optional<Rate> getExchangeRateDetails(
@@ -35,116 +39,111 @@ public class ExchangeRateServiceMnb implements ExchangeRateService {
             return Optional.of(sameCurrencyRate(sourceCurrency, targetDate));
         }
 
-        Map<String, Rate> hufRates =
-                getHufRatesForSameDay(targetDate, backwardDayOffsetTolerance, sourceCurrency, destinationCurrency);
-        Rate sourceToHuf = hufRates.get(sourceCurrency);
-        Rate destinationToHuf = hufRates.get(destinationCurrency);
-        if (sourceToHuf != null && destinationToHuf != null) {
-            return Optional.of(mergeRates(sourceToHuf, destinationToHuf));
-        } else {
-            return Optional.empty();
+        Set<String> currenciesAgainstHuf = new HashSet<>(List.of(sourceCurrency, destinationCurrency));
+        currenciesAgainstHuf.remove("HUF");
+
+        // Currencies whose missing rates MNB has already been asked for are not fetched again
+        LocalDate earliest = targetDate.minusDays(backwardDayOffsetTolerance);
+        Set<String> missingOnTargetDate = currenciesAgainstHuf.stream()
+                .filter(currency -> hufRateCache.find(currency, targetDate).isEmpty())
+                .filter(currency -> !hufRateCache.hasNoRateToFetch(currency, earliest, targetDate))
+                .collect(Collectors.toSet());
+        if (!missingOnTargetDate.isEmpty()) {
+            fetchMissingRatesFromMnb(targetDate, missingOnTargetDate, backwardDayOffsetTolerance);
         }
-    }
-
-    private Rate sameCurrencyRate(String currency, LocalDate targetDate) {
-        return new StoredRate(currency, currency, targetDate, BigDecimal.ONE);
-    }
 
-    private Map<String, Rate> getHufRatesForSameDay(LocalDate targetDate,
-                                                    int backwardDayOffsetTolerance,
-                                                    String currencyAbbreviation,
-                                                    String... otherCurrencyAbbreviations) {
-        Set<String> currencyAbbreviations = new HashSet<>(Arrays.asList(otherCurrencyAbbreviations));
-        currencyAbbreviations.add(currencyAbbreviation);
-        return getHufRatesForSameDay(targetDate, backwardDayOffsetTolerance, currencyAbbreviations, 0);
+        // The latest day within the tolerance on which both currencies have a rate
+        currenciesAgainstHuf.forEach(currency -> hufRateCache.load(currency, earliest, targetDate));
+        return crossRateCache.find(sourceCurrency, destinationCurrency, earliest, targetDate);
     }
 
-    private Map<String, Rate> getHufRatesForSameDay(LocalDate targetDate, int backwardDayOffsetTolerance,
-                                                    Set<String> currencyAbbreviations, int dayOffsetIteration) {
-        if (dayOffsetIteration > backwardDayOffsetTolerance) {
-            return new HashMap<>();
-        }
-
-        LocalDate queriedDate = targetDate.minusDays(dayOffsetIteration);
-        Map<String, Rate> rateToHuf = getHufRatesForDay(currencyAbbreviations, queriedDate);
-        if (rateToHuf.size() == currencyAbbreviations.size()) {
-            return rateToHuf;
-        }
-
-        if (dayOffsetIteration == 0) {
-            Map<String, Rate> mnbResult =
-                    getMissingRatesFromMnb(targetDate, currencyAbbreviations, rateToHuf.keySet(), backwardDayOffsetTolerance);
-            rateToHuf.putAll(mnbResult);
-            if (rateToHuf.size() == currencyAbbreviations.size()) {
-                return rateToHuf;
+    @Override
+    public void storeMissingRatesFromMnb(Collection<String> currencies, LocalDate from, LocalDate to) {
+        Map<String, Set<LocalDate>> storedDatesOfIncomplete = new HashMap<>();
+        LocalDate firstMissing = null;
+        LocalDate lastMissing = null;
+        for (String currency : currencies.stream().map(String::toUpperCase).distinct().toList()) {
+            if (currency.equals("HUF")) {
+                continue;
+            }
+            Set<LocalDate> storedDates =
+                    new HashSet<>(exchangeRateRepository.findStoredDates(currency, "HUF", from, to));
+            List<LocalDate> missingDates = Weekdays.missingBetween(storedDates, from, to).stream()
+                    .filter(date -> !hufRateCache.hasNoRateToFetch(currency, date, date))
+                    .toList();
+            if (!missingDates.isEmpty()) {
+                storedDatesOfIncomplete.put(currency, storedDates);
+                LocalDate first = missingDates.get(0);
+                LocalDate last = missingDates.get(missingDates.size() - 1);
+                firstMissing = firstMissing == null || first.isBefore(firstMissing) ? first : firstMissing;
+                lastMissing = lastMissing == null || last.isAfter(lastMissing) ? last : lastMissing;
             }
         }
-        return getHufRatesForSameDay(targetDate, backwardDayOffsetTolerance, currencyAbbreviations, dayOffsetIteration + 1);
-    }
+        if (storedDatesOfIncomplete.isEmpty()) {
+            return;
+        }
 
-    private Map<String, Rate> getHufRatesForDay(Set<String> currencyAbbreviations, LocalDate queriedDate) {
-        return currencyAbbreviations.stream()
-                .map(abbrev -> getHufRate(abbrev, queriedDate))
-                .filter(Optional::isPresent)
-                .map(Optional::get)
-                .collect(Collectors.toMap(
-                        Rate::getSourceIsoAbbreviation,
-                        r -> r
-                ));
+        log.info("Storing missing rates from MNB {} {}--{}", storedDatesOfIncomplete.keySet(), firstMissing, lastMissing);
+        Map<String, Map<LocalDate, BigDecimal>> rates =
+                getHufRatesFromMnb(storedDatesOfIncomplete.keySet(), firstMissing, lastMissing);
+        LocalDate firstSearched = firstMissing;
+        LocalDate lastSearched = lastMissing;
+        storedDatesOfIncomplete.forEach((currency, storedDates) -> {
+            List<StoredRate> newRates = rates.getOrDefault(currency, Map.of()).entrySet().stream()
+                    .filter(e -> !storedDates.contains(e.getKey()))
+                    .map(e -> new StoredRate(currency, "HUF", e.getKey(), e.getValue()))
+                    .toList();
+            exchangeRateRepository.insertMissing(newRates);
+            newRates.forEach(rate -> hufRateCache.put(currency, rate.getDate(), rate.getExchangeRate()));
+            hufRateCache.recordSearched(currency, firstSearched, lastSearched);
+        });
     }
 
-    private Map<String, Rate> getMissingRatesFromMnb(
-            LocalDate targetDate, Set<String> requiredRates, Set<String> existingRates, int backwardDayOffsetTolerance) {
-        log.info("Getting missing rates from MNB {} - {}", requiredRates, targetDate);
-        Set<String> missingRates = new HashSet<>(requiredRates);
-        missingRates.removeAll(existingRates);
-
-        LocalDate startDate = targetDate.minusDays(Math.max(QUERY_NUMBER_OF_DAYS, backwardDayOffsetTolerance));
-        return missingRates.stream()
-                .map(abbrev -> getExchangeRateFromExtendedMnbQuery(abbrev, startDate, targetDate))
-                .filter(Optional::isPresent)
-                .map(Optional::get)
-                .collect(Collectors.toMap(
-                        Rate::getSourceIsoAbbreviation,
-                        r -> r
-                ));
+    @Override
+    public void loadStoredRatesIntoCache(Collection<String> currencies, LocalDate from, LocalDate to) {
+        currencies.stream()
+                .map(String::toUpperCase)
+                .filter(currency -> !currency.equals("HUF"))
+                .distinct()
+                .forEach(currency -> hufRateCache.load(currency, from, to));
     }
 
-    private Optional<Rate> getExchangeRateFromExtendedMnbQuery(
-            String currency, LocalDate startDate, LocalDate targetDate) {
-        Map<LocalDate, BigDecimal> singleCurrencyRates =
-                mnbQueryService.getHufRates(currency, startDate, targetDate);
-        saveRates(currency, "HUF", singleCurrencyRates);
-        return getHufRate(currency, targetDate);
+    private Rate sameCurrencyRate(String currency, LocalDate targetDate) {
+        return new StoredRate(currency, currency, targetDate, BigDecimal.ONE);
     }
 
-    private void saveRates(
-            String sourceAbbreviation, String destinationAbbreviation, Map<LocalDate, BigDecimal> rates) {
-        rates.forEach((date, rateValue) -> {
-            if (!exchangeRateRepository.isAlreadyStored(sourceAbbreviation, destinationAbbreviation, date)) {
-                StoredRate rate = new StoredRate(sourceAbbreviation, destinationAbbreviation, date, rateValue);
-                exchangeRateRepository.save(rate);
-            }
+    private void fetchMissingRatesFromMnb(
+            LocalDate targetDate, Set<String> missingRates, int backwardDayOffsetTolerance) {
+        log.info("Getting missing rates from MNB {} - {}", missingRates, targetDate);
+        LocalDate startDate = targetDate.minusDays(Math.max(QUERY_NUMBER_OF_DAYS, backwardDayOffsetTolerance));
+        Map<String, Map<LocalDate, BigDecimal>> rates = getHufRatesFromMnb(missingRates, startDate, targetDate);
+        missingRates.forEach(currency -> {
+            hufRateCache.load(currency, startDate, targetDate);
+            saveRates(currency, rates.getOrDefault(currency, Map.of()));
+            hufRateCache.recordSearched(currency, startDate, targetDate);
         });
     }
 
-    private Optional<Rate> getHufRate(String source, LocalDate date) {
-        if (source.equalsIgnoreCase("HUF")) {
-            return Optional.of(sameCurrencyRate("HUF", date));
-        }
-        return exchangeRateRepository.findRate(source, "HUF", date);
+    /**
+     * Concurrent requests for the same rates share a single MNB call.
+     */
+    private Map<String, Map<LocalDate, BigDecimal>> getHufRatesFromMnb(
+            Set<String> currencies, LocalDate from, LocalDate to) {
+        Set<String> key = Set.copyOf(currencies);
+        return remoteFetchCoalescer.fetch(RemoteFetchCoalescer.EXCHANGE_RATES, List.of(key, from, to),
+                () -> mnbQueryService.getHufRates(key, from, to));
     }
 
-    private Rate mergeRates(Rate source, Rate destination) {
-        if (source == null || destination == null) {
-            throw new IllegalStateException("Rates being merged should not be null: " + source + " | " + destination);
-        }
-        if (!source.getDestinationIsoAbbreviation().equals(destination.getDestinationIsoAbbreviation())) {
-            throw new IllegalArgumentException(
-                    "Cannot merge exchange rates with different bases:\nSource: " + source + "\nDestination:"
-                            + destination);
-        }
-        return new StoredRate(source.getSourceIsoAbbreviation(), destination.getSourceIsoAbbreviation(), source.getDate(),
-                source.getExchangeRate().divide(destination.getExchangeRate(), MathContext.DECIMAL64));
+    /**
+     * Saves the rates against HUF not stored yet, in one batch. The rates of the period must have been loaded to the
+     * cache. A rate stored by a concurrent fetch in the meantime is skipped by the store.
+     */
+    private void saveRates(String sourceAbbreviation, Map<LocalDate, BigDecimal> rates) {
+        List<StoredRate> newRates = rates.entrySet().stream()
+                .filter(e -> hufRateCache.find(sourceAbbreviation, e.getKey()).isEmpty())
+                .map(e -> new StoredRate(sourceAbbreviation, "HUF", e.getKey(), e.getValue()))
+                .toList();
+        exchangeRateRepository.insertMissing(newRates);
+        newRates.forEach(rate -> hufRateCache.put(sourceAbbreviation, rate.getDate(), rate.getExchangeRate()));
     }
 }
@@ -0,0 +1,98 @@
+package app.data.fx.rate;
+
+import app.util.DateRangeCache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * The exchange rates against HUF held in memory, by currency, in a {@link DateRangeCache}. The periods searched at MNB
+ * are recorded with them, so a lookup of a day MNB has no rate for does not go to MNB again.
+ */
+@Component
+public class HufRateCache {
+
+    private final DateRangeCache<String, BigDecimal> rates;
+
+    public HufRateCache(ExchangeRateRepository exchangeRateRepository,
+                        @Value("${exchange-rate.cache.max-rates:200000}") int maxRates) {
+        rates = new DateRangeCache<>("exchange rates",
+                (currencies, from, to) -> loadRates(exchangeRateRepository, currencies, from, to), maxRates);
+    }
+
+    /**
+     * Returns the amount of HUF one unit of the currency is worth exactly on the date, if the store has that rate.
+     */
+    public Optional<BigDecimal> find(String currency, LocalDate date) {
+        return rates.find(currency, date);
+    }
+
+    /**
+     * Returns the rates held in memory on the date, by currency. Currencies not loaded for the date are left out even if
+     * the store has their rates.
+     */
+    public Map<String, BigDecimal> findHeldRates(LocalDate date) {
+        return rates.findHeld(date);
+    }
+
+    /**
+     * Tells whether MNB could not add a rate of the currency between the two dates later than the latest one held.
+     */
+    public boolean hasNoRateToFetch(String currency, LocalDate earliest, LocalDate latest) {
+        return rates.hasNoValueToFetch(currency, earliest, latest, date -> false);
+    }
+
+    /**
+     * Records that MNB has been asked for the rates of the currency between the two dates. Today's rate may still be
+     * published later, so days from today on are not recorded.
+     */
+    public void recordSearched(String currency, LocalDate from, LocalDate to) {
+        LocalDate yesterday = LocalDate.now().minusDays(1);
+        rates.recordSearched(currency, from, to.isAfter(yesterday) ? yesterday : to);
+    }
+
+    /**
+     * Makes sure the rates of the currency between the two dates are held in memory.
+     */
+    public void load(String currency, LocalDate from, LocalDate to) {
+        rates.load(currency, from, to);
+    }
+
+    /**
+     * Adds a rate that has just been saved to the store.
+     */
+    public void put(String currency, LocalDate date, BigDecimal rate) {
+        rates.put(currency, date, rate);
+    }
+
+    /**
+     * Returns the version of the rates held on the date, which changes whenever one of them is added, replaced or
+     * dropped.
+     */
+    public long getVersion(LocalDate date) {
+        return rates.getVersion(date);
+    }
+
+    public long getHitCount() {
+        return rates.getHitCount();
+    }
+
+    public long getMissCount() {
+        return rates.getMissCount();
+    }
+
+    private static Map<String, Map<LocalDate, BigDecimal>> loadRates(
+            ExchangeRateRepository exchangeRateRepository, Collection<String> currencies, LocalDate from,
+            LocalDate to) {
+        Map<String, Map<LocalDate, BigDecimal>> ratesByCurrency = new HashMap<>();
+        for (String currency : currencies) {
+            ratesByCurrency.put(currency, exchangeRateRepository.findRates(currency, "HUF", from, to).stream()
+                    .collect(Collectors.toMap(StoredRate::getDate, StoredRate::getExchangeRate, (a, b) -> b)));
+        }
+        return ratesByCurrency;
+    }
+}
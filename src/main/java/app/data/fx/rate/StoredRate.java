@@ -10,7 +10,8 @@ import java.math.BigDecimal;
 import java.time.LocalDate;
 
 @Entity
-@Table(name = "exchange_rates")
+@Table(name = "exchange_rates", uniqueConstraints = @UniqueConstraint(name = "UK_exchange_rates_source_destination_date",
+        columnNames = {"sourceIsoAbbreviation", "destinationIsoAbbreviation", "date"}))
 @Getter
 @Setter
 @NoArgsConstructor
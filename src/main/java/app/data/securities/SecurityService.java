@@ -5,12 +5,31 @@ import app.data.securities.price.SecurityPrice;
 import app.data.securities.security.Security;
 
 import java.time.LocalDate;
-import java.util.List;
-import java.util.Optional;
+import java.util.*;
 
 public interface SecurityService {
     Optional<SecurityPrice> getPrice(String ticker, LocalDate date);
     Optional<SecurityPrice> getPrice(String ticker, LocalDate date, int backwardDaysOffsetTolerance);
+
+    /**
+     * Returns the price of each security as {@link #getPrice(String, LocalDate, int)} would. The stored prices of all
+     * the securities are read in a single query and the missing ones are fetched remotely in parallel. Securities
+     * without a price are left out.
+     */
+    Map<String, SecurityPrice> getPrices(Collection<String> tickers, LocalDate date, int backwardDaysOffsetTolerance);
+
+    /**
+     * Returns the prices of each security within the period by date, after fetching the missing ones remotely in
+     * parallel. Securities without any price are left out.
+     */
+    Map<String, NavigableMap<LocalDate, SecurityPrice>> getPrices(
+            Collection<String> tickers, LocalDate from, LocalDate to);
+
+    /**
+     * Makes sure the prices of the security within the period are stored, fetching the missing ones in a single remote
+     * request. Later price queries for the period are then answered from the store.
+     */
+    void preloadPrices(String ticker, LocalDate from, LocalDate to);
     Optional<String> getMarketBySecurityId(Long securityId);
     Optional<String> getMarketByTicker(String ticker);
 
@@ -19,4 +38,6 @@ public interface SecurityService {
     Optional<Security> getSecurityById(Long securityId);
 
     List<Security> getAllByIdList(List<Long> currencyIds);
+
+    List<Security> getAll();
 }
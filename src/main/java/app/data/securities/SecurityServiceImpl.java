@@ -1,5 +1,8 @@
 package app.data.securities;
 
+import app.data.RemoteFetchCoalescer;
+import app.data.securities.price.ClosePrice;
+import app.data.securities.price.ClosePriceCache;
 import app.data.securities.price.SecurityPrice;
 import app.data.securities.price.SecurityPriceOfDay;
 import app.data.securities.price.SecurityPriceOfDayRepository;
@@ -7,18 +10,17 @@ import app.data.securities.security.Security;
 import app.data.securities.security.SecurityRepository;
 import app.data.securities.yahoo_access.RemoteSecurityService;
 import app.util.MissingDataException;
-import lombok.AllArgsConstructor;
+import app.util.Weekdays;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
-import java.util.Optional;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
 
 @Service
-@AllArgsConstructor
 @Slf4j
 public class SecurityServiceImpl implements SecurityService {
 
@@ -26,6 +28,23 @@ public class SecurityServiceImpl implements SecurityService {
     private final SecurityPriceOfDayRepository priceRepository;
     private final SecurityRepository securityRepository;
     private final RemoteSecurityService remoteSecurityService;
+    private final ClosePriceCache closePriceCache;
+    private final RemoteFetchCoalescer remoteFetchCoalescer;
+    private final int remoteParallelism;
+
+    public SecurityServiceImpl(SecurityPriceOfDayRepository priceRepository,
+                               SecurityRepository securityRepository,
+                               RemoteSecurityService remoteSecurityService,
+                               ClosePriceCache closePriceCache,
+                               RemoteFetchCoalescer remoteFetchCoalescer,
+                               @Value("${security-price.remote-parallelism:4}") int remoteParallelism) {
+        this.priceRepository = priceRepository;
+        this.securityRepository = securityRepository;
+        this.remoteSecurityService = remoteSecurityService;
+        this.closePriceCache = closePriceCache;
+        this.remoteFetchCoalescer = remoteFetchCoalescer;
+        this.remoteParallelism = remoteParallelism;
+    }
 
     @Override
     public Optional<SecurityPrice> getPrice(String ticker, LocalDate date) {
@@ -40,26 +59,113 @@ public class SecurityServiceImpl implements SecurityService {
             log.debug(e.getMessage());
             return Optional.empty();
         }
+        return getStoredOrRemotePrice(ticker, date, backwardDaysOffsetTolerance);
+    }
+
+    @Override
+    public Map<String, SecurityPrice> getPrices(
+            Collection<String> tickers, LocalDate date, int backwardDaysOffsetTolerance) {
+        List<String> presentTickers = getPresentTickers(tickers);
+        LocalDate earliest = date.minusDays(backwardDaysOffsetTolerance);
+        closePriceCache.load(presentTickers, earliest, date);
+
+        Map<String, SecurityPrice> prices = new ConcurrentHashMap<>();
+        List<String> remoteTickers = new ArrayList<>();
+        for (String ticker : presentTickers) {
+            if (closePriceCache.find(ticker, date).isEmpty()
+                    && !closePriceCache.hasNoPriceToFetch(ticker, earliest, date)) {
+                remoteTickers.add(ticker);
+            } else {
+                closePriceCache.findLatest(ticker, earliest, date).ifPresent(price -> prices.put(ticker, price));
+            }
+        }
+        runInParallel(remoteTickers, ticker -> getStoredOrRemotePrice(ticker, date, backwardDaysOffsetTolerance)
+                .ifPresent(price -> prices.put(ticker, price)));
+        return prices;
+    }
+
+    @Override
+    public Map<String, NavigableMap<LocalDate, SecurityPrice>> getPrices(
+            Collection<String> tickers, LocalDate from, LocalDate to) {
+        List<String> presentTickers = getPresentTickers(tickers);
+        closePriceCache.load(presentTickers, from, to);
+
+        List<String> incompleteTickers = presentTickers.stream()
+                .filter(ticker -> hasPriceToFetch(ticker, from, to))
+                .toList();
+        runInParallel(incompleteTickers, ticker -> storeRemotePrices(
+                ticker, closePriceCache.findBetween(ticker, from, to).keySet(), from, to));
+
+        Map<String, NavigableMap<LocalDate, SecurityPrice>> prices = new HashMap<>();
+        for (String ticker : presentTickers) {
+            NavigableMap<LocalDate, SecurityPrice> pricesOfTicker = closePriceCache.findBetween(ticker, from, to);
+            if (!pricesOfTicker.isEmpty()) {
+                prices.put(ticker, pricesOfTicker);
+            }
+        }
+        return prices;
+    }
 
-        Optional<SecurityPrice> storedPrice = priceRepository.findByTickerAndDate(ticker, date);
+    private Optional<SecurityPrice> getStoredOrRemotePrice(
+            String ticker, LocalDate date, int backwardDaysOffsetTolerance) {
+        Optional<SecurityPrice> storedPrice = closePriceCache.find(ticker, date);
         if (storedPrice.isPresent()) {
             return storedPrice;
         }
 
+        // Weekends, holidays and days searched before: the remote source has nothing to add
+        LocalDate earliest = date.minusDays(backwardDaysOffsetTolerance);
+        if (closePriceCache.hasNoPriceToFetch(ticker, earliest, date)) {
+            return closePriceCache.findLatest(ticker, earliest, date);
+        }
+
         Optional<SecurityPrice> queriedPrice =
                 getPriceFromExtendedRemoteSearch(ticker,
                         date.minusDays(Math.max(DAYS_ADDED_PER_REMOTE_REQUEST, backwardDaysOffsetTolerance)), date);
         if (queriedPrice.isPresent()) {
             return queriedPrice;
         }
-        for (int i = 1; i <= backwardDaysOffsetTolerance; i++) {
-            LocalDate queried = date.minusDays(i);
-            storedPrice = priceRepository.findByTickerAndDate(ticker, queried);
-            if (storedPrice.isPresent()) {
-                return storedPrice;
-            }
+        return closePriceCache.findLatest(ticker, earliest, date);
+    }
+
+    @Override
+    public void preloadPrices(String ticker, LocalDate from, LocalDate to) {
+        try {
+            verifyTickerIsPresent(ticker);
+        } catch (MissingDataException e) {
+            log.debug(e.getMessage());
+            return;
         }
-       return Optional.empty();
+        storeRemotePrices(ticker, new HashSet<>(priceRepository.findStoredDates(ticker, from, to)), from, to);
+    }
+
+    /**
+     * Fetches the prices of the security from the first to the last weekday of the period not stored yet in a single
+     * remote request, and stores the new ones.
+     */
+    private void storeRemotePrices(String ticker, Set<LocalDate> storedDates, LocalDate from, LocalDate to) {
+        List<LocalDate> missingDates = Weekdays.missingBetween(storedDates, from, to);
+        if (missingDates.isEmpty()) {
+            return;
+        }
+
+        LocalDate firstMissing = missingDates.get(0);
+        LocalDate lastMissing = missingDates.get(missingDates.size() - 1);
+        Map<LocalDate, SecurityPrice> prices;
+        try {
+            prices = getRemotePrices(ticker, firstMissing, lastMissing);
+        } catch (MissingDataException e) {
+            log.debug(e.getMessage());
+            return;
+        }
+        List<SecurityPriceOfDay> newPrices = prices.values().stream()
+                .filter(p -> !storedDates.contains(p.getDate()))
+                .map(SecurityPriceOfDay.class::cast)
+                .toList();
+        priceRepository.insertMissing(newPrices);
+        newPrices.forEach(p -> closePriceCache.put(
+                new ClosePrice(ticker, p.getDate(), p.getPrice(), p.getCurrency())));
+        closePriceCache.recordSearched(ticker, firstMissing, settledUntil(lastMissing));
     }
 
     @Override
@@ -98,18 +204,120 @@ public class SecurityServiceImpl implements SecurityService {
         return securities;
     }
 
+    @Override
+    public List<Security> getAll() {
+        List<Security> securities = new ArrayList<>();
+        securityRepository.findAll().forEach(securities::add);
+        return securities;
+    }
+
     private Optional<SecurityPrice> getPriceFromExtendedRemoteSearch(String ticker, LocalDate from, LocalDate target) {
-        Map<LocalDate, SecurityPrice> prices = remoteSecurityService.getPrices(ticker, from, target);
-        List<SecurityPrice> newPrices = prices.values().stream()
-                .filter(p -> priceRepository.countByTickerAndDate(ticker, p.getDate()) == 0).toList();
-        priceRepository.saveAll( // NEW PRICES ARE ADDED AT THIS POINT
-                newPrices.stream()
+        Map<LocalDate, SecurityPrice> prices = getRemotePrices(ticker, from, target);
+        closePriceCache.load(ticker, from, target);
+        Map<LocalDate, SecurityPrice> newPrices = new HashMap<>();
+        prices.forEach((date, price) -> {
+            if (closePriceCache.find(ticker, date).isEmpty()) {
+                newPrices.put(date, price);
+            }
+        });
+        priceRepository.insertMissing( // NEW PRICES ARE ADDED AT THIS POINT
+                newPrices.values().stream()
                         .map(SecurityPriceOfDay.class::cast)
                         .toList()
         );
+        newPrices.forEach((date, price) ->
+                closePriceCache.put(new ClosePrice(ticker, date, price.getPrice(), price.getCurrency())));
+        closePriceCache.recordSearched(ticker, from, settledUntil(target));
         return Optional.ofNullable(prices.get(target));
     }
 
+    /**
+     * Concurrent requests for the same prices share a single remote call.
+     */
+    private Map<LocalDate, SecurityPrice> getRemotePrices(String ticker, LocalDate from, LocalDate to) {
+        return remoteFetchCoalescer.fetch(RemoteFetchCoalescer.SECURITY_PRICES, List.of(ticker, from, to),
+                () -> remoteSecurityService.getPrices(ticker, from, to));
+    }
+
+    /**
+     * Returns the last day of the period whose prices are final: today's price may still be published later.
+     */
+    private static LocalDate settledUntil(LocalDate to) {
+        LocalDate yesterday = LocalDate.now().minusDays(1);
+        return to.isAfter(yesterday) ? yesterday : to;
+    }
+
+    private boolean hasPriceToFetch(String ticker, LocalDate from, LocalDate to) {
+        Set<LocalDate> storedDates = closePriceCache.findBetween(ticker, from, to).keySet();
+        return Weekdays.missingBetween(storedDates, from, to).stream()
+                .anyMatch(day -> !closePriceCache.hasNoPriceToFetch(ticker, day, day));
+    }
+
+    /**
+     * Runs the remote work of each security in a task of its own, a bounded number at once. The first failure is
+     * thrown once all the tasks are done.
+     */
+    private void runInParallel(List<String> tickers, Consumer<String> task) {
+        if (tickers.size() <= 1) {
+            tickers.forEach(task);
+            return;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(remoteParallelism, tickers.size()));
+        try {
+            List<Future<?>> results = tickers.stream()
+                    .<Future<?>>map(ticker -> executor.submit(() -> task.accept(ticker)))
+                    .toList();
+            RuntimeException failure = null;
+            for (Future<?> result : results) {
+                try {
+                    result.get();
+                } catch (ExecutionException e) {
+                    if (failure == null) {
+                        failure = e.getCause() instanceof RuntimeException cause
+                                ? cause
+                                : new IllegalStateException("Fetching prices failed.", e.getCause());
+                    }
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while fetching prices.", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Returns the distinct tickers of the securities stored or found remotely, checking the stored ones in a single
+     * query.
+     */
+    private List<String> getPresentTickers(Collection<String> tickers) {
+        Set<String> distinctTickers = new LinkedHashSet<>(tickers);
+        if (distinctTickers.isEmpty()) {
+            return Collections.emptyList();
+        }
+        // The store matches tickers regardless of case, as countByTicker does
+        Set<String> storedTickers = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+        storedTickers.addAll(securityRepository.findStoredTickers(distinctTickers));
+
+        List<String> presentTickers = new ArrayList<>();
+        for (String ticker : distinctTickers) {
+            if (!storedTickers.contains(ticker)) {
+                try {
+                    addSecurityWithTicker(ticker);
+                } catch (MissingDataException e) {
+                    log.debug(e.getMessage());
+                    continue;
+                }
+            }
+            presentTickers.add(ticker);
+        }
+        return presentTickers;
+    }
+
     private void verifyTickerIsPresent(String ticker) {
         if (securityRepository.countByTicker(ticker) == 0) {
             addSecurityWithTicker(ticker);
@@ -0,0 +1,104 @@
+package app.data.securities.file_access;
+
+import app.data.securities.price.SecurityPrice;
+import app.data.securities.price.SecurityPriceOfDay;
+import app.data.securities.security.Security;
+import app.data.securities.yahoo_access.RemoteSecurityService;
+import app.util.MissingDataException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * <p>Serves securities and their prices from a local directory instead of Yahoo, for benchmarks and runs without
+ * network access. Selected by the {@value #OFFLINE_PROFILE} profile; the directory layout is described in
+ * {@link PriceSeriesFiles} and can be filled by {@link SyntheticPriceGenerator}.</p>
+ * <p>Each file is read once and kept in memory.</p>
+ */
+@Service
+@Profile(FileRemoteSecurityService.OFFLINE_PROFILE)
+@Slf4j
+public class FileRemoteSecurityService implements RemoteSecurityService {
+
+    public static final String OFFLINE_PROFILE = "offline-market-data";
+
+    private final Path directory;
+    private final Map<String, NavigableMap<LocalDate, PriceSeriesFiles.PriceRow>> pricesByTicker =
+            new ConcurrentHashMap<>();
+    private volatile Map<String, Security> securities;
+
+    public FileRemoteSecurityService(@Value("${remote-security.offline.directory:market-data}") Path directory) {
+        this.directory = directory;
+    }
+
+    @Override
+    public Map<LocalDate, SecurityPrice> getPrices(String ticker, LocalDate from, LocalDate to) {
+        Security security = getSecurityDetails(ticker).orElseThrow(() ->
+                new MissingDataException("No local stock prices for " + ticker + " from " + from + " to " + to));
+        return getPriceSeries(ticker).subMap(from, true, to, true).values().stream()
+                .collect(Collectors.toMap(PriceSeriesFiles.PriceRow::date, row -> toPrice(row, security)));
+    }
+
+    @Override
+    public Optional<Security> getSecurityDetails(String ticker) {
+        Security security = getSecurities().get(ticker);
+        if (security == null) {
+            log.debug("Could not get security details for ticker {}", ticker);
+            return Optional.empty();
+        }
+        // Callers may persist the security, so each gets a copy of its own
+        return Optional.of(new Security(security.getTicker(), security.getFullName(), security.getMarket(),
+                security.getCurrency()));
+    }
+
+    private Map<String, Security> getSecurities() {
+        if (securities == null) {
+            try {
+                securities = PriceSeriesFiles.readSecurities(directory);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not read the local securities in " + directory, e);
+            }
+        }
+        return securities;
+    }
+
+    private NavigableMap<LocalDate, PriceSeriesFiles.PriceRow> getPriceSeries(String ticker) {
+        return pricesByTicker.computeIfAbsent(ticker, t -> {
+            Path file = PriceSeriesFiles.pricesFile(directory, t);
+            if (!Files.exists(file)) {
+                throw new MissingDataException("No local stock prices for " + t + " in " + directory);
+            }
+            try {
+                return PriceSeriesFiles.readPrices(file);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not read the local stock prices of " + t, e);
+            }
+        });
+    }
+
+    private SecurityPrice toPrice(PriceSeriesFiles.PriceRow row, Security security) {
+        return SecurityPriceOfDay.builder()
+                .ticker(security.getTicker())
+                .date(row.date())
+                .currency(security.getCurrency())
+                .open(row.open())
+                .close(row.close())
+                .adjClose(row.adjClose())
+                .low(row.low())
+                .high(row.high())
+                .volume(row.volume())
+                .build();
+    }
+}
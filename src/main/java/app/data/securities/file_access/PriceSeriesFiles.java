@@ -0,0 +1,95 @@
+package app.data.securities.file_access;
+
+import app.data.securities.security.Security;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * <p>Reads and writes the local market data directory:</p>
+ * <ul>
+ *     <li>{@value #SECURITIES_FILE}: one line per security - ticker,market,currency,full name</li>
+ *     <li>{@code <ticker>.csv}: one line per trading day, in date order - date,open,high,low,close,adj_close,volume</li>
+ * </ul>
+ * <p>Both files start with a header line.</p>
+ */
+final class PriceSeriesFiles {
+
+    static final String SECURITIES_FILE = "securities.csv";
+    private static final String SECURITIES_HEADER = "ticker,market,currency,full_name";
+    private static final String PRICES_HEADER = "date,open,high,low,close,adj_close,volume";
+
+    private PriceSeriesFiles() {
+    }
+
+    static Path pricesFile(Path directory, String ticker) {
+        return directory.resolve(ticker + ".csv");
+    }
+
+    static Map<String, Security> readSecurities(Path directory) throws IOException {
+        Path file = directory.resolve(SECURITIES_FILE);
+        Map<String, Security> securities = new TreeMap<>();
+        if (!Files.exists(file)) {
+            return securities;
+        }
+        for (String line : dataLines(file)) {
+            // The full name comes last, so it may contain commas
+            String[] fields = line.split(",", 4);
+            securities.put(fields[0], new Security(fields[0], fields[3], fields[1], fields[2]));
+        }
+        return securities;
+    }
+
+    static void writeSecurities(Path directory, Collection<Security> securities) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(directory.resolve(SECURITIES_FILE))) {
+            writer.write(SECURITIES_HEADER);
+            writer.newLine();
+            for (Security security : securities) {
+                writer.write(String.join(",", security.getTicker(), security.getMarket(), security.getCurrency(),
+                        security.getFullName()));
+                writer.newLine();
+            }
+        }
+    }
+
+    static NavigableMap<LocalDate, PriceRow> readPrices(Path file) throws IOException {
+        NavigableMap<LocalDate, PriceRow> prices = new TreeMap<>();
+        for (String line : dataLines(file)) {
+            String[] fields = line.split(",");
+            LocalDate date = LocalDate.parse(fields[0]);
+            prices.put(date, new PriceRow(date, new BigDecimal(fields[1]), new BigDecimal(fields[2]),
+                    new BigDecimal(fields[3]), new BigDecimal(fields[4]), new BigDecimal(fields[5]),
+                    Long.parseLong(fields[6])));
+        }
+        return prices;
+    }
+
+    static void writePrices(Path file, Collection<PriceRow> prices) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+            writer.write(PRICES_HEADER);
+            writer.newLine();
+            for (PriceRow price : prices) {
+                writer.write(price.date() + "," + price.open().toPlainString() + "," + price.high().toPlainString()
+                        + "," + price.low().toPlainString() + "," + price.close().toPlainString() + ","
+                        + price.adjClose().toPlainString() + "," + price.volume());
+                writer.newLine();
+            }
+        }
+    }
+
+    private static List<String> dataLines(Path file) throws IOException {
+        return Files.readAllLines(file).stream()
+                .skip(1)
+                .filter(line -> !line.isBlank())
+                .toList();
+    }
+
+    record PriceRow(LocalDate date, BigDecimal open, BigDecimal high, BigDecimal low, BigDecimal close,
+                    BigDecimal adjClose, long volume) {
+    }
+}
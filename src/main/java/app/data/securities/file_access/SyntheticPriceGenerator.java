@@ -0,0 +1,92 @@
+package app.data.securities.file_access;
+
+import app.data.securities.security.Security;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static app.util.Weekdays.isWeekend;
+
+/**
+ * <p>Writes synthetic daily prices for the {@link FileRemoteSecurityService}, following a geometric Brownian motion:
+ * each weekday's close moves from the previous one by the drift and a normally distributed shock scaled by the
+ * volatility. The same seed always gives the same series.</p>
+ * <p>Usage: {@code SyntheticPriceGenerator <directory> <ticker> <currency> <from> <to> [seed]}</p>
+ */
+public final class SyntheticPriceGenerator {
+
+    private static final double TRADING_DAYS_PER_YEAR = 252;
+    private static final int PRICE_SCALE = 4;
+
+    private final Random random;
+    private final double annualDrift;
+    private final double annualVolatility;
+
+    public SyntheticPriceGenerator(long seed, double annualDrift, double annualVolatility) {
+        this.random = new Random(seed);
+        this.annualDrift = annualDrift;
+        this.annualVolatility = annualVolatility;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 5) {
+            System.err.println("Usage: SyntheticPriceGenerator <directory> <ticker> <currency> <from> <to> [seed]");
+            return;
+        }
+        long seed = args.length > 5 ? Long.parseLong(args[5]) : args[1].hashCode();
+        Path directory = Path.of(args[0]);
+        Files.createDirectories(directory);
+        new SyntheticPriceGenerator(seed, 0.07, 0.25).write(directory,
+                new Security(args[1], args[1] + " (synthetic)", "SYNTHETIC", args[2]),
+                LocalDate.parse(args[3]), LocalDate.parse(args[4]), BigDecimal.valueOf(100));
+    }
+
+    /**
+     * Writes the prices of the security for the weekdays of the period, replacing any series it had, and adds it to
+     * the securities of the directory.
+     */
+    public void write(Path directory, Security security, LocalDate from, LocalDate to, BigDecimal startPrice)
+            throws IOException {
+        PriceSeriesFiles.writePrices(PriceSeriesFiles.pricesFile(directory, security.getTicker()),
+                generate(from, to, startPrice.doubleValue()));
+
+        Map<String, Security> securities = PriceSeriesFiles.readSecurities(directory);
+        securities.put(security.getTicker(), security);
+        PriceSeriesFiles.writeSecurities(directory, securities.values());
+    }
+
+    private List<PriceSeriesFiles.PriceRow> generate(LocalDate from, LocalDate to, double startPrice) {
+        double dt = 1 / TRADING_DAYS_PER_YEAR;
+        double drift = (annualDrift - annualVolatility * annualVolatility / 2) * dt;
+        double shockScale = annualVolatility * Math.sqrt(dt);
+
+        List<PriceSeriesFiles.PriceRow> prices = new ArrayList<>();
+        double previousClose = startPrice;
+        for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+            if (isWeekend(date)) {
+                continue;
+            }
+            double open = previousClose;
+            double close = previousClose * Math.exp(drift + shockScale * random.nextGaussian());
+            double high = Math.max(open, close) * (1 + Math.abs(random.nextGaussian()) * shockScale / 2);
+            double low = Math.min(open, close) * (1 - Math.abs(random.nextGaussian()) * shockScale / 2);
+            long volume = 100_000 + random.nextInt(900_000);
+            prices.add(new PriceSeriesFiles.PriceRow(date, price(open), price(high), price(low), price(close),
+                    price(close), volume));
+            previousClose = close;
+        }
+        return prices;
+    }
+
+    private static BigDecimal price(double value) {
+        return BigDecimal.valueOf(value).setScale(PRICE_SCALE, RoundingMode.HALF_UP);
+    }
+}
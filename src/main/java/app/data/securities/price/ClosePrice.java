@@ -0,0 +1,17 @@
+package app.data.securities.price;
+
+import lombok.Value;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * The closing price of a security on a day, without the rest of the day's trading data.
+ */
+@Value
+public class ClosePrice implements SecurityPrice {
+    String ticker;
+    LocalDate date;
+    BigDecimal price;
+    String currency;
+}
@@ -0,0 +1,126 @@
+package app.data.securities.price;
+
+import app.util.DateRangeCache;
+import app.util.Weekdays;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * <p>The closing prices of securities held in memory, by ticker, in a {@link DateRangeCache}. Only the closing price
+ * of each day is read from the store.</p>
+ * <p>Alongside the periods searched remotely the trading calendar of each ticker is kept: a security seen not to
+ * trade on weekends is taken to have no weekend prices at all, so lookups for weekends need not go to the remote
+ * source either. The calendar is kept when the prices of the ticker are evicted.</p>
+ */
+@Component
+public class ClosePriceCache {
+
+    private final DateRangeCache<String, ClosePrice> prices;
+    // Absent until a weekend price or a searched weekend without one is seen
+    private final Map<String, Boolean> tradesOnWeekends = new ConcurrentHashMap<>();
+
+    public ClosePriceCache(SecurityPriceOfDayRepository priceRepository,
+                           @Value("${security-price.cache.max-prices:200000}") int maxPrices) {
+        prices = new DateRangeCache<>("prices",
+                (tickers, from, to) -> loadPrices(priceRepository, tickers, from, to), maxPrices);
+    }
+
+    /**
+     * Returns the closing price of the security exactly on the date, if the store has it.
+     */
+    public Optional<SecurityPrice> find(String ticker, LocalDate date) {
+        return prices.find(ticker, date).map(SecurityPrice.class::cast);
+    }
+
+    /**
+     * Returns the latest closing price of the security between the two dates (both inclusive), if the store has any.
+     */
+    public Optional<SecurityPrice> findLatest(String ticker, LocalDate earliest, LocalDate latest) {
+        return prices.findLatest(ticker, earliest, latest).map(SecurityPrice.class::cast);
+    }
+
+    /**
+     * Tells whether the remote source could not add a price of the security between the two dates later than the
+     * latest one held: the days after it were searched, or are weekends the security does not trade on.
+     */
+    public boolean hasNoPriceToFetch(String ticker, LocalDate earliest, LocalDate latest) {
+        boolean weekendsWithoutPrice = Boolean.FALSE.equals(tradesOnWeekends.get(ticker));
+        return prices.hasNoValueToFetch(ticker, earliest, latest,
+                date -> weekendsWithoutPrice && Weekdays.isWeekend(date));
+    }
+
+    /**
+     * Records that the remote source has been asked for the prices of the security between the two dates, and that
+     * all those it returned have been {@link #put} here. A period spanning a weekend without any weekend price shows
+     * that the security does not trade on weekends.
+     */
+    public void recordSearched(String ticker, LocalDate from, LocalDate to) {
+        if (to.isBefore(from)) {
+            return;
+        }
+        prices.recordSearched(ticker, from, to);
+        if (ChronoUnit.DAYS.between(from, to) >= 6) {
+            tradesOnWeekends.putIfAbsent(ticker, false);
+        }
+    }
+
+    /**
+     * Makes sure the prices of the security between the two dates are held in memory.
+     */
+    public void load(String ticker, LocalDate from, LocalDate to) {
+        prices.load(ticker, from, to);
+    }
+
+    /**
+     * Makes sure the prices of all the securities between the two dates are held in memory, reading those not held
+     * yet in a single query.
+     */
+    public void load(Collection<String> tickers, LocalDate from, LocalDate to) {
+        prices.load(tickers, from, to);
+    }
+
+    /**
+     * Returns the closing prices of the security between the two dates (both inclusive) by date.
+     */
+    public NavigableMap<LocalDate, SecurityPrice> findBetween(String ticker, LocalDate from, LocalDate to) {
+        return new TreeMap<>(prices.findBetween(ticker, from, to));
+    }
+
+    /**
+     * Adds a price that has just been saved to the store.
+     */
+    public void put(ClosePrice price) {
+        noteTradingDay(price);
+        prices.put(price.getTicker(), price.getDate(), price);
+    }
+
+    public long getHitCount() {
+        return prices.getHitCount();
+    }
+
+    public long getMissCount() {
+        return prices.getMissCount();
+    }
+
+    private Map<String, Map<LocalDate, ClosePrice>> loadPrices(
+            SecurityPriceOfDayRepository priceRepository, Collection<String> tickers, LocalDate from, LocalDate to) {
+        List<ClosePrice> loaded = tickers.size() == 1
+                ? priceRepository.findClosePrices(tickers.iterator().next(), from, to)
+                : priceRepository.findClosePricesOfTickers(tickers, from, to);
+        loaded.forEach(this::noteTradingDay);
+        return loaded.stream().collect(Collectors.groupingBy(ClosePrice::getTicker,
+                Collectors.toMap(ClosePrice::getDate, price -> price, (first, second) -> second)));
+    }
+
+    private void noteTradingDay(ClosePrice price) {
+        if (Weekdays.isWeekend(price.getDate())) {
+            tradesOnWeekends.put(price.getTicker(), true);
+        }
+    }
+}
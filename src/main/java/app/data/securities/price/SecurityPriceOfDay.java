@@ -8,7 +8,8 @@ import java.math.BigDecimal;
 import java.time.LocalDate;
 
 @Entity
-@Table(name = "security_prices")
+@Table(name = "security_prices", uniqueConstraints = @UniqueConstraint(name = "UK_security_prices_ticker_date",
+        columnNames = {"ticker", "date"}))
 @Getter
 @Setter
 @NoArgsConstructor
@@ -16,7 +17,8 @@ import java.time.LocalDate;
 @AllArgsConstructor
 public class SecurityPriceOfDay implements SecurityPrice {
     @Id
-    @GeneratedValue
+    @GeneratedValue(generator = "price_seq_gen")
+    @SequenceGenerator(name = "price_seq_gen", sequenceName = "price_seq")
     private Long id;
 
     private String ticker;
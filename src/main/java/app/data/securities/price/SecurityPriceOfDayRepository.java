@@ -1,14 +1,34 @@
 package app.data.securities.price;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface SecurityPriceOfDayRepository extends JpaRepository<SecurityPriceOfDay, Long> {
+public interface SecurityPriceOfDayRepository
+        extends JpaRepository<SecurityPriceOfDay, Long>, SecurityPriceOfDayRepositoryCustom {
     Optional<SecurityPrice> findByTickerAndDate(String ticker, LocalDate date);
 
-    long countByTickerAndDate(String ticker, LocalDate date);
+    @Query("SELECT p.date FROM SecurityPriceOfDay p WHERE p.ticker = :ticker AND p.date BETWEEN :from AND :to")
+    List<LocalDate> findStoredDates(@Param("ticker") String ticker,
+                                    @Param("from") LocalDate from,
+                                    @Param("to") LocalDate to);
+
+    @Query("SELECT new app.data.securities.price.ClosePrice(p.ticker, p.date, p.close, p.currency) " +
+            "FROM SecurityPriceOfDay p WHERE p.ticker = :ticker AND p.date BETWEEN :from AND :to")
+    List<ClosePrice> findClosePrices(@Param("ticker") String ticker,
+                                     @Param("from") LocalDate from,
+                                     @Param("to") LocalDate to);
+
+    @Query("SELECT new app.data.securities.price.ClosePrice(p.ticker, p.date, p.close, p.currency) " +
+            "FROM SecurityPriceOfDay p WHERE p.ticker IN :tickers AND p.date BETWEEN :from AND :to")
+    List<ClosePrice> findClosePricesOfTickers(@Param("tickers") Collection<String> tickers,
+                                              @Param("from") LocalDate from,
+                                              @Param("to") LocalDate to);
 }
@@ -0,0 +1,12 @@
+package app.data.securities.price;
+
+import java.util.Collection;
+
+public interface SecurityPriceOfDayRepositoryCustom {
+
+    /**
+     * Inserts the prices in a single JDBC batch, skipping those already stored for the same ticker and date. The
+     * unique key on the ticker and date keeps concurrent inserts of the same prices from storing them twice.
+     */
+    void insertMissing(Collection<SecurityPriceOfDay> prices);
+}
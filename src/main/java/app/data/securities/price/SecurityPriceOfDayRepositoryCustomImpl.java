@@ -0,0 +1,67 @@
+package app.data.securities.price;
+
+import app.util.BigDecimalConverter;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.id.IdentifierGenerator;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Collection;
+
+public class SecurityPriceOfDayRepositoryCustomImpl implements SecurityPriceOfDayRepositoryCustom {
+
+    // A price stored for the ticker and date in the meantime is kept as it is; other errors are not silenced
+    private static final String INSERT_SKIPPING_STORED = "INSERT INTO security_prices " +
+            "(id, ticker, date, currency, open, close, adj_close, low, high, volume) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?) ON DUPLICATE KEY UPDATE id = id";
+    private static final BigDecimalConverter AMOUNT_CONVERTER = new BigDecimalConverter();
+
+    @PersistenceContext
+    EntityManager entityManager;
+
+    @Override
+    @Transactional
+    public void insertMissing(Collection<SecurityPriceOfDay> prices) {
+        if (prices.isEmpty()) {
+            return;
+        }
+        SessionImplementor session = entityManager.unwrap(SessionImplementor.class);
+        // Ids are taken from the same pool as those of the prices saved through JPA
+        IdentifierGenerator idGenerator = session.getFactory().getMetamodel()
+                .entityPersister(SecurityPriceOfDay.class).getIdentifierGenerator();
+
+        session.doWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(INSERT_SKIPPING_STORED)) {
+                for (SecurityPriceOfDay price : prices) {
+                    statement.setLong(1, (Long) idGenerator.generate(session, price));
+                    statement.setString(2, price.getTicker());
+                    statement.setDate(3, Date.valueOf(price.getDate()));
+                    statement.setString(4, price.getCurrency());
+                    setAmount(statement, 5, price.getOpen());
+                    setAmount(statement, 6, price.getClose());
+                    setAmount(statement, 7, price.getAdjClose());
+                    setAmount(statement, 8, price.getLow());
+                    setAmount(statement, 9, price.getHigh());
+                    statement.setLong(10, price.getVolume());
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+        });
+    }
+
+    private static void setAmount(PreparedStatement statement, int index, BigDecimal amount) throws SQLException {
+        Long storedAmount = AMOUNT_CONVERTER.convertToDatabaseColumn(amount);
+        if (storedAmount == null) {
+            statement.setNull(index, Types.BIGINT);
+        } else {
+            statement.setLong(index, storedAmount);
+        }
+    }
+}
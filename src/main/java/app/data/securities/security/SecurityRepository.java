@@ -4,6 +4,8 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface SecurityRepository extends CrudRepository<Security, Long> {
@@ -12,6 +14,9 @@ public interface SecurityRepository extends CrudRepository<Security, Long> {
 
     int countByTicker(String ticker);
 
+    @Query("SELECT s.ticker FROM Security s WHERE s.ticker IN :tickers")
+    List<String> findStoredTickers(@Param("tickers") Collection<String> tickers);
+
     @Query("SELECT s.market FROM Security s WHERE s.id = :securityId")
     Optional<String> getMarketById(@Param("securityId") Long securityId);
 
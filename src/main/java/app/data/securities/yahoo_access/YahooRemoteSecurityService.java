@@ -1,10 +1,12 @@
 package app.data.securities.yahoo_access;
 
+import app.data.securities.file_access.FileRemoteSecurityService;
 import app.data.securities.price.SecurityPrice;
 import app.data.securities.price.SecurityPriceOfDay;
 import app.data.securities.security.Security;
 import app.util.MissingDataException;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Service;
 import yahoofinance.Stock;
 import yahoofinance.YahooFinance;
@@ -21,6 +23,7 @@ import java.util.Optional;
 import java.util.stream.Collectors;
 
 @Service
+@Profile("!" + FileRemoteSecurityService.OFFLINE_PROFILE)
 @Slf4j
 public class YahooRemoteSecurityService implements RemoteSecurityService {
 
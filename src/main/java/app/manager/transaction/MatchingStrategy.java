@@ -1,22 +1,8 @@
 package app.manager.transaction;
 
-import app.analysis.actual.SecurityPosition;
-
-import java.util.Comparator;
-import java.util.List;
-
+/**
+ * Order in which positions of a security are closed: oldest enter date first (FIFO) or newest first (LIFO).
+ */
 public enum MatchingStrategy {
-    FIFO {
-        @Override
-        public void sortSecurityPositions(List<SecurityPosition> securityPositions) {
-            securityPositions.sort(Comparator.comparing(SecurityPosition::getEnterDate));
-        }
-    }, LIFO {
-        @Override
-        public void sortSecurityPositions(List<SecurityPosition> securityPositions) {
-            securityPositions.sort(Comparator.comparing(SecurityPosition::getEnterDate).reversed());
-        }
-    };
-
-    public abstract void sortSecurityPositions(List<SecurityPosition> securityPositions);
+    FIFO, LIFO
 }
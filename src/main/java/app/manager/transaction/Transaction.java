@@ -11,7 +11,9 @@ import java.math.BigDecimal;
 import java.time.LocalDate;
 
 @Entity
-@Table(name = "transactions")
+@Table(name = "transactions", indexes = {
+        @Index(name = "IX_transactions_take_account_date", columnList = "take_account_id, date"),
+        @Index(name = "IX_transactions_add_account_date", columnList = "add_account_id, date")})
 @Getter
 @Setter
 @NoArgsConstructor
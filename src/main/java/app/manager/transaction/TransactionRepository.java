@@ -23,4 +23,6 @@ public interface TransactionRepository extends JpaRepository<Transaction, Long>
     List<Transaction> getTransactionsByTypeAndTakeAccount(
             @Param("accountId") Long accountId, @Param("transactionTypes") List<TransactionType> transactionTypes);
 
+    @Query("SELECT DISTINCT t.feeCurrency FROM Transaction t WHERE t.feeCurrency IS NOT NULL")
+    List<String> findFeeCurrencies();
 }
@@ -1,6 +1,7 @@
 package app.manager.transaction;
 
 import app.analysis.CashValue;
+import app.analysis.checkpoint.TrackerCheckpointService;
 import app.broker.account.BrokerAccount;
 import app.broker.account.BrokerAccountService;
 import app.broker.fees.FeeType;
@@ -11,16 +12,15 @@ import app.manager.transaction.asset_record.InvestmentAssetRecordService;
 import app.taxation.TbszValidator;
 import app.util.InvalidDataException;
 import lombok.AllArgsConstructor;
-import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.stereotype.Service;
 
 import javax.persistence.EntityManager;
 import javax.transaction.Transactional;
 import java.math.BigDecimal;
 import java.time.LocalDate;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @AllArgsConstructor
@@ -34,6 +34,7 @@ public class TransactionService {
     private final TbszValidator tbszValidator;
     private final TransactionMapper mapper;
     private final EntityManager entityManager;
+    private final TrackerCheckpointService checkpointService;
 
     // Queries
     public List<Transaction> getTransactions(List<Long> accountIds, LocalDate from, LocalDate to) {
@@ -54,6 +55,7 @@ public class TransactionService {
     public List<TransactionDto> addTransaction(CreateTransactionCommand command) {
         List<Transaction> transactions = getTransactions(command, ProcessType.ADD_FEES);
         transactionRepository.saveAll(transactions);
+        invalidateCheckpoints(transactions);
         return mapper.toDto(transactions);
     }
 
@@ -66,15 +68,29 @@ public class TransactionService {
                 .filter(t -> t.getTransactionType() == command.getTransactionType())
                 .findFirst().orElseThrow(() -> new IllegalStateException("No transaction matching type returned."));
         modifiedTransaction.setId(transaction.getId());
+        invalidateCheckpoints(List.of(transaction, modifiedTransaction));
         entityManager.merge(modifiedTransaction);
     }
 
     public void deleteTransaction(Long transactionId) {
-        try {
-            transactionRepository.deleteById(transactionId);
-        } catch (EmptyResultDataAccessException e) {
-            throw new InvalidDataException("No transaction found with database id: " + transactionId);
-        }
+        Transaction transaction = transactionRepository.findById(transactionId)
+                .orElseThrow(() -> new InvalidDataException("No transaction found with database id: " + transactionId));
+        transactionRepository.delete(transaction);
+        invalidateCheckpoints(List.of(transaction));
+    }
+
+    private void invalidateCheckpoints(List<Transaction> transactions) {
+        transactions.stream()
+                .map(Transaction::getDate)
+                .filter(Objects::nonNull)
+                .min(Comparator.naturalOrder())
+                .ifPresent(earliest -> checkpointService.invalidateCheckpoints(
+                        transactions.stream()
+                                .flatMap(t -> Stream.of(t.getTakeFromAccount(), t.getAddToAccount()))
+                                .filter(Objects::nonNull)
+                                .map(BrokerAccount::getId)
+                                .collect(Collectors.toSet()),
+                        earliest));
     }
 
     private List<Transaction> getTransactions(TransactionCommand command, ProcessType processType) {
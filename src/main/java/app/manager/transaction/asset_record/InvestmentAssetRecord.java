@@ -7,7 +7,8 @@ import lombok.Setter;
 import javax.persistence.*;
 
 @Entity
-@Table(name = "investment_asset_records")
+@Table(name = "investment_asset_records", uniqueConstraints = @UniqueConstraint(
+        name = "UK_investment_asset_records_type_asset", columnNames = {"type", "assetId"}))
 @Getter
 @Setter
 @NoArgsConstructor
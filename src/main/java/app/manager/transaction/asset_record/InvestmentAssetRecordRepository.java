@@ -4,6 +4,7 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.List;
 import java.util.Optional;
 
 public interface InvestmentAssetRecordRepository extends JpaRepository<InvestmentAssetRecord, Long> {
@@ -12,4 +13,8 @@ public interface InvestmentAssetRecordRepository extends JpaRepository<Investmen
 
     @Query("SELECT r FROM InvestmentAssetRecord r WHERE r.type = 'SECURITY' AND r.assetId = :securityId")
     Optional<InvestmentAssetRecord> findSecurityRecordById(@Param("securityId") Long securityId);
+
+    @Query("SELECT DISTINCT r.assetId FROM InvestmentAssetRecord r WHERE r.type = :type AND EXISTS " +
+            "(SELECT t.id FROM Transaction t WHERE t.assetAdded = r OR t.assetTaken = r)")
+    List<Long> findAssetIdsInTransactions(@Param("type") InvestmentAssetType type);
 }
@@ -3,28 +3,57 @@ package app.manager.transaction.asset_record;
 import app.data.DataService;
 import app.data.fx.currency.BasicCurrency;
 import app.data.securities.security.Security;
-import lombok.AllArgsConstructor;
+import app.util.BoundedCache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.util.Optional;
+import java.util.function.Supplier;
 
 @Service
-@AllArgsConstructor
 public class InvestmentAssetRecordService {
 
     private final InvestmentAssetRecordRepository assetRecordRepository;
     private final DataService dataService;
+    private final PlatformTransactionManager transactionManager;
+    // Each lookup gets a copy of its own, as the records end up in the transactions of different persistence contexts.
+    // There is a record per currency and security used, so with the limit of the reference data cache these hold every
+    // record in practice.
+    private final BoundedCache<Long, InvestmentAssetRecord> cashRecordsByCurrencyId;
+    private final BoundedCache<Long, InvestmentAssetRecord> securityRecordsBySecurityId;
+
+    public InvestmentAssetRecordService(InvestmentAssetRecordRepository assetRecordRepository,
+                                        DataService dataService,
+                                        PlatformTransactionManager transactionManager,
+                                        @Value("${reference-data.cache.max-entries:10000}") int maxCachedRecords) {
+        this.assetRecordRepository = assetRecordRepository;
+        this.dataService = dataService;
+        this.transactionManager = transactionManager;
+        cashRecordsByCurrencyId = new BoundedCache<>(maxCachedRecords, InvestmentAssetRecordService::copyOf);
+        securityRecordsBySecurityId = new BoundedCache<>(maxCachedRecords, InvestmentAssetRecordService::copyOf);
+    }
 
     public InvestmentAssetRecord getCashRecord(String currencyCode) {
         BasicCurrency currencyDetails = dataService.getCurrencyDetailsByCode(currencyCode);
 
+        Optional<InvestmentAssetRecord> cachedRecord = cashRecordsByCurrencyId.get(currencyDetails.getId());
+        if (cachedRecord.isPresent()) {
+            return cachedRecord.get();
+        }
         Optional<InvestmentAssetRecord> existingRecord =
                 assetRecordRepository.findCashRecordById(currencyDetails.getId());
         if (existingRecord.isPresent()) {
+            cashRecordsByCurrencyId.put(currencyDetails.getId(), existingRecord.get());
             return existingRecord.get();
         }
-        InvestmentAssetRecord newRecord = new InvestmentAssetRecord(InvestmentAssetType.CASH, currencyDetails.getId());
-        assetRecordRepository.save(newRecord);
+        InvestmentAssetRecord newRecord = saveUnlessStoredMeanwhile(
+                new InvestmentAssetRecord(InvestmentAssetType.CASH, currencyDetails.getId()),
+                () -> assetRecordRepository.findCashRecordById(currencyDetails.getId()));
+        cashRecordsByCurrencyId.put(currencyDetails.getId(), newRecord);
         return newRecord;
 
     }
@@ -32,12 +61,42 @@ public class InvestmentAssetRecordService {
     public InvestmentAssetRecord getSecurityRecord(String ticker) {
         Security security = dataService.getSecurityDetailsByTicker(ticker);
 
+        Optional<InvestmentAssetRecord> cachedRecord = securityRecordsBySecurityId.get(security.getId());
+        if (cachedRecord.isPresent()) {
+            return cachedRecord.get();
+        }
         Optional<InvestmentAssetRecord> existingRecord = assetRecordRepository.findSecurityRecordById(security.getId());
         if (existingRecord.isPresent()) {
+            securityRecordsBySecurityId.put(security.getId(), existingRecord.get());
             return existingRecord.get();
         }
-        InvestmentAssetRecord newRecord = new InvestmentAssetRecord(InvestmentAssetType.SECURITY, security.getId());
-        assetRecordRepository.save(newRecord);
+        InvestmentAssetRecord newRecord = saveUnlessStoredMeanwhile(
+                new InvestmentAssetRecord(InvestmentAssetType.SECURITY, security.getId()),
+                () -> assetRecordRepository.findSecurityRecordById(security.getId()));
+        securityRecordsBySecurityId.put(security.getId(), newRecord);
         return newRecord;
     }
+
+    /**
+     * Saves the new record in a transaction of its own. If the record of the asset has been stored by a concurrent
+     * first use since it was looked up, the unique key rejects the new one and the stored record is returned instead.
+     */
+    private InvestmentAssetRecord saveUnlessStoredMeanwhile(InvestmentAssetRecord newRecord,
+                                                            Supplier<Optional<InvestmentAssetRecord>> storedRecord) {
+        TransactionTemplate newTransaction = new TransactionTemplate(transactionManager);
+        newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        try {
+            newTransaction.executeWithoutResult(status -> assetRecordRepository.save(newRecord));
+            return newRecord;
+        } catch (DataIntegrityViolationException e) {
+            // Read in a new transaction as well, which sees the record committed by the other one
+            return newTransaction.execute(status -> storedRecord.get()).orElseThrow(() -> e);
+        }
+    }
+
+    private static InvestmentAssetRecord copyOf(InvestmentAssetRecord record) {
+        InvestmentAssetRecord copy = new InvestmentAssetRecord(record.getType(), record.getAssetId());
+        copy.setId(record.getId());
+        return copy;
+    }
 }
@@ -18,7 +18,9 @@ import java.time.LocalDate;
 import java.time.MonthDay;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 @Service
 @AllArgsConstructor
@@ -46,9 +48,12 @@ public class TbszCalculator {
                                     List<SecurityPosition> closedPositions, TaxDetails taxDetails) {
         CashValue eligibleCost = CashValue.of(BigDecimal.ZERO, taxDetails.getTaxationCurrency());
         LocalDate referenceDate = getTbszReferenceDate(account, closeDate);
+        Map<String, SecurityPrice> referencePrices = dataService.getSharePrices(closedPositions.stream()
+                .map(p -> p.getSecurity().getTicker())
+                .collect(Collectors.toSet()), referenceDate);
 
         for (SecurityPosition p : closedPositions) {
-            BigDecimal unitCost = getTbszCost(p, referenceDate, closeDate);
+            BigDecimal unitCost = getTbszCost(p, referencePrices.get(p.getSecurity().getTicker()), closeDate);
             eligibleCost = eligibleCost.add(unitCost.multiply(p.getCount()).multiply(dataService.getExchangeRate(
                     p.getEnteredAt().getCurrency(), taxDetails.getTaxationCurrency(), closeDate)));
         }
@@ -59,8 +64,7 @@ public class TbszCalculator {
                 .subtract(eligibleCost);
     }
 
-    private BigDecimal getTbszCost(SecurityPosition position, LocalDate referenceDate, LocalDate closeDate) {
-        SecurityPrice price = dataService.getSharePrice(position.getSecurity().getTicker(), referenceDate);
+    private BigDecimal getTbszCost(SecurityPosition position, SecurityPrice price, LocalDate closeDate) {
         BigDecimal currentPriceInTaxCurrency =
                 price.getPrice().multiply(
                         dataService.getExchangeRate(price.getCurrency(), position.getEnteredAt().getCurrency(),
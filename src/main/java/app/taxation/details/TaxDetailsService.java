@@ -1,5 +1,6 @@
 package app.taxation.details;
 
+import app.analysis.checkpoint.TrackerCheckpointService;
 import app.broker.BrokerEntityNotFoundException;
 import app.broker.UniqueViolationException;
 import lombok.AllArgsConstructor;
@@ -17,6 +18,7 @@ public class TaxDetailsService {
 
     private final TaxDetailsRepository taxDetailsRepository;
     private final TaxDetailMapper mapper;
+    private final TrackerCheckpointService checkpointService;
 
     public List<TaxDetailsDto> listTaxDetails() {
         return mapper.toDto(taxDetailsRepository.findAll());
@@ -30,6 +32,7 @@ public class TaxDetailsService {
                 taxDetails.getTaxResidence(), taxDetails.getFromDate(), taxDetails.getToDate());
         if (overlapping.isEmpty()) {
             taxDetailsRepository.save(taxDetails);
+            invalidateCheckpoints(taxDetails.getTaxResidence(), taxDetails.getFromDate());
             return mapper.toDto(taxDetails);
         }
         throw new UniqueViolationException("Existing tax details for " + command.getTaxResidence()
@@ -46,7 +49,9 @@ public class TaxDetailsService {
         List<TaxDetails> overlapping = taxDetailsRepository.findOthersForResidenceAndDate(
                 command.getTaxResidence(), command.getFromDate(), command.getToDate(), taxDetailId);
         if (overlapping.isEmpty()) {
+            invalidateCheckpoints(taxDetails.getTaxResidence(), taxDetails.getFromDate());
             taxDetails.loadFromCommand(command);
+            invalidateCheckpoints(taxDetails.getTaxResidence(), taxDetails.getFromDate());
             return;
         }
         throw new UniqueViolationException("Existing tax details for " + command.getTaxResidence()
@@ -62,10 +67,17 @@ public class TaxDetailsService {
     }
 
     public void deleteTaxDetail(Long taxDetailId) {
+        taxDetailsRepository.findById(taxDetailId)
+                .ifPresent(taxDetails -> invalidateCheckpoints(taxDetails.getTaxResidence(), taxDetails.getFromDate()));
         try {
             taxDetailsRepository.deleteById(taxDetailId);
         } catch (EmptyResultDataAccessException e) {
             throw new BrokerEntityNotFoundException("No tax detail found with database id: " + taxDetailId);
         }
     }
+
+    // Replays up to the start of the details did not use them, so only later checkpoints are affected
+    private void invalidateCheckpoints(String taxResidence, LocalDate fromDate) {
+        checkpointService.invalidateCheckpointsOfResidence(taxResidence, fromDate);
+    }
 }
@@ -0,0 +1,60 @@
+package app.util;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.UnaryOperator;
+
+/**
+ * <p>Holds up to a given number of values in memory, dropping the least recently used one when full. Meant for
+ * reference data that hardly ever changes once stored.</p>
+ * <p>The values are usually entities, which callers may change or attach to a persistence context of their own. So
+ * the cache holds a copy of each value put, and hands out a fresh copy on each get: no two callers share an
+ * instance.</p>
+ * <p>A value read or saved within a database transaction is only added once the transaction commits: a value saved by
+ * a transaction rolled back later must not be served.</p>
+ */
+public final class BoundedCache<K, V> {
+
+    private final Map<K, V> values;
+    private final UnaryOperator<V> copy;
+
+    public BoundedCache(int maxValues, UnaryOperator<V> copy) {
+        this.copy = copy;
+        values = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > maxValues;
+            }
+        };
+    }
+
+    public synchronized Optional<V> get(K key) {
+        return Optional.ofNullable(values.get(key)).map(copy);
+    }
+
+    public void put(K key, V value) {
+        V held = copy.apply(value);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    putNow(key, held);
+                }
+            });
+        } else {
+            putNow(key, held);
+        }
+    }
+
+    public synchronized int size() {
+        return values.size();
+    }
+
+    private synchronized void putNow(K key, V value) {
+        values.put(key, value);
+    }
+}
@@ -0,0 +1,232 @@
+package app.util;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * <p>Keeps values stored by key and date in memory, in one date-ordered map per key. Values are loaded from the store
+ * a range at a time, and the ranges loaded are recorded as well: a date inside a loaded range without a value has no
+ * value in the store either, so it is not queried again. Values saved to the store must also be {@link #put} here.</p>
+ * <p>The periods searched at the remote source are recorded too, so days in them without a value are known to have
+ * none to fetch.</p>
+ * <p>When more than the given number of values are held, the keys looked up least recently are dropped whole.</p>
+ */
+@Slf4j
+public final class DateRangeCache<K, V> {
+
+    // Callers walk through the history a day at a time, so each load takes a year on both sides of the lookup
+    static final int DAYS_LOADED_AROUND_LOOKUP = 366;
+
+    /**
+     * Reads the stored values of the keys between the two dates (both inclusive), by key and date.
+     */
+    @FunctionalInterface
+    public interface Loader<K, V> {
+        Map<K, Map<LocalDate, V>> load(Collection<K> keys, LocalDate from, LocalDate to);
+    }
+
+    private final String valueName;
+    private final Loader<K, V> loader;
+    private final int maxValues;
+    private final Map<K, KeyValues<V>> valuesByKey = new LinkedHashMap<>(16, 0.75f, true);
+    private int valueCount;
+    // Changes on a date whenever a value of the date is added, replaced or dropped, so views built from the values of
+    // a date can tell they are out of date. Read without the lock.
+    private final Map<LocalDate, Long> versionsByDate = new ConcurrentHashMap<>();
+    private long hitCount;
+    private long missCount;
+
+    /**
+     * @param valueName Names the values in the log, in plural.
+     */
+    public DateRangeCache(String valueName, Loader<K, V> loader, int maxValues) {
+        this.valueName = valueName;
+        this.loader = loader;
+        this.maxValues = maxValues;
+    }
+
+    /**
+     * Returns the value of the key exactly on the date, if the store has it.
+     */
+    public synchronized Optional<V> find(K key, LocalDate date) {
+        return Optional.ofNullable(getLoaded(key, date, date).values.get(date));
+    }
+
+    /**
+     * Returns the latest value of the key between the two dates (both inclusive), if the store has any.
+     */
+    public synchronized Optional<V> findLatest(K key, LocalDate earliest, LocalDate latest) {
+        Map.Entry<LocalDate, V> latestValue = getLoaded(key, earliest, latest).values.floorEntry(latest);
+        if (latestValue == null || latestValue.getKey().isBefore(earliest)) {
+            return Optional.empty();
+        }
+        return Optional.of(latestValue.getValue());
+    }
+
+    /**
+     * Returns the values of the key between the two dates (both inclusive) by date.
+     */
+    public synchronized NavigableMap<LocalDate, V> findBetween(K key, LocalDate from, LocalDate to) {
+        return new TreeMap<>(getLoaded(key, from, to).values.subMap(from, true, to, true));
+    }
+
+    /**
+     * Returns the values held in memory on the date, by key. Keys not loaded for the date are left out even if the
+     * store has their values.
+     */
+    public synchronized Map<K, V> findHeld(LocalDate date) {
+        Map<K, V> values = new HashMap<>();
+        valuesByKey.forEach((key, keyValues) -> {
+            V value = keyValues.values.get(date);
+            if (value != null) {
+                values.put(key, value);
+            }
+        });
+        return values;
+    }
+
+    /**
+     * Tells whether every day after the latest value of the key between the two dates is known to have no value, so
+     * the remote source could not add a later one. With no value in the period, every day of it must be known. Days
+     * are known either from the searched periods or from the given test.
+     */
+    public synchronized boolean hasNoValueToFetch(K key, LocalDate earliest, LocalDate latest,
+                                                  Predicate<LocalDate> knownWithoutValue) {
+        KeyValues<V> keyValues = getLoaded(key, earliest, latest);
+        LocalDate latestValueDate = keyValues.values.floorKey(latest);
+        LocalDate day = latestValueDate == null || latestValueDate.isBefore(earliest)
+                ? earliest
+                : latestValueDate.plusDays(1);
+        for (; !day.isAfter(latest); day = day.plusDays(1)) {
+            if (!keyValues.searchedRanges.contains(day, day) && !knownWithoutValue.test(day)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Records that the remote source has been asked for the values of the key between the two dates, and that all
+     * those it returned have been {@link #put} here.
+     */
+    public synchronized void recordSearched(K key, LocalDate from, LocalDate to) {
+        if (to.isBefore(from)) {
+            return;
+        }
+        getLoaded(key, from, to).searchedRanges.add(from, to);
+    }
+
+    /**
+     * Makes sure the values of the key between the two dates are held in memory.
+     */
+    public synchronized void load(K key, LocalDate from, LocalDate to) {
+        getLoaded(key, from, to);
+    }
+
+    /**
+     * Makes sure the values of all the keys between the two dates are held in memory, reading those not held yet in
+     * a single load.
+     */
+    public synchronized void load(Collection<K> keys, LocalDate from, LocalDate to) {
+        List<K> notLoaded = new ArrayList<>();
+        for (K key : keys) {
+            KeyValues<V> keyValues = valuesByKey.computeIfAbsent(key, k -> new KeyValues<>());
+            if (keyValues.loadedRanges.contains(from, to)) {
+                hitCount++;
+            } else {
+                missCount++;
+                notLoaded.add(key);
+            }
+        }
+        if (!notLoaded.isEmpty()) {
+            loadAround(notLoaded, from, to);
+            evictIfFull(keys);
+        }
+    }
+
+    /**
+     * Adds a value that has just been saved to the store. A key not held yet gets it from the store with its first
+     * load.
+     */
+    public synchronized void put(K key, LocalDate date, V value) {
+        KeyValues<V> keyValues = valuesByKey.get(key);
+        if (keyValues != null) {
+            add(keyValues, date, value);
+        }
+    }
+
+    /**
+     * Returns the version of the values held on the date, which changes whenever one of them is added, replaced or
+     * dropped. Does not wait for the lock.
+     */
+    public long getVersion(LocalDate date) {
+        return versionsByDate.getOrDefault(date, 0L);
+    }
+
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    private KeyValues<V> getLoaded(K key, LocalDate from, LocalDate to) {
+        KeyValues<V> keyValues = valuesByKey.computeIfAbsent(key, k -> new KeyValues<>());
+        if (keyValues.loadedRanges.contains(from, to)) {
+            hitCount++;
+            return keyValues;
+        }
+
+        missCount++;
+        loadAround(List.of(key), from, to);
+        evictIfFull(List.of(key));
+        return keyValues;
+    }
+
+    private void loadAround(List<K> keys, LocalDate from, LocalDate to) {
+        LocalDate loadFrom = from.minusDays(DAYS_LOADED_AROUND_LOOKUP);
+        LocalDate loadTo = to.plusDays(DAYS_LOADED_AROUND_LOOKUP);
+        loader.load(keys, loadFrom, loadTo).forEach((key, values) -> {
+            KeyValues<V> keyValues = valuesByKey.get(key);
+            if (keyValues != null) {
+                values.forEach((date, value) -> add(keyValues, date, value));
+            }
+        });
+        keys.forEach(key -> valuesByKey.get(key).loadedRanges.add(loadFrom, loadTo));
+    }
+
+    private void add(KeyValues<V> keyValues, LocalDate date, V value) {
+        V previous = keyValues.values.put(date, value);
+        if (previous == null) {
+            valueCount++;
+        }
+        if (!value.equals(previous)) {
+            versionsByDate.merge(date, 1L, Long::sum);
+        }
+    }
+
+    private void evictIfFull(Collection<K> keysInUse) {
+        Iterator<Map.Entry<K, KeyValues<V>>> leastRecentlyUsed = valuesByKey.entrySet().iterator();
+        while (valueCount > maxValues && leastRecentlyUsed.hasNext()) {
+            Map.Entry<K, KeyValues<V>> entry = leastRecentlyUsed.next();
+            if (!keysInUse.contains(entry.getKey())) {
+                log.debug("Evicting {} {} of {} from the cache", entry.getValue().values.size(), valueName,
+                        entry.getKey());
+                valueCount -= entry.getValue().values.size();
+                entry.getValue().values.keySet().forEach(date -> versionsByDate.merge(date, 1L, Long::sum));
+                leastRecentlyUsed.remove();
+            }
+        }
+    }
+
+    private static final class KeyValues<V> {
+        private final NavigableMap<LocalDate, V> values = new TreeMap<>();
+        private final LoadedDateRanges loadedRanges = new LoadedDateRanges();
+        private final LoadedDateRanges searchedRanges = new LoadedDateRanges();
+    }
+}
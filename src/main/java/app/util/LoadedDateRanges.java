@@ -0,0 +1,41 @@
+package app.util;
+
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * The date ranges for which data has been loaded into memory. Overlapping and adjacent ranges are merged as they are
+ * added, so a period inside any run of loads is found in a single lookup.
+ */
+public final class LoadedDateRanges {
+
+    // Disjoint, non-adjacent loaded ranges: start date -> end date, both inclusive
+    private final NavigableMap<LocalDate, LocalDate> ranges = new TreeMap<>();
+
+    public boolean contains(LocalDate from, LocalDate to) {
+        Map.Entry<LocalDate, LocalDate> range = ranges.floorEntry(from);
+        return range != null && !range.getValue().isBefore(to);
+    }
+
+    public void add(LocalDate from, LocalDate to) {
+        LocalDate start = from;
+        LocalDate end = to;
+        Map.Entry<LocalDate, LocalDate> before = ranges.floorEntry(from);
+        if (before != null && !before.getValue().plusDays(1).isBefore(from)) {
+            start = before.getKey();
+            end = max(end, before.getValue());
+        }
+        Map.Entry<LocalDate, LocalDate> after;
+        while ((after = ranges.ceilingEntry(start)) != null && !after.getKey().isAfter(end.plusDays(1))) {
+            end = max(end, after.getValue());
+            ranges.remove(after.getKey());
+        }
+        ranges.put(start, end);
+    }
+
+    private static LocalDate max(LocalDate first, LocalDate second) {
+        return first.isAfter(second) ? first : second;
+    }
+}
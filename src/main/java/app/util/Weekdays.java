@@ -0,0 +1,31 @@
+package app.util;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+public final class Weekdays {
+
+    private Weekdays() {
+    }
+
+    /**
+     * Returns the weekdays between the two dates (both inclusive) that are not among the given dates, in order. Markets
+     * and the MNB publish nothing on weekends, so those days are never reported missing.
+     */
+    public static List<LocalDate> missingBetween(Collection<LocalDate> presentDates, LocalDate from, LocalDate to) {
+        List<LocalDate> missingDates = new ArrayList<>();
+        for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+            if (!isWeekend(date) && !presentDates.contains(date)) {
+                missingDates.add(date);
+            }
+        }
+        return missingDates;
+    }
+
+    public static boolean isWeekend(LocalDate date) {
+        return date.getDayOfWeek() == DayOfWeek.SATURDAY || date.getDayOfWeek() == DayOfWeek.SUNDAY;
+    }
+}
@@ -0,0 +1,23 @@
+-- tracker_checkpoints definition
+-- An empty tax residence stands for none: NULLs would count as distinct in the unique key.
+
+CREATE TABLE `tracker_checkpoints` (
+  `id` bigint(20) NOT NULL AUTO_INCREMENT,
+  `account_set` varchar(500) COLLATE utf8mb4_hungarian_ci NOT NULL,
+  `tax_residence` varchar(255) COLLATE utf8mb4_hungarian_ci NOT NULL DEFAULT '',
+  `checkpoint_date` date NOT NULL,
+  `state` longtext COLLATE utf8mb4_hungarian_ci NOT NULL,
+  PRIMARY KEY (`id`),
+  UNIQUE KEY `UK_tracker_checkpoints_set_residence_date` (`account_set`, `tax_residence`, `checkpoint_date`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_hungarian_ci;
+
+
+-- tracker_checkpoint_accounts definition
+
+CREATE TABLE `tracker_checkpoint_accounts` (
+  `checkpoint_id` bigint(20) NOT NULL,
+  `account_id` bigint(20) NOT NULL,
+  KEY `IX_tracker_checkpoint_accounts_account` (`account_id`),
+  KEY `FK_tracker_checkpoint_accounts_checkpoint` (`checkpoint_id`),
+  CONSTRAINT `FK_tracker_checkpoint_accounts_checkpoint` FOREIGN KEY (`checkpoint_id`) REFERENCES `tracker_checkpoints` (`id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
@@ -0,0 +1,12 @@
+-- exchange_rates: one rate per currency pair and date
+
+DELETE duplicate FROM `exchange_rates` duplicate
+JOIN `exchange_rates` kept
+  ON duplicate.`source_iso_abbreviation` = kept.`source_iso_abbreviation`
+  AND duplicate.`destination_iso_abbreviation` = kept.`destination_iso_abbreviation`
+  AND duplicate.`date` = kept.`date`
+  AND duplicate.`id` > kept.`id`;
+
+ALTER TABLE `exchange_rates`
+  ADD UNIQUE KEY `UK_exchange_rates_source_destination_date`
+    (`source_iso_abbreviation`, `destination_iso_abbreviation`, `date`);
@@ -0,0 +1,21 @@
+-- price_seq definition
+-- Prices take their ids from a pooled sequence of their own, so they can be inserted in batches. The pooled generator
+-- hands out the ids below the value it reads, hence the allocation size added above the ids in use.
+
+CREATE TABLE `price_seq` (
+  `next_val` bigint(20) DEFAULT NULL
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_hungarian_ci;
+
+INSERT INTO `price_seq` SELECT COALESCE(MAX(`id`), 0) + 51 FROM `security_prices`;
+
+
+-- security_prices: one price per ticker and date
+
+DELETE duplicate FROM `security_prices` duplicate
+JOIN `security_prices` kept
+  ON duplicate.`ticker` = kept.`ticker`
+  AND duplicate.`date` = kept.`date`
+  AND duplicate.`id` > kept.`id`;
+
+ALTER TABLE `security_prices`
+  ADD UNIQUE KEY `UK_security_prices_ticker_date` (`ticker`, `date`);
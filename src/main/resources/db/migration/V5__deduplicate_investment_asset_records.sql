@@ -0,0 +1,28 @@
+-- investment_asset_records: merge the duplicate records of an asset
+-- The first record of each asset type and asset is kept. Transactions pointing at a duplicate record are moved to it
+-- before the duplicates are deleted, so that the unique key of V6 can be added.
+
+CREATE TEMPORARY TABLE `kept_asset_records` AS
+  SELECT `type`, `asset_id`, MIN(`id`) AS `kept_id`
+  FROM `investment_asset_records`
+  GROUP BY `type`, `asset_id`;
+
+UPDATE `transactions` t
+JOIN `investment_asset_records` r ON t.`asset_added_record_id` = r.`id`
+JOIN `kept_asset_records` k ON r.`type` = k.`type` AND r.`asset_id` = k.`asset_id`
+SET t.`asset_added_record_id` = k.`kept_id`
+WHERE r.`id` <> k.`kept_id`;
+
+UPDATE `transactions` t
+JOIN `investment_asset_records` r ON t.`asset_taken_record_id` = r.`id`
+JOIN `kept_asset_records` k ON r.`type` = k.`type` AND r.`asset_id` = k.`asset_id`
+SET t.`asset_taken_record_id` = k.`kept_id`
+WHERE r.`id` <> k.`kept_id`;
+
+DROP TEMPORARY TABLE `kept_asset_records`;
+
+DELETE duplicate FROM `investment_asset_records` duplicate
+JOIN `investment_asset_records` kept
+  ON duplicate.`type` = kept.`type`
+  AND duplicate.`asset_id` = kept.`asset_id`
+  AND duplicate.`id` > kept.`id`;
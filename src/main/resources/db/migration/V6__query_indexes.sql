@@ -0,0 +1,16 @@
+-- transactions: looked up by account and date range
+-- The account keys lead with the foreign key columns, so they take over from the single column keys of the foreign
+-- keys.
+
+ALTER TABLE `transactions`
+  ADD KEY `IX_transactions_take_account_date` (`take_account_id`, `date`),
+  ADD KEY `IX_transactions_add_account_date` (`add_account_id`, `date`),
+  DROP KEY `FKin5np832sahgskt5xwv6pbsqd`,
+  DROP KEY `FKhmg5iyi54kjkpres5aylce9g3`;
+
+
+-- investment_asset_records: one record per asset type and asset
+-- Duplicates are merged by V5 beforehand.
+
+ALTER TABLE `investment_asset_records`
+  ADD UNIQUE KEY `UK_investment_asset_records_type_asset` (`type`, `asset_id`);
@@ -0,0 +1,228 @@
+package app;
+
+import app.broker.account.BrokerAccount;
+import app.data.fx.rate.ExchangeRateRepository;
+import app.data.fx.rate.StoredRate;
+import app.data.securities.price.SecurityPriceOfDay;
+import app.data.securities.price.SecurityPriceOfDayRepository;
+import app.manager.transaction.Transaction;
+import app.manager.transaction.TransactionRepository;
+import app.manager.transaction.TransactionType;
+import app.manager.transaction.asset_record.InvestmentAssetRecord;
+import app.manager.transaction.asset_record.InvestmentAssetRecordRepository;
+import app.manager.transaction.asset_record.InvestmentAssetType;
+import org.hibernate.Session;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+
+import javax.persistence.EntityManager;
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Calls the frequent repository queries against a seeded schema, runs EXPLAIN on the SQL Hibernate generated for them,
+ * and fails if any table is read in full or the query does not use the index meant for it.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+        + "app.QueryPlanTest$RecordingStatementInspector")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class QueryPlanTest {
+
+    static final int ACCOUNT_COUNT = 50;
+    static final int ASSET_COUNT = 20;
+    static final int DAY_COUNT = 200;
+    static final LocalDate FIRST_DAY = LocalDate.of(2000, 1, 1);
+
+    // Column positions in the rows of MariaDB's EXPLAIN
+    static final int TABLE_COLUMN = 2;
+    static final int TYPE_COLUMN = 3;
+    static final int KEY_COLUMN = 5;
+
+    @Autowired
+    EntityManager entityManager;
+    @Autowired
+    TransactionRepository transactionRepository;
+    @Autowired
+    ExchangeRateRepository exchangeRateRepository;
+    @Autowired
+    SecurityPriceOfDayRepository priceRepository;
+    @Autowired
+    InvestmentAssetRecordRepository assetRecordRepository;
+
+    List<BrokerAccount> accounts = new ArrayList<>();
+
+    @BeforeEach
+    void init() {
+        for (int i = 0; i < ACCOUNT_COUNT; i++) {
+            BrokerAccount account = new BrokerAccount();
+            entityManager.persist(account);
+            accounts.add(account);
+        }
+        List<InvestmentAssetRecord> records = new ArrayList<>();
+        for (long assetId = 1; assetId <= ASSET_COUNT; assetId++) {
+            for (InvestmentAssetType type : InvestmentAssetType.values()) {
+                InvestmentAssetRecord record = new InvestmentAssetRecord(type, assetId);
+                entityManager.persist(record);
+                records.add(record);
+            }
+        }
+
+        for (int day = 0; day < DAY_COUNT; day++) {
+            LocalDate date = FIRST_DAY.plusDays(day);
+            for (int asset = 0; asset < ASSET_COUNT; asset++) {
+                entityManager.persist(new StoredRate("C" + asset, "HUF", date, BigDecimal.TEN));
+                entityManager.persist(SecurityPriceOfDay.builder()
+                        .ticker("T" + asset).date(date).currency("USD").close(BigDecimal.TEN).build());
+            }
+            for (int i = 0; i < 5; i++) {
+                int transaction = day * 5 + i;
+                entityManager.persist(Transaction.builder(date, TransactionType.values()[transaction % 7])
+                        .take(BigDecimal.ONE, records.get(transaction % records.size()),
+                                accounts.get(transaction % ACCOUNT_COUNT))
+                        .add(BigDecimal.ONE, records.get((transaction + 1) % records.size()),
+                                accounts.get((transaction + 7) % ACCOUNT_COUNT))
+                        .build());
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+        RecordingStatementInspector.clear();
+    }
+
+    @Test
+    void exchangeRatesOfCurrencyPairInPeriod() {
+        exchangeRateRepository.findRates("C3", "HUF", FIRST_DAY.plusDays(20), FIRST_DAY.plusDays(50));
+
+        assertIndexUsed(explainLastQuery("C3", "HUF", FIRST_DAY.plusDays(20), FIRST_DAY.plusDays(50)),
+                "UK_exchange_rates_source_destination_date");
+    }
+
+    @Test
+    void closePricesOfTickerInPeriod() {
+        priceRepository.findClosePrices("T3", FIRST_DAY.plusDays(20), FIRST_DAY.plusDays(50));
+
+        assertIndexUsed(explainLastQuery("T3", FIRST_DAY.plusDays(20), FIRST_DAY.plusDays(50)),
+                "UK_security_prices_ticker_date");
+    }
+
+    @Test
+    void closePricesOfTickersInPeriod() {
+        priceRepository.findClosePricesOfTickers(List.of("T3", "T4"), FIRST_DAY.plusDays(20),
+                FIRST_DAY.plusDays(50));
+
+        assertIndexUsed(explainLastQuery("T3", "T4", FIRST_DAY.plusDays(20), FIRST_DAY.plusDays(50)),
+                "UK_security_prices_ticker_date");
+    }
+
+    @Test
+    void transactionsOnAccountsInPeriod() {
+        Long accountId = accounts.get(3).getId();
+        transactionRepository.getTransactionsOnAccountsInPeriod(List.of(accountId), FIRST_DAY.plusDays(20),
+                FIRST_DAY.plusDays(50));
+
+        // The account list and both dates are each bound twice
+        List<Object[]> plan = explainLastQuery(accountId, accountId, FIRST_DAY.plusDays(20), FIRST_DAY.plusDays(20),
+                FIRST_DAY.plusDays(50), FIRST_DAY.plusDays(50));
+        assertIndexUsed(plan, "IX_transactions_take_account_date");
+        assertIndexUsed(plan, "IX_transactions_add_account_date");
+    }
+
+    @Test
+    void transactionsByTypeAndTakeAccount() {
+        Long accountId = accounts.get(3).getId();
+        transactionRepository.getTransactionsByTypeAndTakeAccount(accountId,
+                List.of(TransactionType.ENTER_INVESTMENT, TransactionType.EXIT_INVESTMENT));
+
+        assertIndexUsed(explainLastQuery(accountId, TransactionType.ENTER_INVESTMENT.name(),
+                TransactionType.EXIT_INVESTMENT.name()), "IX_transactions_take_account_date");
+    }
+
+    @Test
+    void cashRecordOfAsset() {
+        assetRecordRepository.findCashRecordById(7L);
+
+        assertIndexUsed(explainLastQuery(7L), "UK_investment_asset_records_type_asset");
+    }
+
+    @Test
+    void securityRecordOfAsset() {
+        assetRecordRepository.findSecurityRecordById(7L);
+
+        assertIndexUsed(explainLastQuery(7L), "UK_investment_asset_records_type_asset");
+    }
+
+    /**
+     * Runs EXPLAIN on the last SQL query Hibernate sent, binding the parameters in the order of its placeholders.
+     */
+    List<Object[]> explainLastQuery(Object... parameters) {
+        String sql = RecordingStatementInspector.getLastQuery();
+        assertNotNull(sql, "No query was sent");
+        assertEquals(parameters.length, sql.chars().filter(c -> c == '?').count(), () -> "Parameters of " + sql);
+        return entityManager.unwrap(Session.class).doReturningWork(connection -> {
+            try (PreparedStatement explain = connection.prepareStatement("EXPLAIN " + sql)) {
+                for (int i = 0; i < parameters.length; i++) {
+                    Object parameter = parameters[i];
+                    explain.setObject(i + 1,
+                            parameter instanceof LocalDate date ? java.sql.Date.valueOf(date) : parameter);
+                }
+                List<Object[]> plan = new ArrayList<>();
+                try (ResultSet rows = explain.executeQuery()) {
+                    int columnCount = rows.getMetaData().getColumnCount();
+                    while (rows.next()) {
+                        Object[] row = new Object[columnCount];
+                        for (int column = 0; column < columnCount; column++) {
+                            row[column] = rows.getObject(column + 1);
+                        }
+                        plan.add(row);
+                    }
+                }
+                return plan;
+            }
+        });
+    }
+
+    void assertIndexUsed(List<Object[]> plan, String index) {
+        for (Object[] row : plan) {
+            assertNotEquals("ALL", row[TYPE_COLUMN], () -> "Full scan of " + row[TABLE_COLUMN]);
+        }
+        assertTrue(plan.stream()
+                        .filter(row -> row[KEY_COLUMN] != null)
+                        .anyMatch(row -> Arrays.asList(row[KEY_COLUMN].toString().split(",")).contains(index)),
+                () -> index + " not used");
+    }
+
+    /**
+     * Keeps the last SELECT Hibernate prepares, so the tests explain the SQL the repositories actually send.
+     */
+    public static class RecordingStatementInspector implements StatementInspector {
+
+        private static volatile String lastQuery;
+
+        static String getLastQuery() {
+            return lastQuery;
+        }
+
+        static void clear() {
+            lastQuery = null;
+        }
+
+        @Override
+        public String inspect(String sql) {
+            if (sql.trim().toLowerCase().startsWith("select")) {
+                lastQuery = sql;
+            }
+            return sql;
+        }
+    }
+}
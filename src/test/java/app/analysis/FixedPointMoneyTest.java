@@ -0,0 +1,85 @@
+package app.analysis;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FixedPointMoneyTest {
+
+    @Test
+    void convertingKeepsValueAndScale() {
+        for (String amount : new String[]{"0", "0.00", "1", "-2.5", "10.50", "1E+1", "0.000001", "12.3456789",
+                "-0.0000019", "1.00000000", "99999999999999.999999"}) {
+            assertEquals(new BigDecimal(amount), FixedPointMoney.of(new BigDecimal(amount)).toBigDecimal(), amount);
+        }
+        assertEquals(CashValue.of("10.50", "EUR"), FixedPointMoney.of(CashValue.of("10.50", "EUR")).toCashValue("EUR"));
+    }
+
+    @Test
+    void onlyAmountsThatFitAreHeldInMicros() {
+        assertTrue(FixedPointMoney.of(new BigDecimal("-2.5")).isInMicros());
+        assertTrue(FixedPointMoney.of(new BigDecimal("1.00000000")).isInMicros());
+        assertTrue(FixedPointMoney.of(new BigDecimal("1E+10")).isInMicros());
+        assertFalse(FixedPointMoney.of(new BigDecimal("0.0000025")).isInMicros());
+        assertFalse(FixedPointMoney.of(new BigDecimal("1E+20")).isInMicros());
+    }
+
+    @Test
+    void arithmeticMatchesBigDecimal() {
+        String[] amounts = {"0", "1.50", "-0.5", "1E+1", "0.0000025", "0.0000035", "-12.3456789", "1E+20", "3.000"};
+        for (String first : amounts) {
+            for (String second : amounts) {
+                BigDecimal a = new BigDecimal(first);
+                BigDecimal b = new BigDecimal(second);
+                String operands = first + ", " + second;
+                assertEquals(a.add(b), FixedPointMoney.of(a).add(FixedPointMoney.of(b)).toBigDecimal(), operands);
+                assertEquals(a.subtract(b), FixedPointMoney.of(a).subtract(FixedPointMoney.of(b)).toBigDecimal(),
+                        operands);
+                assertEquals(a.multiply(b), FixedPointMoney.of(a).multiply(b).toBigDecimal(), operands);
+                assertEquals(Integer.signum(a.compareTo(b)),
+                        Integer.signum(FixedPointMoney.of(a).compareTo(FixedPointMoney.of(b))), operands);
+            }
+            assertEquals(new BigDecimal(first).negate(),
+                    FixedPointMoney.of(new BigDecimal(first)).negate().toBigDecimal(), first);
+        }
+    }
+
+    @Test
+    void sumsBackInMicrosAreHeldInMicrosAgain() {
+        FixedPointMoney half = FixedPointMoney.of(new BigDecimal("0.0000005"));
+        FixedPointMoney sum = half.add(half);
+
+        assertTrue(sum.isInMicros());
+        assertEquals(new BigDecimal("0.0000010"), sum.toBigDecimal());
+        assertEquals(FixedPointMoney.of(new BigDecimal("0.0000010")), sum);
+    }
+
+    @Test
+    void overflowingSumsStayExact() {
+        FixedPointMoney max = FixedPointMoney.of(BigDecimal.valueOf(Long.MAX_VALUE, FixedPointMoney.SCALE));
+        FixedPointMoney sum = max.add(FixedPointMoney.of(BigDecimal.ONE));
+
+        assertFalse(sum.isInMicros());
+        assertEquals(BigDecimal.valueOf(Long.MAX_VALUE, FixedPointMoney.SCALE).add(BigDecimal.ONE),
+                sum.toBigDecimal());
+        assertEquals(max, sum.subtract(FixedPointMoney.of(BigDecimal.ONE)));
+    }
+
+    @Test
+    void longReplayOfConvertedAmountsDoesNotDrift() {
+        BigDecimal rate = BigDecimal.ONE.divide(new BigDecimal("387.27"), MathContext.DECIMAL64);
+        BigDecimal expected = BigDecimal.ZERO;
+        FixedPointMoney balance = FixedPointMoney.ZERO;
+        for (int i = 1; i <= 10_000; i++) {
+            BigDecimal converted = new BigDecimal(i).multiply(rate);
+            expected = i % 3 == 0 ? expected.subtract(converted) : expected.add(converted);
+            balance = i % 3 == 0
+                    ? balance.subtract(FixedPointMoney.of(converted))
+                    : balance.add(FixedPointMoney.of(converted));
+        }
+        assertEquals(expected, balance.toBigDecimal());
+    }
+}
@@ -1,7 +1,11 @@
 package app.analysis;
 
 import app.analysis.liquid.LiquidValueDto;
+import app.analysis.liquid.LiquidValueKey;
 import app.analysis.liquid.LiquidValueOrchestrator;
+import app.analysis.liquid.LiquidValuePointDto;
+import app.analysis.liquid.PortfolioLiquidValueDto;
+import app.analysis.liquid.ValuationStep;
 import app.analysis.portfolio.PortfolioService;
 import app.analysis.tracker.ActualPositionTracker;
 import app.analysis.tracker.LiquidPositionTracker;
@@ -15,12 +19,18 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -71,10 +81,69 @@ class InvestmentAnalysisServiceTest {
         assertNull(liquidValueDto.getInvestmentReturnInPercent());
     }
 
+    @Test
+    void gettingMonthlyLiquidValueSeries() {
+        List<LocalDate> valueDates =
+                List.of(LocalDate.of(2000, 1, 31), LocalDate.of(2000, 2, 29), LocalDate.of(2000, 3, 31));
+        when(portfolioService.getAccountIdsInPortfolio("portfolio"))
+                .thenReturn(Set.of(1L));
+        when(liquidValueOrchestrator.getLiquidPositionTrackers(List.of(1L), "HU", valueDates, "GBP"))
+                .thenReturn(valueDates.stream().map(this::basicLiquidPositionTracker));
+        when(investmentArithmetic.getLifetimeReturnInPercent(any(), eq("GBP")))
+                .thenReturn(10.234);
+
+        List<LiquidValuePointDto> points = investmentAnalysisService.getLiquidValueSeries("portfolio", "HU", "GBP",
+                LocalDate.of(2000, 1, 31), LocalDate.of(2000, 4, 29), ValuationStep.MONTHLY).toList();
+
+        assertEquals(valueDates, points.stream().map(LiquidValuePointDto::getValueDate).toList());
+        assertEquals(new CashValue(BigDecimal.TEN, "GBP"), points.get(2).getFullyLiquidValue());
+        assertEquals(10.234, points.get(2).getInvestmentReturnInPercent());
+    }
+
+    @Test
+    void gettingLiquidValueSeriesForInvalidPeriod() {
+        assertThrows(InvalidDataException.class, () -> investmentAnalysisService.getLiquidValueSeries("portfolio",
+                "HU", "GBP", LocalDate.of(2000, 2, 1), LocalDate.of(2000, 1, 1), ValuationStep.DAILY));
+        assertThrows(InvalidDataException.class, () -> investmentAnalysisService.getLiquidValueSeries("portfolio",
+                "HU", "GBP", LocalDate.of(2000, 1, 1), LocalDate.of(2000, 2, 1), null));
+        verifyNoInteractions(liquidValueOrchestrator);
+    }
+
+    @Test
+    void gettingLiquidValuesOfPortfoliosSharingAccounts() {
+        when(portfolioService.getAccountIdsInPortfolio("portfolio"))
+                .thenReturn(Set.of(1L, 2L));
+        when(portfolioService.getAccountIdsInPortfolio("same accounts"))
+                .thenReturn(Set.of(1L, 2L));
+        when(portfolioService.getAccountIdsInPortfolio("other"))
+                .thenReturn(Set.of(3L));
+        when(liquidValueOrchestrator.getLiquidPositionTrackersAsOf(
+                Set.of(Set.of(1L, 2L), Set.of(3L)), List.of("HU"), List.of("GBP"), LocalDate.EPOCH))
+                .thenReturn(Map.of(
+                        new LiquidValueKey(Set.of(1L, 2L), "HU", "GBP"), basicLiquidPositionTracker(),
+                        new LiquidValueKey(Set.of(3L), "HU", "GBP"), basicLiquidPositionTracker()));
+        when(investmentArithmetic.getLifetimeReturnInPercent(any(), eq("GBP")))
+                .thenReturn(10.234);
+
+        List<PortfolioLiquidValueDto> liquidValues = investmentAnalysisService.getLiquidValues(
+                List.of("portfolio", "same accounts", "other"), List.of("HU"), List.of("GBP"), LocalDate.EPOCH);
+
+        assertEquals(List.of("portfolio", "same accounts", "other"),
+                liquidValues.stream().map(PortfolioLiquidValueDto::getPortfolioName).toList());
+        assertSame(liquidValues.get(0).getLiquidValue(), liquidValues.get(1).getLiquidValue());
+        assertEquals(new CashValue(BigDecimal.TEN, "GBP"), liquidValues.get(2).getLiquidValue().getFullyLiquidValue());
+        assertEquals(10.234, liquidValues.get(2).getLiquidValue().getInvestmentReturnInPercent());
+    }
+
     public LiquidPositionTracker basicLiquidPositionTracker() {
-        LiquidPositionTracker liquidPositionTracker = new LiquidPositionTracker(ActualPositionTracker.getBlank(), LocalDate.EPOCH, "GBP");
+        return basicLiquidPositionTracker(LocalDate.EPOCH);
+    }
+
+    private LiquidPositionTracker basicLiquidPositionTracker(LocalDate valueDate) {
+        LiquidPositionTracker liquidPositionTracker = new LiquidPositionTracker(ActualPositionTracker.getBlank(), valueDate, "GBP");
         liquidPositionTracker.setLiquidValue(new CashValue(BigDecimal.TEN, "GBP"));
         return liquidPositionTracker;
     }
 
+
 }
\ No newline at end of file
@@ -1,8 +1,10 @@
 package app.analysis.actual;
 
 import app.analysis.CashValue;
+import app.analysis.DatedCashValue;
 import app.analysis.TaxCalculator;
 import app.analysis.tracker.ActualPositionTracker;
+import app.analysis.tracker.PositionTracker;
 import app.broker.account.BrokerAccount;
 import app.data.DataService;
 import app.data.fx.currency.BasicCurrency;
@@ -21,8 +23,11 @@ import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.Mockito.*;
@@ -79,6 +84,30 @@ class TransactionProcessorTest {
         verify(tracker).processMoneyIn(LocalDate.EPOCH, account, "EUR", BigDecimal.TEN);
     }
 
+    @Test
+    void addToTracker_loadsStoredExchangeRatesOfPeriod() {
+        Transaction moneyIn = Transaction.builder(LocalDate.EPOCH, TransactionType.MONEY_IN)
+                .add(BigDecimal.TEN, new InvestmentAssetRecord(InvestmentAssetType.CASH, 10L), account)
+                .build();
+        Transaction purchase = Transaction.builder(LocalDate.EPOCH.plusDays(30), TransactionType.ENTER_INVESTMENT)
+                .add(BigDecimal.ONE, new InvestmentAssetRecord(InvestmentAssetType.SECURITY, 20L), account)
+                .take(BigDecimal.TEN, new InvestmentAssetRecord(InvestmentAssetType.CASH, 10L), account)
+                .build();
+
+        ActualPositionTracker tracker = mock(ActualPositionTracker.class);
+        when(tracker.getTaxationCurrency()).thenReturn("HUF");
+        transactionProcessor.addTransactionsToTracker(tracker, List.of(moneyIn, purchase), "HU");
+        verify(dataService).loadStoredExchangeRatesIntoCache(
+                Set.of("EUR", "USD", "HUF"), LocalDate.EPOCH, LocalDate.EPOCH.plusDays(30));
+    }
+
+    @Test
+    void addToTracker_noTransactionsNoRatesLoaded() {
+        ActualPositionTracker tracker = mock(ActualPositionTracker.class);
+        transactionProcessor.addTransactionsToTracker(tracker, Collections.emptyList(), "HU");
+        verify(dataService, never()).loadStoredExchangeRatesIntoCache(any(), any(), any());
+    }
+
     @Test
     void addToTracker_moneyOut() {
         Transaction moneyIn = Transaction.builder(LocalDate.EPOCH, TransactionType.MONEY_OUT)
@@ -167,4 +196,220 @@ class TransactionProcessorTest {
         transactionProcessor.addTransactionsToTracker(tracker, List.of(moneyIn), "HU");
         verify(tracker).processFee(account,"EUR", BigDecimal.ONE, CashValue.of("10", "HUF"));
     }
-}
\ No newline at end of file
+
+    @Test
+    void addToTracker_independentAccountsReplayedInParallel() {
+        BrokerAccount thirdAccount = new BrokerAccount();
+        thirdAccount.setId(11L);
+        List<BrokerAccount> accounts = List.of(account, anotherAccount, thirdAccount);
+        List<Transaction> transactions = new ArrayList<>();
+        List<DatedCashValue> expectedCashFlows = new ArrayList<>();
+        for (int i = 0; i < TransactionProcessor.PARALLEL_REPLAY_THRESHOLD; i++) {
+            LocalDate date = LocalDate.EPOCH.plusDays(i);
+            if (i % 10 == 9) {
+                transactions.add(Transaction.builder(date, TransactionType.TRANSFER_CASH)
+                        .take(BigDecimal.ONE, new InvestmentAssetRecord(InvestmentAssetType.CASH, 10L), account)
+                        .add(BigDecimal.ONE, new InvestmentAssetRecord(InvestmentAssetType.CASH, 10L), anotherAccount)
+                        .build());
+            } else {
+                transactions.add(Transaction.builder(date, TransactionType.MONEY_IN)
+                        .add(BigDecimal.ONE, new InvestmentAssetRecord(InvestmentAssetType.CASH, 10L),
+                                accounts.get(i % 3))
+                        .build());
+                expectedCashFlows.add(DatedCashValue.of(date, new BigDecimal("-1"), "EUR"));
+            }
+        }
+
+        ActualPositionTracker tracker = transactionProcessor.getNewPositionTracker(transactions, "HU");
+
+        // 300 money in and 100 transfers out, 300 money in and 100 transfers in, 300 money in
+        assertEquals(Map.of(account, Map.of("EUR", new BigDecimal("200")),
+                        anotherAccount, Map.of("EUR", new BigDecimal("400")),
+                        thirdAccount, Map.of("EUR", new BigDecimal("300"))),
+                tracker.getBrokerCashBalances());
+        assertEquals(expectedCashFlows, tracker.getReturnCashFlows());
+    }
+
+    @Test
+    void addToTracker_parallelReplayMatchesSequentialWithExitsAndFees() {
+        account.setId(12L);
+        BrokerAccount thirdAccount = new BrokerAccount();
+        thirdAccount.setId(11L);
+        BrokerAccount fourthAccount = new BrokerAccount();
+        fourthAccount.setId(13L);
+        // account and anotherAccount exchange cash and securities, the other two are on their own
+        List<BrokerAccount> accounts = List.of(account, anotherAccount, thirdAccount, fourthAccount);
+        List<Transaction> transactions = new ArrayList<>();
+        for (int cycle = 0; transactions.size() < TransactionProcessor.PARALLEL_REPLAY_THRESHOLD; cycle++) {
+            transactions.addAll(getExitAndFeeCycle(cycle, accounts));
+        }
+        stubTaxCalculation();
+
+        ActualPositionTracker parallel = transactionProcessor.getNewPositionTracker(transactions, "HU");
+        ActualPositionTracker sequential = ActualPositionTracker.getBlank();
+        // Slices below the threshold are replayed transaction by transaction
+        int slice = TransactionProcessor.PARALLEL_REPLAY_THRESHOLD / 3;
+        for (int from = 0; from < transactions.size(); from += slice) {
+            transactionProcessor.addTransactionsToTracker(sequential,
+                    transactions.subList(from, Math.min(from + slice, transactions.size())), "HU");
+        }
+
+        assertEquals(sequential.getBrokerCashBalances(), parallel.getBrokerCashBalances());
+        assertEquals(sequential.getSecurityPositions(), parallel.getSecurityPositions());
+        assertEquals(sequential.getReturnCashFlows(), parallel.getReturnCashFlows());
+        assertEquals(sequential.getBankBalances(), parallel.getBankBalances());
+        assertEquals(sequential.getLossOffsetAvailable(), parallel.getLossOffsetAvailable());
+        assertEquals(sequential.getFeeWriteOffAvailable(), parallel.getFeeWriteOffAvailable());
+        // Every group took part: fees were charged on all four accounts
+        assertEquals(4, parallel.getBrokerCashBalances().size());
+    }
+
+    @Test
+    void getNewPositionTracker_composedMatchesOwnReplayWhenPartnerIsOutside() {
+        account.setId(12L);
+        BrokerAccount thirdAccount = new BrokerAccount();
+        thirdAccount.setId(11L);
+        BrokerAccount fourthAccount = new BrokerAccount();
+        fourthAccount.setId(13L);
+        // anotherAccount trades on its own as well as with account, but only account is in the portfolio
+        List<BrokerAccount> accounts = List.of(account, anotherAccount, thirdAccount, fourthAccount);
+        List<Transaction> transactions = new ArrayList<>();
+        for (int cycle = 0; cycle < 40; cycle++) {
+            transactions.addAll(getExitAndFeeCycle(cycle, accounts));
+        }
+        List<Transaction> transactionsOnAccount = transactions.stream()
+                .filter(t -> t.getTakeFromAccount() == account || t.getAddToAccount() == account)
+                .toList();
+        stubTaxCalculation();
+
+        ReplayedPositions replayed = transactionProcessor.replayPositions(transactions);
+        ActualPositionTracker composed = transactionProcessor.getNewPositionTracker(replayed, List.of(12L), "HU");
+        ActualPositionTracker own = transactionProcessor.getNewPositionTracker(transactionsOnAccount, "HU");
+
+        assertEquals(own.getBrokerCashBalances(), composed.getBrokerCashBalances());
+        assertEquals(own.getSecurityPositions(), composed.getSecurityPositions());
+        assertEquals(own.getReturnCashFlows(), composed.getReturnCashFlows());
+        assertEquals(own.getBankBalances(), composed.getBankBalances());
+        assertEquals(own.getLossOffsetAvailable(), composed.getLossOffsetAvailable());
+        assertEquals(own.getFeeWriteOffAvailable(), composed.getFeeWriteOffAvailable());
+        assertEquals(Set.of(account, anotherAccount), composed.getBrokerCashBalances().keySet());
+    }
+
+    /**
+     * Eight transactions on one account: buying at changing prices, selling with either lot matching, a fee charged
+     * on the next account, which may belong to another group, and moves to the paired account where there is one.
+     */
+    private List<Transaction> getExitAndFeeCycle(int cycle, List<BrokerAccount> accounts) {
+        BrokerAccount current = accounts.get(cycle % 4);
+        BrokerAccount feeAccount = accounts.get((cycle + 1) % 4);
+        BrokerAccount pair = current == account ? anotherAccount : current == anotherAccount ? account : null;
+        MatchingStrategy matching = cycle % 2 == 0 ? MatchingStrategy.FIFO : MatchingStrategy.LIFO;
+        InvestmentAssetRecord cash = new InvestmentAssetRecord(InvestmentAssetType.CASH, 10L);
+        InvestmentAssetRecord share = new InvestmentAssetRecord(InvestmentAssetType.SECURITY, 20L);
+        LocalDate date = LocalDate.EPOCH.plusDays(cycle);
+
+        List<Transaction> cycleTransactions = new ArrayList<>(List.of(
+                Transaction.builder(date, TransactionType.MONEY_IN)
+                        .add(new BigDecimal("100"), cash, current).build(),
+                Transaction.builder(date, TransactionType.ENTER_INVESTMENT)
+                        .add(new BigDecimal("2"), share, current)
+                        .take(BigDecimal.valueOf(10 + cycle % 13), cash, current).build(),
+                Transaction.builder(date, TransactionType.ENTER_INVESTMENT)
+                        .add(BigDecimal.ONE, share, current)
+                        .take(BigDecimal.valueOf(5 + cycle % 7), cash, current).build(),
+                Transaction.builder(date, TransactionType.EXIT_INVESTMENT)
+                        .add(new BigDecimal("20"), cash, current)
+                        .take(BigDecimal.ONE, share, current)
+                        .matching(matching).build(),
+                Transaction.builder(date, TransactionType.PAY_FEE)
+                        .take(new BigDecimal("1.5"), cash, feeAccount).build()));
+        if (pair != null) {
+            cycleTransactions.add(Transaction.builder(date, TransactionType.TRANSFER_SECURITY)
+                    .take(BigDecimal.ONE, share, current)
+                    .add(BigDecimal.ONE, share, pair)
+                    .matching(matching).build());
+            cycleTransactions.add(Transaction.builder(date, TransactionType.TRANSFER_CASH)
+                    .take(new BigDecimal("3"), cash, current)
+                    .add(new BigDecimal("3"), cash, pair).build());
+        } else {
+            cycleTransactions.add(Transaction.builder(date, TransactionType.MONEY_OUT)
+                    .take(BigDecimal.ONE, cash, current).build());
+            cycleTransactions.add(Transaction.builder(date, TransactionType.PAY_FEE)
+                    .take(new BigDecimal("0.5"), cash, current).build());
+        }
+        cycleTransactions.add(Transaction.builder(date, TransactionType.EXIT_INVESTMENT)
+                .add(new BigDecimal("15"), cash, current)
+                .take(BigDecimal.ONE, share, current)
+                .matching(MatchingStrategy.LIFO).build());
+        return cycleTransactions;
+    }
+
+    /**
+     * Fees count in full as write-offs, and every exit adds the cost of the lots it closed as a loss and pays a tax of
+     * one HUF, so the tax state depends on the lots matched and on the order of the exits.
+     */
+    private void stubTaxCalculation() {
+        lenient().when(taxCalculator.getCashInTaxCurrency(any(), any(), eq("HU")))
+                .thenAnswer(invocation -> CashValue.of(invocation.<CashValue>getArgument(0).getAmount(), "HUF"));
+        lenient().doAnswer(invocation -> {
+            setTaxationCurrency(invocation.getArgument(0));
+            return null;
+        }).when(taxCalculator).verifyTaxationCurrencyCorrect(any(), any());
+        lenient().when(taxCalculator.getTaxEffect(any(), anyList(), any(), any(), any(), eq("HU")))
+                .thenAnswer(invocation -> {
+                    setTaxationCurrency(invocation.getArgument(0));
+                    List<SecurityPosition> closed = invocation.getArgument(1);
+                    BigDecimal cost = closed.stream()
+                            .map(position -> position.getEnteredAt().getAmount().multiply(position.getCount()))
+                            .reduce(BigDecimal.ZERO, BigDecimal::add);
+                    return TaxEffectDto.builder()
+                            .taxPaid(CashValue.of(BigDecimal.ONE, "HUF"))
+                            .lossAdded(CashValue.of(cost, "HUF"))
+                            .lossesUsed(List.of())
+                            .feeUsed(CashValue.of(BigDecimal.ZERO, "HUF"))
+                            .transactionDate(invocation.getArgument(2))
+                            .build();
+                });
+    }
+
+    private static void setTaxationCurrency(PositionTracker tracker) {
+        if (tracker.getTaxationCurrency() == null) {
+            tracker.changeTaxCurrency("HUF", BigDecimal.ONE);
+        }
+    }
+
+    @Test
+    void getNewPositionTracker_composedFromReplayedPositions() {
+        account.setId(12L);
+        BrokerAccount thirdAccount = new BrokerAccount();
+        thirdAccount.setId(11L);
+        List<Transaction> transactions = List.of(
+                Transaction.builder(LocalDate.EPOCH, TransactionType.MONEY_IN)
+                        .add(BigDecimal.TEN, new InvestmentAssetRecord(InvestmentAssetType.CASH, 10L), account)
+                        .build(),
+                Transaction.builder(LocalDate.EPOCH, TransactionType.MONEY_IN)
+                        .add(BigDecimal.ONE, new InvestmentAssetRecord(InvestmentAssetType.CASH, 10L), thirdAccount)
+                        .build(),
+                Transaction.builder(LocalDate.EPOCH.plusDays(1), TransactionType.TRANSFER_CASH)
+                        .take(new BigDecimal("4"), new InvestmentAssetRecord(InvestmentAssetType.CASH, 10L), account)
+                        .add(new BigDecimal("4"), new InvestmentAssetRecord(InvestmentAssetType.CASH, 10L),
+                                anotherAccount)
+                        .build());
+
+        ReplayedPositions replayed = transactionProcessor.replayPositions(transactions);
+        ActualPositionTracker connected = transactionProcessor.getNewPositionTracker(replayed, List.of(12L, 10L), "HU");
+        ActualPositionTracker single = transactionProcessor.getNewPositionTracker(replayed, List.of(11L), "HU");
+        ActualPositionTracker secondSingle = transactionProcessor.getNewPositionTracker(replayed, List.of(11L), "HU");
+        secondSingle.processMoneyIn(LocalDate.EPOCH, thirdAccount, "EUR", BigDecimal.ONE);
+
+        assertEquals(Map.of(account, Map.of("EUR", new BigDecimal("6")),
+                        anotherAccount, Map.of("EUR", new BigDecimal("4"))),
+                connected.getBrokerCashBalances());
+        assertEquals(List.of(DatedCashValue.of(LocalDate.EPOCH, new BigDecimal("-10"), "EUR")),
+                connected.getReturnCashFlows());
+        // Trackers composed from the same replay do not see each other's changes
+        assertEquals(Map.of(thirdAccount, Map.of("EUR", BigDecimal.ONE)), single.getBrokerCashBalances());
+        assertEquals(List.of(DatedCashValue.of(LocalDate.EPOCH, new BigDecimal("-1"), "EUR")),
+                single.getReturnCashFlows());
+    }
+}
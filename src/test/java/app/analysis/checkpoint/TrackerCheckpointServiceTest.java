@@ -0,0 +1,196 @@
+package app.analysis.checkpoint;
+
+import app.analysis.CashValue;
+import app.analysis.DatedCashValue;
+import app.analysis.actual.SecurityPosition;
+import app.analysis.actual.TaxEffectDto;
+import app.analysis.tracker.ActualPositionTracker;
+import app.broker.account.BrokerAccount;
+import app.broker.account.BrokerAccountService;
+import app.data.DataService;
+import app.data.securities.security.Security;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TrackerCheckpointServiceTest {
+
+    @Mock
+    TrackerCheckpointRepository repository;
+    @Mock
+    BrokerAccountService accountService;
+    @Mock
+    DataService dataService;
+
+    ObjectMapper objectMapper = JsonMapper.builder().findAndAddModules().build();
+
+    TrackerCheckpointService checkpointService;
+
+    BrokerAccount account = new BrokerAccount();
+    Security security = new Security("MMM", "3M Corporation", "NYSE", "USD");
+
+    @BeforeEach
+    void init() {
+        account.setId(4L);
+        account.setName("main");
+        security.setId(7L);
+        checkpointService = new TrackerCheckpointService(repository, accountService, dataService, objectMapper,
+                CheckpointFrequency.MONTH_END);
+    }
+
+    @Test
+    void savedCheckpointIsRestoredWithSameState() {
+        ActualPositionTracker tracker = ActualPositionTracker.getBlank();
+        tracker.changeTaxCurrency("HUF", BigDecimal.ONE);
+        tracker.processMoneyIn(LocalDate.of(2020, 1, 2), account, "USD", new BigDecimal("100"));
+        tracker.processEnterInvestment(LocalDate.of(2020, 1, 3), account, security, BigDecimal.TEN,
+                "USD", new BigDecimal("50"));
+        tracker.processTax(TaxEffectDto.builder()
+                .transactionDate(LocalDate.of(2020, 1, 4))
+                .taxPaid(CashValue.of("15", "HUF"))
+                .lossAdded(CashValue.of("3", "HUF"))
+                .lossesUsed(List.of())
+                .feeUsed(CashValue.of("0", "HUF"))
+                .build());
+
+        checkpointService.saveCheckpoint(List.of(4L), "HU", LocalDate.of(2020, 1, 31), tracker);
+        ArgumentCaptor<TrackerCheckpoint> captor = ArgumentCaptor.forClass(TrackerCheckpoint.class);
+        verify(repository).save(captor.capture());
+        assertEquals("4", captor.getValue().getAccountSet());
+        assertEquals(Set.of(4L), captor.getValue().getAccountIds());
+
+        when(repository.findFirstByAccountSetAndTaxResidenceAndCheckpointDateLessThanEqualOrderByCheckpointDateDesc(
+                "4", "HU", LocalDate.of(2020, 2, 10)))
+                .thenReturn(Optional.of(captor.getValue()));
+        when(accountService.getAccountsByIds(Set.of(4L))).thenReturn(List.of(account));
+        when(dataService.getSecurityDetailsByIdList(List.of(7L))).thenReturn(List.of(security));
+
+        CheckpointedTracker restored = checkpointService
+                .getLatestCheckpoint(List.of(4L), "HU", LocalDate.of(2020, 2, 10)).orElseThrow();
+
+        assertEquals(LocalDate.of(2020, 1, 31), restored.checkpointDate());
+        ActualPositionTracker restoredTracker = restored.tracker();
+        assertEquals(Map.of(account, Map.of("USD", new BigDecimal("50"))), restoredTracker.getBrokerCashBalances());
+        assertEquals(Map.of("HUF", new BigDecimal("-15")), restoredTracker.getBankBalances());
+        assertEquals(tracker.getReturnCashFlows(), restoredTracker.getReturnCashFlows());
+        assertEquals(Map.of(account, Map.of(security, List.of(new SecurityPosition(security, BigDecimal.TEN,
+                        CashValue.of("5", "USD"), LocalDate.of(2020, 1, 3))))),
+                restoredTracker.getSecurityPositions());
+        assertEquals("HUF", restoredTracker.getTaxationCurrency());
+        assertEquals(List.of(DatedCashValue.of(LocalDate.of(2020, 1, 4), new BigDecimal("3"), "HUF")),
+                restoredTracker.getLossOffsetAvailable());
+    }
+
+    @Test
+    void checkpointReferencingMissingAccountIsDiscarded() {
+        TrackerCheckpoint checkpoint = new TrackerCheckpoint("4", Set.of(4L), "HU", LocalDate.of(2020, 1, 31),
+                "{\"brokerBalances\":[{\"accountId\":4,\"currency\":\"EUR\",\"amount\":1}],\"bankBalances\":{}," +
+                        "\"returnCashFlows\":[],\"securityPositions\":[],\"taxationCurrency\":null," +
+                        "\"feeWriteOffAvailable\":0,\"untaxedGain\":0,\"lossOffsetAvailable\":[],\"taxesPaid\":[]}");
+        when(repository.findFirstByAccountSetAndTaxResidenceAndCheckpointDateLessThanEqualOrderByCheckpointDateDesc(
+                "4", "HU", LocalDate.of(2020, 2, 10)))
+                .thenReturn(Optional.of(checkpoint));
+        when(accountService.getAccountsByIds(Set.of(4L))).thenReturn(List.of());
+
+        assertTrue(checkpointService.getLatestCheckpoint(List.of(4L), "HU", LocalDate.of(2020, 2, 10)).isEmpty());
+        verify(repository).delete(checkpoint);
+    }
+
+    @Test
+    void existingCheckpointIsNotSavedAgain() {
+        when(repository.countByAccountSetAndTaxResidenceAndCheckpointDate("1,4", "HU", LocalDate.of(2020, 1, 31)))
+                .thenReturn(1);
+
+        checkpointService.saveCheckpoint(List.of(4L, 1L), "HU", LocalDate.of(2020, 1, 31),
+                ActualPositionTracker.getBlank());
+
+        verify(repository, never()).save(any());
+    }
+
+    @Test
+    void nextCheckpointDateIsLatestMonthEnd() {
+        assertEquals(Optional.of(LocalDate.of(2020, 1, 31)),
+                checkpointService.getNextCheckpointDate(null, LocalDate.of(2020, 2, 10)));
+        assertEquals(Optional.of(LocalDate.of(2020, 2, 29)),
+                checkpointService.getNextCheckpointDate(LocalDate.of(2020, 1, 31), LocalDate.of(2020, 2, 29)));
+        assertTrue(checkpointService.getNextCheckpointDate(LocalDate.of(2020, 1, 31), LocalDate.of(2020, 2, 10))
+                .isEmpty());
+    }
+
+    @Test
+    void checkpointsDisabled() {
+        checkpointService = new TrackerCheckpointService(repository, accountService, dataService, objectMapper,
+                CheckpointFrequency.NONE);
+
+        assertTrue(checkpointService.getLatestCheckpoint(List.of(4L), "HU", LocalDate.of(2020, 2, 10)).isEmpty());
+        assertTrue(checkpointService.getNextCheckpointDate(null, LocalDate.of(2020, 2, 10)).isEmpty());
+        verifyNoInteractions(repository);
+    }
+
+    @Test
+    void quarterAndYearEnds() {
+        assertEquals(Optional.of(LocalDate.of(2019, 12, 31)),
+                CheckpointFrequency.QUARTER_END.latestCheckpointDate(LocalDate.of(2020, 3, 30)));
+        assertEquals(Optional.of(LocalDate.of(2020, 3, 31)),
+                CheckpointFrequency.QUARTER_END.latestCheckpointDate(LocalDate.of(2020, 3, 31)));
+        assertEquals(Optional.of(LocalDate.of(2020, 6, 30)),
+                CheckpointFrequency.QUARTER_END.latestCheckpointDate(LocalDate.of(2020, 8, 15)));
+        assertEquals(Optional.of(LocalDate.of(2019, 12, 31)),
+                CheckpointFrequency.YEAR_END.latestCheckpointDate(LocalDate.of(2020, 8, 15)));
+    }
+
+    @Test
+    void invalidateRemovesAffectedCheckpoints() {
+        TrackerCheckpoint affected = new TrackerCheckpoint();
+        when(repository.findAffectedCheckpoints(List.of(4L), LocalDate.of(2020, 1, 5)))
+                .thenReturn(List.of(affected));
+
+        checkpointService.invalidateCheckpoints(List.of(4L), LocalDate.of(2020, 1, 5));
+
+        verify(repository).deleteAll(List.of(affected));
+    }
+
+    @Test
+    void missingTaxResidenceStoredAsEmpty() {
+        checkpointService.saveCheckpoint(List.of(4L), null, LocalDate.of(2020, 1, 31),
+                ActualPositionTracker.getBlank());
+        checkpointService.getLatestCheckpoint(List.of(4L), null, LocalDate.of(2020, 2, 10));
+
+        verify(repository).countByAccountSetAndTaxResidenceAndCheckpointDate("4", "", LocalDate.of(2020, 1, 31));
+        verify(repository).save(argThat(checkpoint -> "".equals(checkpoint.getTaxResidence())));
+        verify(repository).findFirstByAccountSetAndTaxResidenceAndCheckpointDateLessThanEqualOrderByCheckpointDateDesc(
+                "4", "", LocalDate.of(2020, 2, 10));
+    }
+
+    @Test
+    void invalidateRemovesCheckpointsOfResidence() {
+        TrackerCheckpoint affected = new TrackerCheckpoint();
+        when(repository.findByTaxResidenceAndCheckpointDateGreaterThanEqual("HU", LocalDate.of(2020, 1, 5)))
+                .thenReturn(List.of(affected));
+        TrackerCheckpoint untaxed = new TrackerCheckpoint();
+        when(repository.findByTaxResidence("")).thenReturn(List.of(untaxed));
+
+        checkpointService.invalidateCheckpointsOfResidence("HU", LocalDate.of(2020, 1, 5));
+        checkpointService.invalidateCheckpointsOfResidence(null, null);
+
+        verify(repository).deleteAll(List.of(affected));
+        verify(repository).deleteAll(List.of(untaxed));
+    }
+}
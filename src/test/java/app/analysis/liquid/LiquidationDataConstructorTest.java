@@ -9,7 +9,6 @@ import app.analysis.tracker.LiquidPositionTracker;
 import app.broker.account.BrokerAccount;
 import app.broker.account.BrokerAccountService;
 import app.broker.fees.calculator.FeeCalculatorService;
-import app.data.DataService;
 import app.data.securities.price.SecurityPriceOfDay;
 import app.data.securities.security.Security;
 import app.taxation.details.TaxDetails;
@@ -39,9 +38,6 @@ class LiquidationDataConstructorTest {
     @Mock
     TaxCalculator taxCalculator;
 
-    @Mock
-    DataService dataService;
-
     @InjectMocks
     LiquidationDataConstructor liquidationDataConstructor;
 
@@ -127,8 +123,8 @@ class LiquidationDataConstructorTest {
                 new SecurityPosition(security, BigDecimal.TEN, CashValue.of(BigDecimal.TEN, "USD"), LocalDate.of(1900, 1, 1))
         );
 
-        when(dataService.getSharePrice("MMM", LocalDate.EPOCH))
-                .thenReturn(new SecurityPriceOfDay(1L, "MMM", LocalDate.EPOCH, "USD", null, BigDecimal.TEN, null, null, null, 0));
+        SecurityPriceOfDay sharePrice =
+                new SecurityPriceOfDay(1L, "MMM", LocalDate.EPOCH, "USD", null, BigDecimal.TEN, null, null, null, 0);
         when(feeCalculatorService.getCommissionOnTransaction(null, LocalDate.EPOCH, "NYSE", new BigDecimal("110"), "USD"))
                 .thenReturn(CashValue.of(BigDecimal.TEN, "GBP"));
         when(taxCalculator.getCashInTaxCurrency(CashValue.of(BigDecimal.TEN, "GBP"), LocalDate.EPOCH, "HU"))
@@ -139,7 +135,8 @@ class LiquidationDataConstructorTest {
                 .thenReturn(CashValue.of(new BigDecimal(5), "HUF"));
 
         LiquidExitEffectDto liquidExitEffectDto =
-                liquidationDataConstructor.getMarketExitEffect(new BrokerAccount(), closedPositions, LocalDate.EPOCH, "HU");
+                liquidationDataConstructor.getMarketExitEffect(
+                        new BrokerAccount(), closedPositions, sharePrice, LocalDate.EPOCH, "HU");
 
         assertEquals(LiquidExitEffectDto.builder()
                         .account(new BrokerAccount())
@@ -7,6 +7,7 @@ import app.broker.account.BrokerAccountType;
 import org.junit.jupiter.api.Test;
 
 import java.math.BigDecimal;
+import java.math.MathContext;
 import java.time.LocalDate;
 import java.util.Collections;
 import java.util.List;
@@ -35,17 +36,42 @@ class CashTrackerTest {
         assertNotSame(cashTracker.getBrokerBalances(), copy.getBrokerBalances());
         assertNotSame(cashTracker.getReturnCashFlows(), copy.getReturnCashFlows());
 
-        // DatedInvestorCashFlows also different (two loops to handle if list order changed)
-        for (DatedCashValue inOriginal : cashTracker.getReturnCashFlows()) {
-            for (DatedCashValue inCopy : copy.getReturnCashFlows()) {
-                assertNotSame(inOriginal, inCopy);
-            }
-        }
-
         assertEquals(cashTracker.getBrokerBalances(), copy.getBrokerBalances());
         assertEquals(cashTracker.getReturnCashFlows(), copy.getReturnCashFlows());
     }
 
+    @Test
+    void copyAndOriginalChangeIndependently() {
+        cashTracker.addReturnCashFlow(LocalDate.of(2000, 1, 1), "GBP", BigDecimal.TEN);
+        cashTracker.addBrokerCashBalance(mainAccount, "USD", BigDecimal.ONE);
+        cashTracker.addBrokerCashBalance(tbszAccount, "USD", BigDecimal.ONE);
+
+        CashTracker copy = cashTracker.copy();
+        copy.addBrokerCashBalance(mainAccount, "USD", BigDecimal.ONE);
+        copy.addReturnCashFlow(LocalDate.of(2000, 1, 2), "GBP", BigDecimal.ONE);
+        cashTracker.addBrokerCashBalance(tbszAccount, "EUR", BigDecimal.TEN);
+        cashTracker.addReturnCashFlow(LocalDate.of(2000, 1, 3), "GBP", BigDecimal.TEN);
+
+        assertEquals(Map.of(mainAccount, Map.of("USD", BigDecimal.ONE),
+                        tbszAccount, Map.of("USD", BigDecimal.ONE, "EUR", BigDecimal.TEN)),
+                cashTracker.getBrokerBalances());
+        assertEquals(Map.of(mainAccount, Map.of("USD", new BigDecimal("2")),
+                        tbszAccount, Map.of("USD", BigDecimal.ONE)),
+                copy.getBrokerBalances());
+        assertEquals(List.of(new DatedCashValue(BigDecimal.TEN, "GBP", LocalDate.of(2000, 1, 1)),
+                        new DatedCashValue(BigDecimal.TEN, "GBP", LocalDate.of(2000, 1, 3))),
+                cashTracker.getReturnCashFlows());
+        assertEquals(List.of(new DatedCashValue(BigDecimal.TEN, "GBP", LocalDate.of(2000, 1, 1)),
+                        new DatedCashValue(BigDecimal.ONE, "GBP", LocalDate.of(2000, 1, 2))),
+                copy.getReturnCashFlows());
+
+        copy.mergeAccounts(tbszAccount, mainAccount);
+        copy.moveBrokerCashToBank();
+        assertEquals(2, cashTracker.getBrokerBalances().size());
+        assertEquals(Map.of("USD", new BigDecimal("3")), copy.getBankBalances());
+        assertEquals(Collections.emptyMap(), cashTracker.getBankBalances());
+    }
+
     @Test
     void copyingALargeObject() {
         // This method normally takes <40ms for 2 BrokerAccounts with 1_000 currencies each and a 100_000-element cash flow list
@@ -161,12 +187,84 @@ class CashTrackerTest {
         assertEquals(Collections.emptyMap(), cashTracker.getBrokerBalances());
     }
 
+    @Test
+    void currencyTouchedBackToZeroStaysListed() {
+        cashTracker.addBrokerCashBalance(mainAccount, "EUR", BigDecimal.ONE);
+        cashTracker.deductBrokerBalance(mainAccount, "EUR", BigDecimal.ONE);
+        assertEquals(Map.of("EUR", BigDecimal.ZERO), cashTracker.getBrokerBalances().get(mainAccount));
+        assertNull(cashTracker.getBrokerBalances().get(mainAccount).get("GBP"));
+        assertNull(cashTracker.getBrokerBalances().get(tbszAccount));
+    }
+
+    @Test
+    void mergedAccountReappearsWhenCashArrivesAgain() {
+        cashTracker.addBrokerCashBalance(tbszAccount, "EUR", BigDecimal.ONE);
+        cashTracker.mergeAccounts(tbszAccount, mainAccount);
+        cashTracker.addBrokerCashBalance(tbszAccount, "GBP", BigDecimal.TEN);
+        assertEquals(Map.of(mainAccount, Map.of("EUR", BigDecimal.ONE), tbszAccount, Map.of("GBP", BigDecimal.TEN)),
+                cashTracker.getBrokerBalances());
+    }
+
     @Test
     void deductingFromBankBalance_couldGoIntoNegative() {
         cashTracker.deductBankBalance(CashValue.of(BigDecimal.ONE, "EUR"));
         assertEquals(Map.of("EUR", BigDecimal.ONE.negate()), cashTracker.getBankBalances());
     }
 
+    @Test
+    void balancesKeepTheScaleOfTheAmounts() {
+        cashTracker.addBrokerCashBalance(mainAccount, "EUR", new BigDecimal("10.50"));
+        cashTracker.deductBrokerBalance(mainAccount, "EUR", new BigDecimal("0.5"));
+        cashTracker.addBrokerCashBalance(mainAccount, "USD", BigDecimal.TEN);
+
+        assertEquals("10.00", cashTracker.getBrokerBalances().get(mainAccount).get("EUR").toPlainString());
+        assertEquals("10", cashTracker.getBrokerBalances().get(mainAccount).get("USD").toPlainString());
+    }
+
+    @Test
+    void replayingExchangedAmountsKeepsThemExact() {
+        // Proceeds converted at a divided rate have far more than six decimals
+        BigDecimal rate = new BigDecimal("1.1").divide(new BigDecimal("387.27"), MathContext.DECIMAL64);
+        BigDecimal expectedMain = BigDecimal.ZERO;
+        BigDecimal expectedBank = BigDecimal.ZERO;
+        for (int i = 1; i <= 1000; i++) {
+            BigDecimal proceeds = new BigDecimal(i).multiply(rate);
+            cashTracker.addBrokerCashBalance(mainAccount, "EUR", proceeds);
+            expectedMain = expectedMain.add(proceeds);
+            if (i % 4 == 0) {
+                BigDecimal fee = proceeds.divide(new BigDecimal("7"), MathContext.DECIMAL64);
+                cashTracker.deductBrokerBalance(mainAccount, "EUR", fee);
+                cashTracker.deductBankBalance(CashValue.of(fee, "EUR"));
+                expectedMain = expectedMain.subtract(fee);
+                expectedBank = expectedBank.subtract(fee);
+            }
+        }
+        assertEquals(expectedMain, cashTracker.getBrokerBalances().get(mainAccount).get("EUR"));
+        assertEquals(expectedBank, cashTracker.getBankBalances().get("EUR"));
+
+        cashTracker.moveBrokerCashToBank();
+        assertEquals(expectedBank.add(expectedMain), cashTracker.getBankBalances().get("EUR"));
+    }
+
+    @Test
+    void sharedTrackerReadAndForkedFromSeveralThreads() {
+        List<BrokerAccount> accounts = IntStream.range(0, 50)
+                .mapToObj(i -> createBrokerAccount("account" + i, BrokerAccountType.MAIN))
+                .toList();
+        accounts.forEach(account -> cashTracker.addBrokerCashBalance(account, "EUR", BigDecimal.ONE));
+        List<CashTracker> forks = IntStream.range(0, 8).mapToObj(i -> cashTracker.copy()).toList();
+
+        forks.parallelStream().forEach(fork -> accounts.forEach(account -> {
+            assertEquals(Map.of("EUR", BigDecimal.ONE), cashTracker.getBrokerBalances().get(account));
+            fork.addBrokerCashBalance(account, "EUR", BigDecimal.ONE);
+        }));
+
+        forks.forEach(fork -> accounts.forEach(account ->
+                assertEquals(Map.of("EUR", new BigDecimal("2")), fork.getBrokerBalances().get(account))));
+        accounts.forEach(account ->
+                assertEquals(Map.of("EUR", BigDecimal.ONE), cashTracker.getBrokerBalances().get(account)));
+    }
+
     private BrokerAccount createBrokerAccount(String name, BrokerAccountType type) {
         BrokerAccount account = new BrokerAccount();
         account.setName(name);
@@ -171,9 +171,9 @@ class LiquidPositionTrackerTest {
         assertEquals(CashValue.of(BigDecimal.TEN, "HUF"), liquidPositionTracker.getLiquidValueDto().getTaxDue());
         // Deducted fee used
         assertEquals(CashValue.of(new BigDecimal(9), "HUF"), liquidPositionTracker.getFeeWriteOffAvailable());
-        // Deducted & added loss offsets
-        assertEquals(List.of(DatedCashValue.of(LocalDate.EPOCH.plusDays(1), new BigDecimal(8), "HUF"),
-                        DatedCashValue.of(LocalDate.EPOCH, new BigDecimal(5), "HUF")),
+        // Deducted & added loss offsets, in date order
+        assertEquals(List.of(DatedCashValue.of(LocalDate.EPOCH, new BigDecimal(5), "HUF"),
+                        DatedCashValue.of(LocalDate.EPOCH.plusDays(1), new BigDecimal(8), "HUF")),
                 liquidPositionTracker.getLossOffsetAvailable());
     }
 
@@ -43,6 +43,29 @@ class SecurityTrackerTest {
         assertEquals(securityTracker.getSecurityPositions(), copied.getSecurityPositions());
     }
 
+    @Test
+    void copyAndOriginalChangeIndependently() {
+        securityTracker.addPosition(mainAccount, earlyEntryPos);
+        securityTracker.addPosition(mainAccount, lateEntryPos);
+        securityTracker.addPosition(tbszAccount, differentSecurityPosition);
+
+        SecurityTracker copied = securityTracker.copy();
+        copied.closePositions(mainAccount, security, new BigDecimal("12"), MatchingStrategy.FIFO);
+        copied.mergeAccounts(tbszAccount, mainAccount);
+        securityTracker.addPosition(tbszAccount, earlyEntryPos);
+
+        assertEquals(Map.of(mainAccount, Map.of(security, List.of(earlyEntryPos, lateEntryPos)),
+                        tbszAccount, Map.of(differentSecurity, List.of(differentSecurityPosition),
+                                security, List.of(earlyEntryPos))),
+                securityTracker.getSecurityPositions());
+        assertEquals(Map.of(mainAccount, Map.of(
+                        security, List.of(new SecurityPosition(security, new BigDecimal("5"),
+                                lateEntryPos.getEnteredAt(), lateEntryPos.getEnterDate())),
+                        differentSecurity, List.of(differentSecurityPosition))),
+                copied.getSecurityPositions());
+        assertEquals(new BigDecimal("7"), lateEntryPos.getCount());
+    }
+
     @Test
     void addingPositionToNewAccount() {
         securityTracker.addPosition(mainAccount, earlyEntryPos);
@@ -94,6 +117,36 @@ class SecurityTrackerTest {
         IllegalStateException ex = assertThrows(IllegalStateException.class,
                 () -> securityTracker.closePositions(mainAccount, security, new BigDecimal("15"), MatchingStrategy.FIFO));
         assertEquals("Could not find enough securities to sell: " + security.toString(), ex.getMessage());
+        assertEquals(List.of(earlyEntryPos), securityTracker.getSecurityPositions().get(mainAccount).get(security));
+    }
+
+    @Test
+    void closingPositionsAddedOutOfDateOrder() {
+        SecurityPosition sameDayPos = new SecurityPosition(security, BigDecimal.ONE, new CashValue(new BigDecimal("5"), "EUR"),
+                LocalDate.of(2000, 1, 1));
+        securityTracker.addPosition(mainAccount, lateEntryPos);
+        securityTracker.addPosition(mainAccount, earlyEntryPos);
+        securityTracker.addPosition(mainAccount, sameDayPos);
+
+        assertEquals(List.of(earlyEntryPos, sameDayPos),
+                securityTracker.closePositions(mainAccount, security, new BigDecimal("11"), MatchingStrategy.FIFO));
+        assertEquals(List.of(lateEntryPos), securityTracker.getSecurityPositions().get(mainAccount).get(security));
+    }
+
+    @Test
+    void closingLIFO_positionsOfTheSameDateInOrderAdded() {
+        SecurityPosition sameDayPos = new SecurityPosition(security, BigDecimal.ONE, new CashValue(new BigDecimal("5"), "EUR"),
+                LocalDate.of(2001, 2, 2));
+        securityTracker.addPosition(mainAccount, earlyEntryPos);
+        securityTracker.addPosition(mainAccount, lateEntryPos);
+        securityTracker.addPosition(mainAccount, sameDayPos);
+
+        assertEquals(List.of(lateEntryPos, sameDayPos, new SecurityPosition(security, BigDecimal.ONE,
+                        earlyEntryPos.getEnteredAt(), earlyEntryPos.getEnterDate())),
+                securityTracker.closePositions(mainAccount, security, new BigDecimal("9"), MatchingStrategy.LIFO));
+        assertEquals(List.of(new SecurityPosition(security, new BigDecimal("9"), earlyEntryPos.getEnteredAt(),
+                        earlyEntryPos.getEnterDate())),
+                securityTracker.getSecurityPositions().get(mainAccount).get(security));
     }
 
     @Test
@@ -7,7 +7,10 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.math.BigDecimal;
+import java.math.MathContext;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -27,23 +30,28 @@ class TaxTrackerTest {
         taxTracker.addAvailableFeeWriteOff(new CashValue(BigDecimal.ONE, "HUF"));
         taxTracker.addUntaxedGain(new CashValue(BigDecimal.ONE, "HUF"));
 
-        TaxTracker copy = new TaxTracker(taxTracker);
+        TaxTracker copy = taxTracker.copy();
 
         assertNotSame(taxTracker, copy);
         assertNotSame(taxTracker.getFeeWriteOffAvailable(), copy.getFeeWriteOffAvailable());
         assertNotSame(taxTracker.getLossOffsetAvailable(), copy.getLossOffsetAvailable());
         assertNotSame(taxTracker.getUntaxedGain(), copy.getUntaxedGain());
 
-        for (DatedCashValue originalCashFlow : taxTracker.getLossOffsetAvailable()) {
-            for (DatedCashValue copyCashFlow : copy.getLossOffsetAvailable()) {
-                assertNotSame(originalCashFlow, copyCashFlow);
-            }
-        }
-
         assertEquals(taxTracker.getLossOffsetAvailable(), copy.getLossOffsetAvailable());
         assertEquals(taxTracker.getUntaxedGain(), copy.getUntaxedGain());
         assertEquals(taxTracker.getFeeWriteOffAvailable(), copy.getFeeWriteOffAvailable());
         assertEquals(taxTracker.getTaxationCurrency(), copy.getTaxationCurrency());
+
+        copy.removeUsedUpLosses(List.of(new DatedCashValue(BigDecimal.ONE, "HUF", LocalDate.of(2000, 1, 1))));
+        copy.addTaxPayment(new DatedCashValue(BigDecimal.TEN, "HUF", LocalDate.of(2000, 1, 2)));
+        taxTracker.addLossOffset(new DatedCashValue(BigDecimal.TEN, "HUF", LocalDate.of(2000, 1, 3)));
+
+        assertEquals(List.of(new DatedCashValue(BigDecimal.ONE, "HUF", LocalDate.of(2000, 1, 1)),
+                        new DatedCashValue(BigDecimal.TEN, "HUF", LocalDate.of(2000, 1, 3))),
+                taxTracker.getLossOffsetAvailable());
+        assertEquals(Collections.emptyList(), copy.getLossOffsetAvailable());
+        assertEquals(Collections.emptyList(), taxTracker.getTaxesPaid());
+        assertEquals(1, copy.getTaxesPaid().size());
     }
 
     @Test
@@ -172,6 +180,21 @@ class TaxTrackerTest {
         assertTrue(taxTracker.getLossOffsetAvailable().isEmpty());
     }
 
+    @Test
+    void lossOffsetsAreSummedPerDateAndReadFromCutOff() {
+        taxTracker.addLossOffset(new DatedCashValue(BigDecimal.TEN, "HUF", LocalDate.of(2000, 1, 3)));
+        taxTracker.addLossOffset(new DatedCashValue(BigDecimal.ONE, "HUF", LocalDate.of(2000, 1, 1)));
+        taxTracker.addLossOffset(new DatedCashValue(BigDecimal.ONE, "HUF", LocalDate.of(2000, 1, 3)));
+        taxTracker.addLossOffset(new DatedCashValue(BigDecimal.ZERO, "HUF", LocalDate.of(2000, 1, 2)));
+
+        assertEquals(List.of(new DatedCashValue(BigDecimal.ONE, "HUF", LocalDate.of(2000, 1, 1)),
+                        new DatedCashValue(new BigDecimal("11"), "HUF", LocalDate.of(2000, 1, 3))),
+                taxTracker.getLossOffsetAvailable());
+        List<DatedCashValue> fromCutOff = new ArrayList<>();
+        taxTracker.getLossOffsetAvailableFrom(LocalDate.of(2000, 1, 2)).forEach(fromCutOff::add);
+        assertEquals(List.of(new DatedCashValue(new BigDecimal("11"), "HUF", LocalDate.of(2000, 1, 3))), fromCutOff);
+    }
+
     @Test
     void removingMoreThanAvailable() {
         taxTracker.addLossOffset(new DatedCashValue(BigDecimal.TEN, "HUF", LocalDate.of(2000, 1, 1)));
@@ -186,4 +209,32 @@ class TaxTrackerTest {
     }
 
 
-}
\ No newline at end of file
+
+    @Test
+    void replayingExchangedAmountsKeepsThemExact() {
+        BigDecimal rate = new BigDecimal("387.27").divide(new BigDecimal("1.1"), MathContext.DECIMAL64);
+        BigDecimal expectedGain = BigDecimal.ZERO;
+        BigDecimal expectedFee = BigDecimal.ZERO;
+        BigDecimal expectedLoss = BigDecimal.ZERO;
+        for (int i = 1; i <= 1000; i++) {
+            BigDecimal amount = new BigDecimal(i).divide(new BigDecimal("3"), MathContext.DECIMAL64);
+            taxTracker.addUntaxedGain(CashValue.of(amount, "HUF"));
+            taxTracker.addAvailableFeeWriteOff(CashValue.of(amount, "HUF"));
+            taxTracker.addLossOffset(new DatedCashValue(amount, "HUF", LocalDate.of(2000, 1, 1)));
+            expectedGain = expectedGain.add(amount);
+            expectedFee = expectedFee.add(amount);
+            expectedLoss = expectedLoss.add(amount);
+        }
+        BigDecimal used = expectedFee.divide(new BigDecimal("7"), MathContext.DECIMAL64);
+        taxTracker.useFeeWriteOff(CashValue.of(used, "HUF"));
+        taxTracker.removeUsedUpLosses(List.of(new DatedCashValue(used, "HUF", LocalDate.of(2000, 1, 1))));
+        taxTracker.changeTaxationCurrency("EUR", BigDecimal.ONE.divide(rate, MathContext.DECIMAL64));
+
+        BigDecimal toEur = BigDecimal.ONE.divide(rate, MathContext.DECIMAL64);
+        assertEquals(CashValue.of(expectedGain.multiply(toEur), "EUR"), taxTracker.getUntaxedGain());
+        assertEquals(CashValue.of(expectedFee.subtract(used).multiply(toEur), "EUR"),
+                taxTracker.getFeeWriteOffAvailable());
+        assertEquals(List.of(new DatedCashValue(expectedLoss.subtract(used).multiply(toEur), "EUR",
+                LocalDate.of(2000, 1, 1))), taxTracker.getLossOffsetAvailable());
+    }
+}
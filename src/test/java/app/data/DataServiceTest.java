@@ -10,22 +10,25 @@ import app.data.securities.price.SecurityPriceOfDay;
 import app.data.securities.security.Security;
 import app.util.InvalidDataException;
 import app.util.MissingDataException;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.matchesPattern;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.*;
-import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 class DataServiceTest {
@@ -39,9 +42,14 @@ class DataServiceTest {
     @Mock
     CurrencyService currencyService;
 
-    @InjectMocks
     DataService dataService;
 
+    @BeforeEach
+    void init() {
+        dataService = new DataService(exchangeRateService, securityService, currencyService,
+                new ReferenceDataCache(100));
+    }
+
     @Test
     void exchangeRateFound() {
         when(exchangeRateService.getExchangeRateDetails(eq("KWD"), eq("JPY"), eq(LocalDate.of(2000, 1, 1)), anyInt()))
@@ -119,6 +127,17 @@ class DataServiceTest {
         assertThat(ex.getMessage(), matchesPattern("Share price not found for MMM in the [0-9]+ day period to 2000-01-01"));
     }
 
+    @Test
+    void sharePricesOfSeveralSecuritiesNotAllFound() {
+        when(securityService.getPrices(eq(List.of("MMM", "AAPL")), eq(LocalDate.of(2000, 1, 1)), anyInt()))
+                .thenReturn(Map.of("MMM", SecurityPriceOfDay.builder().close(BigDecimal.TEN).build()));
+
+        MissingDataException ex = assertThrows(MissingDataException.class,
+                () -> dataService.getSharePrices(List.of("MMM", "AAPL"), LocalDate.of(2000, 1, 1)));
+        assertThat(ex.getMessage(),
+                matchesPattern("Share price not found for \\[AAPL\\] in the [0-9]+ day period to 2000-01-01"));
+    }
+
     @Test
     void securityDetailsFoundById() {
         when(securityService.getSecurityById(5L))
@@ -172,4 +191,48 @@ class DataServiceTest {
                 () -> dataService.getSecurityMarketByTicker("QQQ111"));
         assertEquals("No market found for security with ticker: QQQ111", ex.getMessage());
     }
+
+    @Test
+    void currencyDetailsReadFromStoreOnce() {
+        BasicCurrency currency = new BasicCurrency("JPY", "Japanese Yen");
+        currency.setId(5L);
+        when(currencyService.getByCode("JPY")).thenReturn(Optional.of(currency));
+
+        dataService.getCurrencyDetailsByCode("JPY");
+
+        assertEquals(currency, dataService.getCurrencyDetailsByCode("jpy"));
+        assertEquals(currency, dataService.getCurrencyDetailsById(5L));
+        assertEquals(List.of(currency), dataService.getCurrencyDetailsByIdList(List.of(5L)));
+        verify(currencyService, times(1)).getByCode(any());
+        verifyNoMoreInteractions(currencyService);
+    }
+
+    @Test
+    void preloadedSecurityDetailsServedFromMemory() {
+        Security security = new Security("MMM", "3M Corporation", "NYSE", "USD");
+        security.setId(11L);
+        when(securityService.getAll()).thenReturn(List.of(security));
+
+        dataService.preloadReferenceData();
+
+        assertEquals(security, dataService.getSecurityDetailsByTicker("MMM"));
+        assertEquals(security, dataService.getSecurityDetailsById(11L));
+        assertEquals("NYSE", dataService.getSecurityMarketByTicker("MMM"));
+        verify(securityService).getAll();
+        verifyNoMoreInteractions(securityService);
+    }
+
+    @Test
+    void cachedSecurityDetailsNotSharedBetweenCallers() {
+        Security security = new Security("MMM", "3M Corporation", "NYSE", "USD");
+        security.setId(11L);
+        when(securityService.getAll()).thenReturn(List.of(security));
+        dataService.preloadReferenceData();
+
+        security.setMarket("LSE");
+        dataService.getSecurityDetailsByTicker("MMM").setMarket("XETRA");
+
+        assertEquals("NYSE", dataService.getSecurityDetailsById(11L).getMarket());
+        assertNotSame(dataService.getSecurityDetailsById(11L), dataService.getSecurityDetailsById(11L));
+    }
 }
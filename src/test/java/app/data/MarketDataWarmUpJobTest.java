@@ -0,0 +1,71 @@
+package app.data;
+
+import app.data.fx.currency.BasicCurrency;
+import app.data.securities.security.Security;
+import app.manager.transaction.TransactionRepository;
+import app.manager.transaction.asset_record.InvestmentAssetRecordRepository;
+import app.manager.transaction.asset_record.InvestmentAssetType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class MarketDataWarmUpJobTest {
+
+    @Mock
+    InvestmentAssetRecordRepository assetRecordRepository;
+
+    @Mock
+    TransactionRepository transactionRepository;
+
+    @Mock
+    DataService dataService;
+
+    MarketDataWarmUpJob warmUpJob;
+
+    @BeforeEach
+    void init() {
+        warmUpJob = new MarketDataWarmUpJob(assetRecordRepository, transactionRepository, dataService, 30, 2, 1000);
+        when(assetRecordRepository.findAssetIdsInTransactions(InvestmentAssetType.SECURITY))
+                .thenReturn(List.of(20L, 21L));
+        when(assetRecordRepository.findAssetIdsInTransactions(InvestmentAssetType.CASH))
+                .thenReturn(List.of(10L));
+        when(dataService.getSecurityDetailsByIdList(List.of(20L, 21L)))
+                .thenReturn(List.of(
+                        new Security("MMM", "3M Corporation", "NYSE", "USD"),
+                        new Security("OTP", "OTP Bank", "BUD", "HUF")));
+        when(dataService.getCurrencyDetailsByIdList(List.of(10L)))
+                .thenReturn(List.of(new BasicCurrency("EUR", "euro")));
+        when(transactionRepository.findFeeCurrencies())
+                .thenReturn(List.of("GBP"));
+    }
+
+    @Test
+    void pricesOfEverySecurityAndRatesOfEveryCurrencyPreloaded() {
+        warmUpJob.warmUp(LocalDate.of(2000, 1, 31));
+
+        LocalDate from = LocalDate.of(2000, 1, 1);
+        LocalDate until = LocalDate.of(2000, 1, 31);
+        verify(dataService).preloadSharePrices(List.of("MMM"), from, until);
+        verify(dataService).preloadSharePrices(List.of("OTP"), from, until);
+        verify(dataService, times(1)).storeMissingExchangeRatesFromMnb(Set.of("EUR", "GBP", "USD", "HUF"), from, until);
+    }
+
+    @Test
+    void failingTaskDoesNotStopOthers() {
+        doThrow(new IllegalStateException("Could not get exchange rates from MNB"))
+                .when(dataService).storeMissingExchangeRatesFromMnb(any(), any(), any());
+
+        warmUpJob.warmUp(LocalDate.of(2000, 1, 31));
+
+        verify(dataService, times(2)).preloadSharePrices(any(), any(), any());
+    }
+}
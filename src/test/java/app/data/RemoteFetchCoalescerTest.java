@@ -0,0 +1,72 @@
+package app.data;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RemoteFetchCoalescerTest {
+
+    RemoteFetchCoalescer coalescer = new RemoteFetchCoalescer();
+
+    @Test
+    void concurrentCallersShareOneFetch() throws Exception {
+        AtomicInteger fetchCount = new AtomicInteger();
+        CountDownLatch fetchStarted = new CountDownLatch(1);
+        CountDownLatch fetchMayFinish = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> first = executor.submit(() -> coalescer.fetch("prices", List.of("MMM"), () -> {
+                fetchCount.incrementAndGet();
+                fetchStarted.countDown();
+                await(fetchMayFinish);
+                return "fetched";
+            }));
+            fetchStarted.await();
+            Future<String> second = executor.submit(() -> coalescer.fetch("prices", List.of("MMM"), () -> {
+                fetchCount.incrementAndGet();
+                return "fetched again";
+            }));
+            // the second caller is waiting on the first fetch
+            while (coalescer.getCoalescedCounts().isEmpty()) {
+                Thread.onSpinWait();
+            }
+            fetchMayFinish.countDown();
+
+            assertEquals("fetched", first.get());
+            assertEquals("fetched", second.get());
+            assertEquals(1, fetchCount.get());
+            assertEquals(Map.of("prices", 1L), coalescer.getCoalescedCounts());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void completedFetchNotShared() {
+        assertEquals("first", coalescer.fetch("prices", List.of("MMM"), () -> "first"));
+        assertEquals("second", coalescer.fetch("prices", List.of("MMM"), () -> "second"));
+        assertTrue(coalescer.getCoalescedCounts().isEmpty());
+    }
+
+    @Test
+    void failedFetchReleasesKey() {
+        IllegalStateException failure = new IllegalStateException("Remote service unavailable");
+        assertThrows(IllegalStateException.class, () -> coalescer.fetch("rates", List.of("EUR"), () -> {
+            throw failure;
+        }));
+        assertEquals("retried", coalescer.fetch("rates", List.of("EUR"), () -> "retried"));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -16,6 +16,12 @@ class CurrencyNameServiceIT {
         assertEquals("Hungarian Forint", currencyNameService.getCurrencyName("HUF"));
     }
 
+    @Test
+    void refreshedFromRemote() {
+        currencyNameService.refresh();
+        assertEquals("Japanese Yen", currencyNameService.getCurrencyName("JPY"));
+    }
+
     @Test
     void invalidCurrencyRequested() {
         IllegalArgumentException iae = assertThrows(IllegalArgumentException.class,
@@ -0,0 +1,24 @@
+package app.data.fx.currency.full_names;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CurrencyNameServiceTest {
+
+    CurrencyNameService currencyNameService = new CurrencyNameService();
+
+    @Test
+    void bundledNamesServed() {
+        assertEquals("Euro", currencyNameService.getCurrencyName("EUR"));
+        assertEquals("Hungarian Forint", currencyNameService.getCurrencyName("HUF"));
+        assertEquals("Czech Republic Koruna", currencyNameService.getCurrencyName("CZK"));
+    }
+
+    @Test
+    void unknownCurrency() {
+        IllegalArgumentException iae = assertThrows(IllegalArgumentException.class,
+                () -> currencyNameService.getCurrencyName("WWW"));
+        assertEquals("No full name found for currency: WWW", iae.getMessage());
+    }
+}
@@ -12,7 +12,7 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class MNBQueryServiceIT {
 
-    MNBQueryService mnbQueryService = new MNBQueryService();
+    MNBQueryService mnbQueryService = new MNBQueryService("");
 
     @Test
     void gettingKnownHistoricExchangeRates() {
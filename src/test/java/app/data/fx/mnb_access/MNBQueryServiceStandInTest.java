@@ -0,0 +1,87 @@
+package app.data.fx.mnb_access;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MNBQueryServiceStandInTest {
+
+    MNBStandInServer standIn;
+
+    @AfterEach
+    void stop() {
+        standIn.close();
+    }
+
+    @Test
+    void ratesOfSeveralCurrenciesInUnitsOfOne() {
+        standIn = new MNBStandInServer(1)
+                .addRate("EUR", 1, LocalDate.of(2000, 1, 4), new BigDecimal("254.47"))
+                .addRate("JPY", 100, LocalDate.of(2000, 1, 4), new BigDecimal("242.04"))
+                .addRate("EUR", 1, LocalDate.of(2000, 1, 10), new BigDecimal("255.10"))
+                .start();
+        MNBQueryService mnbQueryService = new MNBQueryService(standIn.getEndpoint());
+
+        Map<String, Map<LocalDate, BigDecimal>> rates = mnbQueryService.getHufRates(
+                List.of("EUR", "JPY", "WWW"), LocalDate.of(2000, 1, 1), LocalDate.of(2000, 1, 9));
+
+        assertEquals(Map.of(
+                        "EUR", Map.of(LocalDate.of(2000, 1, 4), new BigDecimal("254.47")),
+                        "JPY", Map.of(LocalDate.of(2000, 1, 4), new BigDecimal("2.4204"))),
+                rates);
+        assertEquals(1, standIn.getRequestCount());
+    }
+
+    @Test
+    void seededRatesOnWeekdays() {
+        standIn = MNBStandInServer.withSeededRates(7, LocalDate.of(2022, 1, 1), LocalDate.of(2022, 12, 31)).start();
+        MNBQueryService mnbQueryService = new MNBQueryService(standIn.getEndpoint());
+
+        // 2022-10-29 and 30 fall on a weekend
+        Map<LocalDate, BigDecimal> rates =
+                mnbQueryService.getHufRates("GBP", LocalDate.of(2022, 10, 27), LocalDate.of(2022, 11, 1));
+
+        assertEquals(4, rates.size());
+        assertFalse(rates.containsKey(LocalDate.of(2022, 10, 29)));
+        try (MNBStandInServer sameSeed =
+                     MNBStandInServer.withSeededRates(7, LocalDate.of(2022, 1, 1), LocalDate.of(2022, 12, 31)).start()) {
+            assertEquals(rates, new MNBQueryService(sameSeed.getEndpoint())
+                    .getHufRates("GBP", LocalDate.of(2022, 10, 27), LocalDate.of(2022, 11, 1)));
+        }
+    }
+
+    @Test
+    void currencyUnits() {
+        standIn = new MNBStandInServer(1)
+                .addRate("KRW", 100, LocalDate.of(2000, 1, 4), new BigDecimal("20.11"))
+                .start();
+        MNBQueryService mnbQueryService = new MNBQueryService(standIn.getEndpoint());
+
+        MNBCurrency currency = mnbQueryService.getCurrencyDetails("KRW").orElseThrow();
+        assertEquals("KRW", currency.getCurrency());
+        assertEquals(100, currency.getUnits());
+        assertTrue(mnbQueryService.getCurrencyDetails("WWW").isEmpty());
+    }
+
+    @Test
+    void faultsAndLatencyInjected() {
+        standIn = new MNBStandInServer(1)
+                .withFaultRate(1)
+                .withLatency(Duration.ofMillis(50))
+                .start();
+        MNBQueryService mnbQueryService = new MNBQueryService(standIn.getEndpoint());
+        LocalDate from = LocalDate.of(2000, 1, 1);
+        LocalDate to = LocalDate.of(2000, 1, 9);
+
+        long start = System.nanoTime();
+        assertThrows(RuntimeException.class, () -> mnbQueryService.getHufRates("EUR", from, to));
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).toMillis() >= 50);
+    }
+}
@@ -0,0 +1,41 @@
+package app.data.fx.mnb_access;
+
+import org.junit.jupiter.api.Test;
+
+import javax.xml.stream.XMLStreamException;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MNBRateParserTest {
+
+    @Test
+    void severalCurrenciesOverSeveralDays() throws XMLStreamException {
+        String xml = "<MNBExchangeRates>" +
+                "<Day date=\"2000-01-04\"><Rate unit=\"1\" curr=\"EUR\">254,47</Rate>" +
+                "<Rate unit=\"100\" curr=\"JPY\">242,04</Rate></Day>" +
+                "<Day date=\"2000-01-05\"><Rate unit=\"1\" curr=\"EUR\">254,65</Rate></Day>" +
+                "</MNBExchangeRates>";
+
+        Map<String, Map<LocalDate, BigDecimal>> rates = MNBRateParser.parse(xml);
+
+        assertEquals(2, rates.get("EUR").size());
+        assertEquals(new BigDecimal("254.65"), rates.get("EUR").get(LocalDate.of(2000, 1, 5)));
+        // rates are converted to one unit of the currency
+        assertEquals(Map.of(LocalDate.of(2000, 1, 4), new BigDecimal("2.4204")), rates.get("JPY"));
+    }
+
+    @Test
+    void noRatesInPeriod() throws XMLStreamException {
+        Map<String, Map<LocalDate, BigDecimal>> rates =
+                MNBRateParser.parse("<MNBExchangeRates><Day date=\"2022-10-31\"/></MNBExchangeRates>");
+        assertTrue(rates.isEmpty());
+    }
+
+    @Test
+    void malformedResponse() {
+        assertThrows(XMLStreamException.class, () -> MNBRateParser.parse("<MNBExchangeRates><Day"));
+    }
+}
@@ -0,0 +1,250 @@
+package app.data.fx.mnb_access;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>Local stand-in for MNB's exchange rate SOAP service, answering {@code GetExchangeRates} and
+ * {@code GetCurrencyUnits} from the rates it is given. Point {@link MNBQueryService} at {@link #getEndpoint()} to run
+ * the exchange rate code paths without the network.</p>
+ * <p>Each response can be delayed by a fixed latency, and a share of the requests, drawn from a seeded random
+ * sequence, answered with a SOAP fault instead.</p>
+ */
+public final class MNBStandInServer implements AutoCloseable {
+
+    private static final XMLInputFactory INPUT_FACTORY = XMLInputFactory.newFactory();
+
+    static {
+        INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        INPUT_FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    private final Map<String, Integer> units = new HashMap<>();
+    // Presented rates, i.e. the amount of HUF that "unit" units of the currency are worth
+    private final Map<String, NavigableMap<LocalDate, BigDecimal>> rates = new HashMap<>();
+    private final Random faults;
+    private final AtomicInteger requestCount = new AtomicInteger();
+    private volatile Duration latency = Duration.ZERO;
+    private volatile double faultRate;
+    private HttpServer server;
+    private ExecutorService executor;
+
+    public MNBStandInServer(long seed) {
+        faults = new Random(seed);
+    }
+
+    /**
+     * Creates a stand-in with a random walk of weekday rates for EUR, USD, GBP, CHF and JPY (presented for 100 units)
+     * between the two dates. The same seed gives the same rates and faults.
+     */
+    public static MNBStandInServer withSeededRates(long seed, LocalDate from, LocalDate to) {
+        MNBStandInServer standIn = new MNBStandInServer(seed);
+        Random random = new Random(seed);
+        standIn.addRandomWalk(random, "EUR", 1, 300, from, to);
+        standIn.addRandomWalk(random, "USD", 1, 250, from, to);
+        standIn.addRandomWalk(random, "GBP", 1, 400, from, to);
+        standIn.addRandomWalk(random, "CHF", 1, 260, from, to);
+        standIn.addRandomWalk(random, "JPY", 100, 230, from, to);
+        return standIn;
+    }
+
+    public synchronized MNBStandInServer addRate(String currency, int unit, LocalDate date, BigDecimal presentedRate) {
+        units.put(currency, unit);
+        rates.computeIfAbsent(currency, c -> new TreeMap<>()).put(date, presentedRate);
+        return this;
+    }
+
+    public MNBStandInServer withLatency(Duration latency) {
+        this.latency = latency;
+        return this;
+    }
+
+    /**
+     * @param faultRate Share of requests answered with a SOAP fault, between 0 and 1.
+     */
+    public MNBStandInServer withFaultRate(double faultRate) {
+        this.faultRate = faultRate;
+        return this;
+    }
+
+    /**
+     * Starts listening on a free local port.
+     */
+    public MNBStandInServer start() {
+        try {
+            server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not start MNB stand-in server.", e);
+        }
+        server.createContext("/arfolyamok.asmx", this::handle);
+        executor = Executors.newCachedThreadPool();
+        server.setExecutor(executor);
+        server.start();
+        return this;
+    }
+
+    public String getEndpoint() {
+        return "http://localhost:" + server.getAddress().getPort() + "/arfolyamok.asmx";
+    }
+
+    public int getRequestCount() {
+        return requestCount.get();
+    }
+
+    @Override
+    public void close() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+        }
+    }
+
+    private void addRandomWalk(Random random, String currency, int unit, double start, LocalDate from, LocalDate to) {
+        double rate = start;
+        for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+            if (date.getDayOfWeek() != DayOfWeek.SATURDAY && date.getDayOfWeek() != DayOfWeek.SUNDAY) {
+                rate *= 1 + 0.005 * random.nextGaussian();
+                addRate(currency, unit, date, BigDecimal.valueOf(rate).setScale(2, RoundingMode.HALF_UP));
+            }
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requestCount.incrementAndGet();
+        try {
+            Map<String, String> request = readRequest(exchange.getRequestBody());
+            sleep(latency);
+            if (isFault()) {
+                respond(exchange, 500, fault("Service temporarily unavailable"));
+            } else if (request.containsKey("GetExchangeRates")) {
+                respond(exchange, 200, result("GetExchangeRates", exchangeRates(
+                        request.get("currencyNames"),
+                        LocalDate.parse(request.get("startDate")),
+                        LocalDate.parse(request.get("endDate")))));
+            } else if (request.containsKey("GetCurrencyUnits")) {
+                respond(exchange, 200, result("GetCurrencyUnits", currencyUnits(request.get("currencyNames"))));
+            } else {
+                respond(exchange, 500, fault("Unknown operation"));
+            }
+        } catch (XMLStreamException | RuntimeException e) {
+            respond(exchange, 500, fault("Invalid request: " + e.getMessage()));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private boolean isFault() {
+        synchronized (faults) {
+            return faults.nextDouble() < faultRate;
+        }
+    }
+
+    private synchronized String exchangeRates(String currencyNames, LocalDate from, LocalDate to) {
+        Map<LocalDate, StringBuilder> days = new TreeMap<>(Comparator.reverseOrder());
+        for (String currency : currencyNames.split(",")) {
+            String code = currency.trim().toUpperCase();
+            rates.getOrDefault(code, Collections.emptyNavigableMap()).subMap(from, true, to, true).forEach(
+                    (date, rate) -> days.computeIfAbsent(date, d -> new StringBuilder())
+                            .append("<Rate unit=\"").append(units.get(code)).append("\" curr=\"").append(code)
+                            .append("\">").append(rate.toPlainString().replace('.', ',')).append("</Rate>"));
+        }
+        StringBuilder xml = new StringBuilder("<MNBExchangeRates>");
+        days.forEach((date, dayRates) -> xml.append("<Day date=\"").append(date).append("\">")
+                .append(dayRates).append("</Day>"));
+        return xml.append("</MNBExchangeRates>").toString();
+    }
+
+    private synchronized String currencyUnits(String currencyNames) {
+        StringBuilder xml = new StringBuilder("<MNBCurrencyUnits><Units>");
+        for (String currency : currencyNames.split(",")) {
+            String code = currency.trim().toUpperCase();
+            if (units.containsKey(code)) {
+                xml.append("<Unit curr=\"").append(code).append("\">").append(units.get(code)).append("</Unit>");
+            }
+        }
+        return xml.append("</Units></MNBCurrencyUnits>").toString();
+    }
+
+    /**
+     * @return The text of each element in the request body by local name. The operation element maps to an empty text.
+     */
+    private static Map<String, String> readRequest(InputStream body) throws XMLStreamException {
+        Map<String, String> elements = new HashMap<>();
+        XMLStreamReader reader = INPUT_FACTORY.createXMLStreamReader(body);
+        try {
+            while (reader.hasNext()) {
+                if (reader.next() != XMLStreamConstants.START_ELEMENT) {
+                    continue;
+                }
+                String name = reader.getLocalName();
+                if (name.equals("GetExchangeRates") || name.equals("GetCurrencyUnits")) {
+                    elements.put(name, "");
+                } else if (!name.equals("Envelope") && !name.equals("Header") && !name.equals("Body")) {
+                    elements.put(name, reader.getElementText().trim());
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return elements;
+    }
+
+    private static String result(String operation, String resultXml) {
+        return envelope("<" + operation + "Response xmlns=\"http://www.mnb.hu/webservices/\">"
+                + "<" + operation + "Result>" + escape(resultXml) + "</" + operation + "Result>"
+                + "</" + operation + "Response>");
+    }
+
+    private static String fault(String message) {
+        return envelope("<s:Fault><faultcode>s:Server</faultcode><faultstring>" + escape(message)
+                + "</faultstring></s:Fault>");
+    }
+
+    private static String envelope(String body) {
+        return "<s:Envelope xmlns:s=\"http://schemas.xmlsoap.org/soap/envelope/\"><s:Body>" + body
+                + "</s:Body></s:Envelope>";
+    }
+
+    private static String escape(String text) {
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+
+    private static void respond(HttpExchange exchange, int status, String envelope) throws IOException {
+        byte[] bytes = envelope.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/xml; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static void sleep(Duration duration) {
+        if (duration.isZero()) {
+            return;
+        }
+        try {
+            Thread.sleep(duration.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package app.data.fx.rate;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CrossRateCacheTest {
+
+    @Mock
+    ExchangeRateRepository exchangeRateRepository;
+
+    HufRateCache hufRateCache;
+    CrossRateCache crossRateCache;
+
+    @BeforeEach
+    void init() {
+        hufRateCache = new HufRateCache(exchangeRateRepository, 1000);
+        crossRateCache = new CrossRateCache(hufRateCache, 100);
+        when(exchangeRateRepository.findRates(eq("EUR"), eq("HUF"), any(), any()))
+                .thenReturn(List.of(
+                        new StoredRate("EUR", "HUF", LocalDate.of(2000, 1, 3), new BigDecimal("220")),
+                        new StoredRate("EUR", "HUF", LocalDate.of(2000, 1, 5), new BigDecimal("250"))));
+        when(exchangeRateRepository.findRates(eq("USD"), eq("HUF"), any(), any()))
+                .thenReturn(List.of(
+                        new StoredRate("USD", "HUF", LocalDate.of(2000, 1, 3), new BigDecimal("200")),
+                        new StoredRate("USD", "HUF", LocalDate.of(2000, 1, 4), new BigDecimal("210"))));
+        hufRateCache.load("EUR", LocalDate.of(2000, 1, 1), LocalDate.of(2000, 1, 10));
+        hufRateCache.load("USD", LocalDate.of(2000, 1, 1), LocalDate.of(2000, 1, 10));
+    }
+
+    @Test
+    void pairsOfTheDayDerivedFromHufRates() {
+        Rate eurUsd = crossRateCache.find("EUR", "USD", LocalDate.of(2000, 1, 3), LocalDate.of(2000, 1, 3))
+                .orElseThrow();
+        assertEquals(new BigDecimal("1.1"), eurUsd.getExchangeRate());
+        assertEquals("EUR", eurUsd.getSourceIsoAbbreviation());
+        assertEquals("USD", eurUsd.getDestinationIsoAbbreviation());
+
+        Rate hufEur = crossRateCache.find("HUF", "EUR", LocalDate.of(2000, 1, 3), LocalDate.of(2000, 1, 3))
+                .orElseThrow();
+        assertEquals(BigDecimal.ONE.divide(new BigDecimal("220"), MathContext.DECIMAL64), hufEur.getExchangeRate());
+        assertEquals(new BigDecimal("220"), crossRateCache.find(
+                "EUR", "HUF", LocalDate.of(2000, 1, 3), LocalDate.of(2000, 1, 3)).orElseThrow().getExchangeRate());
+    }
+
+    @Test
+    void latestCommonDayWithinPeriod() {
+        // EUR has no rate on the 4th, USD none on the 5th
+        Rate rate = crossRateCache.find("EUR", "USD", LocalDate.of(2000, 1, 1), LocalDate.of(2000, 1, 6))
+                .orElseThrow();
+        assertEquals(LocalDate.of(2000, 1, 3), rate.getDate());
+
+        assertTrue(crossRateCache.find("EUR", "USD", LocalDate.of(2000, 1, 4), LocalDate.of(2000, 1, 6)).isEmpty());
+        assertTrue(crossRateCache.find("EUR", "GBP", LocalDate.of(2000, 1, 1), LocalDate.of(2000, 1, 6)).isEmpty());
+    }
+
+    @Test
+    void repeatedLookupsReturnSameRate() {
+        Rate first = crossRateCache.find("EUR", "USD", LocalDate.of(2000, 1, 3), LocalDate.of(2000, 1, 3))
+                .orElseThrow();
+        assertSame(first, crossRateCache.find("EUR", "USD", LocalDate.of(2000, 1, 3), LocalDate.of(2000, 1, 3))
+                .orElseThrow());
+    }
+
+    @Test
+    void dayRebuiltWhenRateAdded() {
+        assertTrue(crossRateCache.find("EUR", "USD", LocalDate.of(2000, 1, 5), LocalDate.of(2000, 1, 5)).isEmpty());
+
+        hufRateCache.put("USD", LocalDate.of(2000, 1, 5), new BigDecimal("200"));
+
+        assertEquals(new BigDecimal("1.25"), crossRateCache.find(
+                "EUR", "USD", LocalDate.of(2000, 1, 5), LocalDate.of(2000, 1, 5)).orElseThrow().getExchangeRate());
+    }
+
+    @Test
+    void otherDaysKeptWhenRateAdded() {
+        Rate before = crossRateCache.find("EUR", "USD", LocalDate.of(2000, 1, 3), LocalDate.of(2000, 1, 3))
+                .orElseThrow();
+
+        hufRateCache.put("USD", LocalDate.of(2000, 1, 5), new BigDecimal("200"));
+
+        assertSame(before, crossRateCache.find("EUR", "USD", LocalDate.of(2000, 1, 3), LocalDate.of(2000, 1, 3))
+                .orElseThrow());
+    }
+}
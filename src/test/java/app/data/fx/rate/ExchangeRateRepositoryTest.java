@@ -8,6 +8,7 @@ import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import javax.persistence.EntityManager;
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -51,4 +52,20 @@ class ExchangeRateRepositoryTest {
         entityManager.persist(new StoredRate("JPY", "HUF", LocalDate.of(2000,10,9), BigDecimal.TEN));
         assertFalse(exchangeRateRepository.isAlreadyStored("JPY", "HUF", LocalDate.of(2000,10,10)));
     }
-}
\ No newline at end of file
+
+    @Test
+    void insertMissingSkipsStoredRates() {
+        entityManager.persist(new StoredRate("EUR", "HUF", LocalDate.of(2000,10,10), BigDecimal.TEN));
+        entityManager.flush();
+
+        exchangeRateRepository.insertMissing(List.of(
+                new StoredRate("EUR", "HUF", LocalDate.of(2000,10,10), BigDecimal.ONE),
+                new StoredRate("EUR", "HUF", LocalDate.of(2000,10,11), BigDecimal.ONE)));
+
+        List<StoredRate> rates = exchangeRateRepository.findRates(
+                "EUR", "HUF", LocalDate.of(2000,10,10), LocalDate.of(2000,10,11));
+        assertEquals(2, rates.size());
+        assertEquals(BigDecimal.TEN, exchangeRateRepository.findRate("EUR", "HUF", LocalDate.of(2000,10,10))
+                .orElseThrow().getExchangeRate());
+    }
+}
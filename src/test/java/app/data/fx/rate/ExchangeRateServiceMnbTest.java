@@ -1,17 +1,21 @@
 package app.data.fx.rate;
 
+import app.data.RemoteFetchCoalescer;
 import app.data.fx.mnb_access.MNBQueryService;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -26,9 +30,14 @@ class ExchangeRateServiceMnbTest {
     @Mock
     MNBQueryService mnbQueryService;
 
-    @InjectMocks
     ExchangeRateServiceMnb exchangeRateService;
 
+    @BeforeEach
+    void init() {
+        HufRateCache hufRateCache = new HufRateCache(exchangeRateRepository, 1000);
+        exchangeRateService = new ExchangeRateServiceMnb(exchangeRateRepository, mnbQueryService,
+                hufRateCache, new CrossRateCache(hufRateCache, 100), new RemoteFetchCoalescer());
+    }
 
     @Test
     void sameCurrencyRateEqualsOne_andEfficient() {
@@ -36,15 +45,12 @@ class ExchangeRateServiceMnbTest {
                 LocalDate.of(2000, 1, 1)).orElseThrow();
         assertEquals(BigDecimal.ONE, exchangeRate.getExchangeRate());
         assertEquals(LocalDate.of(2000, 1, 1), exchangeRate.getDate());
-        verify(exchangeRateRepository, never()).findRate(any(), any(), any());
+        verifyNoInteractions(exchangeRateRepository);
     }
 
     @Test
     void exactDayRateWanted_againstHUF_haveLocally() {
-        when(exchangeRateRepository.findRate("EUR", "HUF",
-                LocalDate.of(2000, 1, 1)))
-                .thenReturn(Optional.of(new StoredRate("EUR", "HUF",
-                        LocalDate.of(2000, 1, 1), BigDecimal.TEN)));
+        storedLocally("EUR", BigDecimal.TEN, LocalDate.of(2000, 1, 1));
 
         Optional<Rate> exchangeRate = exchangeRateService.getExchangeRateDetails("EUR", "HUF",
                 LocalDate.of(2000, 1, 1));
@@ -55,14 +61,8 @@ class ExchangeRateServiceMnbTest {
 
     @Test
     void bothCurrenciesAvailableLocally() {
-        when(exchangeRateRepository.findRate("EUR", "HUF",
-                LocalDate.of(2000, 1, 1)))
-                .thenReturn(Optional.of(new StoredRate("EUR", "HUF",
-                        LocalDate.of(2000, 1, 1), new BigDecimal("220"))));
-        when(exchangeRateRepository.findRate("USD", "HUF",
-                LocalDate.of(2000, 1, 1)))
-                .thenReturn(Optional.of(new StoredRate("USD", "HUF",
-                        LocalDate.of(2000, 1, 1), new BigDecimal("200"))));
+        storedLocally("EUR", new BigDecimal("220"), LocalDate.of(2000, 1, 1));
+        storedLocally("USD", new BigDecimal("200"), LocalDate.of(2000, 1, 1));
 
         Optional<Rate> exchangeRate = exchangeRateService.getExchangeRateDetails("EUR", "USD",
                 LocalDate.of(2000, 1, 1));
@@ -73,99 +73,69 @@ class ExchangeRateServiceMnbTest {
     @Test
     void oneCurrencyLocally_oneCurrencyRemotelyAvailable_forExactDate() {
         // available locally
-        when(exchangeRateRepository.findRate("EUR", "HUF",
-                LocalDate.of(2000, 1, 1)))
-                .thenReturn(Optional.of(new StoredRate("EUR", "HUF",
-                        LocalDate.of(2000, 1, 1), new BigDecimal("220"))));
+        storedLocally("EUR", new BigDecimal("220"), LocalDate.of(2000, 1, 1));
 
         // available remotely
-        when(exchangeRateRepository.findRate("USD", "HUF",
-                LocalDate.of(2000, 1, 1)))
-                // initially not available locally
-                .thenReturn(Optional.empty())
-                // then saved for this day as a result of a call to MNBQueryService
-                .thenReturn(
-                        Optional.of(new StoredRate("USD", "HUF",
-                                LocalDate.of(2000, 1, 1), new BigDecimal("200"))));
-        when(mnbQueryService.getHufRates(eq("USD"), any(), eq(LocalDate.of(2000, 1, 1))))
-                .thenReturn(Map.of(
+        storedLocally("USD", BigDecimal.ONE);
+        when(mnbQueryService.getHufRates(eq(Set.of("USD")), any(), eq(LocalDate.of(2000, 1, 1))))
+                .thenReturn(Map.of("USD", Map.of(
                         LocalDate.of(1999, 12, 31), new BigDecimal("190"),
-                        LocalDate.of(2000, 1, 1), new BigDecimal("200")));
+                        LocalDate.of(2000, 1, 1), new BigDecimal("200"))));
 
         Optional<Rate> exchangeRate = exchangeRateService.getExchangeRateDetails("EUR", "USD",
                 LocalDate.of(2000, 1, 1));
         assertTrue(exchangeRate.isPresent());
         assertEquals(new BigDecimal("1.1"), exchangeRate.get().getExchangeRate());
-        verify(exchangeRateRepository, atLeastOnce()).save(argThat(r -> r.getSourceIsoAbbreviation().equals("USD")));
+        verify(exchangeRateRepository).insertMissing(argThat((List<StoredRate> rates) -> !rates.isEmpty()
+                && rates.stream().allMatch(r -> r.getSourceIsoAbbreviation().equals("USD"))));
     }
 
     @Test
     void allRemoteDataSavedIfNotAvailable() {
-        when(exchangeRateRepository.findRate(eq("EUR"), eq("HUF"),
-                any()))
-                .thenReturn(Optional.of(new StoredRate("EUR", "HUF",
-                        LocalDate.of(2000, 1, 1), BigDecimal.ONE)));
+        storedLocally("EUR", BigDecimal.ONE, LocalDate.of(1999, 12, 28), LocalDate.of(1999, 12, 29),
+                LocalDate.of(1999, 12, 30), LocalDate.of(1999, 12, 31), LocalDate.of(2000, 1, 1));
 
         // USD rates are not available locally, except 1999-12-29
-        when(exchangeRateRepository.findRate(eq("USD"), eq("HUF"),
-                any())).thenReturn(Optional.empty());
-        when(mnbQueryService.getHufRates(eq("USD"), any(), eq(LocalDate.of(2000, 1, 1))))
-                .thenReturn(Map.of(
+        storedLocally("USD", new BigDecimal("200"), LocalDate.of(1999, 12, 29));
+        when(mnbQueryService.getHufRates(eq(Set.of("USD")), any(), eq(LocalDate.of(2000, 1, 1))))
+                .thenReturn(Map.of("USD", Map.of(
                         LocalDate.of(1999, 12, 28), new BigDecimal("200"),
                         LocalDate.of(1999, 12, 29), new BigDecimal("200"),
-                        LocalDate.of(1999, 12, 30), new BigDecimal("200")));
-
-        when(exchangeRateRepository.isAlreadyStored("USD", "HUF", LocalDate.of(1999, 12, 29)))
-                .thenReturn(true);
-        when(exchangeRateRepository.isAlreadyStored("USD", "HUF", LocalDate.of(1999, 12, 28)))
-                .thenReturn(false);
-        when(exchangeRateRepository.isAlreadyStored("USD", "HUF", LocalDate.of(1999, 12, 30)))
-                .thenReturn(false);
-
+                        LocalDate.of(1999, 12, 30), new BigDecimal("200"))));
 
         // when
         exchangeRateService.getExchangeRateDetails("EUR", "USD",
                 LocalDate.of(2000, 1, 1));
 
-        // save method called for each day not present
-        verify(exchangeRateRepository, times(2)).save(any());
-        verify(exchangeRateRepository, never()).save(argThat(r -> r.getDate().getDayOfMonth() == 29));
+        // every day not present saved in one batch
+        verify(exchangeRateRepository, times(1)).insertMissing(argThat((List<StoredRate> rates) -> rates.size() == 2
+                && rates.stream().noneMatch(r -> r.getDate().getDayOfMonth() == 29)));
+        verify(exchangeRateRepository, never()).save(any());
     }
 
     @Test
     void callToRemoteServiceOnlyOnce() {
-        when(exchangeRateRepository.findRate(eq("EUR"), eq("HUF"),
-                any())).thenReturn(Optional.of(new StoredRate("EUR", "HUF",
-                LocalDate.of(2000, 1, 1), BigDecimal.ONE)));
-
-        when(exchangeRateRepository.findRate("USD", "HUF",
-                LocalDate.of(2000, 1, 1)))
-                .thenReturn(Optional.empty());
-        when(mnbQueryService.getHufRates(eq("USD"), any(), eq(LocalDate.of(2000, 1, 1))))
+        storedLocally("EUR", BigDecimal.ONE, LocalDate.of(2000, 1, 1));
+        storedLocally("USD", BigDecimal.ONE);
+        when(mnbQueryService.getHufRates(eq(Set.of("USD")), any(), eq(LocalDate.of(2000, 1, 1))))
                 .thenReturn(Collections.emptyMap());
 
         exchangeRateService.getExchangeRateDetails("EUR", "USD",
                 LocalDate.of(2000, 1, 1), 500);
 
-        verify(mnbQueryService, times(1)).getHufRates(any(), any(), any());
+        verify(mnbQueryService, times(1)).getHufRates(anyCollection(), any(), any());
     }
 
     @Test
     void oneCurrencyLocally_otherCurrencyNotAvailableForExactDay() {
         // available locally
-        when(exchangeRateRepository.findRate("EUR", "HUF",
-                LocalDate.of(2000, 1, 1)))
-                .thenReturn(Optional.of(new StoredRate("EUR", "HUF",
-                        LocalDate.of(2000, 1, 1), new BigDecimal("220"))));
+        storedLocally("EUR", new BigDecimal("220"), LocalDate.of(2000, 1, 1));
 
         // only prior day available remotely
-        when(exchangeRateRepository.findRate("USD", "HUF",
-                LocalDate.of(2000, 1, 1)))
-                .thenReturn(Optional.empty());
-        when(mnbQueryService.getHufRates(eq("USD"), any(), eq(LocalDate.of(2000, 1, 1))))
-                .thenReturn(
-                        Map.of(
-                                LocalDate.of(1999, 12, 31), new BigDecimal("190")));
+        storedLocally("USD", BigDecimal.ONE);
+        when(mnbQueryService.getHufRates(eq(Set.of("USD")), any(), eq(LocalDate.of(2000, 1, 1))))
+                .thenReturn(Map.of("USD", Map.of(
+                                LocalDate.of(1999, 12, 31), new BigDecimal("190"))));
 
         Optional<Rate> exchangeRate = exchangeRateService.getExchangeRateDetails("EUR", "USD",
                 LocalDate.of(2000, 1, 1));
@@ -174,26 +144,15 @@ class ExchangeRateServiceMnbTest {
 
     @Test
     void bothCurrenciesRemotelyAvailable_atLastOffsetToleratedDay() {
-        when(exchangeRateRepository.findRate("EUR", "HUF",
-                LocalDate.of(2000, 1, 1)))
-                .thenReturn(Optional.empty()) // initially not available locally
-                .thenReturn( // added after call to MNBQueryService
-                        Optional.of(new StoredRate("EUR", "HUF",
-                                LocalDate.of(1999, 12, 30), new BigDecimal("220"))));
-        when(mnbQueryService.getHufRates(eq("EUR"), any(), eq(LocalDate.of(2000, 1, 1))))
+        storedLocally("EUR", BigDecimal.ONE);
+        storedLocally("USD", BigDecimal.ONE);
+        when(mnbQueryService.getHufRates(eq(Set.of("EUR", "USD")), any(), eq(LocalDate.of(2000, 1, 1))))
                 .thenReturn(Map.of(
-                        LocalDate.of(2000,1,1), new BigDecimal("220"), // exact date only available for EUR
-                        LocalDate.of(1999, 12, 30), new BigDecimal("220")));
-
-        when(exchangeRateRepository.findRate("USD", "HUF",
-                LocalDate.of(2000, 1, 1)))
-                .thenReturn(Optional.empty())
-                .thenReturn(
-                        Optional.of(new StoredRate("USD", "HUF",
+                        "EUR", Map.of(
+                                LocalDate.of(2000,1,1), new BigDecimal("220"), // exact date only available for EUR
+                                LocalDate.of(1999, 12, 30), new BigDecimal("220")),
+                        "USD", Map.of(
                                 LocalDate.of(1999, 12, 30), new BigDecimal("200"))));
-        when(mnbQueryService.getHufRates(eq("USD"), any(), eq(LocalDate.of(2000, 1, 1))))
-                .thenReturn(Map.of(
-                        LocalDate.of(1999, 12, 30), new BigDecimal("200")));
 
         Optional<Rate> exchangeRate = exchangeRateService.getExchangeRateDetails("EUR", "USD",
                 LocalDate.of(2000, 1, 1), 2);
@@ -204,25 +163,115 @@ class ExchangeRateServiceMnbTest {
 
     @Test
     void bothCurrenciesRemotelyAvailable_butOutsideOffsetTolerance() {
-        when(exchangeRateRepository.findRate("EUR", "HUF",
-                LocalDate.of(2000, 1, 1)))
-                .thenReturn(Optional.empty());
-        when(mnbQueryService.getHufRates(eq("EUR"), any(), eq(LocalDate.of(2000, 1, 1))))
-                .thenReturn(
-                        Map.of(
-                                LocalDate.of(1999, 12, 30), new BigDecimal("220")));
-
-        when(exchangeRateRepository.findRate("USD", "HUF",
-                LocalDate.of(2000, 1, 1)))
-                .thenReturn(Optional.empty());
-        when(mnbQueryService.getHufRates(eq("USD"), any(), eq(LocalDate.of(2000, 1, 1))))
-                .thenReturn(
-                        Map.of(
-                                LocalDate.of(1999, 12, 30), new BigDecimal("190")));
+        storedLocally("EUR", BigDecimal.ONE);
+        storedLocally("USD", BigDecimal.ONE);
+        when(mnbQueryService.getHufRates(eq(Set.of("EUR", "USD")), any(), eq(LocalDate.of(2000, 1, 1))))
+                .thenReturn(Map.of(
+                        "EUR", Map.of(LocalDate.of(1999, 12, 30), new BigDecimal("220")),
+                        "USD", Map.of(LocalDate.of(1999, 12, 30), new BigDecimal("190"))));
 
         Optional<Rate> exchangeRate = exchangeRateService.getExchangeRateDetails("EUR", "USD",
                 LocalDate.of(2000, 1, 1), 1);
         assertTrue(exchangeRate.isEmpty());
     }
 
-}
\ No newline at end of file
+    @Test
+    void weekendLookupsServedFromOneRangeLoad() {
+        // Friday rates, looked up from the weekend after
+        storedLocally("EUR", new BigDecimal("220"), LocalDate.of(2000, 1, 7));
+        storedLocally("USD", new BigDecimal("200"), LocalDate.of(2000, 1, 7));
+        when(mnbQueryService.getHufRates(anyCollection(), any(), any()))
+                .thenReturn(Collections.emptyMap());
+
+        Rate saturday = exchangeRateService.getExchangeRateDetails("EUR", "USD", LocalDate.of(2000, 1, 8), 7)
+                .orElseThrow();
+        Rate sunday = exchangeRateService.getExchangeRateDetails("EUR", "USD", LocalDate.of(2000, 1, 9), 7)
+                .orElseThrow();
+
+        assertEquals(LocalDate.of(2000, 1, 7), saturday.getDate());
+        assertEquals(new BigDecimal("1.1"), sunday.getExchangeRate());
+        verify(exchangeRateRepository, times(1)).findRates(eq("EUR"), eq("HUF"), any(), any());
+        verify(exchangeRateRepository, times(1)).findRates(eq("USD"), eq("HUF"), any(), any());
+    }
+
+    @Test
+    void ratesLoadedIntoCacheServeLookupsWithoutFurtherQueries() {
+        storedLocally("EUR", new BigDecimal("220"), LocalDate.of(2000, 1, 3), LocalDate.of(2000, 6, 1));
+        storedLocally("USD", new BigDecimal("200"), LocalDate.of(2000, 1, 3), LocalDate.of(2000, 6, 1));
+
+        exchangeRateService.loadStoredRatesIntoCache(List.of("eur", "USD", "HUF"),
+                LocalDate.of(2000, 1, 1), LocalDate.of(2000, 6, 30));
+        exchangeRateService.getExchangeRateDetails("EUR", "USD", LocalDate.of(2000, 1, 3)).orElseThrow();
+        Rate later = exchangeRateService.getExchangeRateDetails("EUR", "USD", LocalDate.of(2000, 6, 1))
+                .orElseThrow();
+
+        assertEquals(new BigDecimal("1.1"), later.getExchangeRate());
+        verify(exchangeRateRepository, times(1)).findRates(eq("EUR"), eq("HUF"), any(), any());
+        verify(exchangeRateRepository, times(1)).findRates(eq("USD"), eq("HUF"), any(), any());
+        verify(exchangeRateRepository, never()).findRates(eq("HUF"), any(), any(), any());
+        verifyNoInteractions(mnbQueryService);
+    }
+
+    @Test
+    void storingSeveralCurrenciesQueriesMnbOnce() {
+        LocalDate monday = LocalDate.of(2000, 1, 3);
+        LocalDate friday = LocalDate.of(2000, 1, 7);
+        when(exchangeRateRepository.findStoredDates("EUR", "HUF", monday, friday))
+                .thenReturn(List.of(monday, friday));
+        when(exchangeRateRepository.findStoredDates("USD", "HUF", monday, friday))
+                .thenReturn(List.of(LocalDate.of(2000, 1, 4)));
+        when(mnbQueryService.getHufRates(Set.of("EUR", "USD"), monday, friday))
+                .thenReturn(Map.of(
+                        "EUR", Map.of(monday, new BigDecimal("250"), LocalDate.of(2000, 1, 5), new BigDecimal("251")),
+                        "USD", Map.of(monday, new BigDecimal("240"))));
+
+        exchangeRateService.storeMissingRatesFromMnb(List.of("eur", "USD", "HUF"), monday, friday);
+
+        verify(mnbQueryService, times(1)).getHufRates(anyCollection(), any(), any());
+        // only the rates not stored yet are saved
+        verify(exchangeRateRepository).insertMissing(argThat((List<StoredRate> rates) -> rates.size() == 1
+                && rates.get(0).getSourceIsoAbbreviation().equals("EUR")
+                && rates.get(0).getDate().equals(LocalDate.of(2000, 1, 5))));
+        verify(exchangeRateRepository).insertMissing(argThat((List<StoredRate> rates) -> rates.size() == 1
+                && rates.get(0).getSourceIsoAbbreviation().equals("USD") && rates.get(0).getDate().equals(monday)));
+    }
+
+    @Test
+    void rateMissingAtMnbIsNotFetchedAgain() {
+        storedLocally("EUR", new BigDecimal("220"), LocalDate.of(2000, 1, 7));
+        when(mnbQueryService.getHufRates(eq(Set.of("EUR")), any(), eq(LocalDate.of(2000, 1, 8))))
+                .thenReturn(Collections.emptyMap());
+
+        exchangeRateService.getExchangeRateDetails("EUR", "HUF", LocalDate.of(2000, 1, 8));
+        Optional<Rate> again = exchangeRateService.getExchangeRateDetails("EUR", "HUF", LocalDate.of(2000, 1, 8));
+        Rate friday = exchangeRateService.getExchangeRateDetails("EUR", "HUF", LocalDate.of(2000, 1, 8), 3)
+                .orElseThrow();
+
+        assertTrue(again.isEmpty());
+        assertEquals(LocalDate.of(2000, 1, 7), friday.getDate());
+        verify(mnbQueryService, times(1)).getHufRates(anyCollection(), any(), any());
+    }
+
+    @Test
+    void storingDaysMissingAtMnbQueriesMnbOnce() {
+        LocalDate monday = LocalDate.of(2000, 1, 3);
+        LocalDate friday = LocalDate.of(2000, 1, 7);
+        // No rate on the Monday, a holiday
+        when(exchangeRateRepository.findStoredDates("EUR", "HUF", monday, friday))
+                .thenReturn(List.of(LocalDate.of(2000, 1, 4), LocalDate.of(2000, 1, 5), LocalDate.of(2000, 1, 6),
+                        friday));
+        when(mnbQueryService.getHufRates(Set.of("EUR"), monday, monday)).thenReturn(Collections.emptyMap());
+
+        exchangeRateService.storeMissingRatesFromMnb(List.of("EUR"), monday, friday);
+        exchangeRateService.storeMissingRatesFromMnb(List.of("EUR"), monday, friday);
+
+        verify(mnbQueryService, times(1)).getHufRates(anyCollection(), any(), any());
+    }
+
+    private void storedLocally(String currency, BigDecimal rate, LocalDate... dates) {
+        when(exchangeRateRepository.findRates(eq(currency), eq("HUF"), any(), any()))
+                .thenReturn(Arrays.stream(dates)
+                        .map(date -> new StoredRate(currency, "HUF", date, rate))
+                        .toList());
+    }
+}
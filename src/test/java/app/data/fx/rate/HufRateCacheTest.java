@@ -0,0 +1,79 @@
+package app.data.fx.rate;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class HufRateCacheTest {
+
+    @Mock
+    ExchangeRateRepository exchangeRateRepository;
+
+    @Test
+    void lookupsWithinLoadedRangeAreHits() {
+        HufRateCache cache = new HufRateCache(exchangeRateRepository, 1000);
+        when(exchangeRateRepository.findRates(eq("EUR"), eq("HUF"), any(), any()))
+                .thenReturn(List.of(new StoredRate("EUR", "HUF", LocalDate.of(2000, 1, 3), BigDecimal.TEN)));
+
+        assertEquals(Optional.of(BigDecimal.TEN), cache.find("EUR", LocalDate.of(2000, 1, 3)));
+        assertEquals(Optional.empty(), cache.find("EUR", LocalDate.of(2000, 1, 4)));
+        cache.put("EUR", LocalDate.of(2000, 1, 4), BigDecimal.ONE);
+        assertEquals(Optional.of(BigDecimal.ONE), cache.find("EUR", LocalDate.of(2000, 1, 4)));
+
+        verify(exchangeRateRepository, times(1)).findRates(any(), any(), any(), any());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(2, cache.getHitCount());
+    }
+
+    @Test
+    void daysSearchedWithoutRateHaveNoneToFetch() {
+        HufRateCache cache = new HufRateCache(exchangeRateRepository, 1000);
+        when(exchangeRateRepository.findRates(eq("EUR"), eq("HUF"), any(), any()))
+                .thenReturn(List.of(new StoredRate("EUR", "HUF", LocalDate.of(2000, 1, 7), BigDecimal.TEN)));
+        LocalDate saturday = LocalDate.of(2000, 1, 8);
+        LocalDate sunday = LocalDate.of(2000, 1, 9);
+
+        assertFalse(cache.hasNoRateToFetch("EUR", saturday, saturday));
+        assertTrue(cache.hasNoRateToFetch("EUR", LocalDate.of(2000, 1, 3), LocalDate.of(2000, 1, 7)));
+
+        cache.recordSearched("EUR", LocalDate.of(2000, 1, 1), saturday);
+        assertTrue(cache.hasNoRateToFetch("EUR", saturday, saturday));
+        assertTrue(cache.hasNoRateToFetch("EUR", LocalDate.of(2000, 1, 3), saturday));
+        assertFalse(cache.hasNoRateToFetch("EUR", saturday, sunday));
+
+        // Today's rate may still be published
+        LocalDate today = LocalDate.now();
+        cache.recordSearched("EUR", today.minusDays(3), today);
+        assertTrue(cache.hasNoRateToFetch("EUR", today.minusDays(1), today.minusDays(1)));
+        assertFalse(cache.hasNoRateToFetch("EUR", today, today));
+    }
+
+    @Test
+    void leastRecentlyUsedCurrencyEvictedWhenFull() {
+        HufRateCache cache = new HufRateCache(exchangeRateRepository, 2);
+        for (String currency : List.of("EUR", "USD", "GBP")) {
+            when(exchangeRateRepository.findRates(eq(currency), eq("HUF"), any(), any()))
+                    .thenReturn(List.of(new StoredRate(currency, "HUF", LocalDate.of(2000, 1, 3), BigDecimal.TEN)));
+        }
+
+        cache.find("EUR", LocalDate.of(2000, 1, 3));
+        cache.find("USD", LocalDate.of(2000, 1, 3));
+        cache.find("EUR", LocalDate.of(2000, 1, 3));
+        cache.find("GBP", LocalDate.of(2000, 1, 3)); // evicts USD
+        cache.find("EUR", LocalDate.of(2000, 1, 3));
+        cache.find("USD", LocalDate.of(2000, 1, 3));
+
+        verify(exchangeRateRepository, times(1)).findRates(eq("EUR"), any(), any(), any());
+        verify(exchangeRateRepository, times(2)).findRates(eq("USD"), any(), any(), any());
+    }
+}
@@ -1,23 +1,30 @@
 package app.data.securities;
 
+import app.data.RemoteFetchCoalescer;
+import app.data.securities.price.ClosePrice;
+import app.data.securities.price.ClosePriceCache;
 import app.data.securities.price.SecurityPrice;
 import app.data.securities.price.SecurityPriceOfDay;
 import app.data.securities.price.SecurityPriceOfDayRepository;
 import app.data.securities.security.Security;
 import app.data.securities.security.SecurityRepository;
 import app.data.securities.yahoo_access.RemoteSecurityService;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -35,22 +42,18 @@ class SecurityServiceImplTest {
     @Mock
     RemoteSecurityService remoteSecurityService;
 
-    @InjectMocks
     SecurityServiceImpl securityService;
 
+    @BeforeEach
+    void init() {
+        securityService = new SecurityServiceImpl(priceRepository, securityRepository, remoteSecurityService,
+                new ClosePriceCache(priceRepository, 1000), new RemoteFetchCoalescer(), 4);
+    }
+
     @Test
     void gettingLocallyAvailablePrice_withinTolerance() {
         when(securityRepository.countByTicker("MMM")).thenReturn(1);
-
-        when(priceRepository.findByTickerAndDate("MMM", LocalDate.of(2000, 1, 1)))
-                .thenReturn(Optional.empty());
-        when(priceRepository.findByTickerAndDate("MMM", LocalDate.of(1999, 12, 31)))
-                .thenReturn(Optional.empty());
-        when(priceRepository.findByTickerAndDate("MMM", LocalDate.of(1999, 12, 30)))
-                .thenReturn(Optional.of(SecurityPriceOfDay.builder()
-                        .close(BigDecimal.TEN)
-                        .date(LocalDate.of(1999, 12, 30))
-                        .build()));
+        storedLocally(LocalDate.of(1999, 12, 30));
         when(remoteSecurityService.getPrices(eq("MMM"), any(), any()))
                 .thenReturn(Collections.emptyMap());
 
@@ -61,11 +64,22 @@ class SecurityServiceImplTest {
     }
 
     @Test
-    void gettingRemotelyAvailablePrice_forExactDay() {
+    void gettingLocallyAvailablePrice_readFromOneRangeLoad() {
         when(securityRepository.countByTicker("MMM")).thenReturn(1);
+        storedLocally(LocalDate.of(2000, 1, 3), LocalDate.of(2000, 1, 4));
 
-        when(priceRepository.findByTickerAndDate("MMM", LocalDate.of(2000, 1, 1)))
-                .thenReturn(Optional.empty());
+        securityService.getPrice("MMM", LocalDate.of(2000, 1, 3));
+        Optional<SecurityPrice> price = securityService.getPrice("MMM", LocalDate.of(2000, 1, 4));
+
+        assertEquals(LocalDate.of(2000, 1, 4), price.orElseThrow().getDate());
+        verify(priceRepository, times(1)).findClosePrices(any(), any(), any());
+        verifyNoInteractions(remoteSecurityService);
+    }
+
+    @Test
+    void gettingRemotelyAvailablePrice_forExactDay() {
+        when(securityRepository.countByTicker("MMM")).thenReturn(1);
+        storedLocally();
         when(remoteSecurityService.getPrices(eq("MMM"), any(), any()))
                 .thenReturn(Map.of(LocalDate.of(2000, 1, 1), SecurityPriceOfDay.builder().close(BigDecimal.TEN).build()));
 
@@ -77,14 +91,10 @@ class SecurityServiceImplTest {
     @Test
     void gettingRemotelyAvailablePrice_withinTolerance() {
         when(securityRepository.countByTicker("MMM")).thenReturn(1);
-
-        when(priceRepository.findByTickerAndDate("MMM", LocalDate.of(2000, 1, 1)))
-                .thenReturn(Optional.empty());
+        storedLocally();
+        // 1999-12-31 will be present as a result of saving new prices
         when(remoteSecurityService.getPrices(eq("MMM"), any(), any()))
                 .thenReturn(Map.of(LocalDate.of(1999, 12, 31), SecurityPriceOfDay.builder().close(BigDecimal.TEN).build()));
-        // 1999-12-31 will be present as a result of saving new prices
-        when(priceRepository.findByTickerAndDate("MMM", LocalDate.of(1999, 12, 31)))
-                .thenReturn(Optional.ofNullable(SecurityPriceOfDay.builder().close(BigDecimal.TEN).build()));
 
         Optional<SecurityPrice> price = securityService.getPrice("MMM", LocalDate.of(2000, 1, 1), 2);
         assertTrue(price.isPresent());
@@ -94,8 +104,7 @@ class SecurityServiceImplTest {
     @Test
     void priceIsNotAvailable() {
         when(securityRepository.countByTicker("MMM")).thenReturn(1);
-        when(priceRepository.findByTickerAndDate(eq("MMM"), any()))
-                .thenReturn(Optional.empty());
+        storedLocally();
         when(remoteSecurityService.getPrices(eq("MMM"), any(), any()))
                 .thenReturn(Collections.emptyMap());
 
@@ -106,8 +115,7 @@ class SecurityServiceImplTest {
     @Test
     void newRatesAreSaved() {
         when(securityRepository.countByTicker("MMM")).thenReturn(1);
-        when(priceRepository.findByTickerAndDate("MMM", LocalDate.of(2000, 1, 1)))
-                .thenReturn(Optional.empty());
+        storedLocally(LocalDate.of(1999, 12, 29));
         when(remoteSecurityService.getPrices(eq("MMM"), any(), any()))
                 .thenReturn(Map.of(
                         LocalDate.of(1999, 12, 31), SecurityPriceOfDay.builder().close(BigDecimal.TEN).date(LocalDate.of(1999, 12, 31)).build(),
@@ -115,23 +123,16 @@ class SecurityServiceImplTest {
                         LocalDate.of(1999, 12, 29), SecurityPriceOfDay.builder().close(BigDecimal.TEN).date(LocalDate.of(1999, 12, 29)).build()
                 ));
 
-        when(priceRepository.countByTickerAndDate(eq("MMM"), any()))
-                .thenReturn(0L);
-        when(priceRepository.countByTickerAndDate("MMM", LocalDate.of(1999, 12, 29)))
-                .thenReturn(1L);
-
         securityService.getPrice("MMM", LocalDate.of(2000, 1, 1), 20);
 
-        verify(priceRepository, times(1)).saveAll(argThat((List<SecurityPriceOfDay> s) -> s.size() == 2));
-        verify(priceRepository, never()).saveAll(argThat((List<SecurityPriceOfDay> s) -> s.stream().anyMatch(p -> p.getDate().equals(LocalDate.of(1999, 12, 29)))));
+        verify(priceRepository, times(1)).insertMissing(argThat((List<SecurityPriceOfDay> s) -> s.size() == 2));
+        verify(priceRepository, never()).insertMissing(argThat((List<SecurityPriceOfDay> s) -> s.stream().anyMatch(p -> p.getDate().equals(LocalDate.of(1999, 12, 29)))));
     }
 
     @Test
     void remoteSourceCalledOnlyOnce() {
         when(securityRepository.countByTicker("MMM")).thenReturn(1);
-
-        when(priceRepository.findByTickerAndDate(eq("MMM"), any()))
-                .thenReturn(Optional.empty());
+        storedLocally();
         when(remoteSecurityService.getPrices(eq("MMM"), any(), any()))
                 .thenReturn(Collections.emptyMap());
 
@@ -140,6 +141,35 @@ class SecurityServiceImplTest {
         verify(remoteSecurityService, times(1)).getPrices(any(), any(), any());
     }
 
+    @Test
+    void weekendLookupsAfterRemoteSearch_noFurtherRemoteCalls() {
+        when(securityRepository.countByTicker("MMM")).thenReturn(1);
+        // 2000-01-07 is a Friday
+        storedLocally(LocalDate.of(2000, 1, 6), LocalDate.of(2000, 1, 7));
+        when(remoteSecurityService.getPrices(eq("MMM"), any(), any()))
+                .thenReturn(Collections.emptyMap());
+
+        Optional<SecurityPrice> saturday = securityService.getPrice("MMM", LocalDate.of(2000, 1, 8), 3);
+        Optional<SecurityPrice> sunday = securityService.getPrice("MMM", LocalDate.of(2000, 1, 9), 3);
+
+        assertEquals(LocalDate.of(2000, 1, 7), saturday.orElseThrow().getDate());
+        assertEquals(LocalDate.of(2000, 1, 7), sunday.orElseThrow().getDate());
+        verify(remoteSecurityService, times(1)).getPrices(any(), any(), any());
+    }
+
+    @Test
+    void missingDaySearchedBefore_notSearchedAgain() {
+        when(securityRepository.countByTicker("MMM")).thenReturn(1);
+        storedLocally();
+        when(remoteSecurityService.getPrices(eq("MMM"), any(), any()))
+                .thenReturn(Collections.emptyMap());
+
+        assertTrue(securityService.getPrice("MMM", LocalDate.of(2000, 1, 3), 2).isEmpty());
+        assertTrue(securityService.getPrice("MMM", LocalDate.of(2000, 1, 3), 2).isEmpty());
+
+        verify(remoteSecurityService, times(1)).getPrices(any(), any(), any());
+    }
+
     @Test
     void gettingLocallyAvailableSecurityByTicker() {
         when(securityRepository.findByTicker("MMM"))
@@ -208,4 +238,83 @@ class SecurityServiceImplTest {
         securityService.getSecurityByTicker("MMM");
         verify(securityRepository).save(argThat(s -> s.getTicker().equals("MMM")));
     }
-}
\ No newline at end of file
+
+    @Test
+    void preloadingPrices_onlyMissingDaysQueriedAndSaved() {
+        when(securityRepository.countByTicker("MMM")).thenReturn(1);
+        // 2000-01-03 is a Monday, 2000-01-08 and 09 the weekend after
+        when(priceRepository.findStoredDates("MMM", LocalDate.of(2000, 1, 3), LocalDate.of(2000, 1, 9)))
+                .thenReturn(List.of(LocalDate.of(2000, 1, 3), LocalDate.of(2000, 1, 7)));
+        SecurityPriceOfDay stored = SecurityPriceOfDay.builder().date(LocalDate.of(2000, 1, 7)).build();
+        SecurityPriceOfDay missing = SecurityPriceOfDay.builder().date(LocalDate.of(2000, 1, 4)).build();
+        when(remoteSecurityService.getPrices("MMM", LocalDate.of(2000, 1, 4), LocalDate.of(2000, 1, 6)))
+                .thenReturn(Map.of(stored.getDate(), stored, missing.getDate(), missing));
+
+        securityService.preloadPrices("MMM", LocalDate.of(2000, 1, 3), LocalDate.of(2000, 1, 9));
+
+        verify(priceRepository).insertMissing(List.of(missing));
+    }
+
+    @Test
+    void preloadingPrices_allWeekdaysStored() {
+        when(securityRepository.countByTicker("MMM")).thenReturn(1);
+        when(priceRepository.findStoredDates("MMM", LocalDate.of(2000, 1, 7), LocalDate.of(2000, 1, 9)))
+                .thenReturn(List.of(LocalDate.of(2000, 1, 7)));
+
+        securityService.preloadPrices("MMM", LocalDate.of(2000, 1, 7), LocalDate.of(2000, 1, 9));
+
+        verifyNoInteractions(remoteSecurityService);
+        verify(priceRepository, never()).insertMissing(any());
+    }
+
+    @Test
+    void gettingPricesOfSeveralSecurities_storedReadInOneQuery_missingFetched() {
+        LocalDate monday = LocalDate.of(2000, 1, 3);
+        when(securityRepository.findStoredTickers(Set.of("MMM", "AAPL", "WWW"))).thenReturn(List.of("MMM", "AAPL"));
+        when(priceRepository.findClosePricesOfTickers(eq(List.of("MMM", "AAPL")), any(), any()))
+                .thenReturn(List.of(new ClosePrice("MMM", monday, BigDecimal.TEN, "USD")));
+        when(remoteSecurityService.getPrices(eq("AAPL"), any(), eq(monday)))
+                .thenReturn(Map.of(monday, SecurityPriceOfDay.builder()
+                        .ticker("AAPL").date(monday).close(BigDecimal.ONE).currency("USD").build()));
+
+        Map<String, SecurityPrice> prices =
+                securityService.getPrices(new LinkedHashSet<>(List.of("MMM", "AAPL", "WWW")), monday, 7);
+
+        assertEquals(Set.of("MMM", "AAPL"), prices.keySet());
+        assertEquals(BigDecimal.TEN, prices.get("MMM").getPrice());
+        assertEquals(BigDecimal.ONE, prices.get("AAPL").getPrice());
+        verify(priceRepository, never()).findClosePrices(any(), any(), any());
+        verify(remoteSecurityService, never()).getPrices(eq("MMM"), any(), any());
+        verify(securityRepository, never()).countByTicker(any());
+    }
+
+    @Test
+    void gettingPricesOfSeveralSecuritiesInPeriod_onlyIncompleteFetched() {
+        LocalDate monday = LocalDate.of(2000, 1, 3);
+        LocalDate tuesday = LocalDate.of(2000, 1, 4);
+        when(securityRepository.findStoredTickers(Set.of("MMM", "AAPL"))).thenReturn(List.of("MMM", "AAPL"));
+        when(priceRepository.findClosePricesOfTickers(eq(List.of("MMM", "AAPL")), any(), any()))
+                .thenReturn(List.of(
+                        new ClosePrice("MMM", monday, BigDecimal.TEN, "USD"),
+                        new ClosePrice("MMM", tuesday, BigDecimal.TEN, "USD"),
+                        new ClosePrice("AAPL", monday, BigDecimal.ONE, "USD")));
+        when(remoteSecurityService.getPrices("AAPL", tuesday, tuesday))
+                .thenReturn(Map.of(tuesday, SecurityPriceOfDay.builder()
+                        .ticker("AAPL").date(tuesday).close(BigDecimal.ONE).currency("USD").build()));
+
+        Map<String, NavigableMap<LocalDate, SecurityPrice>> prices =
+                securityService.getPrices(List.of("MMM", "AAPL"), monday, tuesday);
+
+        assertEquals(Set.of(monday, tuesday), prices.get("MMM").keySet());
+        assertEquals(Set.of(monday, tuesday), prices.get("AAPL").keySet());
+        verify(priceRepository).insertMissing(argThat(newPrices -> newPrices.size() == 1));
+        verify(remoteSecurityService, never()).getPrices(eq("MMM"), any(), any());
+    }
+
+    private void storedLocally(LocalDate... dates) {
+        when(priceRepository.findClosePrices(eq("MMM"), any(), any()))
+                .thenReturn(Arrays.stream(dates)
+                        .map(date -> new ClosePrice("MMM", date, BigDecimal.TEN, "USD"))
+                        .toList());
+    }
+}
@@ -0,0 +1,73 @@
+package app.data.securities.file_access;
+
+import app.data.securities.price.SecurityPrice;
+import app.data.securities.security.Security;
+import app.util.MissingDataException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileRemoteSecurityServiceTest {
+
+    @TempDir
+    Path directory;
+
+    FileRemoteSecurityService remoteSecurityService;
+
+    @BeforeEach
+    void init() throws IOException {
+        new SyntheticPriceGenerator(42, 0.07, 0.25).write(directory,
+                new Security("MMM", "3M Corporation, Inc.", "NYSE", "USD"),
+                LocalDate.of(2000, 1, 3), LocalDate.of(2000, 12, 29), BigDecimal.valueOf(100));
+        remoteSecurityService = new FileRemoteSecurityService(directory);
+    }
+
+    @Test
+    void pricesOfWeekdaysInPeriodServed() {
+        // 2000-01-07 is a Friday
+        Map<LocalDate, SecurityPrice> prices =
+                remoteSecurityService.getPrices("MMM", LocalDate.of(2000, 1, 6), LocalDate.of(2000, 1, 10));
+
+        assertEquals(Set.of(LocalDate.of(2000, 1, 6), LocalDate.of(2000, 1, 7), LocalDate.of(2000, 1, 10)),
+                prices.keySet());
+        SecurityPrice friday = prices.get(LocalDate.of(2000, 1, 7));
+        assertEquals("MMM", friday.getTicker());
+        assertEquals("USD", friday.getCurrency());
+        assertTrue(friday.getPrice().signum() > 0);
+    }
+
+    @Test
+    void sameSeedSameSeries() throws IOException {
+        String series = Files.readString(directory.resolve("MMM.csv"));
+        new SyntheticPriceGenerator(42, 0.07, 0.25).write(directory,
+                new Security("MMM", "3M Corporation, Inc.", "NYSE", "USD"),
+                LocalDate.of(2000, 1, 3), LocalDate.of(2000, 12, 29), BigDecimal.valueOf(100));
+
+        assertEquals(series, Files.readString(directory.resolve("MMM.csv")));
+        assertEquals(260, series.lines().count() - 1);
+    }
+
+    @Test
+    void securityDetailsServed() {
+        Security security = remoteSecurityService.getSecurityDetails("MMM").orElseThrow();
+        assertEquals("3M Corporation, Inc.", security.getFullName());
+        assertEquals("NYSE", security.getMarket());
+        assertTrue(remoteSecurityService.getSecurityDetails("AAPL").isEmpty());
+    }
+
+    @Test
+    void pricesOfUnknownTicker() {
+        assertThrows(MissingDataException.class,
+                () -> remoteSecurityService.getPrices("AAPL", LocalDate.of(2000, 1, 3), LocalDate.of(2000, 1, 7)));
+    }
+}
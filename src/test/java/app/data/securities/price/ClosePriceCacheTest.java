@@ -0,0 +1,92 @@
+package app.data.securities.price;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ClosePriceCacheTest {
+
+    @Mock
+    SecurityPriceOfDayRepository priceRepository;
+
+    @Test
+    void latestPriceWithinPeriod() {
+        ClosePriceCache cache = new ClosePriceCache(priceRepository, 1000);
+        ClosePrice friday = new ClosePrice("MMM", LocalDate.of(2000, 1, 7), BigDecimal.TEN, "USD");
+        when(priceRepository.findClosePrices(eq("MMM"), any(), any()))
+                .thenReturn(List.of(friday));
+
+        assertEquals(Optional.of(friday), cache.findLatest("MMM", LocalDate.of(2000, 1, 3), LocalDate.of(2000, 1, 9)));
+        assertEquals(Optional.empty(), cache.findLatest("MMM", LocalDate.of(2000, 1, 8), LocalDate.of(2000, 1, 9)));
+        assertEquals(Optional.empty(), cache.find("MMM", LocalDate.of(2000, 1, 8)));
+
+        verify(priceRepository, times(1)).findClosePrices(any(), any(), any());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(2, cache.getHitCount());
+    }
+
+    @Test
+    void savedPricesAddedToLoadedTicker() {
+        ClosePriceCache cache = new ClosePriceCache(priceRepository, 1000);
+        when(priceRepository.findClosePrices(eq("MMM"), any(), any()))
+                .thenReturn(List.of());
+        ClosePrice saved = new ClosePrice("MMM", LocalDate.of(2000, 1, 3), BigDecimal.ONE, "USD");
+
+        cache.load("MMM", LocalDate.of(2000, 1, 3), LocalDate.of(2000, 1, 3));
+        cache.put(saved);
+
+        assertEquals(Optional.of(saved), cache.find("MMM", LocalDate.of(2000, 1, 3)));
+    }
+
+    @Test
+    void leastRecentlyUsedTickerEvicted() {
+        ClosePriceCache cache = new ClosePriceCache(priceRepository, 2);
+        when(priceRepository.findClosePrices(eq("MMM"), any(), any()))
+                .thenReturn(List.of(
+                        new ClosePrice("MMM", LocalDate.of(2000, 1, 3), BigDecimal.TEN, "USD"),
+                        new ClosePrice("MMM", LocalDate.of(2000, 1, 4), BigDecimal.TEN, "USD")));
+        when(priceRepository.findClosePrices(eq("AAPL"), any(), any()))
+                .thenReturn(List.of(new ClosePrice("AAPL", LocalDate.of(2000, 1, 3), BigDecimal.ONE, "USD")));
+
+        cache.find("MMM", LocalDate.of(2000, 1, 3));
+        cache.find("AAPL", LocalDate.of(2000, 1, 3));
+        cache.find("MMM", LocalDate.of(2000, 1, 3));
+
+        verify(priceRepository, times(2)).findClosePrices(eq("MMM"), any(), any());
+    }
+
+    @Test
+    void weekendsWithoutPriceOnceSearchedPeriodShowsNoWeekendTrading() {
+        ClosePriceCache cache = new ClosePriceCache(priceRepository, 1000);
+        when(priceRepository.findClosePrices(eq("MMM"), any(), any()))
+                .thenReturn(List.of(new ClosePrice("MMM", LocalDate.of(2000, 1, 7), BigDecimal.TEN, "USD")));
+
+        // the Sunday after a Friday price
+        assertFalse(cache.hasNoPriceToFetch("MMM", LocalDate.of(2000, 1, 5), LocalDate.of(2000, 1, 9)));
+        cache.recordSearched("MMM", LocalDate.of(1999, 12, 8), LocalDate.of(2000, 1, 8));
+        assertTrue(cache.hasNoPriceToFetch("MMM", LocalDate.of(2000, 1, 5), LocalDate.of(2000, 1, 9)));
+        // the Monday after is not known yet
+        assertFalse(cache.hasNoPriceToFetch("MMM", LocalDate.of(2000, 1, 5), LocalDate.of(2000, 1, 10)));
+    }
+
+    @Test
+    void weekendPriceShowsWeekendTrading() {
+        ClosePriceCache cache = new ClosePriceCache(priceRepository, 1000);
+        when(priceRepository.findClosePrices(eq("BTC-USD"), any(), any()))
+                .thenReturn(List.of(new ClosePrice("BTC-USD", LocalDate.of(2000, 1, 1), BigDecimal.TEN, "USD")));
+
+        cache.recordSearched("BTC-USD", LocalDate.of(1999, 12, 1), LocalDate.of(2000, 1, 7));
+
+        assertFalse(cache.hasNoPriceToFetch("BTC-USD", LocalDate.of(2000, 1, 5), LocalDate.of(2000, 1, 8)));
+    }
+}
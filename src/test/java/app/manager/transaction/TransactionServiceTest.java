@@ -1,7 +1,9 @@
 package app.manager.transaction;
 
 import app.analysis.CashValue;
+import app.analysis.checkpoint.TrackerCheckpointService;
 import app.broker.BrokerEntityNotFoundException;
+import app.broker.account.BrokerAccount;
 import app.broker.account.BrokerAccountService;
 import app.broker.fees.calculator.FeeCalculatorService;
 import app.data.DataService;
@@ -24,6 +26,7 @@ import java.time.LocalDate;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
@@ -46,6 +49,8 @@ class TransactionServiceTest {
     TbszValidator tbszValidator;
     @Mock
     EntityManager entityManager;
+    @Mock
+    TrackerCheckpointService checkpointService;
     @Spy
     TransactionMapperImpl mapper;
 
@@ -279,6 +284,57 @@ class TransactionServiceTest {
                         && Objects.equals(t.getAssetTaken().getId(), eurRecord.getId())));
     }
 
+    @Test
+    void updateInvalidatesCheckpointsFromEarlierDate() {
+        BrokerAccount oldAccount = new BrokerAccount();
+        oldAccount.setId(3L);
+        Transaction storedTransaction = Transaction.builder(LocalDate.of(1999, 5, 1), TransactionType.MONEY_IN)
+                .add(BigDecimal.ONE, eurRecord, oldAccount)
+                .build();
+        when(transactionRepository.findById(111L))
+                .thenReturn(Optional.of(storedTransaction));
+        BrokerAccount account = new BrokerAccount();
+        account.setId(4L);
+        when(accountService.getReferenceById(4L)).thenReturn(account);
+
+        UpdateTransactionCommand command = UpdateTransactionCommand.builder()
+                .date(LocalDate.of(2000, 1, 1))
+                .transactionType(TransactionType.MONEY_IN)
+                .addToAccountId(4L)
+                .assetAddedId("EUR")
+                .countOfAssetAdded(BigDecimal.TEN)
+                .build();
+
+        transactionService.updateTransaction(111L, command);
+        verify(checkpointService).invalidateCheckpoints(Set.of(3L, 4L), LocalDate.of(1999, 5, 1));
+    }
+
+    @Test
+    void deleteInvalidatesCheckpoints() {
+        BrokerAccount account = new BrokerAccount();
+        account.setId(4L);
+        Transaction storedTransaction = Transaction.builder(LocalDate.of(1999, 5, 1), TransactionType.MONEY_IN)
+                .add(BigDecimal.ONE, eurRecord, account)
+                .build();
+        when(transactionRepository.findById(111L))
+                .thenReturn(Optional.of(storedTransaction));
+
+        transactionService.deleteTransaction(111L);
+        verify(transactionRepository).delete(storedTransaction);
+        verify(checkpointService).invalidateCheckpoints(Set.of(4L), LocalDate.of(1999, 5, 1));
+    }
+
+    @Test
+    void deleteTransactionWithNoSuchId() {
+        when(transactionRepository.findById(111L))
+                .thenReturn(Optional.empty());
+
+        InvalidDataException ex = assertThrows(InvalidDataException.class,
+                () -> transactionService.deleteTransaction(111L));
+        assertEquals("No transaction found with database id: 111", ex.getMessage());
+        verifyNoInteractions(checkpointService);
+    }
+
     @Test
     void updateTransactionWithNoSuchId() {
         when(transactionRepository.findById(111L))
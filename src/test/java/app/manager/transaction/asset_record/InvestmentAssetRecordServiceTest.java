@@ -4,17 +4,21 @@ import app.data.DataService;
 import app.data.fx.currency.BasicCurrency;
 import app.data.securities.security.Security;
 import app.util.InvalidDataException;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
 
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -27,9 +31,16 @@ class InvestmentAssetRecordServiceTest {
     @Mock
     DataService dataService;
 
-    @InjectMocks
+    @Mock
+    PlatformTransactionManager transactionManager;
+
     InvestmentAssetRecordService recordService;
 
+    @BeforeEach
+    void init() {
+        recordService = new InvestmentAssetRecordService(assetRecordRepository, dataService, transactionManager, 100);
+    }
+
     @Test
     void gettingExistingCashRecord() {
         BasicCurrency currency = new BasicCurrency("EUR", "Euro");
@@ -109,4 +120,62 @@ class InvestmentAssetRecordServiceTest {
                 () -> recordService.getSecurityRecord("MMM111"));
         assertEquals("Invalid ticker", ex.getMessage());
     }
-}
\ No newline at end of file
+
+    @Test
+    void existingSecurityRecordReadFromStoreOnce() {
+        Security security = new Security("MMM", "3M Corporation", "NYSE", "USD");
+        security.setId(11L);
+        when(dataService.getSecurityDetailsByTicker("MMM"))
+                .thenReturn(security);
+        when(assetRecordRepository.findSecurityRecordById(11L))
+                .thenReturn(Optional.of(new InvestmentAssetRecord(InvestmentAssetType.SECURITY, 11L)));
+
+        InvestmentAssetRecord first = recordService.getSecurityRecord("MMM");
+        InvestmentAssetRecord second = recordService.getSecurityRecord("MMM");
+
+        // Each caller gets a record of its own
+        assertNotSame(first, second);
+        assertEquals(InvestmentAssetType.SECURITY, second.getType());
+        assertEquals(11L, second.getAssetId());
+        verify(assetRecordRepository, times(1)).findSecurityRecordById(11L);
+    }
+
+    @Test
+    void cashRecordStoredConcurrentlyIsReadBack() {
+        BasicCurrency currency = new BasicCurrency("EUR", "Euro");
+        currency.setId(10L);
+        when(dataService.getCurrencyDetailsByCode("EUR"))
+                .thenReturn(currency);
+        InvestmentAssetRecord storedRecord = new InvestmentAssetRecord(InvestmentAssetType.CASH, 10L);
+        storedRecord.setId(5L);
+        when(assetRecordRepository.findCashRecordById(10L))
+                .thenReturn(Optional.empty())
+                .thenReturn(Optional.of(storedRecord));
+        when(assetRecordRepository.save(argThat(r -> r.getAssetId() == 10L)))
+                .thenThrow(new DataIntegrityViolationException("Duplicate entry"));
+
+        InvestmentAssetRecord cashRecord = recordService.getCashRecord("EUR");
+        assertEquals(5L, cashRecord.getId());
+        assertEquals(InvestmentAssetType.CASH, cashRecord.getType());
+        assertEquals(10L, cashRecord.getAssetId());
+    }
+
+    @Test
+    void securityRecordStoredConcurrentlyIsReadBack() {
+        Security security = new Security("MMM", "3M Corporation", "NYSE", "USD");
+        security.setId(11L);
+        when(dataService.getSecurityDetailsByTicker("MMM"))
+                .thenReturn(security);
+        InvestmentAssetRecord storedRecord = new InvestmentAssetRecord(InvestmentAssetType.SECURITY, 11L);
+        storedRecord.setId(6L);
+        when(assetRecordRepository.findSecurityRecordById(11L))
+                .thenReturn(Optional.empty())
+                .thenReturn(Optional.of(storedRecord));
+        when(assetRecordRepository.save(argThat(r -> r.getAssetId() == 11L)))
+                .thenThrow(new DataIntegrityViolationException("Duplicate entry"));
+
+        InvestmentAssetRecord securityRecord = recordService.getSecurityRecord("MMM");
+        assertEquals(6L, securityRecord.getId());
+        assertEquals(11L, securityRecord.getAssetId());
+    }
+}
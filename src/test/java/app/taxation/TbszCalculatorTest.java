@@ -22,6 +22,8 @@ import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -104,13 +106,13 @@ class TbszCalculatorTest {
         when(transactionService.getTransactionsOnTakeAccountByType(anyLong(), anyList()))
                 .thenReturn(List.of(validExit));
 
-        when(dataService.getSharePrice("ticker", LocalDate.of(2005, 12, 31)))
-                .thenReturn(SecurityPriceOfDay.builder()
+        when(dataService.getSharePrices(Set.of("ticker"), LocalDate.of(2005, 12, 31)))
+                .thenReturn(Map.of("ticker", SecurityPriceOfDay.builder()
                         .ticker("ticker")
                         .date(LocalDate.of(2005, 12, 31))
                         .currency("EUR")
                         .close(new BigDecimal("3.1"))
-                        .build());
+                        .build()));
         when(dataService.getExchangeRate("EUR", "HUF", LocalDate.of(2008,5,5)))
                 .thenReturn(new BigDecimal("2"));
         when(dataService.getExchangeRate("EUR", "EUR", LocalDate.of(2008,5,5)))
@@ -138,13 +140,13 @@ class TbszCalculatorTest {
         when(transactionService.getTransactionsOnTakeAccountByType(anyLong(), anyList()))
                 .thenReturn(List.of(validExit));
 
-        when(dataService.getSharePrice("ticker", LocalDate.of(2005, 12, 31)))
-                .thenReturn(SecurityPriceOfDay.builder()
+        when(dataService.getSharePrices(Set.of("ticker"), LocalDate.of(2005, 12, 31)))
+                .thenReturn(Map.of("ticker", SecurityPriceOfDay.builder()
                         .ticker("ticker")
                         .date(LocalDate.of(2005, 12, 31))
                         .currency("EUR")
                         .close(new BigDecimal("1.5"))
-                        .build());
+                        .build()));
         when(dataService.getExchangeRate("EUR", "HUF", LocalDate.of(2008,5,5)))
                 .thenReturn(new BigDecimal("2"));
         when(dataService.getExchangeRate("EUR", "EUR", LocalDate.of(2008,5,5)))
@@ -172,13 +174,13 @@ class TbszCalculatorTest {
         when(transactionService.getTransactionsOnTakeAccountByType(anyLong(), anyList()))
                 .thenReturn(List.of(validExit));
 
-        when(dataService.getSharePrice("ticker", LocalDate.of(2005, 12, 31)))
-                .thenReturn(SecurityPriceOfDay.builder()
+        when(dataService.getSharePrices(Set.of("ticker"), LocalDate.of(2005, 12, 31)))
+                .thenReturn(Map.of("ticker", SecurityPriceOfDay.builder()
                         .ticker("ticker")
                         .date(LocalDate.of(2005, 12, 31))
                         .currency("EUR")
                         .close(new BigDecimal("1.5"))
-                        .build());
+                        .build()));
         when(dataService.getExchangeRate("USD", "HUF", LocalDate.of(2008,5,5)))
                 .thenReturn(new BigDecimal("5"));
         when(dataService.getExchangeRate("EUR", "HUF", LocalDate.of(2008,5,5)))
@@ -209,13 +211,13 @@ class TbszCalculatorTest {
         when(transactionService.getTransactionsOnTakeAccountByType(anyLong(), anyList()))
                 .thenReturn(List.of(validExit));
 
-        when(dataService.getSharePrice("ticker", LocalDate.of(2005, 12, 31)))
-                .thenReturn(SecurityPriceOfDay.builder()
+        when(dataService.getSharePrices(Set.of("ticker"), LocalDate.of(2005, 12, 31)))
+                .thenReturn(Map.of("ticker", SecurityPriceOfDay.builder()
                         .ticker("ticker")
                         .date(LocalDate.of(2005, 12, 31))
                         .currency("EUR")
                         .close(new BigDecimal("1.5"))
-                        .build());
+                        .build()));
         when(dataService.getExchangeRate("USD", "HUF", LocalDate.of(2008,5,5)))
                 .thenReturn(new BigDecimal("5"));
         when(dataService.getExchangeRate("EUR", "HUF", LocalDate.of(2008,5,5)))
@@ -243,13 +245,13 @@ class TbszCalculatorTest {
         when(transactionService.getTransactionsOnTakeAccountByType(anyLong(), anyList()))
                 .thenReturn(List.of(validExit));
 
-        when(dataService.getSharePrice("ticker", LocalDate.of(2010, 12, 31)))
-                .thenReturn(SecurityPriceOfDay.builder()
+        when(dataService.getSharePrices(Set.of("ticker"), LocalDate.of(2010, 12, 31)))
+                .thenReturn(Map.of("ticker", SecurityPriceOfDay.builder()
                         .ticker("ticker")
                         .date(LocalDate.of(2005, 12, 31))
                         .currency("EUR")
                         .close(new BigDecimal("3.1"))
-                        .build());
+                        .build()));
         when(dataService.getExchangeRate("EUR", "HUF", LocalDate.of(2015,5,5)))
                 .thenReturn(new BigDecimal("2"));
         when(dataService.getExchangeRate("EUR", "EUR", LocalDate.of(2015,5,5)))
@@ -275,13 +277,13 @@ class TbszCalculatorTest {
         when(transactionService.getTransactionsOnTakeAccountByType(anyLong(), anyList()))
                 .thenReturn(List.of(breakingTransaction));
 
-        when(dataService.getSharePrice("ticker", LocalDate.of(2007, 1, 1)))
-                .thenReturn(SecurityPriceOfDay.builder()
+        when(dataService.getSharePrices(Set.of("ticker"), LocalDate.of(2007, 1, 1)))
+                .thenReturn(Map.of("ticker", SecurityPriceOfDay.builder()
                         .ticker("ticker")
                         .date(LocalDate.of(2005, 12, 31))
                         .currency("EUR")
                         .close(new BigDecimal("3.1"))
-                        .build());
+                        .build()));
         when(dataService.getExchangeRate("EUR", "HUF", LocalDate.of(2015,5,5)))
                 .thenReturn(new BigDecimal("2"));
         when(dataService.getExchangeRate("EUR", "EUR", LocalDate.of(2015,5,5)))
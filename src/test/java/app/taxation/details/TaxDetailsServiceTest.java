@@ -1,5 +1,6 @@
 package app.taxation.details;
 
+import app.analysis.checkpoint.TrackerCheckpointService;
 import app.broker.BrokerEntityNotFoundException;
 import app.broker.UniqueViolationException;
 import org.junit.jupiter.api.Test;
@@ -29,6 +30,9 @@ class TaxDetailsServiceTest {
     @Spy
     TaxDetailMapperImpl mapper;
 
+    @Mock
+    TrackerCheckpointService checkpointService;
+
     @InjectMocks
     TaxDetailsService taxDetailsService;
 
@@ -56,6 +60,7 @@ class TaxDetailsServiceTest {
                 .thenReturn(Collections.emptyList());
 
         TaxDetailsDto dto = taxDetailsService.addTaxDetails(command);
+        verify(checkpointService).invalidateCheckpointsOfResidence(null, null);
         assertEquals(BigDecimal.ONE, dto.getFlatCapitalGainsTaxRate());
         assertEquals("HUF", dto.getTaxationCurrency());
 
@@ -77,6 +82,7 @@ class TaxDetailsServiceTest {
 
         UniqueViolationException ex = assertThrows(UniqueViolationException.class,
                 () -> taxDetailsService.addTaxDetails(command));
+        verifyNoInteractions(checkpointService);
         assertEquals("Existing tax details for HU overlap with the specified period (null-null). Overlapping ids: [4]",
                 ex.getMessage());
     }
@@ -95,6 +101,26 @@ class TaxDetailsServiceTest {
         assertDoesNotThrow(() -> taxDetailsService.updateTaxDetails(4L, command));
     }
 
+    @Test
+    void updateTaxDetails_invalidatesCheckpointsOfOldAndNewPeriod() {
+        UpdateTaxDetailsCommand command = new UpdateTaxDetailsCommand();
+        command.setTaxResidence("HU");
+        command.setFromDate(LocalDate.of(2021, 1, 1));
+
+        TaxDetails taxDetails = new TaxDetails();
+        taxDetails.setTaxResidence("AT");
+        taxDetails.setFromDate(LocalDate.of(2020, 1, 1));
+        when(taxDetailsRepository.findById(4L))
+                .thenReturn(Optional.of(taxDetails));
+        when(taxDetailsRepository.findOthersForResidenceAndDate("HU", LocalDate.of(2021, 1, 1), null, 4L))
+                .thenReturn(Collections.emptyList());
+
+        taxDetailsService.updateTaxDetails(4L, command);
+
+        verify(checkpointService).invalidateCheckpointsOfResidence("AT", LocalDate.of(2020, 1, 1));
+        verify(checkpointService).invalidateCheckpointsOfResidence("HU", LocalDate.of(2021, 1, 1));
+    }
+
     @Test
     void updateTaxDetails_notFound() {
         UpdateTaxDetailsCommand command = new UpdateTaxDetailsCommand();
@@ -152,6 +178,19 @@ class TaxDetailsServiceTest {
         assertDoesNotThrow(() -> taxDetailsService.deleteTaxDetail(1L));
     }
 
+    @Test
+    void deleteTaxDetail_invalidatesCheckpoints() {
+        TaxDetails taxDetails = new TaxDetails();
+        taxDetails.setTaxResidence("HU");
+        taxDetails.setFromDate(LocalDate.EPOCH);
+        when(taxDetailsRepository.findById(1L)).thenReturn(Optional.of(taxDetails));
+
+        taxDetailsService.deleteTaxDetail(1L);
+
+        verify(checkpointService).invalidateCheckpointsOfResidence("HU", LocalDate.EPOCH);
+        verify(taxDetailsRepository).deleteById(1L);
+    }
+
     @Test
     void deleteTaxDetail_notFound() {
         doThrow(new EmptyResultDataAccessException("", 1))